@@ -15,7 +15,14 @@ package bridgedesigner;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Perform an analysis of forces acting on a BridgeModel.
@@ -43,8 +50,14 @@ public class Analysis {
      * a failure animation), the base getLength of a failed member so that it
      * can be drawn with a parabola or broken section.
      */
-    private static final double NOT_FAILED = -1;
-    private static final double FAILED = 1e6;
+    static final double NOT_FAILED = -1;
+    static final double FAILED = 1e6;
+
+    /**
+     * Smallest magnitude of a pivot in the stiffness matrix solution before the bridge is declared unstable.
+     * This is the rule of the original WPBD code, and both solvers apply it.
+     */
+    private static final double minPivot = 0.99;
     
     /**
      * Analysis has not been initialized yet.
@@ -76,20 +89,117 @@ public class Analysis {
     private BridgeModel bridge;
     
     /**
-     * Results matrices:
-     * For member forces, indexes are [load index] [member index]
-     * For joint displacements, indexes are [load index] [joint index]
-     * 
-     * In turn, there is one load index for each loaded (deck) joint.
+     * Results of the last completed analysis.  Replaced, never modified, so readers on other threads 
+     * always see a consistent set of results.
      */
-    private double[][] memberForce;
-    private double[][] jointDisplacement;
-    private boolean[][] memberFails;
+    private volatile AnalysisResult result = new AnalysisResult(NO_STATUS, 0, 0, 0, 
+            null, null, null, null, null, null, null, null, null, null, null, null);
+    /**
+     * Results of the analysis in progress, which become the next <code>result</code>.  These are flat,
+     * row major arrays with one row per load case.  There is one load case for each loaded (deck) joint.
+     * Null until allocated or taken from a recycled result, and again once published.  They may be longer
+     * than the bridge being analyzed needs.  Joint locations and member joints, which describe the bridge,
+     * are copied into these too, so a result never refers to the bridge.
+     */
+    private double[] jointLocation;
+    private int[] memberJointIndices;
+    private double[] memberForce;
+    private double[] jointDisplacement;
+    private boolean[] memberFails;
     private double[] memberCompressiveStrength;
     private double[] memberTensileStrength;
-    private double[] maxMemberCompressiveForces;
-    private double[] maxMemberTensileForces;
+    private double[] maxMemberCompressiveForce;
+    private double[] maxMemberTensileForce;
+    private double[] compressionForceStrengthRatio;
+    private double[] tensionForceStrengthRatio;
+    /**
+     * Result given back by the caller, whose arrays the next analysis may reuse, or null if none.
+     */
+    private AnalysisResult recycled;
     private int status = NO_STATUS;
+    /**
+     * Number of joints, members, and load instances of the bridge being analyzed.
+     */
+    private int nJoints = 0;
+    private int nMembers = 0;
+    private int nLoadInstances = 0;
+    /**
+     * Whether to use the original dense Gauss-Jordan inversion rather than the skyline solver.
+     */
+    private boolean legacySolver = false;
+    /**
+     * Whether to compute compressive strengths by the exact formula rather than from the strength table.
+     */
+    private boolean strictStrength = false;
+    /**
+     * Largest residual of an updated solution relative to the loads before it is discarded for a full solution.
+     */
+    private static final double maxUpdateResidual = 1e-8;
+    /**
+     * Whether to reuse the last factorization when only member stiffnesses change.
+     */
+    private boolean incremental = true;
+    /**
+     * Whether to try a low-rank update even when refactoring would be cheaper, so tests can exercise it.
+     */
+    private boolean updateAlways = false;
+    /**
+     * Whether load cases may be evaluated in parallel.
+     */
+    private boolean parallel = false;
+    /**
+     * Whether to assemble stiffness and recover member forces with the packed kernels.
+     */
+    private boolean packedKernels = false;
+    /**
+     * Number of processors available for parallel evaluation of load cases.
+     */
+    private static final int parallelism = Runtime.getRuntime().availableProcessors();
+    /**
+     * Least number of multiply-adds over all load cases for which parallel evaluation pays for its overhead.
+     */
+    private static final long minParallelWork = 100000;
+    /**
+     * Number of blocks of load cases to evaluate concurrently and least work for parallel evaluation in this
+     * analysis.  These differ from the defaults only in tests.
+     */
+    private int nParallelBlocks = parallelism;
+    private long minWork = minParallelWork;
+    /**
+     * Executor shared by all analyses for parallel evaluation of load cases.
+     */
+    private static ExecutorService loadCaseExecutor;
+    /**
+     * Whether the skyline solver has factored the stiffness matrix and set up right hand sides, but 
+     * solving for joint displacements remains.
+     */
+    private boolean solvePending = false;
+    /**
+     * Whether the skyline solver holds the factored stiffness matrix of the bridge of the current result,
+     * as needed for sensitivities.  Not so after an incremental update, the legacy solver, or a restore.
+     */
+    private boolean factorizationCurrent = false;
+    /**
+     * Scratch storage, solver, and base factorization reused for successive analyses.
+     */
+    private final AnalysisWorkspace workspace;
+
+    /**
+     * Construct an analysis with its own workspace.
+     */
+    public Analysis() {
+        this(new AnalysisWorkspace());
+    }
+
+    /**
+     * Construct an analysis that uses the given workspace.  Analyses that share a workspace must
+     * not be initialized concurrently.
+     * 
+     * @param workspace workspace for analysis
+     */
+    public Analysis(AnalysisWorkspace workspace) {
+        this.workspace = workspace;
+    }
 
     /**
      * Return the analysis status.
@@ -103,9 +213,138 @@ public class Analysis {
      * @return analysis status indicator
      */
     public int getStatus() {
-        return status;
+        return result.getStatus();
     }
     
+    /**
+     * Return true iff this analysis uses the original dense Gauss-Jordan inversion.
+     * 
+     * @return true iff the legacy solver is in use
+     */
+    public boolean isLegacySolver() {
+        return legacySolver;
+    }
+
+    /**
+     * Choose between the skyline solver (the default) and the original dense Gauss-Jordan inversion.
+     * Both apply the same small pivot threshold, but the skyline solver renumbers joints to shrink the
+     * matrix profile, so it sees different pivots.  A bridge that is barely stable or unstable can
+     * therefore get a different status from each.  Only the legacy solver reproduces the original WPBD
+     * results bit for bit, e.g. for judging ties.  The legacy solver is O(n^3) in the number of joints.
+     * 
+     * @param legacySolver true to use the legacy solver
+     */
+    public void setLegacySolver(boolean legacySolver) {
+        this.legacySolver = legacySolver;
+    }
+
+    /**
+     * Return true iff compressive strengths are computed by the exact formula.
+     * 
+     * @return true iff strict strength is in use
+     */
+    public boolean isStrictStrength() {
+        return strictStrength;
+    }
+
+    /**
+     * Choose between tabulated compressive strengths (the default) and the exact formula.  Tabulated 
+     * strengths differ from exact ones by no more than <code>StrengthTable.getErrorBound()</code> relative
+     * to the strength at zero length, which can only matter for a member loaded to within that fraction of
+     * its strength.  The legacy solver always uses the exact formula.
+     * 
+     * @param strictStrength true to use the exact formula
+     */
+    public void setStrictStrength(boolean strictStrength) {
+        this.strictStrength = strictStrength;
+    }
+
+    /**
+     * Return true iff re-analysis reuses what it can of the last factorization.
+     * 
+     * @return true iff incremental re-analysis is enabled
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Enable or disable reuse of the last factorization with a low-rank update when only member sizes
+     * or materials have changed, or by refactoring only from the first changed equation when joints have 
+     * also moved.  Enabled by default.  Has no effect with the legacy solver.
+     * 
+     * @param incremental true to enable incremental re-analysis
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Make incremental re-analysis try a low-rank update of up to <code>AnalysisWorkspace.maxUpdateRank</code>
+     * changed members even when refactoring would be cheaper.  For tests of the update.
+     * 
+     * @param updateAlways true to ignore the cost of the update
+     */
+    void setUpdateAlways(boolean updateAlways) {
+        this.updateAlways = updateAlways;
+    }
+
+    /**
+     * Return true iff load cases may be evaluated in parallel.
+     * 
+     * @return true iff parallel mode is on
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Turn parallel mode on or off.  In parallel mode, solving for joint displacements, computing member forces,
+     * and checking member failures are spread over processors by load case, but only when the bridge is large
+     * enough that this pays off.  Results are identical to those of sequential evaluation.  Off by default.
+     * 
+     * @param parallel true to turn parallel mode on
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Override the number of blocks of load cases evaluated concurrently in parallel mode, which is otherwise 
+     * the number of processors, and the least work for which parallel evaluation is done.  For tests that
+     * must exercise parallel evaluation on any machine.
+     * 
+     * @param nBlocks number of blocks, at least 2 for parallel evaluation to happen
+     * @param minWork least number of multiply-adds over all load cases
+     */
+    void setParallelThreshold(int nBlocks, long minWork) {
+        this.nParallelBlocks = nBlocks;
+        this.minWork = minWork;
+    }
+
+    /**
+     * Return true iff the packed kernels are in use.
+     * 
+     * @return true iff packed kernels are in use
+     */
+    public boolean isPackedKernels() {
+        return packedKernels;
+    }
+
+    /**
+     * Choose between the packed kernels and the original member-by-member loops (the default) for assembling
+     * the skyline stiffness matrix and recovering member forces.  The packed kernels work on primitive arrays
+     * of member data gathered once per analysis and on skyline storage positions found once per profile, 
+     * so their inner loops neither follow object references nor test restraints.  They do the same 
+     * arithmetic in the same order, so results are identical.  On the sample bridges they are no faster
+     * than the loops, so they are off unless chosen here.  Assembly by the legacy solver is unaffected.
+     * 
+     * @param packedKernels true to use the packed kernels
+     */
+    public void setPackedKernels(boolean packedKernels) {
+        this.packedKernels = packedKernels;
+    }
+
     /**
      * Return the member force of a given member and load case.  It is the caller's responsibility
      * to ensure the analysis is valid and indices are in range.
@@ -115,7 +354,7 @@ public class Analysis {
      * @return member force
      */
     public double getMemberForce(int ilc, int im) {
-        return memberForce[ilc][im];
+        return result.getMemberForce(ilc, im);
     }
 
     /**
@@ -127,7 +366,7 @@ public class Analysis {
      * @return x-component of displacement
      */
     public double getXJointDisplacement(int ilc, int ij) {
-        return jointDisplacement[ilc][2 * ij];
+        return result.getXJointDisplacement(ilc, ij);
     }
 
     /**
@@ -139,7 +378,7 @@ public class Analysis {
      * @return y-component of displacement
      */
     public double getYJointDisplacement(int ilc, int ij) {
-        return jointDisplacement[ilc][2 * ij + 1];
+        return result.getYJointDisplacement(ilc, ij);
     }
 
     /**
@@ -150,7 +389,7 @@ public class Analysis {
      * @return maximum compressive force
      */
     public double getMemberCompressiveForce(int i) {
-        return maxMemberCompressiveForces[i];
+        return result.getMemberCompressiveForce(i);
     }
     
     /**
@@ -161,7 +400,7 @@ public class Analysis {
      * @return maximum tensile force
      */
     public double getMemberTensileForce(int i) {
-        return maxMemberTensileForces[i];
+        return result.getMemberTensileForce(i);
     }
     
     /**
@@ -173,7 +412,7 @@ public class Analysis {
      * @return compressive strength
      */
     public double getMemberCompressiveStrength(int i) {
-        return memberCompressiveStrength[i];
+        return result.getMemberCompressiveStrength(i);
     }
     
     /**
@@ -183,12 +422,13 @@ public class Analysis {
      * @return tensile strength
      */
     public double getMemberTensileStrength(int i) {
-        return memberTensileStrength[i];
+        return result.getMemberTensileStrength(i);
     }
     
     /**
      * Analyze the given bridge and store the results internally for future queries.
-     * This mimics the WPBD code exactly. There exists a more precise and efficient algorithm.
+     * This mimics the WPBD code exactly unless the skyline solver is in use, in which case results
+     * may differ in the last few bits.
      * 
      * @param bridge bridge to analyze
      */
@@ -199,7 +439,8 @@ public class Analysis {
     /**
      * Analyze the given bridge and store the results internally for future queries.
      * Artificially decrease the strength of failed members to support the failure animation.
-     * This mimics the original WPBD code exactly. There exists a more precise and efficient algorithm.
+     * This mimics the original WPBD code exactly unless the skyline solver is in use, in which case results
+     * may differ in the last few bits.
      * 
      * @param bridge bridge to analyze
      * @param failureStatus status of failed members: FAILED, NOT_FAILED, base member getLength, which implies FAILED.
@@ -208,14 +449,29 @@ public class Analysis {
         this.bridge = bridge;
         DesignConditions conditions = bridge.getDesignConditions();
         status = NO_STATUS;
-        int nJoints = bridge.getJoints().size();
-        int nEquations = 2 * nJoints;
-        int nMembers = bridge.getMembers().size();
-        Member[] members = bridge.getMembers().toArray(new Member[nMembers]);
-        double[] length = new double[members.length];
-        double[] cosX = new double[members.length];
-        double[] cosY = new double[members.length];
-        for (int i = 0; i < members.length; i++) {
+        factorizationCurrent = false;
+        nJoints = bridge.getJoints().size();
+        nMembers = bridge.getMembers().size();
+        nLoadInstances = conditions.getNLoadedJoints();
+        final int nEquations = 2 * nJoints;
+        workspace.ensureCapacity(nJoints, nMembers, nLoadInstances);
+        reserveResultArrays();
+        final Member[] members = workspace.members;
+        final double[] length = workspace.length;
+        final double[] cosX = workspace.cosX;
+        final double[] cosY = workspace.cosY;
+        final int[] memberJoints = workspace.memberJoints;
+        for (int ij = 0; ij < nJoints; ij++) {
+            final Affine.Point pt = bridge.getJoints().get(ij).getPointWorld();
+            jointLocation[2 * ij] = pt.x;
+            jointLocation[2 * ij + 1] = pt.y;
+        }
+        for (int i = 0; i < nMembers; i++) {
+            members[i] = bridge.getMembers().get(i);
+            memberJoints[2 * i] = memberJointIndices[2 * i] = members[i].getJointA().getIndex();
+            memberJoints[2 * i + 1] = memberJointIndices[2 * i + 1] = members[i].getJointB().getIndex();
+            workspace.area[i] = members[i].getShape().getArea();
+            workspace.e[i] = members[i].getMaterial().getE();
             Affine.Point a = members[i].getJointA().getPointWorld();
             Affine.Point b = members[i].getJointB().getPointWorld();
             double dx = b.x - a.x;
@@ -224,8 +480,12 @@ public class Analysis {
             cosX[i] = dx / length[i];
             cosY[i] = dy / length[i];
         }
-        final int nLoadInstances = conditions.getNLoadedJoints();
-        final double pointLoads[][] = new double[nLoadInstances][nEquations];
+        final double pointLoads[][] = workspace.pointLoads;
+        for (int ilc = 0; ilc < nLoadInstances; ilc++) {
+            for (int ie = 0; ie < nEquations; ie++) {
+                pointLoads[ilc][ie] = 0;
+            }
+        }
         for (int im = 0; im < nMembers; im++) {
             double deadLoad =
                     deadLoadFactor *
@@ -252,51 +512,588 @@ public class Analysis {
                 pointLoads[ilc][dof] -= load;
             }
         }
-        // Standard (light) truck.
-        double frontAxleLoad = 44;
-        double rearAxleLoad = 181;
-        if (conditions.getLoadType() != DesignConditions.STANDARD_TRUCK) {
-            // Heavy truck.
-            frontAxleLoad = 124;
-            rearAxleLoad = 124;
-        }
+        final double frontAxleLoad = getFrontAxleLoad(conditions);
+        final double rearAxleLoad = getRearAxleLoad(conditions);
         for (int ilc = 1; ilc < nLoadInstances; ilc++) {
             int iFront = 2 * ilc + 1;
             int iRear = iFront - 2;
             pointLoads[ilc][iFront] -= liveLoadFactor * frontAxleLoad;
             pointLoads[ilc][iRear] -= liveLoadFactor * rearAxleLoad;
         }
-        boolean xRestraint[] = new boolean[nJoints];
-        boolean yRestraint[] = new boolean[nJoints];
-        xRestraint[0] = yRestraint[0] = yRestraint[conditions.getNLoadedJoints() - 1] = true;
-        if (conditions.isPier()) {
-            int i = conditions.getPierJointIndex();
-            xRestraint[i] = yRestraint[i] = true;
-            if (conditions.isHiPier()) {
-                xRestraint[0] = false;
+        conditions.getJointRestraints(workspace.xRestraint, workspace.yRestraint, nJoints);
+        for (int im = 0; im < nMembers; im++) {
+            workspace.aEOverL[im] = getAEOverL(im, failureStatus);
+        }
+        boolean solved = legacySolver ? solveByInversion(failureStatus) : solveBySkyline(failureStatus);
+        if (!solved) {
+            status = UNSTABLE;
+            publishResult();
+            return;
+        }
+        for (int im = 0; im < nMembers; im++) {
+            final Material material = members[im].getMaterial();
+            final Shape shape = members[im].getShape();
+            memberCompressiveStrength[im] = strictStrength || legacySolver ?
+                Inventory.compressiveStrength(material, shape, length[im]) :
+                StrengthTable.compressiveStrength(material, shape, length[im]);
+            memberTensileStrength[im] = Inventory.tensileStrength(material, shape);
+        }
+        if (isParallelWorthwhile()) {
+            evaluateLoadCasesInParallel(failureStatus);
+        }
+        else {
+            evaluateLoadCases(0, nLoadInstances, failureStatus);
+        }
+        solvePending = false;
+        status = PASSES;
+        for (int im = 0; im < nMembers; im++) {
+            double maxCompression = 0;
+            double maxTension = 0;
+            for (int ilc = 0; ilc < nLoadInstances; ilc++) {
+                double force = memberForce[ilc * nMembers + im];
+                if (force < 0) {
+                    force = -force;
+                    if (force > maxCompression) {
+                        maxCompression = force;
+                    }
+                } else {
+                    if (force > maxTension) {
+                        maxTension = force;
+                    }
+                }
+            }
+            double cRatio = maxCompression / memberCompressiveStrength[im];
+            double tRatio = maxTension / memberTensileStrength[im];
+            // A fail for any member of any kind is a fail overall.
+            if (cRatio > 1 || tRatio > 1) {
+                status = FAILS_LOAD_TEST;
+            }
+            // Copy ratio information back to the bridge unless we're computing the intentionally distorted 
+            // failure bridge.
+            if (failureStatus == null) {
+                members[im].setCompressionForceStrengthRatio(cRatio);
+                members[im].setTensionForceStrengthRatio(tRatio);
+            }
+            maxMemberCompressiveForce[im] = maxCompression;
+            maxMemberTensileForce[im] = maxTension;
+            compressionForceStrengthRatio[im] = cRatio;
+            tensionForceStrengthRatio[im] = tRatio;
+        }
+        if (!bridge.isPassingSlendernessCheck()) {
+            status = FAILS_SLENDERNESS;
+        }
+        publishResult();
+    }
+
+    /**
+     * Make sure the working arrays for results are big enough for the analysis in progress, taking the
+     * arrays of a recycled result if there are none and allocating only what's missing or too small.
+     */
+    private void reserveResultArrays() {
+        final AnalysisResult r = recycled;
+        recycled = null;
+        if (memberForce == null && r != null) {
+            jointLocation = r.jointLocation;
+            memberJointIndices = r.memberJoints;
+            memberForce = r.memberForce;
+            jointDisplacement = r.jointDisplacement;
+            memberFails = r.memberFails;
+            memberCompressiveStrength = r.memberCompressiveStrength;
+            memberTensileStrength = r.memberTensileStrength;
+            maxMemberCompressiveForce = r.maxMemberCompressiveForce;
+            maxMemberTensileForce = r.maxMemberTensileForce;
+            compressionForceStrengthRatio = r.compressionForceStrengthRatio;
+            tensionForceStrengthRatio = r.tensionForceStrengthRatio;
+        }
+        final int nLoadCaseMembers = nLoadInstances * nMembers;
+        jointLocation = reserve(jointLocation, 2 * nJoints);
+        if (memberJointIndices == null || memberJointIndices.length < 2 * nMembers) {
+            memberJointIndices = new int[2 * nMembers];
+        }
+        memberForce = reserve(memberForce, nLoadCaseMembers);
+        jointDisplacement = reserve(jointDisplacement, nLoadInstances * 2 * nJoints);
+        if (memberFails == null || memberFails.length < nLoadCaseMembers) {
+            memberFails = new boolean[nLoadCaseMembers];
+        }
+        memberCompressiveStrength = reserve(memberCompressiveStrength, nMembers);
+        memberTensileStrength = reserve(memberTensileStrength, nMembers);
+        maxMemberCompressiveForce = reserve(maxMemberCompressiveForce, nMembers);
+        maxMemberTensileForce = reserve(maxMemberTensileForce, nMembers);
+        compressionForceStrengthRatio = reserve(compressionForceStrengthRatio, nMembers);
+        tensionForceStrengthRatio = reserve(tensionForceStrengthRatio, nMembers);
+    }
+
+    private static double[] reserve(double[] a, int size) {
+        return a == null || a.length < size ? new double[size] : a;
+    }
+
+    /**
+     * Make the results of the analysis in progress the current result.  The working arrays become the
+     * property of the result, so the next analysis needs new ones unless the result is recycled.  An 
+     * unstable result has no arrays, so the next analysis keeps the working arrays.
+     */
+    private void publishResult() {
+        if (status == UNSTABLE) {
+            result = new AnalysisResult(status, nJoints, nMembers, nLoadInstances, 
+                    null, null, null, null, null, null, null, null, null, null, null, null);
+            return;
+        }
+        result = new AnalysisResult(status, nJoints, nMembers, nLoadInstances, 
+                bridge.getDesignConditions(), jointLocation, memberJointIndices, memberForce, jointDisplacement, memberFails, memberCompressiveStrength, memberTensileStrength,
+                maxMemberCompressiveForce, maxMemberTensileForce, 
+                compressionForceStrengthRatio, tensionForceStrengthRatio);
+        jointLocation = memberForce = jointDisplacement = memberCompressiveStrength = memberTensileStrength = null;
+        memberJointIndices = null;
+        maxMemberCompressiveForce = maxMemberTensileForce = null;
+        compressionForceStrengthRatio = tensionForceStrengthRatio = null;
+        memberFails = null;
+    }
+
+    /**
+     * Give back a result of this analysis that the caller is done with, so the next analysis reuses its 
+     * arrays rather than allocating new ones.  Loops that analyze many trial designs and keep only a few 
+     * results, e.g. member sizing, should recycle the rest, so that steady-state analysis allocates 
+     * little more than the result object itself.  Neither the caller nor anyone else may read the result 
+     * after this analysis is next initialized, so a result that's been shared, e.g. put in an 
+     * <code>AnalysisCache</code> or restored, must not be recycled.  Recycling the current result is 
+     * allowed.  An unstable result has nothing to reuse and is ignored.
+     * 
+     * @param result result to recycle
+     */
+    public void recycle(AnalysisResult result) {
+        if (result.getStatus() != UNSTABLE && result.memberForce != null) {
+            recycled = result;
+        }
+    }
+
+    /**
+     * Return the immutable results of the last analysis.  These may be shared freely, e.g. with other threads,
+     * and remain valid after this analysis is initialized again.
+     * 
+     * @return analysis result
+     */
+    public AnalysisResult getResult() {
+        return result;
+    }
+
+    /**
+     * Make this analysis hold the given result for the given bridge, as though the bridge had just been 
+     * analyzed to obtain it, including the update of member force/strength ratios.  It is the caller's 
+     * responsibility to ensure the result really belongs to the bridge, e.g. by looking it up in an
+     * <code>AnalysisCache</code>.
+     * 
+     * @param bridge bridge the result belongs to
+     * @param result result of analyzing the bridge
+     */
+    public void restore(BridgeModel bridge, AnalysisResult result) {
+        this.bridge = bridge;
+        this.result = result;
+        factorizationCurrent = false;
+        if (result.getStatus() == UNSTABLE) {
+            return;
+        }
+        for (int im = 0; im < result.getNMembers(); im++) {
+            Member member = bridge.getMembers().get(im);
+            member.setCompressionForceStrengthRatio(result.getCompressionForceStrengthRatio(im));
+            member.setTensionForceStrengthRatio(result.getTensionForceStrengthRatio(im));
+        }
+    }
+
+    /**
+     * Return true iff the last analysis left the factored stiffness matrix needed by
+     * <code>getMemberForceSensitivities</code>.  This requires a full analysis by the skyline solver with
+     * no failed members, so incremental analysis should be off when sensitivities are wanted.
+     *
+     * @return true iff sensitivities are available
+     */
+    public boolean isSensitivityAvailable() {
+        return factorizationCurrent && result.getStatus() != UNSTABLE;
+    }
+
+    /**
+     * Return the rates of change of all member forces in all load cases with respect to the coordinates
+     * of given joints, with the loads moving along with the joints and member dead loads following the
+     * changes in member lengths.  This is the direct method: the derivative of the equilibrium equations
+     * <code>K(p) u = F(p)</code> with respect to joint coordinate p gives
+     * <pre>
+     *   K du/dp = dF/dp - (dK/dp) u
+     * </pre>
+     * which is solved with the existing factorization of K, one right hand side per coordinate and load case.
+     * Member force rates then follow from the chain rule.  The workspace must not have been used by another
+     * analysis since this one was initialized.
+     *
+     * @param jointIndices indices of joints whose coordinates vary, normally free (non-fixed) joints
+     * @return rates of change; that of the force in member im for load case ilc with respect to coordinate
+     * k, 0 for x and 1 for y, of joint <code>jointIndices[i]</code> is at
+     * <code>[((2 * i + k) * nLoadInstances + ilc) * nMembers + im]</code>
+     * @throws IllegalStateException if sensitivities are not available
+     */
+    public double [] getMemberForceSensitivities(int [] jointIndices) {
+        if (!isSensitivityAvailable()) {
+            throw new IllegalStateException("no current stiffness factorization");
+        }
+        final AnalysisResult result = this.result;
+        final Member[] members = workspace.members;
+        final double[] length = workspace.length;
+        final double[] cosX = workspace.cosX;
+        final double[] cosY = workspace.cosY;
+        final double[] aEOverL = workspace.aEOverL;
+        final boolean[] restrained = workspace.restrained;
+        final int[] dof = workspace.dof;
+        final int nVaried = jointIndices.length;
+        final int nRhs = 2 * nVaried * nLoadInstances;
+        final double[] x = new double[2 * nJoints * nRhs];
+        final double[] sensitivities = new double[nRhs * nMembers];
+        for (int iv = 0; iv < nVaried; iv++) {
+            final int ij = jointIndices[iv];
+            for (int im = 0; im < nMembers; im++) {
+                final Member member = members[im];
+                final int ija = member.getJointA().getIndex();
+                final int ijb = member.getJointB().getIndex();
+                if (ija != ij && ijb != ij) {
+                    continue;
+                }
+                // Moving the second joint by dp moves the member vector by dp; moving the first by -dp.
+                final double sign = ijb == ij ? 1 : -1;
+                final double aEOverLSquared = aEOverL[im] / length[im];
+                final double deadLoadPerLength = deadLoadFactor * member.getShape().getArea() *
+                        member.getMaterial().getDensity() * 9.8066 / 2.0 / 1000.0;
+                setMemberDofs(dof, 0, member);
+                for (int k = 0; k < 2; k++) {
+                    final double cosK = k == 0 ? cosX[im] : cosY[im];
+                    // Rates of change of the unit vector along the member.
+                    final double dCosX = sign * ((k == 0 ? 1 : 0) - cosX[im] * cosK) / length[im];
+                    final double dCosY = sign * ((k == 1 ? 1 : 0) - cosY[im] * cosK) / length[im];
+                    final double dDeadLoad = -deadLoadPerLength * sign * cosK;
+                    for (int ilc = 0; ilc < nLoadInstances; ilc++) {
+                        final int col = (2 * iv + k) * nLoadInstances + ilc;
+                        final double dux = result.getXJointDisplacement(ilc, ijb) - result.getXJointDisplacement(ilc, ija);
+                        final double duy = result.getYJointDisplacement(ilc, ijb) - result.getYJointDisplacement(ilc, ija);
+                        final double elongation = cosX[im] * dux + cosY[im] * duy;
+                        final double force = aEOverL[im] * elongation;
+                        // Rate of change of member force with joint displacements held fixed.
+                        final double dForce = sign * aEOverLSquared * ((k == 0 ? dux : duy) - 2 * elongation * cosK);
+                        sensitivities[col * nMembers + im] += dForce;
+                        // Rate of change of the member's end force on its second joint; the first gets the negative.
+                        final double gx = dForce * cosX[im] + force * dCosX;
+                        final double gy = dForce * cosY[im] + force * dCosY;
+                        addRightHandSide(x, nRhs, col, restrained, dof[0], gx);
+                        addRightHandSide(x, nRhs, col, restrained, dof[1], gy + dDeadLoad);
+                        addRightHandSide(x, nRhs, col, restrained, dof[2], -gx);
+                        addRightHandSide(x, nRhs, col, restrained, dof[3], -gy + dDeadLoad);
+                    }
+                }
             }
         }
-        if (conditions.isArch()) {
-            int i = conditions.getArchJointIndex();
-            xRestraint[0] = yRestraint[0] = yRestraint[conditions.getNLoadedJoints() - 1] = false;
-            xRestraint[i] = yRestraint[i] = true;
-            xRestraint[i + 1] = yRestraint[i + 1] = true;
+        workspace.solver.solve(x, nRhs);
+        // Add the forces due to the rates of change of joint displacements.
+        for (int im = 0; im < nMembers; im++) {
+            setMemberDofs(dof, 0, members[im]);
+            final int ia = dof[0] * nRhs;
+            final int ib = dof[2] * nRhs;
+            for (int col = 0; col < nRhs; col++) {
+                sensitivities[col * nMembers + im] += aEOverL[im] *
+                        (cosX[im] * (x[ib + col] - x[ia + col]) + cosY[im] * (x[ib + nRhs + col] - x[ia + nRhs + col]));
+            }
         }
-        if (conditions.isLeftAnchorage()) {
-            int i = conditions.getLeftAnchorageJointIndex();
-            xRestraint[i] = yRestraint[i] = true;
+        return sensitivities;
+    }
+
+    /**
+     * Return influence lines of all member forces for unit loads on the deck, found with the existing
+     * factorization of the stiffness matrix by one solve with a right hand side per deck joint.  Since
+     * the structure is linear, the member forces for a truck at any position along the deck follow from
+     * these by dot products with no further solves.  The workspace must not have been used by another
+     * analysis since this one was initialized.
+     *
+     * @return influence lines
+     * @throws IllegalStateException if there is no current factorization, as for sensitivities
+     */
+    public InfluenceLines getInfluenceLines() {
+        if (!isSensitivityAvailable()) {
+            throw new IllegalStateException("no current stiffness factorization");
         }
-        if (conditions.isRightAnchorage()) {
-            int i = conditions.getRightAnchorageJointIndex();
-            xRestraint[i] = yRestraint[i] = true;
+        final AnalysisResult result = this.result;
+        final DesignConditions conditions = bridge.getDesignConditions();
+        final Member[] members = workspace.members;
+        final double[] cosX = workspace.cosX;
+        final double[] cosY = workspace.cosY;
+        final double[] aEOverL = workspace.aEOverL;
+        final boolean[] restrained = workspace.restrained;
+        final int[] dof = workspace.dof;
+        final JointOrdering ordering = workspace.ordering;
+        final int nRhs = conditions.getNLoadedJoints();
+        final double[] x = new double[2 * nJoints * nRhs];
+        // A downward unit load on the deck joint of each column.  Deck joints are the first joints.
+        for (int col = 0; col < nRhs; col++) {
+            addRightHandSide(x, nRhs, col, restrained, 2 * ordering.getNewIndex(col) + 1, -1);
         }
-        double stiffness[][] = new double[nEquations][nEquations];
+        workspace.solver.solve(x, nRhs);
+        final double[] influence = new double[nRhs * nMembers];
+        final double[] deadLoadForce = new double[nMembers];
+        final double[] compressiveStrength = new double[nMembers];
+        final double[] tensileStrength = new double[nMembers];
         for (int im = 0; im < nMembers; im++) {
-            double e = members[im].getMaterial().getE();
-            if (failureStatus != null && failureStatus[im] != NOT_FAILED) {
-                e *= failedMemberDegradation;
+            setMemberDofs(dof, 0, members[im]);
+            final int ia = dof[0] * nRhs;
+            final int ib = dof[2] * nRhs;
+            for (int col = 0; col < nRhs; col++) {
+                influence[col * nMembers + im] = aEOverL[im] *
+                        (cosX[im] * (x[ib + col] - x[ia + col]) + cosY[im] * (x[ib + nRhs + col] - x[ia + nRhs + col]));
+            }
+            deadLoadForce[im] = result.getMemberForce(0, im);
+            compressiveStrength[im] = result.getMemberCompressiveStrength(im);
+            tensileStrength[im] = result.getMemberTensileStrength(im);
+        }
+        return new InfluenceLines(nRhs, nMembers, influence, deadLoadForce,
+                liveLoadFactor * getFrontAxleLoad(conditions), liveLoadFactor * getRearAxleLoad(conditions),
+                compressiveStrength, tensileStrength);
+    }
+
+    /**
+     * Return the unfactored front axle load of the truck in kilonewtons.
+     *
+     * @param conditions design conditions giving the load type
+     * @return front axle load
+     */
+    private static double getFrontAxleLoad(DesignConditions conditions) {
+        // Standard (light) truck or heavy truck.
+        return conditions.getLoadType() == DesignConditions.STANDARD_TRUCK ? 44 : 124;
+    }
+
+    /**
+     * Return the unfactored rear axle load of the truck in kilonewtons.
+     *
+     * @param conditions design conditions giving the load type
+     * @return rear axle load
+     */
+    private static double getRearAxleLoad(DesignConditions conditions) {
+        return conditions.getLoadType() == DesignConditions.STANDARD_TRUCK ? 181 : 124;
+    }
+
+    private static void addRightHandSide(double[] x, int nRhs, int col, boolean[] restrained, int ie, double val) {
+        if (!restrained[ie]) {
+            x[ie * nRhs + col] += val;
+        }
+    }
+
+    /**
+     * Finish the analysis of a range of load cases: solve for joint displacements if the skyline solver
+     * has deferred this, then compute member forces and find members that fail.  Ranges that don't overlap
+     * may be evaluated concurrently.
+     * 
+     * @param ilcLo first load case to evaluate
+     * @param ilcHi one past the last load case to evaluate
+     * @param failureStatus status of failed members or null if none are failed
+     */
+    private void evaluateLoadCases(int ilcLo, int ilcHi, double [] failureStatus) {
+        final Member[] members = workspace.members;
+        final double[] length = workspace.length;
+        final double[] cosX = workspace.cosX;
+        final double[] cosY = workspace.cosY;
+        if (solvePending) {
+            workspace.solver.solve(workspace.x, nLoadInstances, ilcLo, ilcHi);
+            getJointDisplacements(workspace.x, nLoadInstances, ilcLo, ilcHi);
+        }
+        if (packedKernels) {
+            recoverForcesPacked(ilcLo, ilcHi);
+            return;
+        }
+        for (int ilc = ilcLo; ilc < ilcHi; ilc++) {
+            // Compute member forces.
+            for (int im = 0; im < nMembers; im++) {
+                double e = members[im].getMaterial().getE();
+                if (failureStatus != null && failureStatus[im] != NOT_FAILED) {
+                    e *= failedMemberDegradation;
+                }
+                double aeOverL = members[im].getShape().getArea() * e / length[im];
+                int ija = members[im].getJointA().getIndex();
+                int ijb = members[im].getJointB().getIndex();
+                int ia = 2 * (ilc * nJoints + ija);
+                int ib = 2 * (ilc * nJoints + ijb);
+                double force = aeOverL *
+                        ((cosX[im] * (jointDisplacement[ib] - jointDisplacement[ia])) +
+                        (cosY[im] * (jointDisplacement[ib + 1] - jointDisplacement[ia + 1])));
+                memberForce[ilc * nMembers + im] = force;
+                memberFails[ilc * nMembers + im] = force < 0 ?
+                    (-force / memberCompressiveStrength[im] > 1.0) : 
+                    (force / memberTensileStrength[im] > 1.0);
             }
-            double aEOverL = members[im].getShape().getArea() * e / length[im];
+        }
+    }
+
+    /**
+     * Compute member forces and find members that fail for a range of load cases from joint displacements.
+     * This is the packed kernel equivalent of the member force loop of <code>evaluateLoadCases</code>, 
+     * using the member data gathered by <code>initialize</code> and axial stiffnesses, which include any
+     * failure degradation, instead of member objects.
+     * 
+     * @param ilcLo first load case to evaluate
+     * @param ilcHi one past the last load case to evaluate
+     */
+    private void recoverForcesPacked(int ilcLo, int ilcHi) {
+        final int[] memberJoints = workspace.memberJoints;
+        final double[] aEOverL = workspace.aEOverL;
+        final double[] cosX = workspace.cosX;
+        final double[] cosY = workspace.cosY;
+        final double[] jointDisplacement = this.jointDisplacement;
+        final double[] memberForce = this.memberForce;
+        final boolean[] memberFails = this.memberFails;
+        final double[] compressiveStrength = memberCompressiveStrength;
+        final double[] tensileStrength = memberTensileStrength;
+        for (int ilc = ilcLo; ilc < ilcHi; ilc++) {
+            final int iDisplacement = 2 * ilc * nJoints;
+            final int iForce = ilc * nMembers;
+            for (int im = 0; im < nMembers; im++) {
+                final int ia = iDisplacement + 2 * memberJoints[2 * im];
+                final int ib = iDisplacement + 2 * memberJoints[2 * im + 1];
+                final double force = aEOverL[im] *
+                        ((cosX[im] * (jointDisplacement[ib] - jointDisplacement[ia])) +
+                        (cosY[im] * (jointDisplacement[ib + 1] - jointDisplacement[ia + 1])));
+                memberForce[iForce + im] = force;
+                memberFails[iForce + im] = force < 0 ?
+                    (-force / compressiveStrength[im] > 1.0) : 
+                    (force / tensileStrength[im] > 1.0);
+            }
+        }
+    }
+
+    /**
+     * Return true iff parallel mode is on and there is enough work per load case for splitting load cases 
+     * among threads to pay off.
+     * 
+     * @return true iff load cases should be evaluated in parallel
+     */
+    private boolean isParallelWorthwhile() {
+        if (!parallel || nParallelBlocks < 2 || nLoadInstances < 2) {
+            return false;
+        }
+        long work = 4L * nMembers;
+        if (solvePending) {
+            work += workspace.solver.getSolveCost();
+        }
+        return work * nLoadInstances >= minWork;
+    }
+
+    /**
+     * Evaluate load cases in contiguous blocks, one per processor.  The calling thread does the first block.
+     * Blocks beyond the number of executor threads wait their turn.
+     * Each load case is computed exactly as it would be sequentially, so results are identical.
+     * 
+     * @param failureStatus status of failed members or null if none are failed
+     */
+    private void evaluateLoadCasesInParallel(final double [] failureStatus) {
+        final int nBlocks = Math.min(nParallelBlocks, nLoadInstances);
+        final ExecutorService executor = getLoadCaseExecutor();
+        final List<Future<Object>> futures = new ArrayList<Future<Object>>(nBlocks - 1);
+        for (int i = 1; i < nBlocks; i++) {
+            final int ilcLo = i * nLoadInstances / nBlocks;
+            final int ilcHi = (i + 1) * nLoadInstances / nBlocks;
+            futures.add(executor.submit(new Callable<Object>() {
+                public Object call() {
+                    evaluateLoadCases(ilcLo, ilcHi, failureStatus);
+                    return null;
+                }
+            }));
+        }
+        evaluateLoadCases(0, nLoadInstances / nBlocks, failureStatus);
+        // Wait for all blocks even if interrupted because they are writing into our results.
+        boolean interrupted = false;
+        RuntimeException failure = null;
+        for (Future<Object> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    if (failure == null) {
+                        failure = new RuntimeException(ex.getCause());
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Return the executor shared by all analyses for evaluating load cases in parallel, creating it on first use.
+     * Its threads are daemons so they never keep the program alive.
+     * 
+     * @return load case executor
+     */
+    private static synchronized ExecutorService getLoadCaseExecutor() {
+        if (loadCaseExecutor == null) {
+            loadCaseExecutor = Executors.newFixedThreadPool(Math.max(1, parallelism - 1), new ThreadFactory() {
+                public Thread newThread(java.lang.Runnable r) {
+                    Thread thread = new Thread(r, "Analysis load cases");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return loadCaseExecutor;
+    }
+
+    /**
+     * Return true iff two failure status vectors fail the same members.  Status values for failed members
+     * may differ, e.g. because one holds base member lengths.
+     * 
+     * @param a failure status
+     * @param b other failure status
+     * @param nMembers number of members to compare
+     * @return true iff the same members fail in both
+     */
+    static boolean isSameFailure(double [] a, double [] b, int nMembers) {
+        for (int im = 0; im < nMembers; im++) {
+            if ((a[im] == NOT_FAILED) != (b[im] == NOT_FAILED)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the axial stiffness of a member, degraded if the member has failed.
+     * 
+     * @param im member index
+     * @param failureStatus status of failed members or null if none are failed
+     * @return axial stiffness
+     */
+    private double getAEOverL(int im, double[] failureStatus) {
+        double e = workspace.e[im];
+        if (failureStatus != null && failureStatus[im] != NOT_FAILED) {
+            e *= failedMemberDegradation;
+        }
+        return workspace.area[im] * e / workspace.length[im];
+    }
+
+    /**
+     * Assemble the stiffness matrix of the workspace bridge in dense form, invert it in place with 
+     * Gauss-Jordan elimination, and multiply the inverse by each load vector to obtain joint displacements.
+     * This is the original WPBD algorithm, retained so results can be reproduced bit for bit.
+     * 
+     * @param failureStatus status of failed members or null if none are failed
+     * @return true iff the stiffness matrix could be inverted; false means the bridge is unstable
+     */
+    private boolean solveByInversion(double[] failureStatus) {
+        final int nEquations = 2 * nJoints;
+        final Member[] members = workspace.members;
+        final double[] cosX = workspace.cosX;
+        final double[] cosY = workspace.cosY;
+        final double[][] pointLoads = workspace.pointLoads;
+        final boolean[] xRestraint = workspace.xRestraint;
+        final boolean[] yRestraint = workspace.yRestraint;
+        double stiffness[][] = workspace.getStiffness(nEquations);
+        for (int im = 0; im < nMembers; im++) {
+            double aEOverL = getAEOverL(im, failureStatus);
             double xx = aEOverL * sqr(cosX[im]);
             double yy = aEOverL * sqr(cosY[im]);
             double xy = aEOverL * cosX[im] * cosY[im];
@@ -345,9 +1142,8 @@ public class Analysis {
         }
         for (int ie = 0; ie < nEquations; ie++) {
             double pivot = stiffness[ie][ie];
-            if (Math.abs(pivot) < 0.99) {
-                status = UNSTABLE;
-                return;
+            if (Math.abs(pivot) < minPivot) {
+                return false;
             }
             double pivr = 1.0 / pivot;
             for (int k = 0; k < nEquations; k++) {
@@ -364,82 +1160,551 @@ public class Analysis {
             }
             stiffness[ie][ie] = pivr;
         }
-        memberForce = new double[nLoadInstances][nMembers];
-        memberFails = new boolean[nLoadInstances][nMembers];
-        jointDisplacement = new double[nLoadInstances][nEquations];
         for (int ilc = 0; ilc < nLoadInstances; ilc++) {
             for (int ie = 0; ie < nEquations; ie++) {
                 double tmp = 0;
                 for (int je = 0; je < nEquations; je++) {
                     tmp += stiffness[ie][je] * pointLoads[ilc][je];
                 }
-                jointDisplacement[ilc][ie] = tmp;
+                jointDisplacement[ilc * nEquations + ie] = tmp;
             }
-            // Compute member forces.
+        }
+        return true;
+    }
+
+    /**
+     * Assemble the stiffness matrix of the workspace bridge in skyline form, factor it once, and solve for 
+     * joint displacements due to all load vectors together.  The small pivot rule that detects unstable bridges
+     * is the same as the original WPBD code's.
+     * 
+     * When the geometry, topology, and restraints match those of the last successful factorization and only
+     * member stiffnesses have changed, as happens when members are resized or given a new material, the old
+     * factorization is reused with a low-rank update instead.  See <code>solveByUpdate</code>.  Otherwise, when
+     * the topology and restraints match, the joint ordering and profile are reused, and the factorization is 
+     * redone only from the first equation touched by a member that has changed, e.g. by a moved joint.
+     * 
+     * @param failureStatus status of failed members or null if none are failed
+     * @return true iff the stiffness matrix could be factored; false means the bridge is unstable
+     */
+    private boolean solveBySkyline(double[] failureStatus) {
+        final int nEquations = 2 * nJoints;
+        final Member[] members = workspace.members;
+        final double[] cosX = workspace.cosX;
+        final double[] cosY = workspace.cosY;
+        final double[] aEOverL = workspace.aEOverL;
+        final boolean[] restrained = workspace.restrained;
+        final SkylineSolver solver = workspace.solver;
+        final JointOrdering ordering = workspace.ordering;
+        final boolean baseTopology = incremental && failureStatus == null && isBaseTopology();
+        if (baseTopology && isBaseGeometry() && solveByUpdate()) {
+            return true;
+        }
+        workspace.baseValid = false;
+        final int[] dof = workspace.dof;
+        // First equation to factor.  Factors of earlier ones are still those of the base.
+        final int jLo;
+        if (baseTopology) {
+            jLo = getFirstChangedEquation();
+            solver.clear(jLo);
+        }
+        else {
+            jLo = 0;
+            // Number equations by the joint ordering, which depends only on topology.  Results are mapped back below.
+            ordering.initialize(nJoints, members, nMembers);
+            workspace.entriesValid = false;
+            // Restrained degrees of freedom are decoupled from all others, leaving only a unit diagonal.
+            for (int ij = 0; ij < nJoints; ij++) {
+                int ix = 2 * ordering.getNewIndex(ij);
+                restrained[ix] = workspace.xRestraint[ij];
+                restrained[ix + 1] = workspace.yRestraint[ij];
+            }
+            solver.initialize(nEquations);
             for (int im = 0; im < nMembers; im++) {
-                double e = members[im].getMaterial().getE();
-                if (failureStatus != null && failureStatus[im] != NOT_FAILED) {
-                    e *= failedMemberDegradation;
+                setMemberDofs(dof, 0, members[im]);
+                for (int i = 0; i < 4; i++) {
+                    for (int j = 0; j < 4; j++) {
+                        if (!restrained[dof[i]] && !restrained[dof[j]]) {
+                            solver.includeEntry(dof[i], dof[j]);
+                        }
+                    }
                 }
-                double aeOverL = members[im].getShape().getArea() * e / length[im];
-                int ija = members[im].getJointA().getIndex();
-                int ijb = members[im].getJointB().getIndex();
-                memberForce[ilc][im] = aeOverL *
-                        ((cosX[im] * (getXJointDisplacement(ilc, ijb) - getXJointDisplacement(ilc, ija))) +
-                        (cosY[im] * (getYJointDisplacement(ilc, ijb) - getYJointDisplacement(ilc, ija))));
             }
+            solver.allocate();
         }
-        
-        memberCompressiveStrength = new double[nMembers];
-        memberTensileStrength = new double[nMembers];
-        maxMemberCompressiveForces = new double[nMembers];
-        maxMemberTensileForces = new double[nMembers];
-        
+        if (packedKernels) {
+            assemblePacked(jLo);
+        }
+        else {
+            for (int im = 0; im < nMembers; im++) {
+                double xx = aEOverL[im] * sqr(cosX[im]);
+                double yy = aEOverL[im] * sqr(cosY[im]);
+                double xy = aEOverL[im] * cosX[im] * cosY[im];
+                setMemberDofs(dof, 0, members[im]);
+                int j1x = dof[0];
+                int j1y = dof[1];
+                int j2x = dof[2];
+                int j2y = dof[3];
+                // Upper triangle only.  The solver supplies the symmetric half.
+                addStiffness(restrained, jLo, j1x, j1x, xx);
+                addStiffness(restrained, jLo, j1x, j1y, xy);
+                addStiffness(restrained, jLo, j1x, j2x, -xx);
+                addStiffness(restrained, jLo, j1x, j2y, -xy);
+                addStiffness(restrained, jLo, j1y, j1y, yy);
+                addStiffness(restrained, jLo, j1y, j2x, -xy);
+                addStiffness(restrained, jLo, j1y, j2y, -yy);
+                addStiffness(restrained, jLo, j2x, j2x, xx);
+                addStiffness(restrained, jLo, j2x, j2y, xy);
+                addStiffness(restrained, jLo, j2y, j2y, yy);
+            }
+        }
+        for (int ie = jLo; ie < nEquations; ie++) {
+            if (restrained[ie]) {
+                solver.setDiagonal(ie, 1);
+            }
+        }
+        if (!solver.factor(minPivot, jLo)) {
+            return false;
+        }
+        if (failureStatus == null) {
+            saveBase();
+            factorizationCurrent = true;
+        }
+        // Solve all load cases together later, possibly in parallel blocks.  Load case ilc of equation ie 
+        // is at x[ie * nLoadInstances + ilc].
+        setRightHandSides(workspace.x, nLoadInstances, restrained);
+        solvePending = true;
+        return true;
+    }
+
+    /**
+     * Solve for joint displacements by a Sherman-Morrison-Woodbury update of the base factorization. 
+     * If K is the base stiffness matrix, U holds one column per changed member with its direction cosines 
+     * at the member's degrees of freedom, and C is the diagonal matrix of stiffness changes, then the new 
+     * stiffness matrix is K + U C U'.  Displacements for loads F are
+     * <pre>
+     *   X = X0 - Z (C^-1 + U' Z)^-1 U' X0  where X0 = K^-1 F, Z = K^-1 U
+     * </pre>
+     * Columns of Z are solved along with the load cases in one pass.  The small capacitance matrix is
+     * solved densely.
+     * 
+     * Fails without side effects when a full factorization would be cheaper, when the update could hide 
+     * a pivot that fails the small pivot rule, or when the updated solution's residual is not small.  
+     * 
+     * @return true iff joint displacements were found
+     */
+    private boolean solveByUpdate() {
+        final int nEquations = 2 * nJoints;
+        final Member[] members = workspace.members;
+        final double[] cosX = workspace.cosX;
+        final double[] cosY = workspace.cosY;
+        final double[] aEOverL = workspace.aEOverL;
+        final double[] baseAEOverL = workspace.baseAEOverL;
+        final boolean[] baseRestrained = workspace.baseRestrained;
+        final SkylineSolver solver = workspace.solver;
+        final int[] changed = workspace.changed;
+        int nChanged = 0;
+        double minRatio = 1;
         for (int im = 0; im < nMembers; im++) {
-            final Material material = members[im].getMaterial();
-            final Shape shape = members[im].getShape();
-            memberCompressiveStrength[im] = Inventory.compressiveStrength(material, shape, length[im]);
-            memberTensileStrength[im] = Inventory.tensileStrength(material, shape);
+            if (aEOverL[im] != baseAEOverL[im]) {
+                if (nChanged == AnalysisWorkspace.maxUpdateRank) {
+                    return false;
+                }
+                changed[nChanged++] = im;
+                minRatio = Math.min(minRatio, aEOverL[im] / baseAEOverL[im]);
+            }
         }
-        status = PASSES;
+        // The new matrix is at least minRatio times the base in the positive definite sense, and so are its pivots.
+        // If the base pivots are too close to the limit, only a fresh factorization can tell whether the bridge is stable.
+        if (minRatio * workspace.baseMinPivot < minPivot) {
+            return false;
+        }
+        if (!updateAlways && nChanged * (solver.getSolveCost() + nChanged * nChanged) > solver.getFactorCost()) {
+            return false;
+        }
+        // Right hand sides are the load cases followed by the columns of U.
+        final int nRhs = nLoadInstances + nChanged;
+        final double[] x = workspace.x;
+        for (int i = 0; i < nEquations * nRhs; i++) {
+            x[i] = 0;
+        }
+        setRightHandSides(x, nRhs, baseRestrained);
+        final int[] dof = workspace.dof;
+        final double[] u = workspace.u;
+        for (int k = 0; k < nChanged; k++) {
+            int im = changed[k];
+            int i = 4 * k;
+            setMemberDofs(dof, i, members[im]);
+            u[i + 0] = -cosX[im];
+            u[i + 1] = -cosY[im];
+            u[i + 2] = cosX[im];
+            u[i + 3] = cosY[im];
+            for (int j = i; j < i + 4; j++) {
+                if (baseRestrained[dof[j]]) {
+                    u[j] = 0;
+                }
+                x[dof[j] * nRhs + nLoadInstances + k] = u[j];
+            }
+        }
+        solver.solve(x, nRhs);
+        if (nChanged > 0) {
+            // Capacitance matrix augmented with U' X0.
+            final double[][] s = workspace.capacitance;
+            for (int k = 0; k < nChanged; k++) {
+                for (int j = 0; j < nRhs; j++) {
+                    double sum = 0;
+                    for (int i = 4 * k; i < 4 * k + 4; i++) {
+                        sum += u[i] * x[dof[i] * nRhs + j];
+                    }
+                    // Load cases go to the right of the capacitance columns.
+                    s[k][j < nLoadInstances ? nChanged + j : j - nLoadInstances] = sum;
+                }
+                int im = changed[k];
+                s[k][k] += 1.0 / (aEOverL[im] - baseAEOverL[im]);
+            }
+            if (!solveDense(s, nChanged, nChanged + nLoadInstances)) {
+                return false;
+            }
+            for (int ie = 0; ie < nEquations; ie++) {
+                int row = ie * nRhs;
+                for (int k = 0; k < nChanged; k++) {
+                    double z = x[row + nLoadInstances + k];
+                    if (z != 0) {
+                        for (int ilc = 0; ilc < nLoadInstances; ilc++) {
+                            x[row + ilc] -= z * s[k][nChanged + ilc];
+                        }
+                    }
+                }
+            }
+            if (!isSmallResidual(x, nRhs)) {
+                return false;
+            }
+        }
+        getJointDisplacements(x, nRhs, 0, nLoadInstances);
+        return true;
+    }
+
+    /**
+     * Solve a small dense system in place by Gaussian elimination with partial pivoting.  The system is 
+     * square in its leftmost columns, and the remaining columns are right hand sides, which are replaced 
+     * by solutions.  Rows may be permuted.
+     * 
+     * @param s augmented system matrix
+     * @param n number of equations
+     * @param nCols number of columns including right hand sides
+     * @return true iff the system was nonsingular
+     */
+    private static boolean solveDense(double[][] s, int n, int nCols) {
+        for (int k = 0; k < n; k++) {
+            int p = k;
+            for (int i = k + 1; i < n; i++) {
+                if (Math.abs(s[i][k]) > Math.abs(s[p][k])) {
+                    p = i;
+                }
+            }
+            if (s[p][k] == 0) {
+                return false;
+            }
+            double[] tmp = s[p];
+            s[p] = s[k];
+            s[k] = tmp;
+            for (int i = k + 1; i < n; i++) {
+                double l = s[i][k] / s[k][k];
+                for (int j = k; j < nCols; j++) {
+                    s[i][j] -= l * s[k][j];
+                }
+            }
+        }
+        for (int k = n - 1; k >= 0; k--) {
+            for (int j = n; j < nCols; j++) {
+                double sum = s[k][j];
+                for (int i = k + 1; i < n; i++) {
+                    sum -= s[k][i] * s[i][j];
+                }
+                s[k][j] = sum / s[k][k];
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return true iff the residual of updated displacements is small compared to the loads, measured in
+     * the max norm for each load case. The stiffness matrix is applied member by member.
+     * 
+     * @param x displacements in solver numbering, interleaved with stride nRhs
+     * @param nRhs stride of displacements
+     * @return true iff the residual is small
+     */
+    private boolean isSmallResidual(double[] x, int nRhs) {
+        final int nEquations = 2 * nJoints;
+        final Member[] members = workspace.members;
+        final double[] cosX = workspace.cosX;
+        final double[] cosY = workspace.cosY;
+        final double[] aEOverL = workspace.aEOverL;
+        final boolean[] baseRestrained = workspace.baseRestrained;
+        final double[] r = workspace.residual;
+        final double[] loadNorm = workspace.loadNorm;
+        setRightHandSides(r, nLoadInstances, baseRestrained);
+        for (int ilc = 0; ilc < nLoadInstances; ilc++) {
+            loadNorm[ilc] = 0;
+        }
+        for (int i = 0; i < nEquations * nLoadInstances; i++) {
+            loadNorm[i % nLoadInstances] = Math.max(loadNorm[i % nLoadInstances], Math.abs(r[i]));
+        }
+        final int[] dof = workspace.dof;
+        final double[] u = workspace.u;
         for (int im = 0; im < nMembers; im++) {
-            double maxCompression = 0;
-            double maxTension = 0;
+            setMemberDofs(dof, 0, members[im]);
+            u[0] = -cosX[im];
+            u[1] = -cosY[im];
+            u[2] = cosX[im];
+            u[3] = cosY[im];
             for (int ilc = 0; ilc < nLoadInstances; ilc++) {
-                double force = memberForce[ilc][im];
-                if (force < 0) {
-                    force = -force;
-                    if (force > maxCompression) {
-                        maxCompression = force;
-                    }
-                    memberFails[ilc][im] = (force / memberCompressiveStrength[im] > 1.0);
-                } else {
-                    if (force > maxTension) {
-                        maxTension = force;
+                double elongation = 0;
+                for (int i = 0; i < 4; i++) {
+                    elongation += u[i] * x[dof[i] * nRhs + ilc];
+                }
+                double force = aEOverL[im] * elongation;
+                for (int i = 0; i < 4; i++) {
+                    if (!baseRestrained[dof[i]]) {
+                        r[dof[i] * nLoadInstances + ilc] -= force * u[i];
                     }
-                    memberFails[ilc][im] = (force / memberTensileStrength[im] > 1.0);
                 }
             }
-            double cRatio = maxCompression / memberCompressiveStrength[im];
-            double tRatio = maxTension / memberTensileStrength[im];
-            // A fail for any member of any kind is a fail overall.
-            if (cRatio > 1 || tRatio > 1) {
-                status = FAILS_LOAD_TEST;
+        }
+        for (int i = 0; i < nEquations * nLoadInstances; i++) {
+            if (Math.abs(r[i]) > maxUpdateResidual * loadNorm[i % nLoadInstances]) {
+                return false;
             }
-            // Copy ratio information back to the bridge unless we're computing the intentionally distorted 
-            // failure bridge.
-            if (failureStatus == null) {
-                members[im].setCompressionForceStrengthRatio(cRatio);
-                members[im].setTensionForceStrengthRatio(tRatio);
+        }
+        return true;
+    }
+
+    /**
+     * Return true iff the workspace bridge has the same member connections and restraints as the one of the 
+     * base factorization, so the joint ordering and the profile of the stiffness matrix still apply.
+     * 
+     * @return true iff the bridge has the topology of the base factorization
+     */
+    private boolean isBaseTopology() {
+        if (!workspace.baseValid || nJoints != workspace.nBaseJoints || nMembers != workspace.nBaseMembers) {
+            return false;
+        }
+        for (int ij = 0; ij < nJoints; ij++) {
+            if (workspace.xRestraint[ij] != workspace.baseXRestraint[ij] || 
+                    workspace.yRestraint[ij] != workspace.baseYRestraint[ij]) {
+                return false;
             }
-            maxMemberCompressiveForces[im] = maxCompression;
-            maxMemberTensileForces[im] = maxTension;
         }
-        if (!bridge.isPassingSlendernessCheck()) {
-            status = FAILS_SLENDERNESS;
+        final Member[] members = workspace.members;
+        final int[] baseMemberJoints = workspace.baseMemberJoints;
+        for (int im = 0; im < nMembers; im++) {
+            if (members[im].getJointA().getIndex() != baseMemberJoints[2 * im] || 
+                    members[im].getJointB().getIndex() != baseMemberJoints[2 * im + 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return true iff the joints of the workspace bridge are where they were in the one of the base 
+     * factorization.  With the same topology, this means only member stiffnesses can differ.
+     * 
+     * @return true iff the bridge has the joint locations of the base factorization
+     */
+    private boolean isBaseGeometry() {
+        final double[] baseJointLocation = workspace.baseJointLocation;
+        for (int ij = 0; ij < nJoints; ij++) {
+            Affine.Point p = bridge.getJoints().get(ij).getPointWorld();
+            if (p.x != baseJointLocation[2 * ij] || p.y != baseJointLocation[2 * ij + 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the first equation in solver numbering touched by a member whose stiffness or direction differs
+     * from the base, or the number of equations if there is none.  For a bridge with the base topology, 
+     * the stiffness matrix differs from the base only in this and later columns of its upper triangle.
+     * 
+     * @return first changed equation
+     */
+    private int getFirstChangedEquation() {
+        final Member[] members = workspace.members;
+        final double[] cosX = workspace.cosX;
+        final double[] cosY = workspace.cosY;
+        final double[] aEOverL = workspace.aEOverL;
+        final int[] dof = workspace.dof;
+        int jLo = 2 * nJoints;
+        for (int im = 0; im < nMembers; im++) {
+            if (aEOverL[im] != workspace.baseAEOverL[im] || 
+                    cosX[im] != workspace.baseCosX[im] || cosY[im] != workspace.baseCosY[im]) {
+                setMemberDofs(dof, 0, members[im]);
+                jLo = Math.min(jLo, Math.min(dof[0], dof[2]));
+            }
+        }
+        return jLo;
+    }
+
+    /**
+     * Remember the structure and member stiffnesses of the workspace bridge, whose stiffness matrix was 
+     * just factored, so the factorization can be reused.
+     */
+    private void saveBase() {
+        final double[] baseJointLocation = workspace.baseJointLocation;
+        final int[] baseMemberJoints = workspace.baseMemberJoints;
+        for (int ij = 0; ij < nJoints; ij++) {
+            Affine.Point p = bridge.getJoints().get(ij).getPointWorld();
+            baseJointLocation[2 * ij] = p.x;
+            baseJointLocation[2 * ij + 1] = p.y;
+            workspace.baseXRestraint[ij] = workspace.xRestraint[ij];
+            workspace.baseYRestraint[ij] = workspace.yRestraint[ij];
+        }
+        final Member[] members = workspace.members;
+        for (int im = 0; im < nMembers; im++) {
+            baseMemberJoints[2 * im] = members[im].getJointA().getIndex();
+            baseMemberJoints[2 * im + 1] = members[im].getJointB().getIndex();
+            workspace.baseAEOverL[im] = workspace.aEOverL[im];
+            workspace.baseCosX[im] = workspace.cosX[im];
+            workspace.baseCosY[im] = workspace.cosY[im];
+        }
+        double minPivotMagnitude = Double.MAX_VALUE;
+        for (int ie = 0; ie < 2 * nJoints; ie++) {
+            workspace.baseRestrained[ie] = workspace.restrained[ie];
+            if (!workspace.restrained[ie]) {
+                minPivotMagnitude = Math.min(minPivotMagnitude, Math.abs(workspace.solver.getPivot(ie)));
+            }
+        }
+        workspace.baseMinPivot = minPivotMagnitude;
+        workspace.nBaseJoints = nJoints;
+        workspace.nBaseMembers = nMembers;
+        workspace.baseValid = true;
+    }
+
+    /**
+     * Copy load vectors into the leading columns of interleaved right hand sides in solver numbering, 
+     * leaving zeros at restrained degrees of freedom.
+     * 
+     * @param x right hand sides; component ie of right hand side k is at <code>x[ie * nRhs + k]</code>
+     * @param nRhs number of right hand sides, at least the number of load cases
+     * @param restrained restraint flags of degrees of freedom in solver numbering
+     */
+    private void setRightHandSides(double[] x, int nRhs, boolean[] restrained) {
+        final double[][] pointLoads = workspace.pointLoads;
+        final JointOrdering ordering = workspace.ordering;
+        for (int ij = 0; ij < nJoints; ij++) {
+            int ie = 2 * ordering.getNewIndex(ij);
+            int ix = ie * nRhs;
+            int iy = ix + nRhs;
+            for (int ilc = 0; ilc < nLoadInstances; ilc++) {
+                x[ix + ilc] = restrained[ie] ? 0 : pointLoads[ilc][2 * ij];
+                x[iy + ilc] = restrained[ie + 1] ? 0 : pointLoads[ilc][2 * ij + 1];
+            }
+        }
+    }
+
+    /**
+     * Copy solutions for a range of load cases from the leading columns of interleaved right hand sides 
+     * in solver numbering to joint displacements.
+     * 
+     * @param x solutions; component ie of solution k is at <code>x[ie * nRhs + k]</code>
+     * @param nRhs number of solutions, at least the number of load cases
+     * @param ilcLo first load case to copy
+     * @param ilcHi one past the last load case to copy
+     */
+    private void getJointDisplacements(double[] x, int nRhs, int ilcLo, int ilcHi) {
+        final JointOrdering ordering = workspace.ordering;
+        for (int ij = 0; ij < nJoints; ij++) {
+            int ix = 2 * ordering.getNewIndex(ij) * nRhs;
+            int iy = ix + nRhs;
+            for (int ilc = ilcLo; ilc < ilcHi; ilc++) {
+                jointDisplacement[2 * (ilc * nJoints + ij)] = x[ix + ilc];
+                jointDisplacement[2 * (ilc * nJoints + ij) + 1] = x[iy + ilc];
+            }
         }
     }
 
+    /**
+     * Add a stiffness term to the skyline matrix unless it touches a restrained degree of freedom or lies in
+     * a column before the first one to be factored.
+     * 
+     * @param restrained restraint flags of degrees of freedom
+     * @param jLo first column to be factored
+     * @param i row index, no greater than the column index
+     * @param j column index
+     * @param val stiffness term
+     */
+    private void addStiffness(boolean[] restrained, int jLo, int i, int j, double val) {
+        if (!restrained[i] && !restrained[j] && Math.max(i, j) >= jLo) {
+            workspace.solver.add(i, j, val);
+        }
+    }
+
+    /**
+     * Add the stiffness terms of all members to the skyline matrix from the columns at <code>jLo</code> on.
+     * This is the packed kernel equivalent of the assembly loop of <code>solveBySkyline</code>.  It adds the 
+     * same terms in the same order, but at storage positions found once per profile, where restrained 
+     * degrees of freedom have no position.
+     * 
+     * @param jLo first column to be factored
+     */
+    private void assemblePacked(int jLo) {
+        final SkylineSolver solver = workspace.solver;
+        final double[] cosX = workspace.cosX;
+        final double[] cosY = workspace.cosY;
+        final double[] aEOverL = workspace.aEOverL;
+        final int[] entries = workspace.memberEntries;
+        if (!workspace.entriesValid) {
+            final boolean[] restrained = workspace.restrained;
+            final int[] dof = workspace.dof;
+            for (int im = 0; im < nMembers; im++) {
+                setMemberDofs(dof, 0, workspace.members[im]);
+                int k = 10 * im;
+                // Upper triangle terms in the order of the scalar assembly loop.
+                for (int i = 0; i < 4; i++) {
+                    for (int j = i; j < 4; j++) {
+                        entries[k++] = restrained[dof[i]] || restrained[dof[j]] ? -1 : solver.getEntryIndex(dof[i], dof[j]);
+                    }
+                }
+            }
+            workspace.entriesValid = true;
+        }
+        final int kLo = solver.getColumnStart(jLo);
+        for (int im = 0; im < nMembers; im++) {
+            final double xx = aEOverL[im] * sqr(cosX[im]);
+            final double yy = aEOverL[im] * sqr(cosY[im]);
+            final double xy = aEOverL[im] * cosX[im] * cosY[im];
+            final int k = 10 * im;
+            solver.addEntry(entries[k + 0], kLo, xx);
+            solver.addEntry(entries[k + 1], kLo, xy);
+            solver.addEntry(entries[k + 2], kLo, -xx);
+            solver.addEntry(entries[k + 3], kLo, -xy);
+            solver.addEntry(entries[k + 4], kLo, yy);
+            solver.addEntry(entries[k + 5], kLo, -xy);
+            solver.addEntry(entries[k + 6], kLo, -yy);
+            solver.addEntry(entries[k + 7], kLo, xx);
+            solver.addEntry(entries[k + 8], kLo, xy);
+            solver.addEntry(entries[k + 9], kLo, yy);
+        }
+    }
+
+    /**
+     * Fill in the solver degrees of freedom touched by a member starting at the given offset: x and y 
+     * of its first joint, then x and y of its second.  Joints are numbered by the current joint ordering.
+     * 
+     * @param dof array to receive degree of freedom indices
+     * @param i index of the first of four entries to fill
+     * @param member member
+     */
+    private void setMemberDofs(int[] dof, int i, Member member) {
+        final JointOrdering ordering = workspace.ordering;
+        dof[i + 0] = 2 * ordering.getNewIndex(member.getJointA().getIndex());
+        dof[i + 1] = dof[i + 0] + 1;
+        dof[i + 2] = 2 * ordering.getNewIndex(member.getJointB().getIndex());
+        dof[i + 3] = dof[i + 2] + 1;
+    }
+
     // This is about 50 times faster than Math.hypot() !.
     private static double hypot(double x, double y) {
         return Math.sqrt(x * x + y * y);
@@ -461,6 +1726,11 @@ public class Analysis {
         private final Affine.Vector [] displacement = initialDisp();
         private final double forceRatio [] = new double [DesignConditions.maxMemberCount];
         private final Affine.Point ptLoad = new Affine.Point();
+        /**
+         * Undisplaced locations of the deck joints left and right of the load.
+         */
+        private final Affine.Point ptLeft = new Affine.Point();
+        private final Affine.Point ptRight = new Affine.Point();
         private final Affine.Vector zeroDisp = new Affine.Vector(0.0, 0.0);
         private final Affine.Point ptRightApproach = new Affine.Point(-100.0, 0.0);
         private final Affine.Vector loadRotation = new Affine.Vector();
@@ -642,21 +1912,16 @@ public class Analysis {
          * @param displacementExaggeration amount that joint displacements should be exaggerated
          */
         public void initializeDeadLoadOnly(double deadLoadApplied, double xLoadParameter, double displacementExaggeration) {     
+            final AnalysisResult r = result;
             this.xLoadParameter = xLoadParameter;
-            Iterator<Joint> je = bridge.getJoints().iterator();
-            while (je.hasNext()) {
-                Joint joint = je.next();
-                int i = joint.getIndex();
-                displacement[i].x = deadLoadApplied * displacementExaggeration * getXJointDisplacement(0, i);
-                displacement[i].y = deadLoadApplied * displacementExaggeration * getYJointDisplacement(0, i);
+            for (int i = 0; i < r.getNJoints(); i++) {
+                displacement[i].x = deadLoadApplied * displacementExaggeration * r.getXJointDisplacement(0, i);
+                displacement[i].y = deadLoadApplied * displacementExaggeration * r.getYJointDisplacement(0, i);
             }
             nFailures = 0;
-            Iterator<Member> me = bridge.getMembers().iterator();
-            while (me.hasNext()) {
-                Member member = me.next();
-                int i = member.getIndex();
-                double force = deadLoadApplied * getMemberForce(0, i);
-                double ratio = (force > 0) ? force / getMemberTensileStrength(i) : force / getMemberCompressiveStrength(i);
+            for (int i = 0; i < r.getNMembers(); i++) {
+                double force = deadLoadApplied * r.getMemberForce(0, i);
+                double ratio = (force > 0) ? force / r.getMemberTensileStrength(i) : force / r.getMemberCompressiveStrength(i);
                 forceRatio[i] = ratio * deadLoadApplied;
                 if (forceRatio[i] < -1.0 || forceRatio[i] > 1.0) {
                     failureStatus[i] = FAILED;
@@ -666,7 +1931,7 @@ public class Analysis {
                     failureStatus[i] = NOT_FAILED;
                 }
             }
-            ptLoad.x = xLoadParameter * DesignConditions.panelSizeWorld + bridge.getJoints().get(0).getPointWorld().x + displacement[0].x;
+            ptLoad.x = xLoadParameter * DesignConditions.panelSizeWorld + r.getJointX(0) + displacement[0].x;
             ptLoad.y = terrain.getRoadCenterlineElevation((float)ptLoad.x);
             // Initialize rotation for fixed eye case where truck isn't hidden.
             double x = ptLoad.x - DesignConditions.panelSizeWorld;
@@ -683,28 +1948,24 @@ public class Analysis {
          * @param displacementExaggeration exaggeration factor for displacements
          */
         public void initialize(double xLoadParameter, double displacementExaggeration) {            
+            // Use one result throughout even if the analysis is initialized again meanwhile.
+            final AnalysisResult r = result;
             this.xLoadParameter = xLoadParameter;
-            final DesignConditions dc = bridge.getDesignConditions();
+            final DesignConditions dc = r.getDesignConditions();
             ptRightApproach.x = dc.getXRightmostDeckJoint() + 100.0;
             int nLoadedJoints = dc.getNLoadedJoints();
             loadRotation.setLocation(1, 0);
 
             // Handle case where truck is not on bridge.
             if (xLoadParameter <= 0 || xLoadParameter >= nLoadedJoints) {
-                Iterator<Joint> je = bridge.getJoints().iterator();
-                while (je.hasNext()) {
-                    Joint joint = je.next();
-                    int i = joint.getIndex();
-                    displacement[i].x = displacementExaggeration * getXJointDisplacement(0, i);
-                    displacement[i].y = displacementExaggeration * getYJointDisplacement(0, i);
+                for (int i = 0; i < r.getNJoints(); i++) {
+                    displacement[i].x = displacementExaggeration * r.getXJointDisplacement(0, i);
+                    displacement[i].y = displacementExaggeration * r.getYJointDisplacement(0, i);
                 }
                 nFailures = 0;
-                Iterator<Member> me = bridge.getMembers().iterator();
-                while (me.hasNext()) {
-                    Member member = me.next();
-                    int i = member.getIndex();
-                    double force = getMemberForce(0, i);
-                    forceRatio[i] = (force > 0) ? force / getMemberTensileStrength(i) : force / getMemberCompressiveStrength(i);
+                for (int i = 0; i < r.getNMembers(); i++) {
+                    double force = r.getMemberForce(0, i);
+                    forceRatio[i] = (force > 0) ? force / r.getMemberTensileStrength(i) : force / r.getMemberCompressiveStrength(i);
                     if (forceRatio[i] < -1.0 || forceRatio[i] > 1.0) {
                         failureStatus[i] = FAILED;
                         ++nFailures;
@@ -716,12 +1977,12 @@ public class Analysis {
                 // Truck position.
                 if (xLoadParameter <= 0) {
                     ptLoad.x = xLoadParameter * DesignConditions.panelSizeWorld + 
-                            bridge.getJoints().get(0).getPointWorld().x + displacement[0].x;
+                            r.getJointX(0) + displacement[0].x;
                 }
                 else {
                     final int iLast = nLoadedJoints - 1;
                     ptLoad.x = (xLoadParameter - iLast) * DesignConditions.panelSizeWorld + 
-                            bridge.getJoints().get(iLast).getPointWorld().x + displacement[iLast].x;
+                            r.getJointX(iLast) + displacement[iLast].x;
                 }
                 ptLoad.y = terrain.getRoadCenterlineElevation((float)ptLoad.x);
                 double x = ptLoad.x - DesignConditions.panelSizeWorld;
@@ -735,21 +1996,16 @@ public class Analysis {
             final int ilcRight = (ilcLeft < nLoadedJoints - 1) ? ilcLeft + 1 : 0;
             final double t1 = xLoadParameter - ilcLeft;
             final double t0 = 1 - t1;
-            Iterator<Joint> je = bridge.getJoints().iterator();
-            while (je.hasNext()) {
-                int i = je.next().getIndex();
-                displacement[i].x = displacementExaggeration * (t0 * getXJointDisplacement(ilcLeft, i) + t1 * getXJointDisplacement(ilcRight, i));
-                displacement[i].y = displacementExaggeration * (t0 * getYJointDisplacement(ilcLeft, i) + t1 * getYJointDisplacement(ilcRight, i));
+            for (int i = 0; i < r.getNJoints(); i++) {
+                displacement[i].x = displacementExaggeration * (t0 * r.getXJointDisplacement(ilcLeft, i) + t1 * r.getXJointDisplacement(ilcRight, i));
+                displacement[i].y = displacementExaggeration * (t0 * r.getYJointDisplacement(ilcLeft, i) + t1 * r.getYJointDisplacement(ilcRight, i));
             }
             nFailures = 0;
-            Iterator<Member> me = bridge.getMembers().iterator();
-            while (me.hasNext()) {
-                Member member = me.next();
-                int i = member.getIndex();
-                final double force = t0 * memberForce[ilcLeft][i] + t1 * memberForce[ilcRight][i];
-                final double ratio = (force > 0) ? force / memberTensileStrength[i] : force / memberCompressiveStrength[i];
+            for (int i = 0; i < r.getNMembers(); i++) {
+                final double force = t0 * r.getMemberForce(ilcLeft, i) + t1 * r.getMemberForce(ilcRight, i);
+                final double ratio = (force > 0) ? force / r.getMemberTensileStrength(i) : force / r.getMemberCompressiveStrength(i);
                 // We allow left force to trigger failures so we can't step past one.
-                if (memberFails[ilcLeft][i] || ratio < -1.0 || ratio > 1.0) {
+                if (r.isMemberFailing(ilcLeft, i) || ratio < -1.0 || ratio > 1.0) {
                     failureStatus[i] = FAILED;
                     ++nFailures;
                 }
@@ -758,8 +2014,8 @@ public class Analysis {
                 }
                 forceRatio[i] = ratio;
             }
-            final Affine.Point ptLeft = bridge.getJoints().get(ilcLeft).getPointWorld();
-            final Affine.Point ptRight = bridge.getJoints().get(ilcRight).getPointWorld();
+            ptLeft.setLocation(r.getJointX(ilcLeft), r.getJointY(ilcLeft));
+            ptRight.setLocation(r.getJointX(ilcRight), r.getJointY(ilcRight));
             if (ilcLeft < nLoadedJoints - 1) {
                 // Interpolate between left and right points.
                 ptLoad.x = t0 * (ptLeft.x + displacement[ilcLeft].x) + t1 * (ptRight.x + displacement[ilcRight].x);
@@ -794,7 +2050,7 @@ public class Analysis {
                     dispSearchLeft = zeroDisp;
                 }
                 else {
-                    ptSearchLeft = bridge.getJoints().get(i).getPointWorld().plus(0, BridgeView.wearSurfaceHeight);
+                    ptSearchLeft = new Affine.Point(r.getJointX(i), r.getJointY(i) + BridgeView.wearSurfaceHeight);
                     dispSearchLeft = displacement[i];
                 }
                 if (setLoadRotation(ptLoad, ptSearchLeft, dispSearchLeft, ptSearchRight, dispSearchRight, DesignConditions.panelSizeWorld)) {
@@ -816,19 +2072,21 @@ public class Analysis {
          * @param displacementParameter parameter 
          */
         public void initialize(Interpolation base, Interpolation target, double displacementParameter) {
+            // Use one result throughout even if the analysis is initialized again meanwhile.
+            final AnalysisResult r = result;
             xLoadParameter = base.xLoadParameter;
-            final DesignConditions dc = bridge.getDesignConditions();
+            final DesignConditions dc = r.getDesignConditions();
             ptRightApproach.x = dc.getXRightmostDeckJoint() + 100.0;
             int nLoadedJoints = dc.getNLoadedJoints();
             loadRotation.setLocation(1, 0);
             final double ta = 1.0 - displacementParameter;
             final double tf = displacementParameter;
-            final int nJoints = bridge.getJoints().size();
+            final int nJoints = r.getNJoints();
             for (int i = 0; i < nJoints; i++) {
                 displacement[i].x = ta * base.displacement[i].x + tf * target.displacement[i].x;
                 displacement[i].y = ta * base.displacement[i].y + tf * target.displacement[i].y;
             }
-            final int nMembers = bridge.getMembers().size();
+            final int nMembers = r.getNMembers();
             for (int i = 0; i < nMembers; i++) {
                 forceRatio[i] = base.forceRatio[i];
                 if (base.failureStatus[i] == NOT_FAILED) {
@@ -837,15 +2095,12 @@ public class Analysis {
                 else {
                     // All this is just to calculate the lengths of members
                     // with displacements and not generate any garbage.
-                    final Member m = bridge.getMembers().get(i);
-                    final Joint a = m.getJointA();
-                    final Joint b = m.getJointB();
-                    final Affine.Point pa = a.getPointWorld();
-                    final Affine.Point pb = b.getPointWorld();
-                    final Affine.Vector da = base.displacement[a.getIndex()];
-                    final Affine.Vector db = base.displacement[b.getIndex()];
-                    final double dx = (pa.x + da.x) - (pb.x + db.x);
-                    final double dy = (pa.y + da.y) - (pb.y + db.y);
+                    final int ia = r.getMemberJointA(i);
+                    final int ib = r.getMemberJointB(i);
+                    final Affine.Vector da = base.displacement[ia];
+                    final Affine.Vector db = base.displacement[ib];
+                    final double dx = (r.getJointX(ia) + da.x) - (r.getJointX(ib) + db.x);
+                    final double dy = (r.getJointY(ia) + da.y) - (r.getJointY(ib) + db.y);
                     failureStatus[i] = Math.sqrt(dx * dx + dy * dy);
                 }
             }
@@ -856,12 +2111,12 @@ public class Analysis {
                 // Truck position.
                 if (xLoadParameter <= 0) {
                     ptLoad.x = xLoadParameter * DesignConditions.panelSizeWorld + 
-                            bridge.getJoints().get(0).getPointWorld().x + displacement[0].x;
+                            r.getJointX(0) + displacement[0].x;
                 }
                 else {
                     final int iLast = nLoadedJoints - 1;
                     ptLoad.x = (xLoadParameter - iLast) * DesignConditions.panelSizeWorld + 
-                            bridge.getJoints().get(iLast).getPointWorld().x + displacement[iLast].x;
+                            r.getJointX(iLast) + displacement[iLast].x;
                 }
                 ptLoad.y = terrain.getRoadCenterlineElevation((float)ptLoad.x);
                 double x = ptLoad.x - DesignConditions.panelSizeWorld;
@@ -875,8 +2130,8 @@ public class Analysis {
             final int ilcRight = (ilcLeft < nLoadedJoints - 1) ? ilcLeft + 1 : 0;
             final double t1 = xLoadParameter - ilcLeft;
             final double t0 = 1 - t1;
-            final Affine.Point ptLeft = bridge.getJoints().get(ilcLeft).getPointWorld();
-            final Affine.Point ptRight = bridge.getJoints().get(ilcRight).getPointWorld();
+            ptLeft.setLocation(r.getJointX(ilcLeft), r.getJointY(ilcLeft));
+            ptRight.setLocation(r.getJointX(ilcRight), r.getJointY(ilcRight));
             if (ilcLeft < nLoadedJoints - 1) {
                 // Interpolate between left and right points.
                 ptLoad.x = t0 * (ptLeft.x + displacement[ilcLeft].x) + t1 * (ptRight.x + displacement[ilcRight].x);
@@ -911,7 +2166,7 @@ public class Analysis {
                     dispSearchLeft = zeroDisp;
                 }
                 else {
-                    ptSearchLeft = bridge.getJoints().get(i).getPointWorld().plus(0, BridgeView.wearSurfaceHeight);
+                    ptSearchLeft = new Affine.Point(r.getJointX(i), r.getJointY(i) + BridgeView.wearSurfaceHeight);
                     dispSearchLeft = displacement[i];
                 }
                 if (setLoadRotation(ptLoad, ptSearchLeft, dispSearchLeft, ptSearchRight, dispSearchRight, DesignConditions.panelSizeWorld)) {
@@ -950,6 +2205,10 @@ public class Analysis {
         private BridgeModel bridge = new BridgeModel();
         private Analysis analysis = new Analysis();
 
+        private Runnable(boolean legacySolver) {
+            analysis.setLegacySolver(legacySolver);
+        }
+
         private void run(String fileName) {
             try {
                 bridge.read(new File(fileName));
@@ -964,12 +2223,25 @@ public class Analysis {
         }
     }
    
+    /**
+     * Load test a single bridge file, or with more than one argument or a directory, run a batch
+     * analysis.  See <code>BatchAnalysis</code>.  A leading <code>-legacy</code> selects the legacy solver
+     * either way.
+     * 
+     * @param args file name or batch analysis arguments
+     */
     public static void main(String [] args) {
-        if (args.length != 1) {
-            System.err.println("usage: java Analysis FileName");
+        final boolean legacySolver = args.length > 0 && args[0].equals("-legacy");
+        final int nOptions = legacySolver ? 1 : 0;
+        if (args.length == nOptions) {
+            System.err.println("usage: java Analysis [-legacy] FileName");
+            System.err.println("       java Analysis [-legacy] [-j threads] file|directory|glob...");
+        }
+        else if (args.length == nOptions + 1 && new File(args[nOptions]).isFile()) {
+            new Runnable(legacySolver).run(args[nOptions]);
         }
         else {
-            new Runnable().run(args[0]);
+            BatchAnalysis.main(args);
         }
     }
 }
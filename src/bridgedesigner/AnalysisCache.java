@@ -0,0 +1,180 @@
+/*
+ * AnalysisCache.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least recently used cache of analysis results keyed by the parts of a bridge that
+ * determine its analysis: scenario, joint locations, and member connections and stock.  Revisiting a
+ * bridge by undo, redo, or loading an earlier iteration, or grading a duplicate submission, reuses the
+ * earlier result rather than analyzing again.
+ *
+ * Results depend on the solver and strength settings of the analysis as well as the bridge, so keys include
+ * those settings and results from differently configured analyses are never mixed.  All methods are thread safe.
+ *
+ * @author Eugene K. Ressler
+ */
+public class AnalysisCache {
+
+    /**
+     * Key wrapper giving content equality and a precomputed hash to canonical bridge bytes and the
+     * analysis settings that affect the result.
+     */
+    private static class Key {
+
+        private final byte [] bytes;
+        private final int mode;
+        private final int hash;
+
+        public Key(Analysis analysis, BridgeModel bridge) {
+            this.bytes = bridge.getAnalysisKey();
+            this.mode = (analysis.isLegacySolver() ? 1 : 0) | (analysis.isStrictStrength() ? 2 : 0);
+            this.hash = 31 * Arrays.hashCode(bytes) + mode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key)obj;
+            return hash == other.hash && mode == other.mode && Arrays.equals(bytes, other.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final int capacity;
+    private final LinkedHashMap<Key, AnalysisResult> map;
+    private int hitCount = 0;
+    private int missCount = 0;
+
+    /**
+     * Construct a cache holding at most the given number of results.
+     *
+     * @param capacity maximum number of results
+     */
+    public AnalysisCache(final int capacity) {
+        this.capacity = capacity;
+        this.map = new LinkedHashMap<Key, AnalysisResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, AnalysisResult> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Analyze a bridge, reusing a cached result if there is one and caching the result otherwise.
+     * Either way, the analysis is left holding the result and the bridge's member force/strength
+     * ratios are updated just as by <code>Analysis.initialize</code>.
+     *
+     * @param analysis analysis to use
+     * @param bridge bridge to analyze
+     * @return true iff the result came from the cache
+     */
+    public boolean analyze(Analysis analysis, BridgeModel bridge) {
+        Key key = new Key(analysis, bridge);
+        AnalysisResult result = get(key);
+        if (result != null) {
+            analysis.restore(bridge, result);
+            return true;
+        }
+        analysis.initialize(bridge);
+        put(key, analysis.getResult());
+        return false;
+    }
+
+    /**
+     * Restore a cached result for a bridge to the given analysis if there is one.  Otherwise leave the
+     * analysis unchanged.
+     *
+     * @param analysis analysis to receive the result
+     * @param bridge bridge whose result is sought
+     * @return true iff a result was found and restored
+     */
+    public boolean restore(Analysis analysis, BridgeModel bridge) {
+        AnalysisResult result = get(new Key(analysis, bridge));
+        if (result == null) {
+            return false;
+        }
+        analysis.restore(bridge, result);
+        return true;
+    }
+
+    private synchronized AnalysisResult get(Key key) {
+        AnalysisResult result = map.get(key);
+        if (result == null) {
+            ++missCount;
+        }
+        else {
+            ++hitCount;
+        }
+        return result;
+    }
+
+    private synchronized void put(Key key, AnalysisResult result) {
+        map.put(key, result);
+    }
+
+    /**
+     * Return the number of lookups that found a result.
+     *
+     * @return hit count
+     */
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Return the number of lookups that found no result.
+     *
+     * @return miss count
+     */
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Return the number of results currently cached.
+     *
+     * @return number of cached results
+     */
+    public synchronized int getSize() {
+        return map.size();
+    }
+
+    /**
+     * Return the maximum number of results the cache holds.
+     *
+     * @return capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Discard all cached results and reset the hit and miss counts.
+     */
+    public synchronized void clear() {
+        map.clear();
+        hitCount = missCount = 0;
+    }
+}
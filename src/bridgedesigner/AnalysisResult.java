@@ -0,0 +1,300 @@
+/*
+ * AnalysisResult.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+/**
+ * Immutable results of one bridge analysis.  Per-load-case quantities are stored flat in row-major order
+ * with one row per load case.  Nothing here changes after construction, so a result may be shared freely
+ * among threads.  The one exception is a result given back with <code>Analysis.recycle</code>, whose arrays
+ * the analysis reuses for its next result; the arrays are package-private for that alone.
+ *
+ * @author Eugene K. Ressler
+ */
+public class AnalysisResult {
+
+    private final int status;
+    private final int nJoints;
+    private final int nMembers;
+    private final int nLoadInstances;
+    /**
+     * Design conditions of the analyzed bridge.
+     */
+    private final DesignConditions conditions;
+    /**
+     * World coordinates of the joints of the analyzed bridge at <code>[2 * ij]</code> for x and one more
+     * for y.
+     */
+    final double [] jointLocation;
+    /**
+     * Joint indices of the members of the analyzed bridge at <code>[2 * im]</code> for joint A and one more
+     * for joint B.
+     */
+    final int [] memberJoints;
+    /**
+     * Member forces at <code>[ilc * nMembers + im]</code>.
+     */
+    final double [] memberForce;
+    /**
+     * Joint displacements at <code>[ilc * 2 * nJoints + 2 * ij]</code> for x and one more for y.
+     */
+    final double [] jointDisplacement;
+    /**
+     * Member failure flags at <code>[ilc * nMembers + im]</code>.
+     */
+    final boolean [] memberFails;
+    /**
+     * Per-member strengths, worst forces over all load cases, and ratios of the two.
+     */
+    final double [] memberCompressiveStrength;
+    final double [] memberTensileStrength;
+    final double [] maxMemberCompressiveForce;
+    final double [] maxMemberTensileForce;
+    final double [] compressionForceStrengthRatio;
+    final double [] tensionForceStrengthRatio;
+
+    /**
+     * Construct a result.  Arrays become the property of the result and must not be changed afterward.
+     * They may be longer than needed, and all may be null if the status is <code>UNSTABLE</code>.
+     *
+     * @param status analysis status
+     * @param nJoints number of joints
+     * @param nMembers number of members
+     * @param nLoadInstances number of load cases
+     * @param conditions design conditions of the bridge
+     * @param jointLocation joint world coordinates, x and y for each joint
+     * @param memberJoints member joint indices, joint A and joint B for each member
+     * @param memberForce member forces, row major by load case
+     * @param jointDisplacement joint displacements, row major by load case
+     * @param memberFails member failure flags, row major by load case
+     * @param memberCompressiveStrength member compressive strengths
+     * @param memberTensileStrength member tensile strengths
+     * @param maxMemberCompressiveForce member compressive forces, maximum over load cases
+     * @param maxMemberTensileForce member tensile forces, maximum over load cases
+     * @param compressionForceStrengthRatio member compression force to strength ratios
+     * @param tensionForceStrengthRatio member tension force to strength ratios
+     */
+    AnalysisResult(int status, int nJoints, int nMembers, int nLoadInstances,
+            DesignConditions conditions, double [] jointLocation, int [] memberJoints, double [] memberForce, double [] jointDisplacement, boolean [] memberFails,
+            double [] memberCompressiveStrength, double [] memberTensileStrength,
+            double [] maxMemberCompressiveForce, double [] maxMemberTensileForce,
+            double [] compressionForceStrengthRatio, double [] tensionForceStrengthRatio) {
+        this.status = status;
+        this.nJoints = nJoints;
+        this.nMembers = nMembers;
+        this.nLoadInstances = nLoadInstances;
+        this.conditions = conditions;
+        this.jointLocation = jointLocation;
+        this.memberJoints = memberJoints;
+        this.memberForce = memberForce;
+        this.jointDisplacement = jointDisplacement;
+        this.memberFails = memberFails;
+        this.memberCompressiveStrength = memberCompressiveStrength;
+        this.memberTensileStrength = memberTensileStrength;
+        this.maxMemberCompressiveForce = maxMemberCompressiveForce;
+        this.maxMemberTensileForce = maxMemberTensileForce;
+        this.compressionForceStrengthRatio = compressionForceStrengthRatio;
+        this.tensionForceStrengthRatio = tensionForceStrengthRatio;
+    }
+
+    /**
+     * Return the analysis status, one of the status constants of <code>Analysis</code>.
+     *
+     * @return analysis status
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Return the number of joints of the analyzed bridge.
+     *
+     * @return number of joints
+     */
+    public int getNJoints() {
+        return nJoints;
+    }
+
+    /**
+     * Return the number of members of the analyzed bridge.
+     *
+     * @return number of members
+     */
+    public int getNMembers() {
+        return nMembers;
+    }
+
+    /**
+     * Return the number of load cases.
+     *
+     * @return number of load cases
+     */
+    public int getNLoadInstances() {
+        return nLoadInstances;
+    }
+
+    /**
+     * Return the design conditions of the analyzed bridge.
+     *
+     * @return design conditions
+     */
+    public DesignConditions getDesignConditions() {
+        return conditions;
+    }
+
+    /**
+     * Return the x-coordinate in world coordinates of a given joint of the analyzed bridge.  Joint locations
+     * and member joints are part of the result so that it alone describes the bridge it was computed for,
+     * even if that bridge is edited later.
+     *
+     * @param ij joint index
+     * @return x-coordinate of joint
+     */
+    public double getJointX(int ij) {
+        return jointLocation[2 * ij];
+    }
+
+    /**
+     * Return the y-coordinate in world coordinates of a given joint of the analyzed bridge.
+     *
+     * @param ij joint index
+     * @return y-coordinate of joint
+     */
+    public double getJointY(int ij) {
+        return jointLocation[2 * ij + 1];
+    }
+
+    /**
+     * Return the index of joint A of a given member of the analyzed bridge.
+     *
+     * @param im member index
+     * @return index of joint A
+     */
+    public int getMemberJointA(int im) {
+        return memberJoints[2 * im];
+    }
+
+    /**
+     * Return the index of joint B of a given member of the analyzed bridge.
+     *
+     * @param im member index
+     * @return index of joint B
+     */
+    public int getMemberJointB(int im) {
+        return memberJoints[2 * im + 1];
+    }
+
+    /**
+     * Return the force in a given member for a given load case.
+     *
+     * @param ilc load case index
+     * @param im member index
+     * @return member force
+     */
+    public double getMemberForce(int ilc, int im) {
+        return memberForce[ilc * nMembers + im];
+    }
+
+    /**
+     * Return the x-component of the displacement of a given joint for a given load case.
+     *
+     * @param ilc load case index
+     * @param ij joint index
+     * @return x-component of displacement
+     */
+    public double getXJointDisplacement(int ilc, int ij) {
+        return jointDisplacement[2 * (ilc * nJoints + ij)];
+    }
+
+    /**
+     * Return the y-component of the displacement of a given joint for a given load case.
+     *
+     * @param ilc load case index
+     * @param ij joint index
+     * @return y-component of displacement
+     */
+    public double getYJointDisplacement(int ilc, int ij) {
+        return jointDisplacement[2 * (ilc * nJoints + ij) + 1];
+    }
+
+    /**
+     * Return true iff a given member fails for a given load case.
+     *
+     * @param ilc load case index
+     * @param im member index
+     * @return true iff the member fails
+     */
+    public boolean isMemberFailing(int ilc, int im) {
+        return memberFails[ilc * nMembers + im];
+    }
+
+    /**
+     * Return the compressive strength of a given member, ignoring slenderness.
+     *
+     * @param im member index
+     * @return compressive strength
+     */
+    public double getMemberCompressiveStrength(int im) {
+        return memberCompressiveStrength[im];
+    }
+
+    /**
+     * Return the tensile strength of a given member.
+     *
+     * @param im member index
+     * @return tensile strength
+     */
+    public double getMemberTensileStrength(int im) {
+        return memberTensileStrength[im];
+    }
+
+    /**
+     * Return the maximum compressive force in a given member over all load cases.
+     *
+     * @param im member index
+     * @return maximum compressive force
+     */
+    public double getMemberCompressiveForce(int im) {
+        return maxMemberCompressiveForce[im];
+    }
+
+    /**
+     * Return the maximum tensile force in a given member over all load cases.
+     *
+     * @param im member index
+     * @return maximum tensile force
+     */
+    public double getMemberTensileForce(int im) {
+        return maxMemberTensileForce[im];
+    }
+
+    /**
+     * Return the ratio of maximum compressive force to compressive strength of a given member.
+     *
+     * @param im member index
+     * @return compression force to strength ratio
+     */
+    public double getCompressionForceStrengthRatio(int im) {
+        return compressionForceStrengthRatio[im];
+    }
+
+    /**
+     * Return the ratio of maximum tensile force to tensile strength of a given member.
+     *
+     * @param im member index
+     * @return tension force to strength ratio
+     */
+    public double getTensionForceStrengthRatio(int im) {
+        return tensionForceStrengthRatio[im];
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * AnalysisWorkspace.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+/**
+ * Scratch storage for bridge analysis, sized for the largest bridge the design conditions allow and
+ * reused from one analysis to the next.  Only solver scratch is reused.  Each analysis still allocates
+ * new result arrays, which become the property of its immutable <code>AnalysisResult</code>.
+ *
+ * The workspace also holds the skyline factorization of the last bridge analyzed along with a
+ * description of that bridge's structure, which is what allows incremental re-analysis.  A workspace
+ * may be shared by several analyses, e.g. one per design in a batch loop, but only by one thread at a time.
+ *
+ * @author Eugene K. Ressler
+ */
+public class AnalysisWorkspace {
+
+    /**
+     * Largest number of load cases: one per loaded joint of the longest deck.
+     */
+    public static final int maxLoadInstanceCount = 21;
+    /**
+     * Largest number of changed member stiffnesses applied as a low-rank update of the base factorization.
+     */
+    static final int maxUpdateRank = 24;
+
+    /**
+     * Capacities of the arrays below.
+     */
+    private int jointCapacity = 0;
+    private int memberCapacity = 0;
+    private int loadInstanceCapacity = 0;
+
+    /**
+     * Members of the bridge being analyzed.
+     */
+    Member[] members;
+    /**
+     * Member geometry and axial stiffness, indexed by member.
+     */
+    double[] length;
+    double[] cosX;
+    double[] cosY;
+    double[] aEOverL;
+    /**
+     * Member data gathered once per analysis for the packed kernels, indexed by member: cross-section area,
+     * modulus of elasticity, and joint indices, two per member.
+     */
+    double[] area;
+    double[] e;
+    int[] memberJoints;
+    /**
+     * Skyline storage positions of the ten upper triangle stiffness terms of each member in the order they 
+     * are assembled, or -1 for terms touching a restrained degree of freedom.  Valid while 
+     * <code>entriesValid</code> is, which is until the joint ordering or the profile changes.
+     */
+    int[] memberEntries;
+    boolean entriesValid = false;
+    /**
+     * Load vectors indexed by [load instance][degree of freedom].
+     */
+    double[][] pointLoads;
+    /**
+     * Restraint flags indexed by joint.
+     */
+    boolean[] xRestraint;
+    boolean[] yRestraint;
+    /**
+     * Restraint flags indexed by degree of freedom in solver numbering.
+     */
+    boolean[] restrained;
+    /**
+     * Interleaved right hand sides and solutions for the skyline solver, including columns for low-rank updates.
+     */
+    double[] x;
+    /**
+     * Interleaved residuals of updated solutions and their per-load-instance scale.
+     */
+    double[] residual;
+    double[] loadNorm;
+    /**
+     * Indices, degrees of freedom, and direction vectors of members changed since the base factorization.
+     */
+    final int[] changed = new int[maxUpdateRank];
+    final int[] dof = new int[4 * maxUpdateRank];
+    final double[] u = new double[4 * maxUpdateRank];
+    /**
+     * Capacitance system of a low-rank update, augmented with load columns.
+     */
+    double[][] capacitance;
+    /**
+     * Dense stiffness matrix used only by the legacy solver and allocated on first use.
+     */
+    double[][] stiffness;
+    /**
+     * Skyline solver and joint ordering, which keep their own storage once it has grown large enough.
+     */
+    final SkylineSolver solver = new SkylineSolver();
+    final JointOrdering ordering = new JointOrdering();
+    /**
+     * Whether the solver holds the factorization of a bridge described by the base fields below.
+     */
+    boolean baseValid = false;
+    /**
+     * Structure and member stiffnesses of the bridge whose factorization the solver holds.
+     */
+    int nBaseJoints;
+    int nBaseMembers;
+    double[] baseJointLocation;
+    int[] baseMemberJoints;
+    boolean[] baseXRestraint;
+    boolean[] baseYRestraint;
+    boolean[] baseRestrained;
+    double[] baseAEOverL;
+    double[] baseCosX;
+    double[] baseCosY;
+    double baseMinPivot;
+
+    /**
+     * Construct a workspace large enough for any bridge allowed by the design conditions.
+     */
+    public AnalysisWorkspace() {
+        ensureCapacity(DesignConditions.maxJointCount, DesignConditions.maxMemberCount, maxLoadInstanceCount);
+    }
+
+    /**
+     * Make sure the workspace can hold a bridge of the given size, reallocating only if it can't.
+     * Reallocation discards the base factorization.
+     *
+     * @param nJoints number of joints
+     * @param nMembers number of members
+     * @param nLoadInstances number of load instances
+     */
+    void ensureCapacity(int nJoints, int nMembers, int nLoadInstances) {
+        if (nJoints <= jointCapacity && nMembers <= memberCapacity && nLoadInstances <= loadInstanceCapacity) {
+            return;
+        }
+        jointCapacity = Math.max(nJoints, jointCapacity);
+        memberCapacity = Math.max(nMembers, memberCapacity);
+        loadInstanceCapacity = Math.max(nLoadInstances, loadInstanceCapacity);
+        final int nEquations = 2 * jointCapacity;
+        members = new Member[memberCapacity];
+        length = new double[memberCapacity];
+        cosX = new double[memberCapacity];
+        cosY = new double[memberCapacity];
+        aEOverL = new double[memberCapacity];
+        area = new double[memberCapacity];
+        e = new double[memberCapacity];
+        memberJoints = new int[2 * memberCapacity];
+        memberEntries = new int[10 * memberCapacity];
+        entriesValid = false;
+        pointLoads = new double[loadInstanceCapacity][nEquations];
+        xRestraint = new boolean[jointCapacity];
+        yRestraint = new boolean[jointCapacity];
+        restrained = new boolean[nEquations];
+        x = new double[nEquations * (loadInstanceCapacity + maxUpdateRank)];
+        residual = new double[nEquations * loadInstanceCapacity];
+        loadNorm = new double[loadInstanceCapacity];
+        capacitance = new double[maxUpdateRank][maxUpdateRank + loadInstanceCapacity];
+        stiffness = null;
+        baseValid = false;
+        baseJointLocation = new double[nEquations];
+        baseMemberJoints = new int[2 * memberCapacity];
+        baseXRestraint = new boolean[jointCapacity];
+        baseYRestraint = new boolean[jointCapacity];
+        baseRestrained = new boolean[nEquations];
+        baseAEOverL = new double[memberCapacity];
+        baseCosX = new double[memberCapacity];
+        baseCosY = new double[memberCapacity];
+    }
+
+    /**
+     * Return a zeroed dense stiffness matrix with at least the given number of equations.
+     *
+     * @param nEquations number of equations
+     * @return dense stiffness matrix
+     */
+    double[][] getStiffness(int nEquations) {
+        if (stiffness == null) {
+            stiffness = new double[2 * jointCapacity][2 * jointCapacity];
+        }
+        for (int i = 0; i < nEquations; i++) {
+            for (int j = 0; j < nEquations; j++) {
+                stiffness[i][j] = 0;
+            }
+        }
+        return stiffness;
+    }
+}
@@ -16,6 +16,12 @@ package bridgedesigner;
 import java.awt.Canvas;
 import java.awt.Component;
 import java.awt.Dimension;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jogamp.common.Debug;
@@ -76,6 +82,7 @@ abstract public class Animation {
         animationInterpolation = bridge.getAnalysis().getNewInterpolation(terrain);
         failureInterpolation = failureAnalysis.getNewInterpolation(terrain);
         failureAnimationInterpolation = bridge.getAnalysis().getNewInterpolation(terrain);
+        sweepInterpolation = bridge.getAnalysis().getNewInterpolation(terrain);
     }
  
     abstract public Canvas getCanvas();
@@ -192,6 +199,33 @@ abstract public class Animation {
      * the analysis of the weakened bridge that is the final failure animation configuration.
      */
     private final Analysis.Interpolation failureAnimationInterpolation;
+    /**
+     * Interpolation used to sweep the load over the bridge looking for the first failure.
+     */
+    private final Analysis.Interpolation sweepInterpolation;
+    /**
+     * Failure status of the first failure found by the sweep, or null if none was found.
+     */
+    private double [] speculativeFailureStatus;
+    /**
+     * Background analysis of a copy of the bridge weakened by the speculative failure status, or null if
+     * none.  The worker has an analysis of its own, so it never touches the failure analysis or the bridge.
+     */
+    private Future<AnalysisResult> speculativeFailureAnalysis;
+    /**
+     * Copy of the bridge analyzed by the speculative failure analysis.
+     */
+    private BridgeModel speculativeFailureBridge;
+    /**
+     * Single worker thread shared by all animations for speculative failure analyses.
+     */
+    private static ExecutorService failureAnalysisExecutor;
+    /**
+     * Steps per unit dead load and per panel of load movement in the failure sweep.  Real frames may 
+     * sample the load elsewhere, and the result is only used when it fails exactly the same members.
+     */
+    private static final int nSweepDeadLoadSteps = 64;
+    private static final int nSweepStepsPerPanel = 32;
     /**
      *  Location of load when accumulator updater was last called.
      */
@@ -261,6 +295,7 @@ abstract public class Animation {
             updateView(0);
             animationInterpolation.initializeDeadLoadOnly(0.0, loadLocation, 0.0);
             getDistanceMoved(); // zero the accumulator
+            startSpeculativeFailureAnalysis();
             return animationInterpolation;
         }
 
@@ -338,13 +373,125 @@ abstract public class Animation {
         // If the interpolation shows the bridge has failed and we're not already
         // handling this condition, go to the failing state.
         if (state < FAILING_STATE && interpolation.isFailure()) {
-            failureAnalysis.initialize(bridge, interpolation.getFailureStatus());
+            if (!finishSpeculativeFailureAnalysis(interpolation.getFailureStatus())) {
+                logger.log(Level.FINE, "Speculative failure analysis missed or unfinished; analyzing now.");
+                failureAnalysis.initialize(bridge, interpolation.getFailureStatus());
+            }
             failureInterpolation.initialize(loadLocation, config.displacementExaggeration);
             state = FAILING_STATE;
             lastStateChangeTime = time;
         }
     }
 
+    /**
+     * Sweep the load over the bridge as the animation will, find the members that fail first, if any,
+     * and start analyzing the bridge weakened by their failure on a worker thread.  This moves the cost
+     * of the failure analysis off the frame where the failure occurs.
+     */
+    private void startSpeculativeFailureAnalysis() {
+        finishSpeculativeFailureAnalysis(null);
+        final int status = bridge.getAnalysis().getStatus();
+        if (status <= Analysis.UNSTABLE || status == Analysis.PASSES) {
+            return;
+        }
+        speculativeFailureStatus = findFirstFailure();
+        if (speculativeFailureStatus == null) {
+            return;
+        }
+        final double [] failureStatus = speculativeFailureStatus;
+        final BridgeModel snapshot = new BridgeModel();
+        snapshot.read(bridge.toString());
+        speculativeFailureBridge = snapshot;
+        speculativeFailureAnalysis = getFailureAnalysisExecutor().submit(new Callable<AnalysisResult>() {
+            public AnalysisResult call() {
+                final Analysis analysis = new Analysis();
+                analysis.initialize(snapshot, failureStatus);
+                return analysis.getResult();
+            }
+        });
+    }
+
+    /**
+     * Return a copy of the failure status of the first failure found by sweeping dead load and then 
+     * the live load over the bridge or null if nothing fails.
+     * 
+     * @return failure status or null
+     */
+    private double [] findFirstFailure() {
+        for (int i = 1; i <= nSweepDeadLoadSteps; i++) {
+            sweepInterpolation.initializeDeadLoadOnly((double)i / nSweepDeadLoadSteps, -loadLocationRunup, 0.0);
+            if (sweepInterpolation.isFailure()) {
+                return copyFailureStatus(sweepInterpolation);
+            }
+        }
+        final int nSteps = bridge.getDesignConditions().getNLoadedJoints() * nSweepStepsPerPanel;
+        for (int i = 0; i <= nSteps; i++) {
+            sweepInterpolation.initialize((double)i / nSweepStepsPerPanel, 0.0);
+            if (sweepInterpolation.isFailure()) {
+                return copyFailureStatus(sweepInterpolation);
+            }
+        }
+        return null;
+    }
+
+    private double [] copyFailureStatus(Analysis.Interpolation interpolation) {
+        final double [] failureStatus = new double [bridge.getMembers().size()];
+        System.arraycopy(interpolation.getFailureStatus(), 0, failureStatus, 0, failureStatus.length);
+        return failureStatus;
+    }
+
+    /**
+     * Report whether the speculative failure analysis, if any, has finished and analyzed the given failure.
+     * If so, its result is restored to the failure analysis.  This never waits, so when the failure occurs
+     * before the speculation is done, the caller analyzes the failure itself rather than stalling the frame.
+     * The speculation is discarded either way.
+     * 
+     * @param failureStatus failure status that occurred or null to discard the speculative result
+     * @return true iff the failure analysis holds the analysis for the given failure status
+     */
+    private boolean finishSpeculativeFailureAnalysis(double [] failureStatus) {
+        final Future<AnalysisResult> future = speculativeFailureAnalysis;
+        final BridgeModel snapshot = speculativeFailureBridge;
+        speculativeFailureAnalysis = null;
+        speculativeFailureBridge = null;
+        if (future == null) {
+            return false;
+        }
+        if (!future.isDone() || failureStatus == null ||
+                !Analysis.isSameFailure(speculativeFailureStatus, failureStatus, speculativeFailureStatus.length)) {
+            future.cancel(false);
+            return false;
+        }
+        try {
+            failureAnalysis.restore(snapshot, future.get());
+            return true;
+        } catch (InterruptedException ex) {
+            // Can't happen because the future is done.
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            logger.log(Level.WARNING, "Speculative failure analysis failed.", ex.getCause());
+        }
+        return false;
+    }
+
+    /**
+     * Return the executor for speculative failure analyses, creating it on first use.
+     * 
+     * @return failure analysis executor
+     */
+    private static synchronized ExecutorService getFailureAnalysisExecutor() {
+        if (failureAnalysisExecutor == null) {
+            failureAnalysisExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Speculative failure analysis");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return failureAnalysisExecutor;
+    }
+
     /**
      * Reset the animation state to case where the bridge is undeflected and
      * the truck is not yet visible.
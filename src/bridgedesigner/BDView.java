@@ -38,6 +38,9 @@ import java.io.IOException;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.swing.AbstractButton;
 import javax.swing.ActionMap;
 import javax.swing.JButton;
@@ -48,7 +51,9 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
 import javax.swing.OverlayLayout;
+import javax.swing.ProgressMonitor;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.event.ChangeListener;
 import javax.swing.event.UndoableEditEvent;
 import javax.swing.event.UndoableEditListener;
@@ -398,6 +403,7 @@ public final class BDView extends FrameView
         // Show animation flag
         setSelected(toggleAnimationMenuItem, true);
         setSelected(toggleAutoCorrectMenuItem, true);
+        setSelected(toggleLiveLoadTestMenuItem, false);
         
         undoButton.getAction().setEnabled(false);
         redoButton.getAction().setEnabled(false);
@@ -446,6 +452,9 @@ public final class BDView extends FrameView
         enabledStateManager.add(toggleAnimationControlsMenuItem, animationOnly);
         enabledStateManager.add(toggleAnimationMenuItem,         draftingOnly);
         enabledStateManager.add(toggleAutoCorrectMenuItem,       draftingOnly);
+        enabledStateManager.add(toggleLiveLoadTestMenuItem,      draftingOnly);
+        enabledStateManager.add(optimizeMemberSizesMenuItem,     draftingOnly);
+        enabledStateManager.add(optimizeJointLocationsMenuItem,  draftingOnly);
         enabledStateManager.add(costReportButton,                draftingOrAnimation);
         enabledStateManager.add(loadTestReportButton,            draftingOrAnimation);
         enabledStateManager.add(increaseMemberSizeButton,        draftingOnly);
@@ -1294,11 +1303,14 @@ public final class BDView extends FrameView
         testMenu = new javax.swing.JMenu();
         drawingBoardMenuItem = new javax.swing.JRadioButtonMenuItem();
         loadTestMenuItem = new javax.swing.JRadioButtonMenuItem();
+        optimizeMemberSizesMenuItem = new javax.swing.JMenuItem();
+        optimizeJointLocationsMenuItem = new javax.swing.JMenuItem();
         testMenuSep01 = new javax.swing.JSeparator();
         toggleAnimationMenuItem = new javax.swing.JCheckBoxMenuItem();
         toggleLegacyGraphicsMenuItem = new javax.swing.JCheckBoxMenuItem();
         testMenuSep02 = new javax.swing.JPopupMenu.Separator();
         toggleAutoCorrectMenuItem = new javax.swing.JCheckBoxMenuItem();
+        toggleLiveLoadTestMenuItem = new javax.swing.JCheckBoxMenuItem();
         reportMenu = new javax.swing.JMenu();
         costReportMenuItem = new javax.swing.JMenuItem();
         loadTestReportMenuItem = new javax.swing.JMenuItem();
@@ -1670,6 +1682,14 @@ public final class BDView extends FrameView
         loadTestMenuItem.setName("loadTestMenuItem"); // NOI18N
         testMenu.add(loadTestMenuItem);
 
+        optimizeMemberSizesMenuItem.setAction(actionMap.get("optimizeMemberSizes")); // NOI18N
+        optimizeMemberSizesMenuItem.setName("optimizeMemberSizesMenuItem"); // NOI18N
+        testMenu.add(optimizeMemberSizesMenuItem);
+
+        optimizeJointLocationsMenuItem.setAction(actionMap.get("optimizeJointLocations")); // NOI18N
+        optimizeJointLocationsMenuItem.setName("optimizeJointLocationsMenuItem"); // NOI18N
+        testMenu.add(optimizeJointLocationsMenuItem);
+
         testMenuSep01.setName("testMenuSep01"); // NOI18N
         testMenu.add(testMenuSep01);
 
@@ -1691,6 +1711,10 @@ public final class BDView extends FrameView
         toggleAutoCorrectMenuItem.setName("toggleAutoCorrectMenuItem"); // NOI18N
         testMenu.add(toggleAutoCorrectMenuItem);
 
+        toggleLiveLoadTestMenuItem.setAction(actionMap.get("toggleLiveLoadTest")); // NOI18N
+        toggleLiveLoadTestMenuItem.setName("toggleLiveLoadTestMenuItem"); // NOI18N
+        testMenu.add(toggleLiveLoadTestMenuItem);
+
         menuBar.add(testMenu);
 
         reportMenu.setMnemonic('R');
@@ -3193,6 +3217,11 @@ private void keyCodeCancelButtonActionPerformed(java.awt.event.ActionEvent evt)
         if (bridge.getAnalysis().getStatus() == Analysis.UNSTABLE) {
             // Show the unstable truss tutorial if analysis failed entirely.
             setSelected(drawingBoardButton, true);
+            // Select the members of any mechanism the stability check can find so they're highlighted on the board.
+            StabilityCheck stabilityCheck = new StabilityCheck(bridge);
+            if (!stabilityCheck.isStable()) {
+                bridge.selectMembers(stabilityCheck.getLooseMembers());
+            }
             if (unstableModelDialog == null) {
                 JFrame mainFrame = BDApp.getApplication().getMainFrame();
                 unstableModelDialog = new UnstableModelDialog(mainFrame);
@@ -3224,6 +3253,132 @@ private void keyCodeCancelButtonActionPerformed(java.awt.event.ActionEvent evt)
         }
     }
 
+    @Action
+    public void optimizeMemberSizes() {
+        if (bridge.getMembers().isEmpty()) {
+            return;
+        }
+        final Object mark = bridge.getUndoManager().getMark();
+        final MemberSizer sizer = new MemberSizer(bridge);
+        final ProgressMonitor monitor = new ProgressMonitor(getFrame(),
+                getResourceMap().getString("optimizeMemberSizesProgress.text"), "", 
+                MemberSizer.NOT_STARTED, MemberSizer.DONE);
+        monitor.setMillisToDecideToPopup(250);
+        sizer.setProgressListener(new MemberSizer.ProgressListener() {
+            public void reportProgress(final MemberSizer sizer) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        if (monitor.isCanceled()) {
+                            sizer.cancel();
+                        }
+                        monitor.setProgress(sizer.getPhase());
+                        monitor.setNote(getResourceMap().getString("optimizeMemberSizesNote.text",
+                                sizer.getEvaluationCount(), sizer.getEvaluationsPerSecond(), sizer.getBestCost()));
+                    }
+                });
+            }
+        });
+        new SwingWorker<Boolean, Void>() {
+            @Override
+            protected Boolean doInBackground() {
+                return sizer.optimize();
+            }
+
+            @Override
+            protected void done() {
+                monitor.close();
+                boolean found = false;
+                try {
+                    found = get();
+                } catch (InterruptedException ex) {
+                } catch (ExecutionException ex) {
+                    Logger.getLogger(BDView.class.getName()).log(Level.SEVERE, "member sizing failed", ex.getCause());
+                }
+                if (sizer.isCancelled() || monitor.isCanceled()) {
+                    return;
+                }
+                if (!found) {
+                    showMessageDialog(getResourceMap().getString("optimizeMemberSizesFailed.text"));
+                }
+                else if (!bridge.getUndoManager().isAtMark(mark)) {
+                    showMessageDialog(getResourceMap().getString("optimizeMemberSizesStale.text"));
+                }
+                else if (sizer.getBestCost() < bridge.getTotalCost() && bridge.changeMemberStock(sizer.getBestStock())) {
+                    showMessageDialog(getResourceMap().getString("optimizeMemberSizesDone.text",
+                            sizer.getInitialCost(), sizer.getBestCost(), sizer.getEvaluationCount(), 
+                            sizer.getEvaluationsPerSecond()));
+                }
+                else {
+                    showMessageDialog(getResourceMap().getString("optimizeMemberSizesNoGain.text"));
+                }
+            }
+        }.execute();
+    }
+
+    @Action
+    public void optimizeJointLocations() {
+        if (bridge.getMembers().isEmpty()) {
+            return;
+        }
+        final Object mark = bridge.getUndoManager().getMark();
+        final JointOptimizer optimizer = new JointOptimizer(bridge);
+        final ProgressMonitor monitor = new ProgressMonitor(getFrame(),
+                getResourceMap().getString("optimizeJointLocationsProgress.text"), "", 0, 1);
+        monitor.setMillisToDecideToPopup(250);
+        optimizer.setProgressListener(new JointOptimizer.ProgressListener() {
+            public void reportProgress(final JointOptimizer optimizer) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        if (monitor.isCanceled()) {
+                            optimizer.cancel();
+                        }
+                        monitor.setProgress(optimizer.isDone() ? 1 : 0);
+                        monitor.setNote(getResourceMap().getString("optimizeJointLocationsNote.text",
+                                optimizer.getPassCount(), optimizer.getEvaluationCount(), 
+                                optimizer.getEvaluationsPerSecond(), optimizer.getBestCost()));
+                    }
+                });
+            }
+        });
+        new SwingWorker<Boolean, Void>() {
+            @Override
+            protected Boolean doInBackground() {
+                return optimizer.optimize();
+            }
+
+            @Override
+            protected void done() {
+                monitor.close();
+                boolean found = false;
+                try {
+                    found = get();
+                } catch (InterruptedException ex) {
+                } catch (ExecutionException ex) {
+                    Logger.getLogger(BDView.class.getName()).log(Level.SEVERE, "joint optimization failed", ex.getCause());
+                }
+                if (optimizer.isCancelled() || monitor.isCanceled()) {
+                    return;
+                }
+                if (!found) {
+                    showMessageDialog(getResourceMap().getString("optimizeJointLocationsFailed.text"));
+                }
+                else if (!bridge.getUndoManager().isAtMark(mark)) {
+                    showMessageDialog(getResourceMap().getString("optimizeJointLocationsStale.text"));
+                }
+                else if (optimizer.getBestCost() < bridge.getTotalCost()) {
+                    final JointOptimizer.Move [] moves = optimizer.getMoves();
+                    bridge.optimizeJoints(moves, optimizer.getBestStock());
+                    showMessageDialog(getResourceMap().getString("optimizeJointLocationsDone.text",
+                            moves.length, optimizer.getInitialCost(), optimizer.getBestCost(), 
+                            optimizer.getEvaluationCount(), optimizer.getEvaluationsPerSecond()));
+                }
+                else {
+                    showMessageDialog(getResourceMap().getString("optimizeJointLocationsNoGain.text"));
+                }
+            }
+        }.execute();
+    }
+
     @Action
     public void openMemberTable() {
         selectMemberList(true);
@@ -3579,6 +3734,11 @@ private void keyCodeCancelButtonActionPerformed(java.awt.event.ActionEvent evt)
         setLoadTestButtonEnabled();
     }
 
+    @Action
+    public void toggleLiveLoadTest() {
+        bridge.setLiveAnalysisEnabled(isSelected(toggleLiveLoadTestMenuItem));
+    }
+
     @Action
     public void printToDefaultPrinter() {
         print(false);
@@ -3723,6 +3883,8 @@ private void keyCodeCancelButtonActionPerformed(java.awt.event.ActionEvent evt)
     private javax.swing.JMenuItem newDesignMenuItem;
     private javax.swing.JPanel nullPanel;
     private javax.swing.JButton openButton;
+    private javax.swing.JMenuItem optimizeJointLocationsMenuItem;
+    private javax.swing.JMenuItem optimizeMemberSizesMenuItem;
     private javax.swing.JButton openMemberTableButton;
     private javax.swing.JMenuItem openMenuItem;
     private javax.swing.JMenuItem openSampleDesignMenuItem;
@@ -3785,6 +3947,7 @@ private void keyCodeCancelButtonActionPerformed(java.awt.event.ActionEvent evt)
     private javax.swing.JToggleButton toggleGuidesButton;
     private javax.swing.JCheckBoxMenuItem toggleGuidesMenuItem;
     private javax.swing.JCheckBoxMenuItem toggleLegacyGraphicsMenuItem;
+    private javax.swing.JCheckBoxMenuItem toggleLiveLoadTestMenuItem;
     private javax.swing.JToggleButton toggleMemberListButton;
     private javax.swing.JCheckBoxMenuItem toggleMemberListMenuItem;
     private javax.swing.JToggleButton toggleMemberNumbersButton;
@@ -0,0 +1,391 @@
+/*
+ * BatchAnalysis.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Headless load testing of many bridge files in one run, e.g. for grading a folder of submitted designs.
+ *
+ * Arguments are bridge files, directories, which are searched recursively for <code>.bdc</code> files,
+ * and glob patterns with <code>*</code> and <code>?</code> in the last path component, which the shell
+ * may or may not have expanded already.  Bridge archives, <code>.bda</code> files made by
+ * <code>BridgeArchive</code>, may be given or found in the same ways, and each bridge in an archive counts as
+ * a file named by the archive path and the bridge's name separated by <code>!</code>.  Files are analyzed
+ * on a pool of worker threads as they are found, with archive entries read straight from the archive's
+ * memory mapping.  One tab-delimited line per file is written to standard output as soon as its analysis
+ * is done:
+ * <pre>
+ *   file  status  cost  scenario-tag  worst-ratio  milliseconds
+ * </pre>
+ * Status is one of <code>PASSES</code>, <code>FAILS_LOAD_TEST</code>, <code>FAILS_SLENDERNESS</code>,
+ * <code>UNSTABLE</code>, or <code>ERROR</code>.  Fields that don't apply are <code>-</code>.  An error line
+ * has the reason appended as a seventh field. Lines appear in order of completion, not argument order.
+ * A summary goes to standard error.  With <code>-legacy</code>, bridges are analyzed with the original dense
+ * solver, which reproduces WPBD results bit for bit.  Nothing here needs Swing, application resources, or OpenGL.
+ *
+ * @author Eugene K. Ressler
+ */
+public class BatchAnalysis {
+
+    /**
+     * Status names indexed by analysis status.
+     */
+    static final String [] statusNames = {
+        "NO_STATUS", "FAILS_SLENDERNESS", "UNSTABLE", "FAILS_LOAD_TEST", "PASSES"
+    };
+    /**
+     * Largest number of files queued for analysis per worker before the directory scan waits.
+     */
+    private static final int queuedFilesPerWorker = 4;
+    /**
+     * Number of distinct designs whose results are kept for reuse.
+     */
+    private static final int cacheCapacity = 1024;
+
+    private final ExecutorService executor;
+    private final Semaphore queueSpace;
+    private final PrintStream out;
+    private final boolean legacySolver;
+    /**
+     * Per-thread analysis with its own workspace, reused for every file the thread analyzes.
+     */
+    private final ThreadLocal<Analysis> analysis = new ThreadLocal<Analysis>() {
+        @Override
+        protected Analysis initialValue() {
+            Analysis a = new Analysis();
+            a.setLegacySolver(legacySolver);
+            return a;
+        }
+    };
+    /**
+     * Results shared by all workers so duplicate submissions are analyzed only once.
+     */
+    private final AnalysisCache cache = new AnalysisCache(cacheCapacity);
+    /**
+     * Counts of files by outcome.
+     */
+    private int nFiles = 0;
+    private int nPassed = 0;
+    private int nFailed = 0;
+    private int nErrors = 0;
+
+    /**
+     * Construct a batch analysis with given number of worker threads.
+     *
+     * @param nThreads number of worker threads
+     * @param out stream for result lines
+     */
+    public BatchAnalysis(int nThreads, PrintStream out) {
+        this(nThreads, false, out);
+    }
+
+    /**
+     * Construct a batch analysis with given number of worker threads and choice of solver.
+     * See <code>Analysis.setLegacySolver</code>.
+     *
+     * @param nThreads number of worker threads
+     * @param legacySolver true to analyze with the legacy solver
+     * @param out stream for result lines
+     */
+    public BatchAnalysis(int nThreads, boolean legacySolver, PrintStream out) {
+        this.executor = Executors.newFixedThreadPool(nThreads);
+        this.queueSpace = new Semaphore(nThreads * queuedFilesPerWorker);
+        this.out = out;
+        this.legacySolver = legacySolver;
+    }
+
+    /**
+     * Queue every bridge file named by a path for analysis.  The path may be a file, a directory,
+     * or a glob pattern.
+     *
+     * @param path file, directory, or glob pattern
+     * @throws InterruptedException if interrupted while waiting for queue space
+     */
+    public void add(String path) throws InterruptedException {
+        File file = new File(path);
+        if (file.isDirectory()) {
+            addDirectory(file);
+        }
+        else if (file.exists() || !isGlob(file.getName())) {
+            // Nonexistent plain files are queued so they are reported as errors.
+            addFileOrArchive(file);
+        }
+        else {
+            File dir = file.getAbsoluteFile().getParentFile();
+            File [] files = dir == null ? null : dir.listFiles();
+            if (files == null) {
+                addFile(file);
+                return;
+            }
+            Arrays.sort(files);
+            Pattern pattern = globToPattern(file.getName());
+            for (int i = 0; i < files.length; i++) {
+                if (files[i].isFile() && pattern.matcher(files[i].getName()).matches()) {
+                    addFileOrArchive(files[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait until all queued files have been analyzed and shut down the worker threads.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void finish() throws InterruptedException {
+        executor.shutdown();
+        while (!executor.awaitTermination(1, TimeUnit.MINUTES)) { }
+    }
+
+    /**
+     * Return the number of files that could not be read or analyzed.
+     *
+     * @return error count
+     */
+    public synchronized int getErrorCount() {
+        return nErrors;
+    }
+
+    /**
+     * Return a one-line summary of the outcomes of all files analyzed so far.
+     *
+     * @return summary
+     */
+    public synchronized String getSummary() {
+        return String.format(Locale.US, "%d files: %d passed, %d failed, %d errors, %d duplicates", 
+                nFiles, nPassed, nFailed, nErrors, cache.getHitCount());
+    }
+
+    private void addDirectory(File dir) throws InterruptedException {
+        File [] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (int i = 0; i < files.length; i++) {
+            if (files[i].isDirectory()) {
+                addDirectory(files[i]);
+            }
+            else if (files[i].getName().toLowerCase(Locale.US).endsWith(".bdc")) {
+                addFile(files[i]);
+            }
+            else if (isArchive(files[i])) {
+                addArchive(files[i]);
+            }
+        }
+    }
+
+    private void addFileOrArchive(File file) throws InterruptedException {
+        if (isArchive(file)) {
+            addArchive(file);
+        }
+        else {
+            addFile(file);
+        }
+    }
+
+    /**
+     * Queue every bridge in an archive for analysis.  An archive that can't be opened is reported as one
+     * error line.
+     *
+     * @param file archive file
+     * @throws InterruptedException if interrupted while waiting for queue space
+     */
+    private void addArchive(File file) throws InterruptedException {
+        final BridgeArchive archive;
+        try {
+            archive = new BridgeArchive(file);
+        } catch (IOException ex) {
+            report(getErrorLine(file.getPath(), System.nanoTime(), ex), Analysis.NO_STATUS);
+            return;
+        }
+        for (final BridgeArchive.Entry entry : archive) {
+            queueSpace.acquire();
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        analyze(entry.getPath(), null, entry);
+                    } finally {
+                        queueSpace.release();
+                    }
+                }
+            });
+        }
+    }
+
+    private void addFile(final File file) throws InterruptedException {
+        queueSpace.acquire();
+        executor.execute(new Runnable() {
+            public void run() {
+                try {
+                    analyze(file.getPath(), file, null);
+                } finally {
+                    queueSpace.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * Analyze one file or archive entry and print its result line.  Any exception is reported as an error
+     * line so that one bad file can't stop the batch.
+     *
+     * @param path path to report
+     * @param file bridge file or null to read the entry
+     * @param entry archive entry to read if there is no file
+     */
+    private void analyze(String path, File file, BridgeArchive.Entry entry) {
+        final long startTime = System.nanoTime();
+        String line;
+        int status = Analysis.NO_STATUS;
+        try {
+            BridgeModel bridge = new BridgeModel();
+            if (file != null) {
+                bridge.read(file);
+            }
+            else {
+                entry.read(bridge);
+            }
+            Analysis a = analysis.get();
+            cache.analyze(a, bridge);
+            status = a.getStatus();
+            String worstRatio = "-";
+            if (status != Analysis.UNSTABLE) {
+                double worst = 0;
+                for (Member member : bridge.getMembers()) {
+                    worst = Math.max(worst, Math.max(member.getCompressionForceStrengthRatio(),
+                            member.getTensionForceStrengthRatio()));
+                }
+                worstRatio = String.format(Locale.US, "%.4f", worst);
+            }
+            line = String.format(Locale.US, "%s\t%s\t%.2f\t%s\t%s\t%.1f",
+                    path, statusNames[status], bridge.getTotalCost(),
+                    bridge.getDesignConditions().getTag(), worstRatio, elapsedMillis(startTime));
+        } catch (Exception ex) {
+            status = Analysis.NO_STATUS;
+            line = getErrorLine(path, startTime, ex);
+        }
+        report(line, status);
+    }
+
+    private static String getErrorLine(String path, long startTime, Exception ex) {
+        String reason = ex.getMessage() == null ? ex.getClass().getSimpleName() : ex.getMessage();
+        return String.format(Locale.US, "%s\tERROR\t-\t-\t-\t%.1f\t%s",
+                path, elapsedMillis(startTime), reason.replace('\t', ' ').replace('\n', ' '));
+    }
+
+    private synchronized void report(String line, int status) {
+        out.println(line);
+        out.flush();
+        ++nFiles;
+        if (status == Analysis.PASSES) {
+            ++nPassed;
+        }
+        else if (status == Analysis.NO_STATUS) {
+            ++nErrors;
+        }
+        else {
+            ++nFailed;
+        }
+    }
+
+    private static double elapsedMillis(long startTime) {
+        return (System.nanoTime() - startTime) * 1e-6;
+    }
+
+    private static boolean isArchive(File file) {
+        return file.getName().toLowerCase(Locale.US).endsWith(".bda");
+    }
+
+    private static boolean isGlob(String name) {
+        return name.indexOf('*') >= 0 || name.indexOf('?') >= 0;
+    }
+
+    private static Pattern globToPattern(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*') {
+                regex.append(".*");
+            }
+            else if (c == '?') {
+                regex.append('.');
+            }
+            else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * Run a batch analysis from the command line.
+     * <pre>
+     *   java bridgedesigner.BatchAnalysis [-legacy] [-j threads] path...
+     * </pre>
+     * Exits with status 1 if any file could not be analyzed and 2 for a usage error.
+     *
+     * @param args command line arguments
+     */
+    public static void main(String [] args) {
+        int nThreads = Runtime.getRuntime().availableProcessors();
+        boolean legacySolver = false;
+        int iArg = 0;
+        while (iArg < args.length && args[iArg].startsWith("-")) {
+            if (args[iArg].equals("-legacy")) {
+                legacySolver = true;
+                iArg++;
+            }
+            else if (args[iArg].equals("-j") && iArg + 1 < args.length) {
+                try {
+                    nThreads = Integer.parseInt(args[iArg + 1]);
+                } catch (NumberFormatException ex) {
+                    nThreads = 0;
+                }
+                iArg += 2;
+            }
+            else {
+                nThreads = 0;
+                break;
+            }
+        }
+        if (iArg >= args.length || nThreads < 1) {
+            System.err.println("usage: java BatchAnalysis [-legacy] [-j threads] file|directory|glob...");
+            System.exit(2);
+        }
+        final long startTime = System.nanoTime();
+        BatchAnalysis batch = new BatchAnalysis(nThreads, legacySolver, System.out);
+        try {
+            while (iArg < args.length) {
+                batch.add(args[iArg++]);
+            }
+            batch.finish();
+        } catch (InterruptedException ex) {
+            System.err.println("interrupted.");
+            System.exit(1);
+        }
+        System.err.println(String.format(Locale.US, "%s in %.1f s", batch.getSummary(), elapsedMillis(startTime) * 1e-3));
+        System.exit(batch.getErrorCount() > 0 ? 1 : 0);
+    }
+}
@@ -0,0 +1,703 @@
+/*
+ * BridgeArchive.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+/**
+ * Archive of many bridges in one file, read through a memory mapping, for batch work such as grading.
+ *
+ * An archive is a short header, the bridges one after another in the compact format of
+ * <code>CompactBridgeFormat</code>, an index, and a fixed trailer.  The index has a fixed size record for
+ * each bridge with its offset and length in the archive, a hash of its design, its scenario code, and its
+ * analysis status and total cost when packed, followed by the UTF-8 names of all bridges.  The trailer gives
+ * the index offset, the number of bridges, the index size, and the CRC-32 of the index.  Each bridge also
+ * has its own checksum.  Numbers are big-endian.
+ *
+ * Opening an archive maps the whole file and checks the index.  The file is closed right away, and the
+ * mapping lasts as long as the archive object.  Index fields are read from the mapping on demand, so
+ * opening takes time in proportion to the index size only, and listing or selecting bridges by scenario,
+ * status, or cost needs no decoding.  Reading a bridge copies its few hundred bytes from the mapping and
+ * decodes them.  Any number of threads may read from one archive at once.  Archives are limited to 2 GB,
+ * the most that can be mapped at once, which is millions of bridges.
+ *
+ * The design hash is the 64-bit FNV-1a hash of the bridge's analysis key, so bridges with identical
+ * geometry and stock have the same hash regardless of their names, ratios, or iteration numbers.
+ *
+ * @author Eugene K. Ressler
+ */
+public class BridgeArchive implements Iterable<BridgeArchive.Entry> {
+
+    /**
+     * First four bytes of an archive, "BDAr".
+     */
+    public static final int MAGIC = 0x42444172;
+    /**
+     * Last four bytes of an archive, "BDAx".
+     */
+    public static final int TRAILER_MAGIC = 0x42444178;
+    /**
+     * Version of the archive layout written.
+     */
+    public static final int FORMAT_VERSION = 1;
+    /*
+     * Sizes of the fixed parts.
+     */
+    private static final int HEADER_SIZE = 8;
+    private static final int TRAILER_SIZE = 24;
+    private static final int INDEX_RECORD_SIZE = 48;
+    /*
+     * Offsets of fields within index records.
+     */
+    private static final int OFFSET_OFFSET = 0;
+    private static final int LENGTH_OFFSET = 8;
+    private static final int STATUS_OFFSET = 12;
+    private static final int HASH_OFFSET = 16;
+    private static final int SCENARIO_CODE_OFFSET = 24;
+    private static final int TOTAL_COST_OFFSET = 32;
+    private static final int NAME_OFFSET = 40;
+    private static final int NAME_LENGTH_OFFSET = 44;
+    /**
+     * Buffers for entries being decoded, by thread.
+     */
+    private static final ThreadLocal<byte[]> threadEntryBuf = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[4096];
+        }
+    };
+
+    private final File file;
+    /**
+     * Mapping of the whole archive.  Its position and limit are never changed, so threads can share it.
+     */
+    private final MappedByteBuffer mapping;
+    private final int nEntries;
+    /**
+     * Offsets in the archive of the first index record and of the name table.
+     */
+    private final int indexOffset;
+    private final int namesOffset;
+
+    /**
+     * An entry of an archive, a bridge and its index fields.
+     */
+    public class Entry {
+
+        private final int index;
+
+        private Entry(int index) {
+            this.index = index;
+        }
+
+        /**
+         * Return the index of the entry in the archive.
+         *
+         * @return entry index
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Return the name of the entry, usually the path of the file it was packed from.
+         *
+         * @return entry name
+         */
+        public String getName() {
+            return BridgeArchive.this.getName(index);
+        }
+
+        /**
+         * Return the number of bytes of the encoded bridge.
+         *
+         * @return length in bytes
+         */
+        public int getLength() {
+            return BridgeArchive.this.getLength(index);
+        }
+
+        /**
+         * Return the hash of the bridge's design.
+         *
+         * @return design hash
+         */
+        public long getDesignHash() {
+            return BridgeArchive.this.getDesignHash(index);
+        }
+
+        /**
+         * Return the code of the bridge's design conditions.
+         *
+         * @return scenario code
+         */
+        public long getScenarioCode() {
+            return BridgeArchive.this.getScenarioCode(index);
+        }
+
+        /**
+         * Return the analysis status of the bridge when packed.
+         *
+         * @return one of the <code>Analysis</code> status codes
+         */
+        public int getStatus() {
+            return BridgeArchive.this.getStatus(index);
+        }
+
+        /**
+         * Return the total cost of the bridge when packed.
+         *
+         * @return total cost in dollars
+         */
+        public double getTotalCost() {
+            return BridgeArchive.this.getTotalCost(index);
+        }
+
+        /**
+         * Read the bridge of this entry into the given bridge.
+         *
+         * @param bridge bridge to read into
+         * @throws IOException if the entry isn't a valid bridge
+         */
+        public void read(BridgeModel bridge) throws IOException {
+            BridgeArchive.this.read(index, bridge);
+        }
+
+        /**
+         * Return the archive file name and the entry name separated by <code>!</code>, for messages.
+         *
+         * @return path of the entry
+         */
+        public String getPath() {
+            return file.getPath() + "!" + getName();
+        }
+    }
+
+    /**
+     * Open an archive for reading.
+     *
+     * @param file archive file
+     * @throws IOException if the file can't be mapped or isn't a valid archive
+     */
+    public BridgeArchive(File file) throws IOException {
+        this.file = file;
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("archive is too large to map");
+            }
+            if (size < HEADER_SIZE + TRAILER_SIZE) {
+                throw new IOException("not a bridge archive");
+            }
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } finally {
+            raf.close();
+        }
+        final int size = mapping.capacity();
+        if (mapping.getInt(0) != MAGIC || mapping.getInt(size - 4) != TRAILER_MAGIC) {
+            throw new IOException("not a bridge archive");
+        }
+        final int version = mapping.getShort(4);
+        if (version < 1 || version > FORMAT_VERSION) {
+            throw new IOException("bridge archive version " + version + " is not supported");
+        }
+        final int trailer = size - TRAILER_SIZE;
+        final long indexStart = mapping.getLong(trailer);
+        nEntries = mapping.getInt(trailer + 8);
+        final long indexSize = mapping.getInt(trailer + 12) & 0xffffffffL;
+        if (indexStart < HEADER_SIZE || nEntries < 0 || indexStart + indexSize != trailer ||
+                (long)nEntries * INDEX_RECORD_SIZE > indexSize) {
+            throw new IOException("bad bridge archive index");
+        }
+        indexOffset = (int)indexStart;
+        namesOffset = indexOffset + nEntries * INDEX_RECORD_SIZE;
+        // Check the index as a whole, then that each record lies in its place.
+        final CRC32 crc = new CRC32();
+        final byte[] chunk = new byte[8192];
+        final ByteBuffer index = mapping.duplicate();
+        index.position(indexOffset);
+        index.limit(trailer);
+        while (index.hasRemaining()) {
+            final int n = Math.min(chunk.length, index.remaining());
+            index.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+        }
+        if ((int)crc.getValue() != mapping.getInt(trailer + 16)) {
+            throw new IOException("bridge archive index checksum is wrong");
+        }
+        for (int i = 0; i < nEntries; i++) {
+            final int record = indexOffset + i * INDEX_RECORD_SIZE;
+            final long offset = mapping.getLong(record + OFFSET_OFFSET);
+            final int length = mapping.getInt(record + LENGTH_OFFSET);
+            final long name = mapping.getInt(record + NAME_OFFSET) & 0xffffffffL;
+            final long nameLength = mapping.getInt(record + NAME_LENGTH_OFFSET) & 0xffffffffL;
+            final int status = mapping.get(record + STATUS_OFFSET);
+            if (offset < HEADER_SIZE || length < 0 || offset + length > indexOffset ||
+                    status < Analysis.NO_STATUS || status > Analysis.PASSES ||
+                    namesOffset + name + nameLength > trailer) {
+                throw new IOException("bad bridge archive index record " + i);
+            }
+        }
+    }
+
+    /**
+     * Return the archive file.
+     *
+     * @return archive file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Return the number of bridges in the archive.
+     *
+     * @return number of entries
+     */
+    public int size() {
+        return nEntries;
+    }
+
+    /**
+     * Return an entry of the archive.
+     *
+     * @param index index of the entry
+     * @return entry
+     */
+    public Entry getEntry(int index) {
+        checkIndex(index);
+        return new Entry(index);
+    }
+
+    /**
+     * Return an iterator over the entries of the archive in order.  Entries are light handles, so iterating
+     * is cheap, and entries may be read on other threads, as <code>BatchAnalysis</code> does.
+     *
+     * @return entry iterator
+     */
+    public Iterator<Entry> iterator() {
+        return new Iterator<Entry>() {
+            private int next = 0;
+
+            public boolean hasNext() {
+                return next < nEntries;
+            }
+
+            public Entry next() {
+                if (next >= nEntries) {
+                    throw new NoSuchElementException();
+                }
+                return new Entry(next++);
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= nEntries) {
+            throw new IndexOutOfBoundsException("bridge archive entry " + index + " of " + nEntries);
+        }
+    }
+
+    private int getRecord(int index) {
+        checkIndex(index);
+        return indexOffset + index * INDEX_RECORD_SIZE;
+    }
+
+    /**
+     * Return the name of an entry.
+     *
+     * @param index index of the entry
+     * @return entry name
+     */
+    public String getName(int index) {
+        final int record = getRecord(index);
+        final byte[] bytes = new byte[mapping.getInt(record + NAME_LENGTH_OFFSET)];
+        final ByteBuffer names = mapping.duplicate();
+        names.position(namesOffset + mapping.getInt(record + NAME_OFFSET));
+        names.get(bytes);
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Return the offset in the archive of an entry's encoded bridge.
+     *
+     * @param index index of the entry
+     * @return offset in bytes
+     */
+    int getOffset(int index) {
+        return (int)mapping.getLong(getRecord(index) + OFFSET_OFFSET);
+    }
+
+    /**
+     * Return the number of bytes of an entry's encoded bridge.
+     *
+     * @param index index of the entry
+     * @return length in bytes
+     */
+    public int getLength(int index) {
+        return mapping.getInt(getRecord(index) + LENGTH_OFFSET);
+    }
+
+    /**
+     * Return the hash of an entry's design.
+     *
+     * @param index index of the entry
+     * @return design hash
+     */
+    public long getDesignHash(int index) {
+        return mapping.getLong(getRecord(index) + HASH_OFFSET);
+    }
+
+    /**
+     * Return the scenario code of an entry.
+     *
+     * @param index index of the entry
+     * @return scenario code
+     */
+    public long getScenarioCode(int index) {
+        return mapping.getLong(getRecord(index) + SCENARIO_CODE_OFFSET);
+    }
+
+    /**
+     * Return the analysis status of an entry when packed.
+     *
+     * @param index index of the entry
+     * @return one of the <code>Analysis</code> status codes
+     */
+    public int getStatus(int index) {
+        return mapping.get(getRecord(index) + STATUS_OFFSET);
+    }
+
+    /**
+     * Return the total cost of an entry when packed.
+     *
+     * @param index index of the entry
+     * @return total cost in dollars
+     */
+    public double getTotalCost(int index) {
+        return mapping.getDouble(getRecord(index) + TOTAL_COST_OFFSET);
+    }
+
+    /**
+     * Read the bridge of an entry into the given bridge.
+     *
+     * @param index index of the entry
+     * @param bridge bridge to read into
+     * @throws IOException if the entry isn't a valid bridge
+     */
+    public void read(int index, BridgeModel bridge) throws IOException {
+        final int record = getRecord(index);
+        final int length = mapping.getInt(record + LENGTH_OFFSET);
+        byte[] buf = threadEntryBuf.get();
+        if (buf.length < length) {
+            buf = new byte[Math.max(length, 2 * buf.length)];
+            threadEntryBuf.set(buf);
+        }
+        final ByteBuffer entry = mapping.duplicate();
+        entry.position((int)mapping.getLong(record + OFFSET_OFFSET));
+        entry.get(buf, 0, length);
+        CompactBridgeFormat.parse(buf, 0, length, bridge);
+    }
+
+    /**
+     * Return the 64-bit FNV-1a hash of a bridge's analysis key.
+     *
+     * @param bridge bridge
+     * @return design hash
+     */
+    public static long getDesignHash(BridgeModel bridge) {
+        final byte[] key = bridge.getAnalysisKey();
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length; i++) {
+            hash ^= key[i] & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Writer of a new archive.  Bridges are written as they are added, and the index is kept in memory until
+     * the archive is closed.  An archive isn't valid until it is closed.
+     */
+    public static class Writer {
+
+        private final OutputStream os;
+        private long ptr;
+        private int nEntries;
+        private final ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        private final DataOutputStream index = new DataOutputStream(indexBytes);
+        private final ByteArrayOutputStream names = new ByteArrayOutputStream();
+
+        /**
+         * Create an archive file, replacing any existing one.
+         *
+         * @param file archive file
+         * @throws IOException if the file can't be created
+         */
+        public Writer(File file) throws IOException {
+            os = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+            final DataOutputStream header = new DataOutputStream(os);
+            header.writeInt(MAGIC);
+            header.writeShort(FORMAT_VERSION);
+            header.writeShort(0);
+            ptr = HEADER_SIZE;
+        }
+
+        /**
+         * Add a bridge to the archive.  The status recorded is the bridge's <code>getRecordedStatus</code>.
+         *
+         * @param name entry name
+         * @param bridge bridge to add
+         * @throws IOException if the bridge can't be written
+         */
+        public void add(String name, BridgeModel bridge) throws IOException {
+            final CompactBridgeFormat.Encoder e = CompactBridgeFormat.encode(bridge);
+            final CompactBridgeFormat.Header header = new CompactBridgeFormat.Header(e.buf, 0, e.ptr);
+            final byte[] nameBytes = name.getBytes("UTF-8");
+            if (ptr + e.ptr + indexBytes.size() + INDEX_RECORD_SIZE + names.size() + nameBytes.length +
+                    TRAILER_SIZE > Integer.MAX_VALUE) {
+                throw new IOException("bridge archive is full");
+            }
+            os.write(e.buf, 0, e.ptr);
+            index.writeLong(ptr);
+            index.writeInt(e.ptr);
+            index.writeByte(header.getStatus());
+            index.writeByte(0);
+            index.writeShort(0);
+            index.writeLong(getDesignHash(bridge));
+            index.writeLong(header.getScenarioCode());
+            index.writeDouble(header.getTotalCost());
+            index.writeInt(names.size());
+            index.writeInt(nameBytes.length);
+            names.write(nameBytes);
+            ptr += e.ptr;
+            ++nEntries;
+        }
+
+        /**
+         * Return the number of bridges added so far.
+         *
+         * @return number of entries
+         */
+        public int size() {
+            return nEntries;
+        }
+
+        /**
+         * Write the index and trailer and close the archive.
+         *
+         * @throws IOException if the archive can't be written
+         */
+        public void close() throws IOException {
+            try {
+                final CRC32 crc = new CRC32();
+                final byte[] records = indexBytes.toByteArray();
+                final byte[] nameTable = names.toByteArray();
+                crc.update(records);
+                crc.update(nameTable);
+                os.write(records);
+                os.write(nameTable);
+                final DataOutputStream trailer = new DataOutputStream(os);
+                trailer.writeLong(ptr);
+                trailer.writeInt(nEntries);
+                trailer.writeInt(records.length + nameTable.length);
+                trailer.writeInt((int)crc.getValue());
+                trailer.writeInt(TRAILER_MAGIC);
+            } finally {
+                os.close();
+            }
+        }
+    }
+
+    /**
+     * Add the bridge files under a path to an archive with names relative to the path's parent.  Files and
+     * directories that can't be read are reported on standard error and skipped.
+     *
+     * @param writer writer of the archive
+     * @param f bridge file or directory
+     * @param name entry name of the file or prefix of the names of files in the directory
+     * @param analysis analysis for recording the status of each bridge or null to record the status it has
+     * @return number of files and directories that couldn't be read
+     * @throws IOException if the archive can't be written
+     */
+    static int pack(Writer writer, File f, String name, Analysis analysis) throws IOException {
+        if (f.isDirectory()) {
+            final File [] files = f.listFiles();
+            if (files == null) {
+                System.err.println(f.getPath() + ": directory can't be read");
+                return 1;
+            }
+            Arrays.sort(files);
+            int nErrors = 0;
+            for (int i = 0; i < files.length; i++) {
+                if (files[i].isDirectory() || files[i].getName().toLowerCase(Locale.US).endsWith(".bdc")) {
+                    nErrors += pack(writer, files[i], name + "/" + files[i].getName(), analysis);
+                }
+            }
+            return nErrors;
+        }
+        final BridgeModel bridge = new BridgeModel();
+        try {
+            bridge.read(f);
+        } catch (IOException ex) {
+            System.err.println(f.getPath() + ": " + ex.getMessage());
+            return 1;
+        }
+        if (analysis != null) {
+            analysis.initialize(bridge);
+            bridge.recordedStatus = analysis.getStatus();
+        }
+        writer.add(name, bridge);
+        return 0;
+    }
+
+    /**
+     * Write each entry of an archive under a directory as a legacy bridge file named by the entry name.
+     * Entries that can't be read or whose names would fall outside the directory are reported on standard
+     * error and skipped.
+     *
+     * @param archive archive
+     * @param dir directory
+     * @return number of entries that couldn't be unpacked
+     * @throws IOException if the directory's canonical path can't be found
+     */
+    static int unpack(BridgeArchive archive, File dir) throws IOException {
+        dir = dir.getCanonicalFile();
+        final BridgeModel bridge = new BridgeModel();
+        int nErrors = 0;
+        for (Entry entry : archive) {
+            final File out = new File(dir, entry.getName()).getCanonicalFile();
+            if (!out.getPath().startsWith(dir.getPath() + File.separator)) {
+                System.err.println(entry.getPath() + ": name is outside the directory");
+                ++nErrors;
+                continue;
+            }
+            try {
+                entry.read(bridge);
+                out.getParentFile().mkdirs();
+                bridge.write(out);
+            } catch (IOException ex) {
+                System.err.println(entry.getPath() + ": " + ex.getMessage());
+                ++nErrors;
+            }
+        }
+        return nErrors;
+    }
+
+    private static void usage() {
+        System.err.println("usage: java BridgeArchive pack [-a] archive.bda file|directory...");
+        System.err.println("       java BridgeArchive unpack archive.bda directory");
+        System.err.println("       java BridgeArchive list archive.bda");
+        System.exit(2);
+    }
+
+    /**
+     * Pack, unpack, and list archives from the command line.
+     * <pre>
+     *   java bridgedesigner.BridgeArchive pack [-a] archive.bda file|directory...
+     *   java bridgedesigner.BridgeArchive unpack archive.bda directory
+     *   java bridgedesigner.BridgeArchive list archive.bda
+     * </pre>
+     * Pack creates an archive of the given bridge files and the <code>.bdc</code> files found recursively in
+     * the given directories, named by their paths from the argument's last component.  With <code>-a</code>,
+     * each bridge is analyzed so the archive records its status and fresh force/strength ratios.  Without
+     * it, unpacking gives back the original legacy files byte for byte.  Files that can't be read are reported
+     * and left out, and the rest are packed.  Unpack writes each entry under the
+     * directory as a legacy bridge file, skipping names that would fall outside it.  List prints one
+     * tab-delimited line per entry:
+     * <pre>
+     *   name  status  cost  scenario-tag  bytes  design-hash
+     * </pre>
+     * Exits with status 1 if any file can't be packed or entry can't be unpacked and 2 for a usage error or
+     * an archive that can't be read or written.
+     *
+     * @param args command line arguments
+     */
+    public static void main(String [] args) {
+        if (args.length < 2) {
+            usage();
+        }
+        final String command = args[0];
+        int nErrors = 0;
+        try {
+            if (command.equals("pack")) {
+                int iArg = 1;
+                Analysis analysis = null;
+                if (args[iArg].equals("-a")) {
+                    analysis = new Analysis();
+                    ++iArg;
+                }
+                if (iArg + 2 > args.length) {
+                    usage();
+                }
+                final Writer writer = new Writer(new File(args[iArg++]));
+                try {
+                    for (; iArg < args.length; iArg++) {
+                        final File f = new File(args[iArg]);
+                        nErrors += pack(writer, f, f.getName(), analysis);
+                    }
+                } finally {
+                    writer.close();
+                }
+                System.err.println(String.format(Locale.US, "%d bridges packed, %d errors", writer.size(), nErrors));
+            }
+            else if (command.equals("unpack") && args.length == 3) {
+                final BridgeArchive archive = new BridgeArchive(new File(args[1]));
+                nErrors = unpack(archive, new File(args[2]));
+                System.err.println(String.format(Locale.US, "%d bridges unpacked", archive.size() - nErrors));
+            }
+            else if (command.equals("list") && args.length == 2) {
+                final BridgeArchive archive = new BridgeArchive(new File(args[1]));
+                for (Entry entry : archive) {
+                    final DesignConditions conditions = DesignConditions.getDesignConditions(entry.getScenarioCode());
+                    System.out.println(String.format(Locale.US, "%s\t%s\t%.2f\t%s\t%d\t%016x",
+                            entry.getName(), BatchAnalysis.statusNames[entry.getStatus()], entry.getTotalCost(),
+                            conditions == null ? "-" : conditions.getTag(), entry.getLength(), entry.getDesignHash()));
+                }
+            }
+            else {
+                usage();
+            }
+        } catch (IOException ex) {
+            System.err.println(ex.getMessage());
+            System.exit(2);
+        }
+        System.exit(nErrors > 0 ? 1 : 0);
+    }
+}
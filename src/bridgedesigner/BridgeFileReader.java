@@ -0,0 +1,143 @@
+/*
+ * BridgeFileReader.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Reader of bridge files that reuses its buffer and decryption state from file to file.
+ *
+ * A file is read with plain stream reads into a byte array.  When a file is larger than any before, the array
+ * is enlarged once to the file's length before reading, so no bytes are copied.  A channel read would be no
+ * better, because reading a channel into a heap buffer goes through a temporary direct buffer and costs an
+ * extra copy.  The bytes are decrypted in place, and the bridge is parsed straight from the array.  The
+ * decryption state after keying is kept and copied for each file, so the key schedule is run only once.
+ * Beyond the bridge model's own objects, the only allocations per file are those of opening the file.  Files
+ * in the compact format aren't scrambled and are decoded straight from the array.
+ *
+ * A reader must be used by only one thread at a time.  Each thread has a reader of its own from
+ * <code>getThreadReader</code>, which is how <code>BridgeModel.read</code> reads files, so parallel readers
+ * such as batch analysis threads don't contend.
+ *
+ * @author Eugene K. Ressler
+ */
+public class BridgeFileReader {
+
+    /**
+     * Initial buffer size, enough for most bridges.
+     */
+    private static final int initialCapacity = 8192;
+    /**
+     * Largest file accepted.  Much larger than any bridge the design conditions allow.
+     */
+    private static final int maxFileSize = 1 << 24;
+    /**
+     * Readers by thread.
+     */
+    private static final ThreadLocal<BridgeFileReader> threadReader = new ThreadLocal<BridgeFileReader>() {
+        @Override
+        protected BridgeFileReader initialValue() {
+            return new BridgeFileReader();
+        }
+    };
+    /**
+     * Buffer for file contents.
+     */
+    private byte [] buffer = new byte [initialCapacity];
+    /**
+     * Decryption state just after keying.
+     */
+    private final RC4 keyedRC4 = new RC4();
+    /**
+     * Decryption state used for each file.
+     */
+    private final RC4 rc4 = new RC4();
+
+    /**
+     * Construct a reader.
+     */
+    public BridgeFileReader() {
+        keyedRC4.setKey(RC4Key.getScrambleKey());
+    }
+
+    /**
+     * Return the reader of the calling thread.
+     *
+     * @return reader of this thread
+     */
+    public static BridgeFileReader getThreadReader() {
+        return threadReader.get();
+    }
+
+    /**
+     * Read the bridge in the given file into the given bridge.  Files in the compact format are recognized by
+     * their magic number and decoded without decryption.  Others are decrypted and parsed as legacy text.
+     *
+     * @param f bridge file to read
+     * @param bridge bridge to read into
+     * @throws IOException if the file can't be read or isn't a valid bridge
+     */
+    public void read(File f, BridgeModel bridge) throws IOException {
+        final int length = load(f);
+        if (CompactBridgeFormat.isCompact(buffer, 0, length)) {
+            CompactBridgeFormat.parse(buffer, 0, length, bridge);
+            return;
+        }
+        rc4.setState(keyedRC4);
+        rc4.endecrypt(buffer, 0, length);
+        bridge.parseBytes(buffer, length);
+    }
+
+    /**
+     * Read the contents of a file into the buffer, enlarging it first if the file is larger than the buffer.
+     * The buffer has room for a byte more than the file, so the end of the file is seen without growing it.
+     * Growing while reading is only for a file that grows after its length is taken.
+     *
+     * @param f file to read
+     * @return number of bytes read
+     * @throws IOException if the file can't be read or is too large
+     */
+    private int load(File f) throws IOException {
+        final long size = f.length();
+        if (size > maxFileSize) {
+            throw new IOException("file is too large to be a bridge");
+        }
+        if (size >= buffer.length) {
+            buffer = new byte [(int)size + 1];
+        }
+        final FileInputStream is = new FileInputStream(f);
+        try {
+            int length = 0;
+            while (true) {
+                if (length == buffer.length) {
+                    if (length >= maxFileSize) {
+                        throw new IOException("file is too large to be a bridge");
+                    }
+                    byte [] newBuffer = new byte [2 * length];
+                    System.arraycopy(buffer, 0, newBuffer, 0, length);
+                    buffer = newBuffer;
+                }
+                final int nRead = is.read(buffer, length, buffer.length - length);
+                if (nRead < 0) {
+                    return length;
+                }
+                length += nRead;
+            }
+        } finally {
+            is.close();
+        }
+    }
+}
@@ -15,12 +15,14 @@
 package bridgedesigner;
 
 import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.PrintWriter;
-import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
@@ -88,6 +90,14 @@ public class BridgeModel {
      * Byte length of a the version year number field in a text bridge representation.
      */
     protected static final int YEAR_LEN = 4;
+    /**
+     * File format of scrambled fixed-width text, the default and the one for interchange.
+     */
+    public static final int LEGACY_FORMAT = 0;
+    /**
+     * File format of compact binary for archives.  See <code>CompactBridgeFormat</code>.
+     */
+    public static final int COMPACT_FORMAT = 1;
     /**
      * Design conditions for this bridge.
      */
@@ -108,6 +118,10 @@ public class BridgeModel {
      * Number of current iteration.
      */
     protected int iterationNumber = 1;
+    /**
+     * Analysis status read with this bridge from a compact file, else <code>Analysis.NO_STATUS</code>.
+     */
+    protected int recordedStatus = Analysis.NO_STATUS;
     /**
      * Vector of joints in this bridge.
      */
@@ -148,6 +162,24 @@ public class BridgeModel {
      * Current position in the read buffer used by the parser.
      */
     private int readPtr;
+    /**
+     * End of the bridge in the read buffer used by the parser, which may be followed by unused bytes.
+     */
+    private int readEnd;
+    /**
+     * Characters of the string field being parsed, reused from field to field.
+     */
+    private char[] scanChars = new char[32];
+    /**
+     * Fine drafting grid shared by all bridges for converting joint locations.  Never changed.
+     */
+    private static final DraftingGrid fineGrid = new DraftingGrid(DraftingGrid.FINE_GRID);
+    /**
+     * Exact powers of ten for parsing decimal numbers.
+     */
+    private static final double [] powersOfTen = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15,
+    };
     /**
      * Shared read-only summary of costs of this bridge, initialized by <code>getCosts</code>.
      */
@@ -691,6 +723,16 @@ public class BridgeModel {
         return iterationNumber;
     }
 
+    /**
+     * Return the analysis status to record with this bridge in compact files.  A plain bridge has no analysis
+     * of its own, so this is the status read with it, if any.
+     *
+     * @return one of the <code>Analysis</code> status codes
+     */
+    public int getRecordedStatus() {
+        return recordedStatus;
+    }
+
     /**
      * Return the vector of joints for this bridge.
      * 
@@ -833,6 +875,80 @@ public class BridgeModel {
         }
     }
 
+    /**
+     * A helper routine to find any joints lying on the member from joint a to b and
+     * return them in order of distance from a.
+     * 
+     * @param rtn vector to hold results
+     * @param a the first joint of the potentially transsected member
+     * @param b the second joint of the potentially transsected member
+     */
+    public void getTranssectedJoints(ArrayList<Joint> rtn, Joint a, Joint b) {
+        rtn.clear();
+        Iterator<Joint> j = joints.iterator();
+        while (j.hasNext()) {
+            Joint joint = j.next();
+            if (joint.getPointWorld().onSegment(a.getPointWorld(), b.getPointWorld())) {
+                double distSq = a.getPointWorld().distanceSq(joint.getPointWorld());
+                boolean didInsert = false;
+                for (int i = 0; i < rtn.size(); i++) {
+                    if (a.getPointWorld().distanceSq(rtn.get(i).getPointWorld()) > distSq) {
+                        rtn.add(i, joint);
+                        didInsert = true;
+                        break;
+                    }
+                }
+                if (!didInsert) {
+                    rtn.add(joint);
+                }
+            }
+        }
+    }
+
+    /**
+     * Initialize this bridge model with given design conditions and the joints and members of a sketch, all
+     * members having the same stock.  Sketch joints at prescribed joint locations become the prescribed joints.
+     * Sketch members are split at joints that lie on them, and those that would duplicate others or have no 
+     * length are skipped.
+     * 
+     * @param conditions design conditions for the bridge
+     * @param sketch sketch whose joints and members are to be copied, normally for the same conditions
+     * @param material material of all members
+     * @param shape shape of all members
+     */
+    public void initialize(DesignConditions conditions, BridgeSketchModel sketch, Material material, Shape shape) {
+        initialize(conditions, null, null);
+        ArrayList<Joint> transsected = new ArrayList<Joint>();
+        for (int i = 0; i < sketch.getJointLocationCount(); i++) {
+            Affine.Point pt = sketch.getJointLocation(i);
+            if (findJointAt(pt) == null) {
+                joints.add(new Joint(joints.size(), pt));
+            }
+        }
+        for (int i = 0; i < sketch.getSketchMemberCount(); i++) {
+            BridgeSketchModel.SketchMember sketchMember = sketch.getSketchMember(i);
+            Joint a = findJointAt(sketchMember.jointA);
+            Joint b = findJointAt(sketchMember.jointB);
+            if (a == null || b == null || a == b) {
+                continue;
+            }
+            // Split at joints on the member as the drafting board does.
+            getTranssectedJoints(transsected, a, b);
+            transsected.add(b);
+            for (Joint next : transsected) {
+                boolean duplicate = false;
+                Iterator<Member> me = members.iterator();
+                while (me.hasNext() && !duplicate) {
+                    duplicate = me.next().hasJoints(a, next);
+                }
+                if (!duplicate) {
+                    members.add(new Member(members.size(), a, next, material, shape));
+                }
+                a = next;
+            }
+        }
+    }
+
     /**
      * Return true iff all elements of the bridge pass the slenderness test.
      * 
@@ -849,6 +965,15 @@ public class BridgeModel {
         return true;
     }
     
+    /**
+     * Return true iff necessary conditions for the bridge to be analyzed have been met.
+     * 
+     * @return true if a bridge analysis might be successful
+     */
+    public boolean isAnalyzable() {
+        return members.size() >=  2 * joints.size() - designConditions.getNJointRestraints();
+    }
+    
     /**
      * Return the initialization status of the bridge model.
      *
@@ -859,35 +984,65 @@ public class BridgeModel {
     }
 
     /**
-     * Read the encrypted bridge in the given file into this one.
+     * Read the bridge in the given file into this one.  The file may be in either the encrypted legacy format
+     * or the compact format.
      * 
      * @param f bridge file to read
      * @throws java.io.IOException something went wrong with the read operation
      */
     public void read(File f) throws IOException {
-        byte [] bytes = Utility.getBytesFromFile(f);
-        RC4 rc4 = new RC4();
-        rc4.setKey(RC4Key.getScrambleKey());
-        rc4.endecrypt(bytes);
-        // System.out.println(new String(bytes));
-        parseBytes(bytes);
+        BridgeFileReader.getThreadReader().read(f, this);
+    }
+
+    /**
+     * Read a bridge from an archive into this one, decoding it from the archive's memory mapping.
+     * 
+     * @param archive archive to read from
+     * @param index index of the entry to read
+     * @throws java.io.IOException the entry is not a valid bridge
+     */
+    public void read(BridgeArchive archive, int index) throws IOException {
+        archive.read(index, this);
     }
 
     /**
-     * Encrypt and write this bridge to the given file.
+     * Encrypt and write this bridge to the given file in the legacy format.
      * 
      * @param f bridge file to write
      * @throws java.io.IOException something went wrong with the write operation
      */
     public void write(File f) throws IOException {
-        // Build up the result as a string.  Get bytes. Scramble.  Write to file.
-        byte[] rtn = toBytes();
+        write(f, LEGACY_FORMAT);
+    }
+
+    /**
+     * Write this bridge to the given file in the given format.  Either format can be read back with
+     * <code>read</code>, which tells them apart.
+     * 
+     * @param f bridge file to write
+     * @param format <code>LEGACY_FORMAT</code> or <code>COMPACT_FORMAT</code>
+     * @throws java.io.IOException something went wrong with the write operation
+     */
+    public void write(File f, int format) throws IOException {
+        if (format == COMPACT_FORMAT) {
+            CompactBridgeFormat.write(this, f);
+            return;
+        }
+        // Format into this thread's buffer, scramble in place, and write the buffer to the file.
+        final AsciiWriter writer = writeBytes();
         RC4 rc4 = new RC4();
         rc4.setKey(RC4Key.getScrambleKey());
-        rc4.endecrypt(rtn);
-        OutputStream os = new FileOutputStream(f);
-        os.write(rtn);
-        os.close();
+        rc4.endecrypt(writer.buf, 0, writer.ptr);
+        FileOutputStream os = new FileOutputStream(f);
+        try {
+            final FileChannel channel = os.getChannel();
+            final ByteBuffer buffer = ByteBuffer.wrap(writer.buf, 0, writer.ptr);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            os.close();
+        }
     }
 
     /**
@@ -897,23 +1052,57 @@ public class BridgeModel {
      * @throws java.io.IOException something went wrong with parsing
      */
     protected void parseBytes(byte[] readBuf) throws IOException {
+        parseBytes(readBuf, readBuf.length);
+    }
+
+    /**
+     * Parse the leading bytes of the given clear text byte array as a bridge.  Bytes after these are ignored.
+     * 
+     * Parsing allocates nothing but the bridge's own objects.  Each record of fixed width fields is checked
+     * against the end of the bytes once, and descriptions of fields for error messages are formatted only 
+     * when there is an error.  Numbers in delimited fields are converted straight from the bytes, with the
+     * same results as the <code>parseXXX</code> methods of <code>Integer</code> and <code>Double</code>.
+     * 
+     * @param readBuf bytes containing ASCII representation of bridge
+     * @param readEnd number of bytes to parse
+     * @throws java.io.IOException something went wrong with parsing
+     */
+    protected void parseBytes(byte[] readBuf, int readEnd) throws IOException {
         this.readBuf = readBuf;
+        this.readEnd = readEnd;
         readPtr = 0;
-        DraftingGrid grid = new DraftingGrid(DraftingGrid.FINE_GRID);
+        recordedStatus = Analysis.NO_STATUS;
+        try {
+            parseRecords();
+        } finally {
+            // Don't keep the caller's buffer, which a reader shares among all the bridges it reads.
+            this.readBuf = null;
+        }
+    }
+
+    /**
+     * Parse the records of the bytes set up by <code>parseBytes</code>.
+     * 
+     * @throws java.io.IOException something went wrong with parsing
+     */
+    private void parseRecords() throws IOException {
+        final DraftingGrid grid = fineGrid;
         clearStructure();
-        if (scanUnsigned(YEAR_LEN, "bridge designer version") != version) {
+        checkRecord(YEAR_LEN + SCENARIO_CODE_LEN + N_JOINTS_LEN + N_MEMBERS_LEN, "header", 0);
+        if (scanUnsigned(YEAR_LEN, "bridge designer version", 0) != version) {
             throw new IOException("bridge design file version is not " + version);
         }
-        long scenarioCode = scanUnsignedLong(SCENARIO_CODE_LEN, "scenario code");
+        long scenarioCode = scanUnsignedLong(SCENARIO_CODE_LEN, "scenario code", 0);
         designConditions = DesignConditions.getDesignConditions(scenarioCode);
         if (designConditions == null) {
             throw new IOException("invalid scenario " + scenarioCode);            
         }
-        int n_joints = scanUnsigned(N_JOINTS_LEN, "number of joints");
-        int n_members = scanUnsigned(N_MEMBERS_LEN, "number of members");
+        int n_joints = scanUnsigned(N_JOINTS_LEN, "number of joints", 0);
+        int n_members = scanUnsigned(N_MEMBERS_LEN, "number of members", 0);
         for (int i = 0, n = 1; i < n_joints; i++, n++) {
-            int x = scanInt(JOINT_COORD_LEN, "joint " + n + " x-coordinate");
-            int y = scanInt(JOINT_COORD_LEN, "joint " + n + " y-coordinate");
+            checkRecord(2 * JOINT_COORD_LEN, "joint %d", n);
+            int x = scanInt(JOINT_COORD_LEN, "joint %d x-coordinate", n);
+            int y = scanInt(JOINT_COORD_LEN, "joint %d y-coordinate", n);
             if (i < designConditions.getNPrescribedJoints()) {
                 Joint joint = designConditions.getPrescribedJoint(i);
                 if (x != grid.worldToGridX(joint.getPointWorld().x) || y != grid.worldToGridY(joint.getPointWorld().y)) {
@@ -925,30 +1114,41 @@ public class BridgeModel {
             }
         }
         for (int i = 0, n = 1; i < n_members; i++, n++) {
-            int jointANumber = scanUnsigned(MEMBER_JOINT_LEN, "first joint of member " + n);
-            int jointBNumber = scanUnsigned(MEMBER_JOINT_LEN, "second joint of member " + n);
-            int materialIndex = scanUnsigned(MEMBER_MATERIAL_LEN, "material index of member " + n);
-            int sectionIndex = scanUnsigned(MEMBER_SECTION_LEN, "section index of member " + n);
-            int sizeIndex = scanUnsigned(MEMBER_SIZE_LEN, "size index of member " + n);
+            checkRecord(2 * MEMBER_JOINT_LEN + MEMBER_MATERIAL_LEN + MEMBER_SECTION_LEN + MEMBER_SIZE_LEN, "member %d", n);
+            int jointANumber = scanUnsigned(MEMBER_JOINT_LEN, "first joint of member %d", n);
+            int jointBNumber = scanUnsigned(MEMBER_JOINT_LEN, "second joint of member %d", n);
+            int materialIndex = scanUnsigned(MEMBER_MATERIAL_LEN, "material index of member %d", n);
+            int sectionIndex = scanUnsigned(MEMBER_SECTION_LEN, "section index of member %d", n);
+            int sizeIndex = scanUnsigned(MEMBER_SIZE_LEN, "size index of member %d", n);
             members.add(new Member(i, joints.get(jointANumber - 1), joints.get(jointBNumber - 1),
                     inventory.getMaterial(materialIndex), inventory.getShape(sectionIndex, sizeIndex)));
         }
-        Iterator<Member> e = members.iterator();
-        while (e.hasNext()) {
-            Member member = e.next();
-            member.setCompressionForceStrengthRatio(parseRatioEncoding(scanToDelimiter("compression/strength ratio")));
-            member.setTensionForceStrengthRatio(parseRatioEncoding(scanToDelimiter("tension/strength ratio")));            
+        for (int i = 0; i < n_members; i++) {
+            Member member = members.get(i);
+            member.setCompressionForceStrengthRatio(scanRatio("compression/strength ratio"));
+            member.setTensionForceStrengthRatio(scanRatio("tension/strength ratio"));            
         }
-        designedBy = scanToDelimiter("name of designer");
-        projectId = scanToDelimiter("project ID");
-        iterationNumber = Integer.parseInt(scanToDelimiter("iteration"));
-        labelPosition = Double.parseDouble(scanToDelimiter("label position"));
+        designedBy = scanString("name of designer");
+        projectId = scanString("project ID");
+        iterationNumber = scanIterationNumber("iteration");
+        labelPosition = scanLabelPosition("label position");
     }
 
     /*
-     * Following are useful scanner sub-functions.
+     * Following are useful scanner sub-functions.  Descriptions of what is being scanned are format strings
+     * with the number of the joint or member, if any, filled in only for error messages.
      */
-    private int scanInt(int width, String what) throws IOException {
+    private static IOException getScanException(String what, int n) {
+        return new IOException("couldn\'t scan " + String.format(what, n));
+    }
+
+    private void checkRecord(int width, String what, int n) throws IOException {
+        if (readPtr + width > readEnd) {
+            throw getScanException(what, n);
+        }
+    }
+
+    private int scanInt(int width, String what, int n) throws IOException {
         int val = 0;
         boolean negate_p = false;
 
@@ -969,23 +1169,128 @@ public class BridgeModel {
                 width--;
                 readPtr++;
             } else {
-                throw new IOException("couldn\'t scan " + what);
+                throw getScanException(what, n);
             }
         }
         return negate_p ? -val : val;
     }
 
-    private String scanToDelimiter(String what) {
-        StringBuilder buf = new StringBuilder(16);
-        while (readBuf[readPtr] != DELIM) {
-            buf.append((char) readBuf[readPtr]);
+    /**
+     * Find the end of the delimited field at the read pointer and advance the pointer past the delimiter.
+     * 
+     * @param what description of the field
+     * @return index of the delimiter ending the field
+     * @throws IOException if there is no delimiter
+     */
+    private int scanToDelimiter(String what) throws IOException {
+        while (readPtr < readEnd && readBuf[readPtr] != DELIM) {
             readPtr++;
         }
-        readPtr++;
-        return buf.toString();
+        if (readPtr >= readEnd) {
+            throw getScanException(what, 0);
+        }
+        return readPtr++;
+    }
+
+    private String scanString(String what) throws IOException {
+        final int start = readPtr;
+        final int end = scanToDelimiter(what);
+        final int length = end - start;
+        if (scanChars.length < length) {
+            scanChars = new char[Math.max(length, 2 * scanChars.length)];
+        }
+        // Bytes are widened as characters with sign extension, as they always have been.
+        for (int i = 0; i < length; i++) {
+            scanChars[i] = (char) readBuf[start + i];
+        }
+        return new String(scanChars, 0, length);
     }
 
-    private int scanUnsigned(int width, String what) throws IOException {
+    private double scanRatio(String what) throws IOException {
+        final int start = readPtr;
+        final int end = scanToDelimiter(what);
+        final double val = parseDecimal(readBuf, start, end);
+        if (!Double.isNaN(val)) {
+            return val;
+        }
+        // Unanalyzed members are marked with a double dash.
+        if (end - start == 2 && readBuf[start] == '-' && readBuf[start + 1] == '-') {
+            return -1;
+        }
+        return parseRatioEncoding(new String(readBuf, start, end - start, "ISO-8859-1"));
+    }
+
+    private int scanIterationNumber(String what) throws IOException {
+        final int start = readPtr;
+        final int end = scanToDelimiter(what);
+        // At most nine digits can't overflow.
+        if (end - start > 0 && end - start <= 9) {
+            int val = 0;
+            int i = start;
+            while (i < end && '0' <= readBuf[i] && readBuf[i] <= '9') {
+                val = val * 10 + (readBuf[i] - '0');
+                i++;
+            }
+            if (i == end) {
+                return val;
+            }
+        }
+        return Integer.parseInt(new String(readBuf, start, end - start, "ISO-8859-1"));
+    }
+
+    private double scanLabelPosition(String what) throws IOException {
+        final int start = readPtr;
+        final int end = scanToDelimiter(what);
+        final double val = parseDecimal(readBuf, start, end);
+        return Double.isNaN(val) ? Double.parseDouble(new String(readBuf, start, end - start, "ISO-8859-1")) : val;
+    }
+
+    /**
+     * Return the value of a plain decimal number in bytes, e.g. <code>-12.345</code>, or NaN if the bytes are 
+     * something else or have more than 15 digits.  With no more than 15 digits, the digits and the power of 
+     * ten that scales them are exact doubles, and the quotient is correctly rounded, so the value is exactly
+     * that of <code>Double.parseDouble</code>.
+     * 
+     * @param buf bytes
+     * @param start index of the first byte of the number
+     * @param end index just past the last byte of the number
+     * @return value of the number or NaN
+     */
+    private static double parseDecimal(byte[] buf, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+        long digits = 0;
+        int nDigits = 0;
+        int nFractionDigits = 0;
+        boolean point = false;
+        for (; i < end; i++) {
+            final int c = buf[i];
+            if ('0' <= c && c <= '9') {
+                if (++nDigits > 15) {
+                    return Double.NaN;
+                }
+                digits = digits * 10 + (c - '0');
+                if (point) {
+                    nFractionDigits++;
+                }
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (nDigits == 0) {
+            return Double.NaN;
+        }
+        final double val = digits / powersOfTen[nFractionDigits];
+        return negative ? -val : val;
+    }
+
+    private int scanUnsigned(int width, String what, int n) throws IOException {
         int val = 0;
         while (width > 0 && readBuf[readPtr] == ' ') {
             width--;
@@ -997,13 +1302,13 @@ public class BridgeModel {
                 width--;
                 readPtr++;
             } else {
-                throw new IOException("couldn\'t scan " + what);
+                throw getScanException(what, n);
             }
         }
         return val;
     }
 
-    private long scanUnsignedLong(int width, String what) throws IOException {
+    private long scanUnsignedLong(int width, String what, int n) throws IOException {
         long val = 0;
         while (width > 0 && readBuf[readPtr] == ' ') {
             width--;
@@ -1015,7 +1320,7 @@ public class BridgeModel {
                 width--;
                 readPtr++;
             } else {
-                throw new IOException("couldn\'t scan " + what);
+                throw getScanException(what, n);
             }
         }
         return val;
@@ -1035,11 +1340,225 @@ public class BridgeModel {
      * @return ASCII text as bytes
      */
     protected byte[] toBytes() {
-        byte[] bytes = null;
+        final AsciiWriter writer = writeBytes();
+        return Arrays.copyOf(writer.buf, writer.ptr);
+    }
+
+    /**
+     * Writer of the fixed width ASCII bridge file format into a byte buffer that is reused and grows as needed.
+     * Output is exactly that of formatting with <code>java.util.Formatter</code> and encoding as ASCII,
+     * which is how bridges were written before, including '?' for characters that aren't ASCII.
+     */
+    private static class AsciiWriter {
+
+        /**
+         * Buffer and the position of the next byte to write.
+         */
+        byte[] buf = new byte[4096];
+        int ptr;
+        /**
+         * Positions of the name of the designer and of what follows the project ID after the last bridge written.
+         */
+        int namesPtr;
+        int tailPtr;
+
+        void ensureCapacity(int n) {
+            if (ptr + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(ptr + n, 2 * buf.length));
+            }
+        }
+
+        void put(char c) {
+            ensureCapacity(1);
+            buf[ptr++] = (byte) c;
+        }
+
+        /**
+         * Write an integer as with format <code>%<i>width</i>d</code>: right justified and padded with spaces,
+         * but in full if wider.
+         */
+        void putFixed(long val, int width) {
+            final boolean negative = val < 0;
+            long magnitude = negative ? -val : val;
+            int nDigits = 1;
+            for (long t = magnitude; t >= 10; t /= 10) {
+                nDigits++;
+            }
+            final int length = negative ? nDigits + 1 : nDigits;
+            ensureCapacity(Math.max(width, length));
+            for (int i = length; i < width; i++) {
+                buf[ptr++] = ' ';
+            }
+            if (negative) {
+                buf[ptr++] = '-';
+            }
+            ptr += nDigits;
+            for (int i = ptr - 1; i >= ptr - nDigits; i--) {
+                buf[i] = (byte) ('0' + magnitude % 10);
+                magnitude /= 10;
+            }
+        }
+
+        /**
+         * Write a number as with format <code>%.<i>nFractionDigits</i>f</code>.  Where the scaled value is too 
+         * large or too near a rounding tie to be certain of rounding as the formatter does, the formatter is used.
+         */
+        void putDecimal(double val, int nFractionDigits, Locale locale) {
+            final boolean negative = val < 0 || (val == 0 && 1 / val < 0);
+            final double magnitude = negative ? -val : val;
+            final double scale = powersOfTen[nFractionDigits];
+            final double scaled = magnitude * scale;
+            if (scaled < 1e9) {
+                final double whole = Math.floor(scaled);
+                final double fraction = scaled - whole;
+                // The error in scaled is far smaller than this margin, so rounding away from the tie is certain.
+                if (Math.abs(fraction - 0.5) > 1e-6) {
+                    final long digits = (long) whole + (fraction > 0.5 ? 1 : 0);
+                    if (negative) {
+                        put('-');
+                    }
+                    final long unit = (long) scale;
+                    putFixed(digits / unit, 0);
+                    put('.');
+                    long fractionDigits = digits % unit;
+                    ensureCapacity(nFractionDigits);
+                    ptr += nFractionDigits;
+                    for (int i = ptr - 1; i >= ptr - nFractionDigits; i--) {
+                        buf[i] = (byte) ('0' + fractionDigits % 10);
+                        fractionDigits /= 10;
+                    }
+                    return;
+                }
+            }
+            putAscii(String.format(locale, "%." + nFractionDigits + "f", val));
+        }
+
+        /**
+         * Write a string as the ASCII encoder does, replacing each character or surrogate pair that isn't 
+         * ASCII with '?'.
+         */
+        void putAscii(String s) {
+            final int length = s.length();
+            ensureCapacity(length);
+            for (int i = 0; i < length; i++) {
+                final char c = s.charAt(i);
+                if (c < 0x80) {
+                    buf[ptr++] = (byte) c;
+                }
+                else {
+                    buf[ptr++] = '?';
+                    if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                        i++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writers by thread.
+     */
+    private static final ThreadLocal<AsciiWriter> asciiWriter = new ThreadLocal<AsciiWriter>() {
+        @Override
+        protected AsciiWriter initialValue() {
+            return new AsciiWriter();
+        }
+    };
+
+    /**
+     * Write this bridge in the bridge file format, unencrypted, into the buffer of this thread's writer.
+     * The bridge is in the buffer only until the thread writes another.
+     * 
+     * @return writer holding the bridge from the start of its buffer up to its position
+     */
+    private AsciiWriter writeBytes() {
+        final AsciiWriter w = asciiWriter.get();
+        final DraftingGrid grid = fineGrid;
+        w.ptr = 0;
+        w.putFixed(version, YEAR_LEN);
+        w.putFixed(designConditions.getCodeLong(), SCENARIO_CODE_LEN);
+        w.putFixed(joints.size(), N_JOINTS_LEN);
+        w.putFixed(members.size(), N_MEMBERS_LEN);
+        for (int i = 0; i < joints.size(); i++) {
+            Affine.Point pt = joints.get(i).getPointWorld();
+            w.putFixed(grid.worldToGridX(pt.x), JOINT_COORD_LEN);
+            w.putFixed(grid.worldToGridY(pt.y), JOINT_COORD_LEN);
+        }
+        for (int i = 0; i < members.size(); i++) {
+            Member member = members.get(i);
+            w.putFixed(member.getJointA().getNumber(), MEMBER_JOINT_LEN);
+            w.putFixed(member.getJointB().getNumber(), MEMBER_JOINT_LEN);
+            w.putFixed(member.getMaterial().getIndex(), MEMBER_MATERIAL_LEN);
+            w.putFixed(member.getShape().getSection().getIndex(), MEMBER_SECTION_LEN);
+            w.putFixed(member.getShape().getSizeIndex(), MEMBER_SIZE_LEN);
+        }
+        for (int i = 0; i < members.size(); i++) {
+            Member member = members.get(i);
+            putRatioEncoding(w, member.getCompressionForceStrengthRatio());
+            w.put(DELIM);
+            putRatioEncoding(w, member.getTensionForceStrengthRatio());
+            w.put(DELIM);
+        }
+        w.namesPtr = w.ptr;
+        w.putAscii(String.valueOf(designedBy));
+        w.put(DELIM);
+        w.putAscii(String.valueOf(projectId));
+        w.put(DELIM);
+        w.tailPtr = w.ptr;
+        w.putFixed(getIteration(), 0);
+        w.put(DELIM);
+        w.putDecimal(getLabelPosition(), 3, Locale.US);
+        w.put(DELIM);
+        return w;
+    }
+
+    /**
+     * Write a force/strength ratio as encoded by <code>getRatioEncoding</code>.
+     * 
+     * @param w writer
+     * @param r force/strength ratio
+     */
+    private static void putRatioEncoding(AsciiWriter w, double r) {
+        if (r < 0) {
+            w.put('-');
+            w.put('-');
+        }
+        else {
+            w.putDecimal(r, 2, null);
+        }
+    }
+
+    /**
+     * Return the canonical bytes of the parts of this bridge that determine its analysis: scenario code,
+     * joint locations, and member joints, material, section, and size.  These are the corresponding parts 
+     * of <code>toBytes</code> except that joint locations are exact rather than rounded to the drafting grid.  
+     * Names, iteration number, and stored force/strength ratios are omitted, so bridges that differ only 
+     * in these have the same key.
+     * 
+     * @return analysis key
+     */
+    public byte[] getAnalysisKey() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + 16 * joints.size() + 8 * members.size());
+        DataOutputStream data = new DataOutputStream(bytes);
         try {
-            bytes = toString().getBytes("ASCII");
-        } catch (UnsupportedEncodingException ex) { }
-        return bytes;
+            data.writeLong(designConditions.getCodeLong());
+            data.writeInt(joints.size());
+            data.writeInt(members.size());
+            for (int i = 0; i < joints.size(); i++) {
+                Affine.Point pt = joints.get(i).getPointWorld();
+                data.writeDouble(pt.x);
+                data.writeDouble(pt.y);
+            }
+            for (int i = 0; i < members.size(); i++) {
+                Member member = members.get(i);
+                data.writeShort(member.getJointA().getIndex());
+                data.writeShort(member.getJointB().getIndex());
+                data.writeByte(member.getMaterial().getIndex());
+                data.writeByte(member.getShape().getSection().getIndex());
+                data.writeShort(member.getShape().getSizeIndex());
+            }
+        } catch (IOException ex) { }
+        return bytes.toByteArray();
     }
 
     /**
@@ -1049,44 +1568,19 @@ public class BridgeModel {
      */
     @Override
     public String toString() {
-        StringBuilder s = new StringBuilder();
-        Formatter f = new Formatter(s, Locale.US);
-        DraftingGrid grid = new DraftingGrid(DraftingGrid.FINE_GRID);
-        f.format("%" + YEAR_LEN + "d", version);
-        f.format("%" + SCENARIO_CODE_LEN + "d", designConditions.getCodeLong());
-        f.format("%" + N_JOINTS_LEN + "d", joints.size());
-        f.format("%" + N_MEMBERS_LEN + "d", members.size());
-        Iterator<Joint> ej = joints.iterator();
-        while (ej.hasNext()) {
-            Joint joint = ej.next();
-            f.format("%" + JOINT_COORD_LEN + "d", grid.worldToGridX(joint.getPointWorld().x));
-            f.format("%" + JOINT_COORD_LEN + "d", grid.worldToGridY(joint.getPointWorld().y));
-        }
-        Iterator<Member> em = members.iterator();
-        while (em.hasNext()) {
-            Member member = em.next();
-            f.format("%" + MEMBER_JOINT_LEN + "d", member.getJointA().getNumber());
-            f.format("%" + MEMBER_JOINT_LEN + "d", member.getJointB().getNumber());
-            f.format("%" + MEMBER_MATERIAL_LEN + "d", member.getMaterial().getIndex());
-            f.format("%" + MEMBER_SECTION_LEN + "d", member.getShape().getSection().getIndex());
-            f.format("%" + MEMBER_SIZE_LEN + "d", member.getShape().getSizeIndex());
-        }
-        em = members.iterator();
-        while (em.hasNext()) {
-            Member member = em.next();
-            s.append(getRatioEncoding(member.getCompressionForceStrengthRatio()));
-            s.append(DELIM);
-            s.append(getRatioEncoding(member.getTensionForceStrengthRatio()));
-            s.append(DELIM);
+        // Names are copied as they are rather than as encoded in ASCII.
+        final AsciiWriter w = writeBytes();
+        StringBuilder s = new StringBuilder(w.ptr + 16);
+        for (int i = 0; i < w.namesPtr; i++) {
+            s.append((char) w.buf[i]);
         }
         s.append(designedBy);
         s.append(DELIM);
         s.append(projectId);
         s.append(DELIM);
-        s.append(getIteration());
-        s.append(DELIM);
-        f.format("%.3f", getLabelPosition());
-        s.append(DELIM);
+        for (int i = w.tailPtr; i < w.ptr; i++) {
+            s.append((char) w.buf[i]);
+        }
         return s.toString();
     }
 
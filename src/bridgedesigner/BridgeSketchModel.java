@@ -13,10 +13,13 @@
  */
 package bridgedesigner;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
-import org.jdesktop.application.ResourceMap;
+import java.util.Properties;
+import java.util.Set;
 
 /**
  * Bridge template sketches that can be created with heuristic algorithms or read from local storage.
@@ -338,7 +341,47 @@ public class BridgeSketchModel {
      * @param key key of string resource to load
      */
     private void setNameFromResource(String key) {
-        name = BDApp.getResourceMap(BridgeSketchModel.class).getString(key);
+        name = getResourceString(key);
+    }
+
+    /**
+     * Sketch names and templates read directly from the resource file, or null to use the application 
+     * resource map.
+     */
+    private static Properties standaloneResources;
+
+    /**
+     * Read sketch names and templates directly from the resource file rather than the application resource
+     * map, so sketches can be used by programs that don't launch the application.  Names are not localized.
+     *
+     * @throws IOException if the resource file can't be read
+     */
+    public static synchronized void useStandaloneResources() throws IOException {
+        if (standaloneResources == null) {
+            InputStream in = BridgeSketchModel.class.getResourceAsStream("resources/BridgeSketchModel.properties");
+            if (in == null) {
+                throw new IOException("missing sketch resources");
+            }
+            Properties resources = new Properties();
+            try {
+                resources.load(in);
+            } finally {
+                in.close();
+            }
+            standaloneResources = resources;
+        }
+    }
+
+    private static synchronized String getResourceString(String key) {
+        return standaloneResources == null ?
+            BDApp.getResourceMap(BridgeSketchModel.class).getString(key) :
+            standaloneResources.getProperty(key);
+    }
+
+    private static synchronized Set<String> getResourceKeys() {
+        return standaloneResources == null ?
+            BDApp.getResourceMap(BridgeSketchModel.class).keySet() :
+            standaloneResources.stringPropertyNames();
     }
 
     /**
@@ -887,7 +930,7 @@ public class BridgeSketchModel {
      * @return array of sketch models.  The first element is always a string &lt;none&gt; (or other-language
      * equivalent, so the list is a suitable input for setListData() of a JList.
      */
-    public static Object[] getList(DesignConditions conditions) {
+    public static synchronized Object[] getList(DesignConditions conditions) {
         if (conditions == null) {
             return new Object [0];
         }
@@ -897,7 +940,7 @@ public class BridgeSketchModel {
             // Cache miss.  Fill a vector with applicable templates.
             final ArrayList<Object> list = new ArrayList<Object>();
             // Add placeholder for <none> entry.
-            list.add(BDApp.getResourceMap(BridgeSketchModel.class).getString("noTemplate.text"));
+            list.add(getResourceString("noTemplate.text"));
             // Add all available computed sketches.
             if (conditions.isArch()) {
                 if (conditions.getUnderClearance() <= 16) {
@@ -927,13 +970,12 @@ public class BridgeSketchModel {
                 list.add(new BridgeSketchModel().setCableStayedWarrenTruss(conditions));
                 list.add(new BridgeSketchModel().setSuspendedWarrenTruss(conditions));
             }
-            ResourceMap resourceMap = BDApp.getResourceMap(BridgeSketchModel.class);
-            Iterator<String> i = resourceMap.keySet().iterator();
+            Iterator<String> i = getResourceKeys().iterator();
             while (i.hasNext()) {
                 String nameKey = i.next();
                 if (nameKey.endsWith(".bridgeSketchName") && conditionsTagNumber.equals(nameKey.substring(0, 2))) {
                     String sketchKey = nameKey.substring(0, nameKey.lastIndexOf('.')).concat(".bridgeSketch");
-                    list.add(new BridgeSketchModel().setFromTemplate(resourceMap.getString(nameKey), resourceMap.getString(sketchKey)));
+                    list.add(new BridgeSketchModel().setFromTemplate(getResourceString(nameKey), getResourceString(sketchKey)));
                 }
             }
             // Add all the resource sketches for these design conditions, neglecting deck and load conditions.
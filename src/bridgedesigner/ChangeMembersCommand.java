@@ -14,6 +14,9 @@
 
 package bridgedesigner;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+
 /**
  * Command to change the stock used for the selected members in various ways.
  * 
@@ -58,6 +61,37 @@ public class ChangeMembersCommand extends EditCommand {
         presentationName = getMembersMessage(sizeOffset > 0 ? "increaseSize.text" : "decreaseSize.text", members);
     }
 
+    /**
+     * Construct a command that changes the stock of all members to the given stock, e.g. found by a
+     * <code>MemberSizer</code>.  Only members whose stock differs are changed.
+     * 
+     * @param bridge bridge containing the members
+     * @param stock new stock indexed by member
+     */
+    public ChangeMembersCommand(EditableBridgeModel bridge, StockSelector.Descriptor [] stock) {
+        super(bridge);
+        ArrayList<Member> changed = new ArrayList<Member>();
+        Iterator<Member> e = bridge.getMembers().iterator();
+        while (e.hasNext()) {
+            Member member = e.next();
+            StockSelector.Descriptor s = stock[member.getIndex()];
+            if (!s.equals(new StockSelector.Descriptor(member))) {
+                changed.add(new Member(member, bridge.getInventory(), s.materialIndex, s.sectionIndex, s.sizeIndex));
+            }
+        }
+        members = changed.toArray(new Member[changed.size()]);
+        presentationName = getMembersMessage("optimizeSize.text", members);
+    }
+
+    /**
+     * Return the number of members this command changes.
+     * 
+     * @return number of changed members
+     */
+    public int getChangedMemberCount() {
+        return members.length;
+    }
+
     @Override 
     public void go() {
         EditCommand.exchange(bridge.getMembers(), members);        
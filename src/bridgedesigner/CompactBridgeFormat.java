@@ -0,0 +1,604 @@
+/*
+ * CompactBridgeFormat.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary encoding of bridges for archiving large numbers of designs.  The legacy text format of
+ * <code>BridgeModel.toString</code> remains the one for interchange.
+ *
+ * An encoded bridge is a fixed header, a body, and a checksum.  The header holds the format version, the
+ * scenario code, the total cost, the analysis status, the iteration number, and the numbers of joints and
+ * members at fixed offsets, so these can be read without decoding the rest; see <code>Header</code>.  The body
+ * holds the grid coordinates of joints that aren't prescribed by the scenario as zigzag variable length
+ * integers, each member as variable length joint numbers followed by a byte packing material and section and
+ * a byte of size, force/strength ratios as variable length hundredths, the designer and project id as UTF-8,
+ * and the label position.  The checksum is the CRC-32 of everything before it.  Multi-byte fixed width
+ * numbers are big-endian.  Encoded bridges aren't scrambled.
+ *
+ * Ratios have the precision of the legacy format, so converting between the formats in either direction
+ * doesn't change a bridge's legacy text.  A bridge typically takes less than half its legacy size.
+ *
+ * @author Eugene K. Ressler
+ */
+public class CompactBridgeFormat {
+
+    /**
+     * First four bytes of every encoded bridge: "BDc" and a control character.  Files are tested for these
+     * before descrambling.  Legacy files are scrambled with a fixed key stream, under which these bytes stand
+     * for "P", 0x07, 0x9d, and 0xfe, while legacy text starts with the digits of its year, so no legacy file
+     * can start with them.
+     */
+    public static final int MAGIC = 0x4244631a;
+    /**
+     * Version of the encoding written.  Readers accept this and earlier versions.
+     */
+    public static final int FORMAT_VERSION = 1;
+    /**
+     * Size of the fixed header in bytes.
+     */
+    public static final int HEADER_SIZE = 36;
+    /**
+     * Size of the trailing checksum in bytes.
+     */
+    public static final int CHECKSUM_SIZE = 4;
+    /*
+     * Header field offsets.
+     */
+    private static final int VERSION_OFFSET = 4;
+    private static final int STATUS_OFFSET = 6;
+    private static final int SCENARIO_CODE_OFFSET = 8;
+    private static final int TOTAL_COST_OFFSET = 16;
+    private static final int ITERATION_OFFSET = 24;
+    private static final int N_JOINTS_OFFSET = 28;
+    private static final int N_MEMBERS_OFFSET = 30;
+    private static final int BODY_SIZE_OFFSET = 32;
+    /**
+     * Ratio codes for members not analyzed and for ratios stored in full, after which hundredths start.
+     */
+    private static final int RATIO_NONE = 0;
+    private static final int RATIO_FULL = 1;
+    private static final int RATIO_HUNDREDTHS = 2;
+    /**
+     * Fine drafting grid shared by all threads for converting joint locations.  Never changed.
+     */
+    private static final DraftingGrid fineGrid = new DraftingGrid(DraftingGrid.FINE_GRID);
+    /**
+     * Encoders by thread.
+     */
+    private static final ThreadLocal<Encoder> threadEncoder = new ThreadLocal<Encoder>() {
+        @Override
+        protected Encoder initialValue() {
+            return new Encoder();
+        }
+    };
+
+    /**
+     * Header of an encoded bridge, which can be read without decoding the bridge.
+     */
+    public static class Header {
+
+        private final int formatVersion;
+        private final int status;
+        private final long scenarioCode;
+        private final double totalCost;
+        private final int iteration;
+        private final int nJoints;
+        private final int nMembers;
+        private final int bodySize;
+
+        /**
+         * Construct a header from the start of an encoded bridge.
+         *
+         * @param buf buffer holding the encoded bridge
+         * @param offset offset of the bridge in the buffer
+         * @param length number of bytes available from the offset
+         * @throws IOException if the bytes are not the header of an encoded bridge of a version this reader knows
+         */
+        public Header(byte[] buf, int offset, int length) throws IOException {
+            if (!isCompact(buf, offset, length)) {
+                throw new IOException("not a compact bridge");
+            }
+            if (length < HEADER_SIZE) {
+                throw new IOException("compact bridge header is truncated");
+            }
+            formatVersion = getShort(buf, offset + VERSION_OFFSET);
+            if (formatVersion < 1 || formatVersion > FORMAT_VERSION) {
+                throw new IOException("compact bridge format version " + formatVersion + " is not supported");
+            }
+            status = buf[offset + STATUS_OFFSET];
+            scenarioCode = getLong(buf, offset + SCENARIO_CODE_OFFSET);
+            totalCost = Double.longBitsToDouble(getLong(buf, offset + TOTAL_COST_OFFSET));
+            iteration = getInt(buf, offset + ITERATION_OFFSET);
+            nJoints = getShort(buf, offset + N_JOINTS_OFFSET);
+            nMembers = getShort(buf, offset + N_MEMBERS_OFFSET);
+            bodySize = getInt(buf, offset + BODY_SIZE_OFFSET);
+            if (bodySize < 0 || bodySize > Integer.MAX_VALUE - HEADER_SIZE - CHECKSUM_SIZE) {
+                throw new IOException("bad compact bridge body size");
+            }
+        }
+
+        /**
+         * Return the version of the encoding.
+         *
+         * @return format version
+         */
+        public int getFormatVersion() {
+            return formatVersion;
+        }
+
+        /**
+         * Return the analysis status when the bridge was written, one of the <code>Analysis</code> status codes.
+         *
+         * @return analysis status
+         */
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * Return the code of the bridge's design conditions.
+         *
+         * @return scenario code
+         */
+        public long getScenarioCode() {
+            return scenarioCode;
+        }
+
+        /**
+         * Return the total cost of the bridge when it was written.
+         *
+         * @return total cost in dollars
+         */
+        public double getTotalCost() {
+            return totalCost;
+        }
+
+        /**
+         * Return the iteration number of the bridge.
+         *
+         * @return iteration number
+         */
+        public int getIteration() {
+            return iteration;
+        }
+
+        /**
+         * Return the number of joints, including those prescribed by the scenario.
+         *
+         * @return number of joints
+         */
+        public int getNJoints() {
+            return nJoints;
+        }
+
+        /**
+         * Return the number of members.
+         *
+         * @return number of members
+         */
+        public int getNMembers() {
+            return nMembers;
+        }
+
+        /**
+         * Return the size of the whole encoded bridge including header and checksum.
+         *
+         * @return encoded size in bytes
+         */
+        public int getEncodedSize() {
+            return HEADER_SIZE + bodySize + CHECKSUM_SIZE;
+        }
+    }
+
+    /**
+     * Growable buffer for encoding bridges, reused from bridge to bridge.
+     */
+    static class Encoder {
+
+        /**
+         * Encoded bytes.
+         */
+        byte[] buf = new byte[1024];
+        /**
+         * Number of bytes encoded.
+         */
+        int ptr;
+
+        private void ensureCapacity(int n) {
+            if (ptr + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(2 * buf.length, ptr + n));
+            }
+        }
+
+        private void putByte(int val) {
+            ensureCapacity(1);
+            buf[ptr++] = (byte)val;
+        }
+
+        private void putShort(int val) {
+            ensureCapacity(2);
+            buf[ptr++] = (byte)(val >>> 8);
+            buf[ptr++] = (byte)val;
+        }
+
+        private void putInt(int val) {
+            ensureCapacity(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                buf[ptr++] = (byte)(val >>> shift);
+            }
+        }
+
+        private void putLong(long val) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buf[ptr++] = (byte)(val >>> shift);
+            }
+        }
+
+        /**
+         * Put an unsigned variable length integer: seven bits per byte, least significant first, with the high
+         * bit set on all bytes but the last.
+         */
+        private void putVarint(long val) {
+            ensureCapacity(10);
+            while ((val & ~0x7fL) != 0) {
+                buf[ptr++] = (byte)(val | 0x80);
+                val >>>= 7;
+            }
+            buf[ptr++] = (byte)val;
+        }
+
+        /**
+         * Put a signed variable length integer, zigzag coded so small magnitudes of either sign are short.
+         */
+        private void putSignedVarint(int val) {
+            putVarint(((val << 1) ^ (val >> 31)) & 0xffffffffL);
+        }
+
+        /**
+         * Put a string as its length plus one and its UTF-8 bytes, or a zero length for null.
+         */
+        private void putString(String s) throws UnsupportedEncodingException {
+            if (s == null) {
+                putVarint(0);
+                return;
+            }
+            final byte[] bytes = s.getBytes("UTF-8");
+            putVarint(bytes.length + 1);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buf, ptr, bytes.length);
+            ptr += bytes.length;
+        }
+
+        /**
+         * Put a force/strength ratio rounded as in the legacy format.
+         */
+        private void putRatio(BridgeModel bridge, double r) {
+            if (r < 0) {
+                putVarint(RATIO_NONE);
+                return;
+            }
+            // Away from rounding ties, rounding the scaled ratio is exact.  Otherwise round as the legacy format.
+            final double scaled = r * 100;
+            if (scaled < 1e9 && Math.abs(scaled - Math.floor(scaled) - 0.5) > 1e-6 && 1 / r > 0) {
+                putVarint(RATIO_HUNDREDTHS + Math.round(scaled));
+                return;
+            }
+            final double rounded = BridgeModel.parseRatioEncoding(bridge.getRatioEncoding(r));
+            final long hundredths = Math.round(rounded * 100);
+            if (hundredths >= 0 && hundredths < (1L << 53) &&
+                    Double.doubleToLongBits(hundredths / 100.0) == Double.doubleToLongBits(rounded)) {
+                putVarint(RATIO_HUNDREDTHS + hundredths);
+            }
+            else {
+                putVarint(RATIO_FULL);
+                putLong(Double.doubleToLongBits(rounded));
+            }
+        }
+    }
+
+    /**
+     * Cursor over the body of an encoded bridge.
+     */
+    private static class Decoder {
+
+        private final byte[] buf;
+        private int ptr;
+        private final int end;
+
+        Decoder(byte[] buf, int ptr, int end) {
+            this.buf = buf;
+            this.ptr = ptr;
+            this.end = end;
+        }
+
+        private int getByte() throws IOException {
+            if (ptr >= end) {
+                throw new IOException("compact bridge is truncated");
+            }
+            return buf[ptr++] & 0xff;
+        }
+
+        private long getVarint() throws IOException {
+            long val = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                final int b = getByte();
+                val |= (long)(b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return val;
+                }
+            }
+            throw new IOException("bad variable length integer in compact bridge");
+        }
+
+        private int getSignedVarint() throws IOException {
+            final int val = (int)getVarint();
+            return (val >>> 1) ^ -(val & 1);
+        }
+
+        private double getDouble() throws IOException {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | getByte();
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        private String getString() throws IOException {
+            final long n = getVarint();
+            if (n == 0) {
+                return null;
+            }
+            if (n - 1 > end - ptr) {
+                throw new IOException("compact bridge is truncated");
+            }
+            final String s = new String(buf, ptr, (int)n - 1, "UTF-8");
+            ptr += (int)n - 1;
+            return s;
+        }
+
+        private double getRatio() throws IOException {
+            final long code = getVarint();
+            if (code == RATIO_NONE) {
+                return -1;
+            }
+            if (code == RATIO_FULL) {
+                return getDouble();
+            }
+            return (code - RATIO_HUNDREDTHS) / 100.0;
+        }
+    }
+
+    /**
+     * Return true iff the given bytes start an encoded bridge rather than legacy text.
+     *
+     * @param buf buffer of bytes
+     * @param offset offset of the bytes in the buffer
+     * @param length number of bytes available from the offset
+     * @return true iff the bytes start with the compact format's magic number
+     */
+    public static boolean isCompact(byte[] buf, int offset, int length) {
+        return length >= 4 && getInt(buf, offset) == MAGIC;
+    }
+
+    /**
+     * Encode a bridge into the calling thread's encoder, which holds the result until the thread's next encoding.
+     *
+     * @param bridge bridge to encode
+     * @return encoder holding the encoded bridge
+     */
+    static Encoder encode(BridgeModel bridge) {
+        final Encoder e = threadEncoder.get();
+        final DesignConditions conditions = bridge.getDesignConditions();
+        final DraftingGrid grid = fineGrid;
+        e.ptr = 0;
+        e.putInt(MAGIC);
+        e.putShort(FORMAT_VERSION);
+        e.putByte(bridge.getRecordedStatus());
+        e.putByte(0);
+        e.putLong(conditions.getCodeLong());
+        e.putLong(Double.doubleToLongBits(bridge.getTotalCost()));
+        e.putInt(bridge.getIteration());
+        e.putShort(bridge.joints.size());
+        e.putShort(bridge.members.size());
+        e.putInt(0);
+        for (int i = conditions.getNPrescribedJoints(); i < bridge.joints.size(); i++) {
+            final Affine.Point p = bridge.joints.get(i).getPointWorld();
+            e.putSignedVarint(grid.worldToGridX(p.x));
+            e.putSignedVarint(grid.worldToGridY(p.y));
+        }
+        for (int i = 0; i < bridge.members.size(); i++) {
+            final Member member = bridge.members.get(i);
+            e.putVarint(member.getJointA().getNumber());
+            e.putVarint(member.getJointB().getNumber());
+            e.putByte((member.getMaterial().getIndex() << 4) | member.getShape().getSection().getIndex());
+            e.putByte(member.getShape().getSizeIndex());
+        }
+        for (int i = 0; i < bridge.members.size(); i++) {
+            final Member member = bridge.members.get(i);
+            e.putRatio(bridge, member.getCompressionForceStrengthRatio());
+            e.putRatio(bridge, member.getTensionForceStrengthRatio());
+        }
+        try {
+            e.putString(bridge.getDesignedBy());
+            e.putString(bridge.getProjectId());
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+        e.putLong(Double.doubleToLongBits(bridge.getLabelPosition()));
+        // Fill in the body size and append the checksum.
+        final int bodySize = e.ptr - HEADER_SIZE;
+        final int end = e.ptr;
+        e.ptr = BODY_SIZE_OFFSET;
+        e.putInt(bodySize);
+        e.ptr = end;
+        final CRC32 crc = new CRC32();
+        crc.update(e.buf, 0, end);
+        e.putInt((int)crc.getValue());
+        return e;
+    }
+
+    /**
+     * Return a bridge encoded in the compact format.
+     *
+     * @param bridge bridge to encode
+     * @return encoded bridge
+     */
+    public static byte[] toBytes(BridgeModel bridge) {
+        final Encoder e = encode(bridge);
+        return Arrays.copyOf(e.buf, e.ptr);
+    }
+
+    /**
+     * Write a bridge to a file in the compact format.
+     *
+     * @param bridge bridge to write
+     * @param f file to write
+     * @throws IOException if the file can't be written
+     */
+    public static void write(BridgeModel bridge, File f) throws IOException {
+        final Encoder e = encode(bridge);
+        FileOutputStream os = new FileOutputStream(f);
+        try {
+            final FileChannel channel = os.getChannel();
+            final ByteBuffer buffer = ByteBuffer.wrap(e.buf, 0, e.ptr);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            os.close();
+        }
+    }
+
+    /**
+     * Read only the header of a bridge file in the compact format.
+     *
+     * @param f file to read
+     * @return header
+     * @throws IOException if the file can't be read or isn't a compact bridge
+     */
+    public static Header readHeader(File f) throws IOException {
+        final byte[] buf = new byte[HEADER_SIZE];
+        final FileInputStream is = new FileInputStream(f);
+        try {
+            int length = 0;
+            int n;
+            while (length < HEADER_SIZE && (n = is.read(buf, length, HEADER_SIZE - length)) >= 0) {
+                length += n;
+            }
+            return new Header(buf, 0, length);
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Decode an encoded bridge into the given bridge.  Bytes after the encoded bridge are ignored.
+     *
+     * @param buf buffer holding the encoded bridge
+     * @param offset offset of the bridge in the buffer
+     * @param length number of bytes available from the offset
+     * @param bridge bridge to decode into
+     * @return header of the encoded bridge
+     * @throws IOException if the bytes are not a valid encoded bridge
+     */
+    public static Header parse(byte[] buf, int offset, int length, BridgeModel bridge) throws IOException {
+        final Header header = new Header(buf, offset, length);
+        final int size = header.getEncodedSize();
+        if (size > length) {
+            throw new IOException("compact bridge is truncated");
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(buf, offset, size - CHECKSUM_SIZE);
+        if ((int)crc.getValue() != getInt(buf, offset + size - CHECKSUM_SIZE)) {
+            throw new IOException("compact bridge checksum is wrong");
+        }
+        final DesignConditions conditions = DesignConditions.getDesignConditions(header.getScenarioCode());
+        if (conditions == null) {
+            throw new IOException("invalid scenario " + header.getScenarioCode());
+        }
+        final int nJoints = header.getNJoints();
+        final int nMembers = header.getNMembers();
+        if (nJoints < conditions.getNPrescribedJoints()) {
+            throw new IOException("compact bridge lacks prescribed joints");
+        }
+        final Decoder d = new Decoder(buf, offset + HEADER_SIZE, offset + size - CHECKSUM_SIZE);
+        final DraftingGrid grid = fineGrid;
+        final Inventory inventory = bridge.getInventory();
+        bridge.clearStructure();
+        bridge.designConditions = conditions;
+        for (int i = 0; i < nJoints; i++) {
+            if (i < conditions.getNPrescribedJoints()) {
+                bridge.joints.add(conditions.getPrescribedJoint(i));
+            }
+            else {
+                final int x = d.getSignedVarint();
+                final int y = d.getSignedVarint();
+                bridge.joints.add(new Joint(i, new Affine.Point(grid.gridToWorldX(x), grid.gridToWorldY(y))));
+            }
+        }
+        for (int i = 0, n = 1; i < nMembers; i++, n++) {
+            final long jointANumber = d.getVarint();
+            final long jointBNumber = d.getVarint();
+            final int materialSection = d.getByte();
+            final int sizeIndex = d.getByte();
+            if (jointANumber < 1 || jointANumber > nJoints || jointBNumber < 1 || jointBNumber > nJoints) {
+                throw new IOException("bad joint number in member " + n);
+            }
+            final Shape shape;
+            final Material material;
+            try {
+                material = inventory.getMaterial(materialSection >> 4);
+                shape = inventory.getShape(materialSection & 0xf, sizeIndex);
+            } catch (IndexOutOfBoundsException ex) {
+                throw new IOException("bad stock in member " + n);
+            }
+            bridge.members.add(new Member(i, bridge.joints.get((int)jointANumber - 1),
+                    bridge.joints.get((int)jointBNumber - 1), material, shape));
+        }
+        for (int i = 0; i < nMembers; i++) {
+            final Member member = bridge.members.get(i);
+            member.setCompressionForceStrengthRatio(d.getRatio());
+            member.setTensionForceStrengthRatio(d.getRatio());
+        }
+        bridge.designedBy = d.getString();
+        bridge.projectId = d.getString();
+        bridge.iterationNumber = header.getIteration();
+        bridge.labelPosition = d.getDouble();
+        bridge.recordedStatus = header.getStatus();
+        return header;
+    }
+
+    private static int getShort(byte[] buf, int i) {
+        return ((buf[i] & 0xff) << 8) | (buf[i + 1] & 0xff);
+    }
+
+    private static int getInt(byte[] buf, int i) {
+        return (getShort(buf, i) << 16) | getShort(buf, i + 2);
+    }
+
+    private static long getLong(byte[] buf, int i) {
+        return ((long)getInt(buf, i) << 32) | (getInt(buf, i + 4) & 0xffffffffL);
+    }
+}
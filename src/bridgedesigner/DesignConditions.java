@@ -533,6 +533,33 @@ public class DesignConditions implements Cloneable {
         return prescribedJoints[i].getPointWorld();
     }
 
+    /**
+     * Return true iff a member between the given points would pass below the top of a high pier, which
+     * is not allowed.  Always false if there is no high pier.
+     *
+     * @param a location of one end of the member
+     * @param b location of the other end of the member
+     * @return true iff the member would cross the pier
+     */
+    public boolean isCrossingHiPier(Affine.Point a, Affine.Point b) {
+        if (!hiPier) {
+            return false;
+        }
+        final Affine.Point pierLocation = getPrescribedJointLocation(getPierJointIndex());
+        final double eps = 1e-6;
+        if ((a.x < pierLocation.x && pierLocation.x < b.x) ||
+            (b.x < pierLocation.x && pierLocation.x < a.x)) {
+            double dx = b.x - a.x;
+            if (Math.abs(dx) > eps) {
+                double y = (pierLocation.x - a.x) * (b.y - a.y) / dx + a.y;
+                if (y < pierLocation.y - eps) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Return the number of loaded joints.
      *
@@ -551,6 +578,42 @@ public class DesignConditions implements Cloneable {
         return spanLength;
     }
 
+    /**
+     * Fill flags telling which joint coordinates are restrained by abutments, pier, and anchorages.  Only
+     * prescribed joints are ever restrained.
+     *
+     * @param xRestraint flags for x-coordinates indexed by joint, filled in
+     * @param yRestraint flags for y-coordinates indexed by joint, filled in
+     * @param nJoints number of joints to fill flags for
+     */
+    public void getJointRestraints(boolean [] xRestraint, boolean [] yRestraint, int nJoints) {
+        for (int ij = 0; ij < nJoints; ij++) {
+            xRestraint[ij] = yRestraint[ij] = false;
+        }
+        xRestraint[0] = yRestraint[0] = yRestraint[getNLoadedJoints() - 1] = true;
+        if (isPier()) {
+            int i = getPierJointIndex();
+            xRestraint[i] = yRestraint[i] = true;
+            if (isHiPier()) {
+                xRestraint[0] = false;
+            }
+        }
+        if (isArch()) {
+            int i = getArchJointIndex();
+            xRestraint[0] = yRestraint[0] = yRestraint[getNLoadedJoints() - 1] = false;
+            xRestraint[i] = yRestraint[i] = true;
+            xRestraint[i + 1] = yRestraint[i + 1] = true;
+        }
+        if (isLeftAnchorage()) {
+            int i = getLeftAnchorageJointIndex();
+            xRestraint[i] = yRestraint[i] = true;
+        }
+        if (isRightAnchorage()) {
+            int i = getRightAnchorageJointIndex();
+            xRestraint[i] = yRestraint[i] = true;
+        }
+    }
+
     /**
      * Return the total number of joint restraints due to abutments and pier.
      *
@@ -30,8 +30,8 @@ import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
+import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
-import java.util.Iterator;
 import javax.swing.AbstractAction;
 import javax.swing.ActionMap;
 import javax.swing.InputMap;
@@ -39,6 +39,8 @@ import javax.swing.JComponent;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.KeyStroke;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import org.jdesktop.application.ResourceMap;
 
 /**
@@ -1398,11 +1400,29 @@ public class DraftingPanel extends JPanel implements RulerHost {
             private final ArrayList<Point> ptOther = new ArrayList<Point>();
             private final Rectangle partialCursorExtent = new Rectangle(0, 0, -1, -1);
             private final Rectangle cursorExtent = new Rectangle();
+            private final Rectangle ratioLabelExtent = new Rectangle(0, 0, -1, -1);
             private final Point snapOffset = new Point();
+            private Member[] membersOfJoint;
+            private DragAnalysis dragAnalysis;
+            private final ChangeListener dragAnalysisListener = new ChangeListener() {
+                public void stateChanged(ChangeEvent e) {
+                    if (e.getSource() == dragAnalysis && crosshairs.areValid()) {
+                        erase();
+                        crosshairs.update(true);
+                        paint();
+                    }
+                }
+            };
 
             public void start(HotEditableItem<BridgePaintContext> hot, Point ptViewport, boolean extendSelection) {
                 Joint joint = (Joint) hot;
-                Member[] membersOfJoint = bridge.findMembersWithJoint(joint);
+                membersOfJoint = bridge.findMembersWithJoint(joint);
+                // In live load test mode, analyze the bridge as the joint is dragged.
+                cancelDragAnalysis();
+                if (bridge.isLiveAnalysisEnabled() && bridge.isAnalyzable() && new StabilityCheck(bridge).isStable()) {
+                    dragAnalysis = new DragAnalysis(bridge, joint, dragAnalysisListener);
+                    dragAnalysis.dragTo(joint.getPointWorld());
+                }
                 // Accumulate a list of all locations of joints connected to this one in viewport coordinates.
                 ptOther.clear();
                 for (int i = 0; i < membersOfJoint.length; i++) {
@@ -1445,41 +1465,93 @@ public class DraftingPanel extends JPanel implements RulerHost {
             }
 
             public void clear() {
+                cancelDragAnalysis();
                 erase();
                 partialCursorExtent.setBounds(0, 0, -1, -1);
             }
 
+            private void cancelDragAnalysis() {
+                if (dragAnalysis != null) {
+                    dragAnalysis.cancel();
+                    dragAnalysis = null;
+                }
+            }
+
             private void paint(Point ptViewport) {
                 if (crosshairs.snap(ptViewport)) {
                     erase();
                     crosshairs.update(true);
-                    Graphics2D g = (Graphics2D) getGraphics();
-                    crosshairs.paint(g);
-                    Stroke savedStroke = g.getStroke();
-                    g.setStroke(dashedStroke);
-                    Color savedColor = g.getColor();
-                    g.setColor(Color.BLUE);
-                    Iterator<Point> e = ptOther.iterator();
-                    Point ptJoint = crosshairs.getPtViewport();
-                    while (e.hasNext()) {
-                        Point point = e.next();
+                    paint();
+                    if (dragAnalysis != null) {
+                        dragAnalysis.dragTo(crosshairs.getPtWorld());
+                    }
+                }
+            }
+
+            /**
+             * Paint crosshairs and lines to the joints connected to the one being moved.  If there is a drag
+             * analysis result, each line shows the member's larger force/strength ratio, red for compression
+             * and blue for tension, and the line is solid if the member fails.
+             */
+            private void paint() {
+                final AnalysisResult result = dragAnalysis == null ? null : dragAnalysis.getResult();
+                final boolean showRatios = result != null && result.getStatus() > Analysis.UNSTABLE;
+                Graphics2D g = (Graphics2D) getGraphics();
+                crosshairs.paint(g);
+                Stroke savedStroke = g.getStroke();
+                Color savedColor = g.getColor();
+                Point ptJoint = crosshairs.getPtViewport();
+                ratioLabelExtent.setBounds(0, 0, -1, -1);
+                for (int i = 0; i < ptOther.size(); i++) {
+                    Point point = ptOther.get(i);
+                    if (showRatios) {
+                        int im = membersOfJoint[i].getIndex();
+                        double compression = result.getCompressionForceStrengthRatio(im);
+                        double tension = result.getTensionForceStrengthRatio(im);
+                        double ratio = Math.max(compression, tension);
+                        g.setColor(compression >= tension ? Color.RED : Color.BLUE);
+                        g.setStroke(ratio > 1 ? savedStroke : dashedStroke);
+                        g.drawLine(ptJoint.x, ptJoint.y, point.x, point.y);
+                        String label = String.format("%.2f", ratio);
+                        Rectangle2D bounds = g.getFontMetrics().getStringBounds(label, g);
+                        int x = (ptJoint.x + point.x - (int) bounds.getWidth()) / 2;
+                        int y = (ptJoint.y + point.y + (int) bounds.getHeight()) / 2;
+                        g.drawString(label, x, y);
+                        ratioLabelExtent.add(new Rectangle(x, y - (int) bounds.getHeight(), 
+                                (int) bounds.getWidth() + 1, (int) bounds.getHeight() + 1));
+                    } else {
+                        g.setColor(Color.BLUE);
+                        g.setStroke(dashedStroke);
                         g.drawLine(ptJoint.x, ptJoint.y, point.x, point.y);
                     }
-                    g.setStroke(savedStroke);
-                    g.setColor(savedColor);
-                    g.dispose();
                 }
+                if (result != null && result.getStatus() == Analysis.UNSTABLE) {
+                    String label = BDApp.getResourceMap(DraftingPanel.class).getString("dragUnstable.text");
+                    Rectangle2D bounds = g.getFontMetrics().getStringBounds(label, g);
+                    int x = ptJoint.x + Joint.pixelRadius;
+                    int y = ptJoint.y - Joint.pixelRadius;
+                    g.setColor(Color.MAGENTA);
+                    g.drawString(label, x, y);
+                    ratioLabelExtent.add(new Rectangle(x, y - (int) bounds.getHeight(), 
+                            (int) bounds.getWidth() + 1, (int) bounds.getHeight() + 1));
+                }
+                g.setStroke(savedStroke);
+                g.setColor(savedColor);
+                g.dispose();
             }
 
             /**
              * Erase the cursor by computing a bounding box that includes all the joints connected
-             * to the hot joint and also the current crosshair intersection.  Then restore the bounding
-             * box from the backing store.
+             * to the hot joint, the current crosshair intersection, and any ratio labels.  Then restore 
+             * the bounding box from the backing store.
              */
             private void erase() {
                 if (crosshairs.areValid()) {
                     cursorExtent.setBounds(partialCursorExtent);
                     cursorExtent.add(crosshairs.getPtViewport());
+                    if (!ratioLabelExtent.isEmpty()) {
+                        cursorExtent.add(ratioLabelExtent);
+                    }
                     cursorExtent.grow(1, 1); // needed due to rectangle and drawing coordinate convention
                     paintImmediately(cursorExtent);
                     crosshairs.erase();
@@ -0,0 +1,256 @@
+/*
+ * DragAnalysis.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * Interactive analysis of a bridge while one of its joints is dragged, before the move becomes an edit.
+ * The analysis works on a private copy of the bridge and keeps its factored stiffness matrix from frame to
+ * frame.  Moving a joint changes only the matrix rows and columns of the joint and its neighbors, and the
+ * topology stays the same, so each frame reuses the joint ordering and profile and refactors only from the
+ * first equation of the dragged joint's members on.  Earlier factor columns are kept as they are.  Results 
+ * are exactly those of a fresh analysis, including the small pivot rule for unstable bridges.
+ *
+ * Frames run on a worker thread, and results are published on the event dispatch thread.  Only the latest
+ * drag location is analyzed.  Locations that arrive while a frame is running replace one another, so
+ * intermediate frames are dropped when the solver falls behind.  A frame that takes longer than the frame
+ * budget is followed by an equal rest, so the pointer and painting stay responsive for large bridges.
+ *
+ * @author Eugene K. Ressler
+ */
+public class DragAnalysis {
+
+    /**
+     * Time in milliseconds a frame may take before the worker rests to let painting catch up.
+     */
+    private static final int frameBudget = 25;
+    /**
+     * Executor shared by all drag analyses.  There is at most one drag at a time.
+     */
+    private static ExecutorService dragAnalysisExecutor;
+    /**
+     * Private copy of the bridge with the dragged joint moved to the location of the current frame.
+     */
+    private final BridgeModel bridge;
+    /**
+     * The copy's dragged joint.
+     */
+    private final Joint joint;
+    /**
+     * Analysis that keeps the factorization of the drag between frames.  Confined to the worker.
+     */
+    private final Analysis analysis = new Analysis();
+    /**
+     * Listener told of each new result on the event dispatch thread.
+     */
+    private final ChangeListener listener;
+    /**
+     * Latest location not yet analyzed or null if none.  Guarded by this.
+     */
+    private Affine.Point pendingLocation = null;
+    /**
+     * Whether a frame task is queued or running.  Guarded by this.
+     */
+    private boolean running = false;
+    /**
+     * Whether the drag has ended, so no more results are published.  Guarded by this.
+     */
+    private boolean cancelled = false;
+    /**
+     * Numbers of frames analyzed and dropped.  Guarded by this.
+     */
+    private int frameCount = 0;
+    private int droppedFrameCount = 0;
+    /**
+     * Latest published result and the location it was computed for.  Event dispatch thread only.
+     */
+    private AnalysisResult result = null;
+    private Affine.Point resultLocation = null;
+
+    /**
+     * Construct a drag analysis for the given joint of a bridge.  Nothing is analyzed until the first call
+     * of <code>dragTo</code>, normally with the joint where it is, which sets up the factorization for the drag.
+     *
+     * @param bridge bridge being edited
+     * @param joint joint about to be dragged
+     * @param listener listener to tell of new results on the event dispatch thread or null for none
+     */
+    public DragAnalysis(BridgeModel bridge, Joint joint, ChangeListener listener) {
+        this.bridge = new BridgeModel();
+        this.bridge.read(bridge.toString());
+        this.joint = this.bridge.getJoints().get(joint.getIndex());
+        this.listener = listener;
+    }
+
+    /**
+     * Ask for an analysis with the dragged joint at the given location.  Replaces any location not yet
+     * analyzed.
+     *
+     * @param ptWorld new location of the dragged joint
+     */
+    public synchronized void dragTo(Affine.Point ptWorld) {
+        if (cancelled) {
+            return;
+        }
+        if (pendingLocation != null) {
+            ++droppedFrameCount;
+        }
+        pendingLocation = new Affine.Point(ptWorld);
+        if (!running) {
+            running = true;
+            getDragAnalysisExecutor().execute(new Runnable() {
+                public void run() {
+                    runFrames();
+                }
+            });
+        }
+    }
+
+    /**
+     * End the drag.  Frames in progress finish, but their results are not published.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        pendingLocation = null;
+    }
+
+    /**
+     * Return the latest published result or null if there is none yet.  Call on the event dispatch thread.
+     *
+     * @return latest result
+     */
+    public AnalysisResult getResult() {
+        return result;
+    }
+
+    /**
+     * Return the location of the dragged joint for the latest published result or null if there is none yet.
+     * Call on the event dispatch thread.
+     *
+     * @return location of the latest result
+     */
+    public Affine.Point getResultLocation() {
+        return resultLocation;
+    }
+
+    /**
+     * Return the number of frames analyzed so far.
+     *
+     * @return number of frames
+     */
+    public synchronized int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Return the number of drag locations replaced by later ones before they could be analyzed.
+     *
+     * @return number of dropped frames
+     */
+    public synchronized int getDroppedFrameCount() {
+        return droppedFrameCount;
+    }
+
+    /**
+     * Analyze the bridge with the dragged joint at the given location on the calling thread.  Frames use
+     * this, and it is also useful for checking results.  Must not be called while frames may be running.
+     *
+     * @param ptWorld location of the dragged joint
+     * @return analysis result
+     */
+    AnalysisResult analyze(Affine.Point ptWorld) {
+        joint.getPointWorld().setLocation(ptWorld);
+        analysis.initialize(bridge);
+        return analysis.getResult();
+    }
+
+    /**
+     * Analyze pending locations until there are none, publishing each result.  Runs on the worker.
+     */
+    private void runFrames() {
+        while (true) {
+            final Affine.Point ptWorld;
+            synchronized (this) {
+                if (cancelled || pendingLocation == null) {
+                    running = false;
+                    return;
+                }
+                ptWorld = pendingLocation;
+                pendingLocation = null;
+                ++frameCount;
+            }
+            final long startTime = System.nanoTime();
+            final AnalysisResult frameResult = analyze(ptWorld);
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    publish(ptWorld, frameResult);
+                }
+            });
+            final long elapsed = (System.nanoTime() - startTime) / 1000000;
+            if (elapsed > frameBudget) {
+                try {
+                    Thread.sleep(elapsed);
+                } catch (InterruptedException ex) {
+                    synchronized (this) {
+                        running = false;
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Make a frame's result the latest and tell the listener unless the drag has ended.
+     *
+     * @param ptWorld location of the dragged joint in the frame
+     * @param frameResult result of the frame
+     */
+    private void publish(Affine.Point ptWorld, AnalysisResult frameResult) {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+        }
+        result = frameResult;
+        resultLocation = ptWorld;
+        if (listener != null) {
+            listener.stateChanged(new ChangeEvent(this));
+        }
+    }
+
+    /**
+     * Return the executor for drag analyses, creating it on first use.
+     *
+     * @return drag analysis executor
+     */
+    private static synchronized ExecutorService getDragAnalysisExecutor() {
+        if (dragAnalysisExecutor == null) {
+            dragAnalysisExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Drag analysis");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return dragAnalysisExecutor;
+    }
+}
@@ -14,19 +14,28 @@
 package bridgedesigner;
 
 import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Formatter;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import javax.swing.event.UndoableEditEvent;
@@ -133,6 +142,10 @@ public class EditableBridgeModel extends BridgeModel {
      * Shared current analysis of this bridge.
      */
     protected final Analysis analysis = new Analysis();
+    /**
+     * Recent analysis results of this bridge, so revisited states need not be analyzed again.
+     */
+    protected final AnalysisCache analysisCache = new AnalysisCache(64);
     /**
      * The most recently selected joint or member or null if nothing is selected. Invariants:
      * <ul>
@@ -155,6 +168,32 @@ public class EditableBridgeModel extends BridgeModel {
      * pass for the analysis to be successful.  Null means no analysis has yet succeeded.
      */
     protected Object analysisValidMark = null;
+    /**
+     * Delay in milliseconds after the last structure change before a live analysis starts, so that a burst
+     * of changes is analyzed only once.  About two frames.
+     */
+    private static final int liveAnalysisDelay = 30;
+    /**
+     * Single worker thread shared by all bridges for live analyses.
+     */
+    private static ExecutorService liveAnalysisExecutor;
+    /**
+     * Whether the bridge is analyzed in the background after every structure change.
+     */
+    private boolean liveAnalysisEnabled = false;
+    private Timer liveAnalysisTimer;
+    /**
+     * Analysis used only on the live analysis worker thread, which can often analyze a stock change
+     * incrementally because it sees one edit after another.
+     */
+    private final Analysis liveAnalysis = new Analysis();
+    /**
+     * Count of structure changes while live analysis is enabled.  A live analysis started for an earlier
+     * count is stale, so it's skipped if it hasn't begun and its result is discarded otherwise.  Changed 
+     * only on the event dispatch thread.
+     */
+    private volatile int liveAnalysisGeneration = 0;
+    private Future<?> pendingLiveAnalysis;
     /**
      * Index of the iteration currently loaded in the bridge, when the bridge has not been edited since loading.
      */
@@ -269,6 +308,9 @@ public class EditableBridgeModel extends BridgeModel {
                 parseBytes(iterationList.get(index).getBridgeModelAsBytes());
                 // Preserve stored flag to because save file status isn't changed by iteration loading.
                 undoManager.clear();
+                // If this iteration has been analyzed recently, its analysis is immediately valid.
+                analysisValidMark = analysisCache.restore(analysis, this) && analysis.getStatus() > Analysis.UNSTABLE ? 
+                    undoManager.getMark() : null;
                 loadedIterationIndex = index;
                 editedIterationIndex = -1;
                 loadedIterationIsSnapshot = false;
@@ -404,7 +446,7 @@ public class EditableBridgeModel extends BridgeModel {
      * Analyze the current bridge.
      */
     public void analyze() {
-        analysis.initialize(this);
+        analysisCache.analyze(analysis, this);
         analysisValidMark = analysis.getStatus() > Analysis.UNSTABLE ? undoManager.getMark() : null;
         fireAnalysisChange();
         saveIteration();
@@ -412,14 +454,134 @@ public class EditableBridgeModel extends BridgeModel {
     }
     
     /**
-     * Return true iff necessary conditions for the bridge to be analyzed have been met.
+     * Turn live analysis on or off.  While it's on, the bridge is analyzed on a background thread shortly 
+     * after each structure change, and the result is published with an analysis change event as though 
+     * <code>analyze</code> had been called, except that no design iteration is saved.  Call only on the 
+     * event dispatch thread.
      * 
-     * @return true if a bridge analysis might be successful
+     * @param enabled whether live analysis is on
      */
-    public boolean isAnalyzable() {
-        return members.size() >=  2 * joints.size() - designConditions.getNJointRestraints();
+    public void setLiveAnalysisEnabled(boolean enabled) {
+        liveAnalysisEnabled = enabled;
+        if (enabled) {
+            scheduleLiveAnalysis();
+        }
+        else {
+            ++liveAnalysisGeneration;
+            if (liveAnalysisTimer != null) {
+                liveAnalysisTimer.stop();
+            }
+        }
     }
-    
+
+    /**
+     * Return true iff live analysis is on.
+     * 
+     * @return true iff live analysis is on
+     */
+    public boolean isLiveAnalysisEnabled() {
+        return liveAnalysisEnabled;
+    }
+
+    /**
+     * Make any live analysis in progress stale and start a fresh one after the live analysis delay, 
+     * restarting the delay if one was already scheduled.
+     */
+    private void scheduleLiveAnalysis() {
+        ++liveAnalysisGeneration;
+        if (pendingLiveAnalysis != null) {
+            pendingLiveAnalysis.cancel(false);
+            pendingLiveAnalysis = null;
+        }
+        if (liveAnalysisTimer == null) {
+            liveAnalysisTimer = new Timer(liveAnalysisDelay, new ActionListener() {
+                public void actionPerformed(ActionEvent e) {
+                    startLiveAnalysis();
+                }
+            });
+            liveAnalysisTimer.setRepeats(false);
+        }
+        liveAnalysisTimer.restart();
+    }
+
+    /**
+     * Start analyzing a snapshot of the bridge on the live analysis worker thread unless the current analysis
+     * is already valid or the bridge is certainly unstable.  A cached result is published at once.
+     */
+    private void startLiveAnalysis() {
+        if (!liveAnalysisEnabled || isAnalysisValid() || !isAnalyzable() || !new StabilityCheck(this).isStable()) {
+            return;
+        }
+        final Object mark = undoManager.getMark();
+        if (analysisCache.restore(analysis, this)) {
+            analysisValidMark = analysis.getStatus() > Analysis.UNSTABLE ? mark : null;
+            fireAnalysisChange();
+            return;
+        }
+        final BridgeModel snapshot = new BridgeModel();
+        snapshot.read(toString());
+        final int generation = liveAnalysisGeneration;
+        pendingLiveAnalysis = getLiveAnalysisExecutor().submit(new Runnable() {
+            public void run() {
+                if (generation != liveAnalysisGeneration) {
+                    return;
+                }
+                analysisCache.analyze(liveAnalysis, snapshot);
+                final AnalysisResult result = liveAnalysis.getResult();
+                if (generation != liveAnalysisGeneration) {
+                    return;
+                }
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        publishLiveAnalysis(mark, result);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Make a live analysis result current if the bridge is still in the state that was analyzed.
+     * 
+     * @param mark undo mark of the analyzed state
+     * @param result result of the analysis
+     */
+    private void publishLiveAnalysis(Object mark, AnalysisResult result) {
+        if (!liveAnalysisEnabled || !undoManager.isAtMark(mark)) {
+            return;
+        }
+        analysis.restore(this, result);
+        analysisValidMark = result.getStatus() > Analysis.UNSTABLE ? mark : null;
+        fireAnalysisChange();
+    }
+
+    /**
+     * Return the executor for live analyses, creating it on first use.
+     * 
+     * @return live analysis executor
+     */
+    private static synchronized ExecutorService getLiveAnalysisExecutor() {
+        if (liveAnalysisExecutor == null) {
+            liveAnalysisExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Live analysis");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return liveAnalysisExecutor;
+    }
+
+    /**
+     * Return the cache of recent analysis results of this bridge.
+     * 
+     * @return analysis cache
+     */
+    public AnalysisCache getAnalysisCache() {
+        return analysisCache;
+    }
+
     /**
      * Return true iff the current state of the current analsis (if any) matches the current state of the
      * bridge as determined by undo manager state.
@@ -517,6 +679,9 @@ public class EditableBridgeModel extends BridgeModel {
         while (e.hasNext()) {
             e.next().stateChanged(new ChangeEvent(this));
         }
+        if (liveAnalysisEnabled) {
+            scheduleLiveAnalysis();
+        }
     }
 
     /**
@@ -636,21 +801,8 @@ public class EditableBridgeModel extends BridgeModel {
         }
         // Reject members that intersect a pier.  This works in concert with DraftingCoordinates, which prevents 
         // joints from ever occurring on top of a pier.
-        if (designConditions.isHiPier()) {
-            final Affine.Point pierLocation = designConditions.getPrescribedJointLocation(designConditions.getPierJointIndex());
-            final double eps = 1e-6;
-            Affine.Point a = jointA.getPointWorld();
-            Affine.Point b = jointB.getPointWorld();
-            if ((a.x < pierLocation.x && pierLocation.x < b.x) ||
-                (b.x < pierLocation.x && pierLocation.x < a.x)) {
-                double dx = b.x - a.x;
-                if (Math.abs(dx) > eps) {
-                    double y = (pierLocation.x - a.x) * (b.y - a.y) / dx + a.y;
-                    if (y < pierLocation.y - eps) {
-                        return ADD_MEMBER_CROSSES_PIER;
-                    }
-                }
-            }
+        if (designConditions.isCrossingHiPier(jointA.getPointWorld(), jointB.getPointWorld())) {
+            return ADD_MEMBER_CROSSES_PIER;
         }
         if (members.size() >= DesignConditions.maxMemberCount) {
             return ADD_MEMBER_AT_MAX;
@@ -683,36 +835,6 @@ public class EditableBridgeModel extends BridgeModel {
         return MOVE_JOINT_OK;
     }
 
-    /**
-     * A helper routine to find any joints lying on the member from joint a to b and
-     * return them in order of distance from a.
-     * 
-     * @param rtn vector to hold results
-     * @param a the first joint of the potentially transsected member
-     * @param b the second joint of the potentially transsected member
-     */
-    public void getTranssectedJoints(ArrayList<Joint> rtn, Joint a, Joint b) {
-        rtn.clear();
-        Iterator<Joint> j = joints.iterator();
-        while (j.hasNext()) {
-            Joint joint = j.next();
-            if (joint.getPointWorld().onSegment(a.getPointWorld(), b.getPointWorld())) {
-                double distSq = a.getPointWorld().distanceSq(joint.getPointWorld());
-                boolean didInsert = false;
-                for (int i = 0; i < rtn.size(); i++) {
-                    if (a.getPointWorld().distanceSq(rtn.get(i).getPointWorld()) > distSq) {
-                        rtn.add(i, joint);
-                        didInsert = true;
-                        break;
-                    }
-                }
-                if (!didInsert) {
-                    rtn.add(joint);
-                }
-            }
-        }
-    }
-
     /**
      * Return the joint closest to ptWorld and within the given search pixelRadius.  Optionally
      * ignore fixed vertices.
@@ -1040,6 +1162,26 @@ public class EditableBridgeModel extends BridgeModel {
         }
     }
 
+    /**
+     * Make the given members the selection, e.g. to show where a problem lies.  This fires a selection
+     * change event if necessary.
+     * 
+     * @param toSelect members to select
+     * @return true iff a change to the selection actually occurred
+     */
+    public boolean selectMembers(Collection<Member> toSelect) {
+        boolean change = clearSelection(false);
+        for (Member member : toSelect) {
+            if (selectMember(member, true)) {
+                change = true;
+            }
+        }
+        if (change) {
+            fireSelectionChange();
+        }
+        return change;
+    }
+
     /**
      * Return true iff there is at least one item selected.
      * 
@@ -1174,6 +1316,33 @@ public class EditableBridgeModel extends BridgeModel {
         }
     }
 
+    /**
+     * Change the stock of all members to the given stock, e.g. found by a <code>MemberSizer</code>, as
+     * one undoable edit.
+     * 
+     * @param stock new stock indexed by member
+     * @return true iff any member changed
+     */
+    public boolean changeMemberStock(StockSelector.Descriptor [] stock) {
+        ChangeMembersCommand command = new ChangeMembersCommand(this, stock);
+        if (command.getChangedMemberCount() == 0) {
+            return false;
+        }
+        command.execute(undoManager);
+        return true;
+    }
+
+    /**
+     * Move joints and change the stock of all members as found by a <code>JointOptimizer</code>, as one
+     * undoable edit.
+     * 
+     * @param moves joint moves in the order they are to be made
+     * @param stock new stock indexed by member
+     */
+    public void optimizeJoints(JointOptimizer.Move [] moves, StockSelector.Descriptor [] stock) {
+        new OptimizeJointsCommand(this, moves, stock).execute(undoManager);
+    }
+
     /**
      * Delete the given element, which may be either a joint or a member.  If the element is null, do nothing.
      * 
@@ -1265,11 +1434,21 @@ public class EditableBridgeModel extends BridgeModel {
     }
 
     @Override
-    public void write(File f) throws IOException {
-        super.write(f);
+    public void write(File f, int format) throws IOException {
+        super.write(f, format);
         undoManager.save();
     }
 
+    /**
+     * Return the status of the current analysis if it's valid for the bridge as it stands, else no status.
+     *
+     * @return one of the <code>Analysis</code> status codes
+     */
+    @Override
+    public int getRecordedStatus() {
+        return isAnalysisValid() ? analysis.getStatus() : Analysis.NO_STATUS;
+    }
+
     /**
      * Return a string representation of load test results as tab delimited text.
      * Should only be called if the analysis is valid.  Results paste nicely into Excel.
@@ -1277,8 +1456,9 @@ public class EditableBridgeModel extends BridgeModel {
      * @return tab delimited text
      */
     public String toTabDelimitedText() {
+        final AnalysisResult result = analysis.getResult();
         ResourceMap resourceMap = BDApp.getResourceMap(EditableBridgeModel.class);
-        if (analysis.getStatus() <= Analysis.UNSTABLE) {
+        if (result.getStatus() <= Analysis.UNSTABLE) {
             return resourceMap.getString("invalid.text");
         }
         StringBuilder str = new StringBuilder();
@@ -1304,9 +1484,9 @@ public class EditableBridgeModel extends BridgeModel {
             formatter.format("%d\t%s\t%s\t%s\t%.2f\t%.2f\t%.2f\t%s\t%.2f\t%.2f\t%s\n", 
                     member.getNumber(), member.getMaterial().getShortName(), 
                     member.getShape().getSection().getName(), member.getShape().getName(), 
-                    member.getLength(), analysis.getMemberCompressiveForce(i), analysis.getMemberCompressiveStrength(i), 
+                    member.getLength(), result.getMemberCompressiveForce(i), result.getMemberCompressiveStrength(i), 
                     MemberTable.getMemberStatusString(member.getCompressionForceStrengthRatio() <= 1), 
-                    analysis.getMemberTensileForce(i), analysis.getMemberTensileStrength(i), 
+                    result.getMemberTensileForce(i), result.getMemberTensileStrength(i), 
                     MemberTable.getMemberStatusString(member.getTensionForceStrengthRatio() <= 1));
         }
         return str.toString();
@@ -1376,12 +1556,13 @@ public class EditableBridgeModel extends BridgeModel {
         "</body></html>";
 
     public String toHTML() {
+        final AnalysisResult result = analysis.getResult();
         StringBuilder str = new StringBuilder();
         str.append(String.format(headHTML,
                 iterationNumber,
                 designConditions.getCodeLong(),
                 designConditions.getTag(),
-                analysis.getStatus() == Analysis.PASSES ? getTotalCost() : 0.0));
+                result.getStatus() == Analysis.PASSES ? getTotalCost() : 0.0));
         Iterator<Member> mi = members.iterator();
         while (mi.hasNext()) {
             Member m = mi.next();
@@ -1396,8 +1577,8 @@ public class EditableBridgeModel extends BridgeModel {
                         m.getShape().getSection().getShortName(),
                         m.getMaterial().getShortName(),
                         m.getLength(),
-                        analysis.getMemberCompressiveForce(i),
-                        analysis.getMemberTensileForce(i)));            }
+                        result.getMemberCompressiveForce(i),
+                        result.getMemberTensileForce(i)));            }
             else {
                 str.append(String.format(rowHTML,
                         m.getNumber(),
@@ -1405,12 +1586,12 @@ public class EditableBridgeModel extends BridgeModel {
                         m.getShape().getSection().getShortName(),
                         m.getMaterial().getShortName(),
                         m.getLength(),
-                        analysis.getMemberCompressiveForce(i),
-                        analysis.getMemberCompressiveStrength(i),
+                        result.getMemberCompressiveForce(i),
+                        result.getMemberCompressiveStrength(i),
                         cr,
                         cr > 1 ? failHTML : okHTML,
-                        analysis.getMemberTensileForce(i),
-                        analysis.getMemberTensileStrength(i),
+                        result.getMemberTensileForce(i),
+                        result.getMemberTensileStrength(i),
                         tr,
                         tr > 1 ? failHTML : okHTML));
             }
@@ -1466,6 +1647,7 @@ public class EditableBridgeModel extends BridgeModel {
      * @return 
      */
     public String toText() {
+        final AnalysisResult result = analysis.getResult();
         StringBuilder str = new StringBuilder();
         str.append(iterationNumber);
         str.append('\t');
@@ -1473,7 +1655,7 @@ public class EditableBridgeModel extends BridgeModel {
         str.append('\t');
         str.append(designConditions.getTag());
         str.append('\t');
-        str.append(analysis.getStatus() == Analysis.PASSES ? getTotalCost() : 0.0);
+        str.append(result.getStatus() == Analysis.PASSES ? getTotalCost() : 0.0);
         str.append('\n');
         Iterator<Member> mi = members.iterator();
         while (mi.hasNext()) {
@@ -1492,17 +1674,17 @@ public class EditableBridgeModel extends BridgeModel {
             str.append('\t');
             str.append(m.getLength());
             str.append('\t');
-            str.append(analysis.getMemberCompressiveForce(i));
+            str.append(result.getMemberCompressiveForce(i));
             str.append('\t');
-            str.append(analysis.getMemberCompressiveStrength(i));
+            str.append(result.getMemberCompressiveStrength(i));
             str.append('\t');
             str.append(cr);
             str.append('\t');
             str.append(s > designConditions.getAllowableSlenderness() ? "Slenderness" : cr > 1 ? "Fail" : "OK");
             str.append('\t');
-            str.append(analysis.getMemberTensileForce(i));
+            str.append(result.getMemberTensileForce(i));
             str.append('\t');
-            str.append(analysis.getMemberTensileStrength(i));
+            str.append(result.getMemberTensileStrength(i));
             str.append('\t');
             str.append(tr);
             str.append('\t');
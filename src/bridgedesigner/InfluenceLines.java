@@ -0,0 +1,216 @@
+/*
+ * InfluenceLines.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+/**
+ * Influence lines of member forces for a truck moving continuously along the deck.
+ *
+ * The influence line of a member is its force due to a downward unit load as a function of the load's
+ * position along the deck.  The deck carries loads to its joints by the lever rule, so an influence line is
+ * linear between deck joints and is fully described by its values for unit loads at the joints.  These come
+ * from one solve with the factored stiffness matrix of an analysis; see
+ * <code>Analysis.getInfluenceLines</code>.  After that, the force in any member with the truck at any position
+ * is a short sum, and the force envelope over all truck positions is exact.
+ *
+ * Positions are in panels from the left end of the deck: position x puts the front axle x panels from deck
+ * joint 0 and the rear axle one panel behind it.  Whole positions 1 through n-1, with n loaded joints, are the
+ * load cases of the analysis.  An axle off the ends of the deck carries no load.  Because the axles are one
+ * panel apart, the forces between whole positions are linear blends of those at the positions on either side,
+ * which is what the load test animation shows.  Where the deck ends are not supported, as with arches, the
+ * envelope also includes the truck partly on the deck at positions 0 and n, which are not load cases.
+ *
+ * @author Eugene K. Ressler
+ */
+public class InfluenceLines {
+
+    private final int nLoadedJoints;
+    private final int nMembers;
+    /**
+     * Force in member im for a downward unit load at deck joint j is at <code>[j * nMembers + im]</code>.
+     */
+    private final double[] influence;
+    private final double[] deadLoadForce;
+    /**
+     * Factored axle loads in kilonewtons.
+     */
+    private final double frontAxleLoad;
+    private final double rearAxleLoad;
+    private final double[] compressiveStrength;
+    private final double[] tensileStrength;
+    /**
+     * Force envelopes over dead load alone and all truck positions, found when the lines are constructed.
+     */
+    private final double[] maxCompressiveForce;
+    private final double[] maxTensileForce;
+
+    /**
+     * Construct influence lines.  Analysis only.
+     *
+     * @param nLoadedJoints number of deck joints
+     * @param nMembers number of members
+     * @param influence member forces for unit loads on deck joints, indexed by deck joint, then member
+     * @param deadLoadForce member forces due to dead load alone
+     * @param frontAxleLoad factored front axle load
+     * @param rearAxleLoad factored rear axle load
+     * @param compressiveStrength member compressive strengths
+     * @param tensileStrength member tensile strengths
+     */
+    InfluenceLines(int nLoadedJoints, int nMembers, double[] influence, double[] deadLoadForce,
+            double frontAxleLoad, double rearAxleLoad, double[] compressiveStrength, double[] tensileStrength) {
+        this.nLoadedJoints = nLoadedJoints;
+        this.nMembers = nMembers;
+        this.influence = influence;
+        this.deadLoadForce = deadLoadForce;
+        this.frontAxleLoad = frontAxleLoad;
+        this.rearAxleLoad = rearAxleLoad;
+        this.compressiveStrength = compressiveStrength;
+        this.tensileStrength = tensileStrength;
+        maxCompressiveForce = new double[nMembers];
+        maxTensileForce = new double[nMembers];
+        // Influence lines are linear between deck joints, so extremes are at whole positions.
+        for (int im = 0; im < nMembers; im++) {
+            for (int xLoad = -1; xLoad <= nLoadedJoints; xLoad++) {
+                final double force = getMemberForce(xLoad, im);
+                if (force < 0) {
+                    maxCompressiveForce[im] = Math.max(maxCompressiveForce[im], -force);
+                }
+                else {
+                    maxTensileForce[im] = Math.max(maxTensileForce[im], force);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the number of deck joints.  Truck positions run from 0 to this number.
+     *
+     * @return number of deck joints
+     */
+    public int getNLoadedJoints() {
+        return nLoadedJoints;
+    }
+
+    /**
+     * Return the number of members.
+     *
+     * @return number of members
+     */
+    public int getNMembers() {
+        return nMembers;
+    }
+
+    /**
+     * Return the force in a member due to a downward unit load on the deck.
+     *
+     * @param xLoad position of the load in panels from the left end of the deck
+     * @param im member index
+     * @return force per kilonewton of load, positive for tension, zero if the load is off the deck
+     */
+    public double getInfluence(double xLoad, int im) {
+        if (!(xLoad >= 0 && xLoad <= nLoadedJoints - 1)) {
+            return 0;
+        }
+        final int j = (int)xLoad;
+        if (j == nLoadedJoints - 1) {
+            return influence[j * nMembers + im];
+        }
+        final double t = xLoad - j;
+        return (1 - t) * influence[j * nMembers + im] + t * influence[(j + 1) * nMembers + im];
+    }
+
+    /**
+     * Return the force in a member due to dead load alone.
+     *
+     * @param im member index
+     * @return dead load force
+     */
+    public double getDeadLoadForce(int im) {
+        return deadLoadForce[im];
+    }
+
+    /**
+     * Return the force in a member due to dead load and the truck at a given position.
+     *
+     * @param xLoad position of the front axle in panels from the left end of the deck
+     * @param im member index
+     * @return member force, positive for tension
+     */
+    public double getMemberForce(double xLoad, int im) {
+        return deadLoadForce[im] + frontAxleLoad * getInfluence(xLoad, im) + rearAxleLoad * getInfluence(xLoad - 1, im);
+    }
+
+    /**
+     * Return the forces in all members due to dead load and the truck at a given position.
+     *
+     * @param force array to receive member forces
+     * @param xLoad position of the front axle in panels from the left end of the deck
+     */
+    public void getMemberForces(double[] force, double xLoad) {
+        for (int im = 0; im < nMembers; im++) {
+            force[im] = getMemberForce(xLoad, im);
+        }
+    }
+
+    /**
+     * Return the ratio of member force to strength with the truck at a given position.
+     *
+     * @param xLoad position of the front axle in panels from the left end of the deck
+     * @param im member index
+     * @return ratio, negative for compression and positive for tension
+     */
+    public double getForceStrengthRatio(double xLoad, int im) {
+        final double force = getMemberForce(xLoad, im);
+        return force > 0 ? force / tensileStrength[im] : force / compressiveStrength[im];
+    }
+
+    /**
+     * Return the largest compressive force in a member over all truck positions, zero if there is none.
+     *
+     * @param im member index
+     * @return maximum compressive force as a positive number
+     */
+    public double getMaxCompressiveForce(int im) {
+        return maxCompressiveForce[im];
+    }
+
+    /**
+     * Return the largest tensile force in a member over all truck positions, zero if there is none.
+     *
+     * @param im member index
+     * @return maximum tensile force
+     */
+    public double getMaxTensileForce(int im) {
+        return maxTensileForce[im];
+    }
+
+    /**
+     * Return the ratio of the largest compressive force in a member to its compressive strength.
+     *
+     * @param im member index
+     * @return compression force strength ratio
+     */
+    public double getCompressionForceStrengthRatio(int im) {
+        return maxCompressiveForce[im] / compressiveStrength[im];
+    }
+
+    /**
+     * Return the ratio of the largest tensile force in a member to its tensile strength.
+     *
+     * @param im member index
+     * @return tension force strength ratio
+     */
+    public double getTensionForceStrengthRatio(int im) {
+        return maxTensileForce[im] / tensileStrength[im];
+    }
+}
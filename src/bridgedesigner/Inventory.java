@@ -81,7 +81,8 @@ public class Inventory {
     }
 
     /**
-     * Return compressive strength of a given material and shape of a given length.
+     * Return compressive strength of a given material and shape of a given length by the exact formula.
+     * <code>StrengthTable</code> gives a faster approximation with a known error bound.
      * 
      * @param material material
      * @param shape shape
@@ -136,6 +137,24 @@ public class Inventory {
         return materials[index];
     }
     
+    /**
+     * Return the number of materials in the inventory.
+     * 
+     * @return number of materials
+     */
+    public int getNMaterials() {
+        return materials.length;
+    }
+    
+    /**
+     * Return the number of cross-sections in the inventory.
+     * 
+     * @return number of cross-sections
+     */
+    public int getNSections() {
+        return crossSections.length;
+    }
+    
     /**
      * Return the number of shapes in the inventory that have a given section.
      * 
@@ -57,13 +57,16 @@ public class Joint implements HotEditableItem<BridgePaintContext> {
      */
     private int index = -1;
     /*
-     * Bitmap images taken from resources
-     */
-    public final static Image fixedJointImage = BDApp.getApplication().getImageResource("fixedjoint.png");
-    public final static Image normalJointImage = BDApp.getApplication().getImageResource("normaljoint.png");
-    public final static Image selectedJointImage = BDApp.getApplication().getImageResource("selectedjoint.png");
-    public final static Image hotJointImage = BDApp.getApplication().getImageResource("hotjoint.png");
-    public final static Image hotSelectedJointImage = BDApp.getApplication().getImageResource("hotselectedjoint.png");
+     * Bitmap images taken from resources. They're loaded when a joint is first painted rather than
+     * when the class is loaded so that joints can be used without a running application, e.g. in batch analysis.
+     */
+    private static class Images {
+        public final static Image fixedJointImage = BDApp.getApplication().getImageResource("fixedjoint.png");
+        public final static Image normalJointImage = BDApp.getApplication().getImageResource("normaljoint.png");
+        public final static Image selectedJointImage = BDApp.getApplication().getImageResource("selectedjoint.png");
+        public final static Image hotJointImage = BDApp.getApplication().getImageResource("hotjoint.png");
+        public final static Image hotSelectedJointImage = BDApp.getApplication().getImageResource("hotselectedjoint.png");
+    }
     /**
      * Number of segements in the cylinders used to represent joints and caps.
      */
@@ -243,9 +246,9 @@ public class Joint implements HotEditableItem<BridgePaintContext> {
         else {
             // Screen drawing is a fixed-size bitmap blitted to the correct location.
             drawJointImage(g, viewportTransform, 
-                    isFixed() ? fixedJointImage : 
-                        isSelected() ? selectedJointImage : 
-                            normalJointImage);
+                    isFixed() ? Images.fixedJointImage : 
+                        isSelected() ? Images.selectedJointImage : 
+                            Images.normalJointImage);
         }
     }
 
@@ -256,7 +259,7 @@ public class Joint implements HotEditableItem<BridgePaintContext> {
      * @param ctx
      */
     public void paintHot(Graphics2D g, ViewportTransform viewportTransform, BridgePaintContext ctx) {
-        drawJointImage(g, viewportTransform, isSelected() ? hotSelectedJointImage : hotJointImage);
+        drawJointImage(g, viewportTransform, isSelected() ? Images.hotSelectedJointImage : Images.hotJointImage);
     }
 
     /**
@@ -0,0 +1,627 @@
+/*
+ * JointOptimizer.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.awt.Point;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Search for joint locations that make a bridge cheaper while it continues to pass the load test.  Fixed
+ * joints stay where they are, and the connections of members never change.  Works on a private copy of the
+ * bridge, so it may run on any thread, and leaves the caller to apply the result, e.g. as one undoable
+ * edit with <code>EditableBridgeModel.optimizeJoints</code>.
+ *
+ * The bridge is first sized with a <code>MemberSizer</code>.  Then each pass considers moving every free
+ * joint by one, two, or four fine grid spacings in each of eight directions, keeping only moves to valid
+ * drafting locations that don't put a joint on a member.  Member forces after each move are predicted from
+ * their rates of change with respect to joint coordinates, computed from the stiffness factorization of
+ * the current design.  These give the predicted cost of each move with the cheapest adequate stock for
+ * every member.  The most promising moves are then sized and load tested in parallel, each on its own copy
+ * of the bridge, and the cheapest passing one is accepted.  Passes continue until no move helps.  The
+ * result is a local optimum, not necessarily the global one.
+ *
+ * @author Eugene K. Ressler
+ */
+public class JointOptimizer {
+
+    /**
+     * Receiver of progress reports from a running optimizer.
+     */
+    public interface ProgressListener {
+
+        /**
+         * Report progress.  Called on the thread running the optimizer.
+         *
+         * @param optimizer the optimizer reporting progress
+         */
+        void reportProgress(JointOptimizer optimizer);
+    }
+
+    /**
+     * One accepted joint move.
+     */
+    public static class Move {
+
+        /**
+         * Index of the moved joint.
+         */
+        public final int jointIndex;
+        /**
+         * New location of the joint.
+         */
+        public final Affine.Point ptWorld;
+
+        Move(int jointIndex, Affine.Point ptWorld) {
+            this.jointIndex = jointIndex;
+            this.ptWorld = new Affine.Point(ptWorld);
+        }
+    }
+
+    /**
+     * Largest number of passes, each of which accepts at most one move.
+     */
+    private static final int maxPasses = 200;
+    /**
+     * Lengths of candidate moves in fine grid spacings.
+     */
+    private static final int [] moveSteps = { 1, 2, 4 };
+    /**
+     * Directions of candidate moves.
+     */
+    private static final int [] moveDx = { 1, 1, 0, -1, -1, -1, 0, 1 };
+    private static final int [] moveDy = { 0, 1, 1, 1, 0, -1, -1, -1 };
+    /**
+     * Number of candidate moves load tested per pass for each processor, but at least
+     * <code>minTrials</code> in all.
+     */
+    private static final int trialsPerProcessor = 2;
+    private static final int minTrials = 8;
+    /**
+     * Least cost saving in dollars for which a move is accepted.
+     */
+    private static final double minSaving = 0.005;
+    /**
+     * Least time between progress reports in nanoseconds.
+     */
+    private static final long progressInterval = 100000000L;
+    /**
+     * Number of processors available for load testing candidate moves.
+     */
+    private static final int parallelism = Runtime.getRuntime().availableProcessors();
+    /**
+     * Executor shared by all optimizers for load testing candidate moves.
+     */
+    private static ExecutorService trialExecutor;
+
+    /**
+     * Private copy of the bridge in the best geometry found so far.
+     */
+    private BridgeModel bridge;
+    private final Analysis analysis = new Analysis();
+    private final DraftingCoordinates coordinates;
+    /**
+     * All stock in the inventory sorted by cost per unit length, cheapest first.
+     */
+    private final MemberSizer.Stock [] catalog;
+    private final ArrayList<Move> moves = new ArrayList<Move>();
+    private final double initialCost;
+    private double bestCost = Double.POSITIVE_INFINITY;
+    private ProgressListener listener;
+    private volatile boolean cancelled = false;
+    private volatile boolean done = false;
+    private volatile int passCount = 0;
+    private volatile int evaluationCount = 0;
+    private volatile double reportedBestCost = Double.POSITIVE_INFINITY;
+    private long startTime;
+    private volatile long elapsedTime = 0;
+    private long lastProgressTime;
+
+    /**
+     * Candidate move with its predicted cost change.
+     */
+    private static class Candidate {
+
+        final int jointIndex;
+        final Affine.Point ptWorld;
+        final double predictedChange;
+
+        Candidate(int jointIndex, Affine.Point ptWorld, double predictedChange) {
+            this.jointIndex = jointIndex;
+            this.ptWorld = ptWorld;
+            this.predictedChange = predictedChange;
+        }
+    }
+
+    /**
+     * Outcome of sizing and load testing a bridge with one candidate move made.
+     */
+    private static class Trial {
+
+        final Candidate candidate;
+        final BridgeModel bridge;
+        final double cost;
+        final int evaluationCount;
+
+        Trial(Candidate candidate, BridgeModel bridge, double cost, int evaluationCount) {
+            this.candidate = candidate;
+            this.bridge = bridge;
+            this.cost = cost;
+            this.evaluationCount = evaluationCount;
+        }
+    }
+
+    /**
+     * Construct an optimizer for a bridge.  The bridge is copied, so it may be changed afterward without
+     * affecting the optimizer.
+     *
+     * @param original bridge whose joints are to be moved
+     */
+    public JointOptimizer(BridgeModel original) {
+        bridge = new BridgeModel();
+        bridge.read(original.toString());
+        // Drafting rules for valid joint locations depend only on the design conditions, so a view that is
+        // never shown, and works without a display, suffices.
+        BridgeView view = new BridgeBlueprintView(bridge);
+        view.initialize(bridge.getDesignConditions());
+        coordinates = new DraftingCoordinates(view);
+        coordinates.setDensity(DraftingGrid.FINE_GRID);
+        catalog = MemberSizer.getCatalog(bridge.getInventory());
+        // Sensitivities need the factorization of each design, which an incremental update doesn't leave.
+        analysis.setIncremental(false);
+        initialCost = bridge.getTotalCost();
+    }
+
+    /**
+     * Set the receiver of progress reports.
+     *
+     * @param listener progress listener or null for none
+     */
+    public void setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Ask a running search to stop soon.  The best design found so far remains available.  May be
+     * called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Return true iff the search has been cancelled.
+     *
+     * @return true iff cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Search for cheaper joint locations.
+     *
+     * @return true iff a passing design was found, possibly with no joints moved
+     */
+    public boolean optimize() {
+        startTime = lastProgressTime = System.nanoTime();
+        final MemberSizer sizer = new MemberSizer(bridge);
+        final boolean sized = sizer.optimize();
+        evaluationCount += sizer.getEvaluationCount();
+        if (sized) {
+            bridge = sizer.getBridge();
+            bestCost = reportedBestCost = sizer.getBestCost();
+            while (passCount < maxPasses && !cancelled && improve()) {
+                ++passCount;
+            }
+        }
+        done = true;
+        reportProgress(true);
+        return sized;
+    }
+
+    /**
+     * Make one pass over candidate moves and accept the best one that saves money, if any.
+     *
+     * @return true iff a move was accepted
+     */
+    private boolean improve() {
+        analysis.initialize(bridge);
+        if (analysis.getStatus() != Analysis.PASSES || !analysis.isSensitivityAvailable()) {
+            return false;
+        }
+        final int [] freeJoints = getFreeJoints();
+        if (freeJoints.length == 0) {
+            return false;
+        }
+        final AnalysisResult result = analysis.getResult();
+        final double [] sensitivities = analysis.getMemberForceSensitivities(freeJoints);
+        final double baseCost = predictCost(result, sensitivities, 0, -1, null);
+        ArrayList<Candidate> candidates = new ArrayList<Candidate>();
+        final Affine.Point ptWorld = new Affine.Point();
+        for (int iv = 0; iv < freeJoints.length; iv++) {
+            final Joint joint = bridge.getJoints().get(freeJoints[iv]);
+            for (int id = 0; id < moveDx.length; id++) {
+                for (int is = 0; is < moveSteps.length; is++) {
+                    final double step = moveSteps[is] * DraftingGrid.fineGridSize;
+                    ptWorld.x = joint.getPointWorld().x + moveDx[id] * step;
+                    ptWorld.y = joint.getPointWorld().y + moveDy[id] * step;
+                    if (isValidMove(joint, ptWorld)) {
+                        final double cost = predictCost(result, sensitivities, iv, freeJoints[iv], ptWorld);
+                        if (cost < Double.POSITIVE_INFINITY) {
+                            candidates.add(new Candidate(freeJoints[iv], new Affine.Point(ptWorld), cost - baseCost));
+                        }
+                    }
+                }
+            }
+        }
+        analysis.recycle(result);
+        Collections.sort(candidates, new Comparator<Candidate>() {
+            public int compare(Candidate a, Candidate b) {
+                return Double.compare(a.predictedChange, b.predictedChange);
+            }
+        });
+        final int nTrials = Math.min(candidates.size(), Math.max(minTrials, trialsPerProcessor * parallelism));
+        final String text = bridge.toString();
+        ArrayList<Future<Trial>> trials = new ArrayList<Future<Trial>>(nTrials);
+        for (int i = 0; i < nTrials; i++) {
+            trials.add(getTrialExecutor().submit(newTrial(text, candidates.get(i))));
+        }
+        Trial best = null;
+        for (int i = 0; i < trials.size(); i++) {
+            Trial trial = null;
+            try {
+                trial = trials.get(i).get();
+            } catch (InterruptedException ex) {
+                cancelled = true;
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                // A candidate that can't be evaluated is simply not a candidate.
+            }
+            if (trial != null) {
+                evaluationCount += trial.evaluationCount;
+                if (trial.cost < bestCost - minSaving && (best == null || trial.cost < best.cost)) {
+                    best = trial;
+                }
+            }
+            reportProgress(false);
+        }
+        if (best == null || cancelled) {
+            return false;
+        }
+        moves.add(new Move(best.candidate.jointIndex, best.candidate.ptWorld));
+        bridge = best.bridge;
+        bestCost = reportedBestCost = best.cost;
+        return true;
+    }
+
+    /**
+     * Return a task that makes a candidate move in a fresh copy of the bridge, sizes its members, and
+     * returns the outcome.  The cost of a trial that doesn't pass is positive infinity.
+     *
+     * @param text bridge before the move, as returned by <code>BridgeModel.toString</code>
+     * @param candidate move to make
+     * @return trial task
+     */
+    private Callable<Trial> newTrial(final String text, final Candidate candidate) {
+        return new Callable<Trial>() {
+            public Trial call() {
+                if (cancelled) {
+                    return null;
+                }
+                BridgeModel copy = new BridgeModel();
+                copy.read(text);
+                copy.getJoints().get(candidate.jointIndex).swapContents(new Joint(candidate.jointIndex, candidate.ptWorld));
+                MemberSizer sizer = new MemberSizer(copy);
+                return sizer.optimize() ?
+                    new Trial(candidate, sizer.getBridge(), sizer.getBestCost(), sizer.getEvaluationCount()) :
+                    new Trial(candidate, null, Double.POSITIVE_INFINITY, sizer.getEvaluationCount());
+            }
+        };
+    }
+
+    private int [] getFreeJoints() {
+        int n = 0;
+        for (Joint joint : bridge.getJoints()) {
+            if (!joint.isFixed()) {
+                ++n;
+            }
+        }
+        final int [] freeJoints = new int [n];
+        n = 0;
+        for (Joint joint : bridge.getJoints()) {
+            if (!joint.isFixed()) {
+                freeJoints[n++] = joint.getIndex();
+            }
+        }
+        return freeJoints;
+    }
+
+    /**
+     * Return true iff a joint may be moved to the given location without changing the connections of any
+     * member.  The location must be one where drafting would allow a joint, and it must not be occupied
+     * by another joint.  Neither may the moved joint lie on a member nor the members of the moved joint pass
+     * through another joint, since the drafting board would split the members.  Members may not cross a
+     * high pier.
+     *
+     * @param joint joint to move
+     * @param ptWorld new location
+     * @return true iff the move is valid
+     */
+    private boolean isValidMove(Joint joint, Affine.Point ptWorld) {
+        final Affine.Point ptValid = new Affine.Point();
+        coordinates.shiftToNearestValidWorldPoint(ptValid, new Point(), ptWorld);
+        if (!ptValid.equals(ptWorld) || bridge.findJointAt(ptWorld) != null) {
+            return false;
+        }
+        final DesignConditions conditions = bridge.getDesignConditions();
+        for (Member member : bridge.getMembers()) {
+            if (member.hasJoint(joint)) {
+                final Joint other = member.getJointA() == joint ? member.getJointB() : member.getJointA();
+                if (conditions.isCrossingHiPier(ptWorld, other.getPointWorld())) {
+                    return false;
+                }
+                for (Joint j : bridge.getJoints()) {
+                    if (j != joint && j.getPointWorld().onSegment(ptWorld, other.getPointWorld())) {
+                        return false;
+                    }
+                }
+            }
+            else if (ptWorld.onSegment(member.getJointA().getPointWorld(), member.getJointB().getPointWorld())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return a prediction of the material cost of the bridge with one free joint moved, assuming the
+     * cheapest adequate stock for each member with forces linearized about the current design.  This
+     * omits product and connection costs, which don't depend on geometry to first order, so it's useful
+     * only for ranking candidate moves.
+     *
+     * @param result analysis of the current design
+     * @param sensitivities member force rates of change from <code>Analysis.getMemberForceSensitivities</code>
+     * @param iv index of the moved joint in the free joint list given for the sensitivities
+     * @param jointIndex index of the moved joint or -1 to predict the current cost
+     * @param ptWorld new location of the moved joint
+     * @return predicted material cost or positive infinity if some member would have no adequate stock
+     */
+    private double predictCost(AnalysisResult result, double [] sensitivities, int iv, int jointIndex, Affine.Point ptWorld) {
+        final int nMembers = result.getNMembers();
+        final int nLoadInstances = result.getNLoadInstances();
+        final double allowableSlenderness = bridge.getDesignConditions().getAllowableSlenderness();
+        double dx = 0;
+        double dy = 0;
+        if (jointIndex >= 0) {
+            final Affine.Point pt = bridge.getJoints().get(jointIndex).getPointWorld();
+            dx = ptWorld.x - pt.x;
+            dy = ptWorld.y - pt.y;
+        }
+        final int ixBase = 2 * iv * nLoadInstances * nMembers;
+        final int iyBase = ixBase + nLoadInstances * nMembers;
+        double cost = 0;
+        for (int im = 0; im < nMembers; im++) {
+            final Member member = bridge.getMembers().get(im);
+            double length = member.getLength();
+            if (member.getJointA().getIndex() == jointIndex) {
+                length = ptWorld.distance(member.getJointB().getPointWorld());
+            }
+            else if (member.getJointB().getIndex() == jointIndex) {
+                length = ptWorld.distance(member.getJointA().getPointWorld());
+            }
+            double compression = 0;
+            double tension = 0;
+            for (int ilc = 0; ilc < nLoadInstances; ilc++) {
+                double force = result.getMemberForce(ilc, im);
+                if (jointIndex >= 0) {
+                    final int i = ilc * nMembers + im;
+                    force += sensitivities[ixBase + i] * dx + sensitivities[iyBase + i] * dy;
+                }
+                if (force < 0) {
+                    compression = Math.max(compression, -force);
+                }
+                else {
+                    tension = Math.max(tension, force);
+                }
+            }
+            int i = 0;
+            while (i < catalog.length && !catalog[i].isAdequate(length, allowableSlenderness, compression, tension)) {
+                i++;
+            }
+            if (i == catalog.length) {
+                return Double.POSITIVE_INFINITY;
+            }
+            cost += catalog[i].costPerLength * length;
+        }
+        return cost;
+    }
+
+    /**
+     * Return the executor shared by all optimizers for load testing candidate moves, creating it on first use.
+     * Its threads are daemons so they never keep the program alive.
+     *
+     * @return trial executor
+     */
+    private static synchronized ExecutorService getTrialExecutor() {
+        if (trialExecutor == null) {
+            trialExecutor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+                public Thread newThread(java.lang.Runnable r) {
+                    Thread thread = new Thread(r, "Joint optimizer trials");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return trialExecutor;
+    }
+
+    private void reportProgress(boolean force) {
+        final long now = System.nanoTime();
+        elapsedTime = now - startTime;
+        if (listener != null && (force || now - lastProgressTime >= progressInterval)) {
+            lastProgressTime = now;
+            listener.reportProgress(this);
+        }
+    }
+
+    /**
+     * Return true iff the search has finished.
+     *
+     * @return true iff done
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Return the number of passes that have accepted a move so far.
+     *
+     * @return number of passes
+     */
+    public int getPassCount() {
+        return passCount;
+    }
+
+    /**
+     * Return the number of load tests performed so far, counting those of the member sizing of every
+     * candidate.
+     *
+     * @return number of evaluations
+     */
+    public int getEvaluationCount() {
+        return evaluationCount;
+    }
+
+    /**
+     * Return the average number of load tests per second so far.
+     *
+     * @return evaluations per second
+     */
+    public double getEvaluationsPerSecond() {
+        final long elapsed = elapsedTime;
+        return elapsed > 0 ? evaluationCount * 1e9 / elapsed : 0;
+    }
+
+    /**
+     * Return the cost of the bridge as given to the constructor.
+     *
+     * @return initial cost
+     */
+    public double getInitialCost() {
+        return initialCost;
+    }
+
+    /**
+     * Return the cost of the best passing design found so far or positive infinity if none.
+     *
+     * @return best cost
+     */
+    public double getBestCost() {
+        return reportedBestCost;
+    }
+
+    /**
+     * Return the accepted joint moves in the order they were made.  Call only after <code>optimize</code>
+     * has returned.
+     *
+     * @return joint moves
+     */
+    public Move [] getMoves() {
+        return moves.toArray(new Move[moves.size()]);
+    }
+
+    /**
+     * Return the stock of the best design as descriptors indexed by member.  Call only after
+     * <code>optimize</code> has returned true.
+     *
+     * @return stock descriptors
+     */
+    public StockSelector.Descriptor [] getBestStock() {
+        final int nMembers = bridge.getMembers().size();
+        StockSelector.Descriptor [] stock = new StockSelector.Descriptor [nMembers];
+        for (int im = 0; im < nMembers; im++) {
+            stock[im] = new StockSelector.Descriptor(bridge.getMembers().get(im));
+        }
+        return stock;
+    }
+
+    /**
+     * Return the copy of the bridge with the best design.  Call only after <code>optimize</code> has returned.
+     *
+     * @return optimized bridge
+     */
+    public BridgeModel getBridge() {
+        return bridge;
+    }
+
+    /**
+     * Optimize the joint locations of a bridge file from the command line.
+     * <pre>
+     *   java bridgedesigner.JointOptimizer in.bdc [out.bdc]
+     * </pre>
+     * Progress goes to standard error.  The optimized bridge is written to the output file if one is given.
+     * Exits with status 1 if no passing design was found and 2 for a usage or file error.
+     *
+     * @param args command line arguments
+     */
+    public static void main(String [] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("usage: java JointOptimizer in.bdc [out.bdc]");
+            System.exit(2);
+        }
+        BridgeModel bridge = new BridgeModel();
+        try {
+            bridge.read(new File(args[0]));
+        } catch (IOException ex) {
+            System.err.println(args[0] + ": " + ex.getMessage());
+            System.exit(2);
+        }
+        JointOptimizer optimizer = new JointOptimizer(bridge);
+        optimizer.setProgressListener(new ProgressListener() {
+            public void reportProgress(JointOptimizer optimizer) {
+                System.err.println(String.format(Locale.US, "pass %d: %d evaluations (%.0f/s), best cost $%.2f",
+                        optimizer.getPassCount(), optimizer.getEvaluationCount(),
+                        optimizer.getEvaluationsPerSecond(), optimizer.getBestCost()));
+            }
+        });
+        if (!optimizer.optimize()) {
+            System.err.println("no passing design found.");
+            System.exit(1);
+        }
+        final Move [] moves = optimizer.getMoves();
+        for (int i = 0; i < moves.length; i++) {
+            System.out.println(String.format(Locale.US, "move joint %d to %s", moves[i].jointIndex + 1, moves[i].ptWorld));
+        }
+        System.out.println(String.format(Locale.US, "cost $%.2f -> $%.2f", optimizer.getInitialCost(), optimizer.getBestCost()));
+        if (args.length == 2) {
+            try {
+                optimizer.getBridge().write(new File(args[1]));
+            } catch (IOException ex) {
+                System.err.println(args[1] + ": " + ex.getMessage());
+                System.exit(2);
+            }
+        }
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * JointOrdering.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+/**
+ * A renumbering of bridge joints that keeps the stiffness matrix profile small.
+ *
+ * Joint indices reflect the order the user drew joints in, which can make the skyline of the
+ * stiffness matrix nearly full.  This class computes a reverse Cuthill-McKee ordering of the
+ * joint/member graph and keeps it only if it actually beats the original numbering. The permutation
+ * is meant for use inside solvers; callers map results back to original joint indices with
+ * <code>getNewIndex</code>.
+ *
+ * @author Eugene K. Ressler
+ */
+public class JointOrdering {
+
+    /**
+     * Number of joints in the current ordering.
+     */
+    private int nJoints = 0;
+    /**
+     * Map from original joint index to solver joint index.
+     */
+    private int [] newIndex = new int [0];
+    /**
+     * Map from solver joint index to original joint index.
+     */
+    private int [] oldIndex = new int [0];
+    /**
+     * Compressed adjacency lists: neighbors of joint i are <code>adjacent[adjacencyStart[i]]</code> up to but
+     * not including <code>adjacent[adjacencyStart[i + 1]]</code>.
+     */
+    private int [] adjacencyStart = new int [1];
+    private int [] adjacent = new int [0];
+    /**
+     * Scratch storage for the breadth first searches.
+     */
+    private int [] level = new int [0];
+    private int [] queue = new int [0];
+
+    /**
+     * Compute an ordering for the joints of a bridge with given members.
+     *
+     * @param nJoints number of joints
+     * @param members members connecting the joints
+     */
+    public void initialize(int nJoints, Member [] members) {
+        initialize(nJoints, members, members.length);
+    }
+
+    /**
+     * Compute an ordering for the joints of a bridge with members given by a prefix of an array.
+     *
+     * @param nJoints number of joints
+     * @param members array holding members connecting the joints
+     * @param nMembers number of members in the array
+     */
+    public void initialize(int nJoints, Member [] members, int nMembers) {
+        this.nJoints = nJoints;
+        ensureCapacity(nJoints, nMembers);
+        buildAdjacency(members, nMembers);
+        reverseCuthillMcKee();
+        if (getProfile(newIndex) >= getIdentityProfile()) {
+            for (int i = 0; i < nJoints; i++) {
+                newIndex[i] = oldIndex[i] = i;
+            }
+        }
+    }
+
+    /**
+     * Return the solver index of a joint given its original index.
+     *
+     * @param i original joint index
+     * @return solver joint index
+     */
+    public int getNewIndex(int i) {
+        return newIndex[i];
+    }
+
+    /**
+     * Return the original index of a joint given its solver index.
+     *
+     * @param i solver joint index
+     * @return original joint index
+     */
+    public int getOldIndex(int i) {
+        return oldIndex[i];
+    }
+
+    /**
+     * Return true iff the ordering leaves all joint indices unchanged.
+     *
+     * @return true iff the ordering is the identity
+     */
+    public boolean isIdentity() {
+        for (int i = 0; i < nJoints; i++) {
+            if (newIndex[i] != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void ensureCapacity(int nJoints, int nMembers) {
+        if (newIndex.length < nJoints) {
+            newIndex = new int [nJoints];
+            oldIndex = new int [nJoints];
+            adjacencyStart = new int [nJoints + 1];
+            level = new int [nJoints];
+            queue = new int [nJoints];
+        }
+        if (adjacent.length < 2 * nMembers) {
+            adjacent = new int [2 * nMembers];
+        }
+    }
+
+    private void buildAdjacency(Member [] members, int nMembers) {
+        for (int i = 0; i <= nJoints; i++) {
+            adjacencyStart[i] = 0;
+        }
+        for (int im = 0; im < nMembers; im++) {
+            ++adjacencyStart[members[im].getJointA().getIndex() + 1];
+            ++adjacencyStart[members[im].getJointB().getIndex() + 1];
+        }
+        for (int i = 0; i < nJoints; i++) {
+            adjacencyStart[i + 1] += adjacencyStart[i];
+        }
+        // Use level as a fill pointer temporarily.
+        for (int i = 0; i < nJoints; i++) {
+            level[i] = adjacencyStart[i];
+        }
+        for (int im = 0; im < nMembers; im++) {
+            int a = members[im].getJointA().getIndex();
+            int b = members[im].getJointB().getIndex();
+            adjacent[level[a]++] = b;
+            adjacent[level[b]++] = a;
+        }
+    }
+
+    private int getDegree(int i) {
+        return adjacencyStart[i + 1] - adjacencyStart[i];
+    }
+
+    /**
+     * Fill in the Cuthill-McKee ordering one connected component at a time, then reverse it.
+     */
+    private void reverseCuthillMcKee() {
+        for (int i = 0; i < nJoints; i++) {
+            newIndex[i] = -1;
+        }
+        int nOrdered = 0;
+        while (nOrdered < nJoints) {
+            // Start each component from a pseudo-peripheral joint found from its lowest degree joint.
+            int start = -1;
+            for (int i = 0; i < nJoints; i++) {
+                if (newIndex[i] < 0 && (start < 0 || getDegree(i) < getDegree(start))) {
+                    start = i;
+                }
+            }
+            start = findPseudoPeripheralJoint(start);
+            newIndex[start] = nOrdered;
+            oldIndex[nOrdered++] = start;
+            for (int head = nOrdered - 1; head < nOrdered; head++) {
+                int j = oldIndex[head];
+                // Append unnumbered neighbors in order of increasing degree, ties by original index.
+                int first = nOrdered;
+                for (int k = adjacencyStart[j]; k < adjacencyStart[j + 1]; k++) {
+                    int n = adjacent[k];
+                    if (newIndex[n] < 0) {
+                        newIndex[n] = nOrdered;
+                        oldIndex[nOrdered++] = n;
+                    }
+                }
+                for (int p = first + 1; p < nOrdered; p++) {
+                    int n = oldIndex[p];
+                    int q = p - 1;
+                    while (q >= first && isBefore(n, oldIndex[q])) {
+                        oldIndex[q + 1] = oldIndex[q];
+                        q--;
+                    }
+                    oldIndex[q + 1] = n;
+                }
+                for (int p = first; p < nOrdered; p++) {
+                    newIndex[oldIndex[p]] = p;
+                }
+            }
+        }
+        for (int i = 0; i < nJoints; i++) {
+            oldIndex[nJoints - 1 - newIndex[i]] = i;
+        }
+        for (int i = 0; i < nJoints; i++) {
+            newIndex[oldIndex[i]] = i;
+        }
+    }
+
+    private boolean isBefore(int a, int b) {
+        int cmp = getDegree(a) - getDegree(b);
+        return cmp < 0 || (cmp == 0 && a < b);
+    }
+
+    /**
+     * Return a joint of nearly maximum eccentricity in the same component as the given one
+     * using the iteration of Gibbs, Poole, and Stockmeyer as simplified by George and Liu.
+     *
+     * @param start starting joint
+     * @return pseudo-peripheral joint
+     */
+    private int findPseudoPeripheralJoint(int start) {
+        int depth = breadthFirstSearch(start);
+        while (true) {
+            // Among joints of the last level, take the lowest degree.
+            int candidate = -1;
+            for (int i = 0; i < nJoints; i++) {
+                if (level[i] == depth && (candidate < 0 || getDegree(i) < getDegree(candidate))) {
+                    candidate = i;
+                }
+            }
+            int candidateDepth = breadthFirstSearch(candidate);
+            if (candidateDepth <= depth) {
+                return start;
+            }
+            start = candidate;
+            depth = candidateDepth;
+        }
+    }
+
+    /**
+     * Compute levels of joints in the component containing the given root. Joints outside the
+     * component get level -1.
+     *
+     * @param root root of the search
+     * @return greatest level reached
+     */
+    private int breadthFirstSearch(int root) {
+        for (int i = 0; i < nJoints; i++) {
+            level[i] = -1;
+        }
+        level[root] = 0;
+        queue[0] = root;
+        int tail = 1;
+        int depth = 0;
+        for (int head = 0; head < tail; head++) {
+            int j = queue[head];
+            for (int k = adjacencyStart[j]; k < adjacencyStart[j + 1]; k++) {
+                int n = adjacent[k];
+                if (level[n] < 0) {
+                    level[n] = level[j] + 1;
+                    depth = level[n];
+                    queue[tail++] = n;
+                }
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Return the number of stiffness matrix entries in the skyline profile if joints are numbered
+     * with the given map, allowing two degrees of freedom per joint.
+     *
+     * @param map map from original joint index to new index or null for the identity
+     * @return profile size
+     */
+    private int getProfile(int [] map) {
+        int profile = 0;
+        for (int i = 0; i < nJoints; i++) {
+            int ni = map == null ? i : map[i];
+            int lowest = ni;
+            for (int k = adjacencyStart[i]; k < adjacencyStart[i + 1]; k++) {
+                int nk = map == null ? adjacent[k] : map[adjacent[k]];
+                if (nk < lowest) {
+                    lowest = nk;
+                }
+            }
+            // Columns for x and y of joint ni both reach up to the x of joint lowest.
+            profile += 4 * (ni - lowest) + 3;
+        }
+        return profile;
+    }
+
+    private int getIdentityProfile() {
+        return getProfile(null);
+    }
+}
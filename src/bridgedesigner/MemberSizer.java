@@ -0,0 +1,647 @@
+/*
+ * MemberSizer.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Search for the cheapest assignment of stock to the members of a bridge of fixed geometry that passes
+ * the load test.  Works on a private copy of the bridge, so it may run on any thread, and leaves the
+ * caller to apply the result, e.g. as one undoable edit with <code>EditableBridgeModel.changeMemberStock</code>.
+ *
+ * The search has three phases.  Sizing repeatedly gives each member the cheapest stock that is slender
+ * and strong enough for the forces of the last analysis until the assignment stops changing, which yields a passing
+ * design because member weight is part of the load.  Consolidating then tries to eliminate each product
+ * in use by moving its members to other products in use, which saves the ordering fee.  Refining finally
+ * tries the cheapest adequate product in use for each member in turn.  Every candidate is checked with a
+ * full load test, and since only member stiffnesses change, nearly all of these are incremental
+ * re-analyses.  Load tests use tabulated compressive strengths, but a candidate that passes by a hair is
+ * confirmed with the exact formula the contest uses.  The result is a local optimum, not necessarily the
+ * global one.
+ *
+ * @author Eugene K. Ressler
+ */
+public class MemberSizer {
+
+    /**
+     * Phases of the search reported by <code>getPhase()</code>.
+     */
+    public static final int NOT_STARTED = 0;
+    public static final int SIZING = 1;
+    public static final int CONSOLIDATING = 2;
+    public static final int REFINING = 3;
+    public static final int DONE = 4;
+
+    /**
+     * Receiver of progress reports from a running sizer.
+     */
+    public interface ProgressListener {
+
+        /**
+         * Report progress.  Called on the thread running the sizer.
+         *
+         * @param sizer the sizer reporting progress
+         */
+        void reportProgress(MemberSizer sizer);
+    }
+
+    /**
+     * Largest number of sizing iterations before giving up on finding a passing design.
+     */
+    private static final int maxSizingIterations = 50;
+    /**
+     * Least time between progress reports in nanoseconds.
+     */
+    private static final long progressInterval = 100000000L;
+    /**
+     * Margin by tabulated strengths below which a passing design is confirmed with exact strengths, which
+     * the contest uses.  Tabulated and exact strengths differ by far less.
+     */
+    private static final double strictCheckMargin = 1e-6;
+
+    /**
+     * Private copy of the bridge, whose member stock is changed during the search.
+     */
+    private final BridgeModel bridge;
+    private final Analysis analysis = new Analysis();
+    private final Analysis strictAnalysis = new Analysis();
+    private final int nMembers;
+    /**
+     * All stock in the inventory sorted by cost per unit length, cheapest first.
+     */
+    private final Stock [] catalog;
+    /**
+     * Current and best passing assignments of catalog indices to members.
+     */
+    private final int [] assignment;
+    private final int [] bestAssignment;
+    private double bestCost = Double.POSITIVE_INFINITY;
+    private final double initialCost;
+    /**
+     * Number of members using each catalog entry in the current assignment.
+     */
+    private final int [] useCount;
+    /**
+     * Fraction of member strength held in reserve: forces may use at most 1 - margin of strength.
+     */
+    private double margin = 0;
+    private ProgressListener listener;
+    private volatile boolean cancelled = false;
+    private volatile int phase = NOT_STARTED;
+    private volatile int evaluationCount = 0;
+    private volatile double reportedBestCost = Double.POSITIVE_INFINITY;
+    private long startTime;
+    private volatile long elapsedTime = 0;
+    private long lastProgressTime;
+
+    /**
+     * One material and shape from the inventory with its cost per unit length.
+     */
+    static class Stock {
+
+        final Material material;
+        final Shape shape;
+        final double costPerLength;
+
+        Stock(Material material, Shape shape) {
+            this.material = material;
+            this.shape = shape;
+            this.costPerLength = material.getCost(shape.getSection()) * shape.getArea() * material.getDensity();
+        }
+
+        /**
+         * Return true iff a member of this stock and the given length passes the slenderness test
+         * and is strong enough for the given forces.
+         *
+         * @param length member length
+         * @param allowableSlenderness largest allowed slenderness
+         * @param compression compressive force
+         * @param tension tensile force
+         * @return true iff the stock is adequate
+         */
+        boolean isAdequate(double length, double allowableSlenderness, double compression, double tension) {
+            return length * shape.getInverseRadiusOfGyration() <= allowableSlenderness &&
+                    tension <= Inventory.tensileStrength(material, shape) &&
+                    compression <= StrengthTable.compressiveStrength(material, shape, length);
+        }
+    }
+
+    /**
+     * Construct a sizer for a bridge.  The bridge is copied, so it may be changed afterward without
+     * affecting the sizer.
+     *
+     * @param original bridge whose members are to be sized
+     */
+    public MemberSizer(BridgeModel original) {
+        bridge = new BridgeModel();
+        bridge.read(original.toString());
+        nMembers = bridge.getMembers().size();
+        catalog = getCatalog(bridge.getInventory());
+        assignment = new int [nMembers];
+        bestAssignment = new int [nMembers];
+        useCount = new int [catalog.length];
+        for (int i = 0; i < nMembers; i++) {
+            final Member member = bridge.getMembers().get(i);
+            assignment[i] = findStock(member.getMaterial(), member.getShape());
+            ++useCount[assignment[i]];
+        }
+        initialCost = bridge.getTotalCost();
+        strictAnalysis.setStrictStrength(true);
+    }
+
+    /**
+     * Return all stock in an inventory sorted by cost per unit length, cheapest first.
+     *
+     * @param inventory inventory
+     * @return sorted stock
+     */
+    static Stock [] getCatalog(Inventory inventory) {
+        ArrayList<Stock> stock = new ArrayList<Stock>();
+        for (int im = 0; im < inventory.getNMaterials(); im++) {
+            for (int is = 0; is < inventory.getNSections(); is++) {
+                for (int iz = 0; iz < inventory.getNShapes(is); iz++) {
+                    stock.add(new Stock(inventory.getMaterial(im), inventory.getShape(is, iz)));
+                }
+            }
+        }
+        Collections.sort(stock, new Comparator<Stock>() {
+            public int compare(Stock a, Stock b) {
+                return Double.compare(a.costPerLength, b.costPerLength);
+            }
+        });
+        return stock.toArray(new Stock[stock.size()]);
+    }
+
+    private int findStock(Material material, Shape shape) {
+        for (int i = 0; i < catalog.length; i++) {
+            if (catalog[i].material.getIndex() == material.getIndex() &&
+                    catalog[i].shape.getSection().getIndex() == shape.getSection().getIndex() &&
+                    catalog[i].shape.getSizeIndex() == shape.getSizeIndex()) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("stock not in inventory");
+    }
+
+    /**
+     * Set the receiver of progress reports.
+     *
+     * @param listener progress listener or null for none
+     */
+    public void setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Set the safety margin required of every member, the fraction of its strength that must remain
+     * unused by the worst-case forces of the load test.  Zero, the default, requires only that the bridge
+     * pass.  Call before <code>optimize</code>.
+     *
+     * @param margin required margin in [0, 1)
+     */
+    public void setMargin(double margin) {
+        this.margin = margin;
+    }
+
+    /**
+     * Return the required safety margin.
+     *
+     * @return required margin
+     */
+    public double getMargin() {
+        return margin;
+    }
+
+    /**
+     * Return the smallest fraction of strength unused by the worst-case forces over all members of a
+     * bridge that has been load tested, negative if some member fails.
+     *
+     * @param result analysis result with forces
+     * @return least safety margin
+     */
+    public static double getLeastMargin(AnalysisResult result) {
+        double worst = 0;
+        for (int im = 0; im < result.getNMembers(); im++) {
+            worst = Math.max(worst, Math.max(result.getCompressionForceStrengthRatio(im), result.getTensionForceStrengthRatio(im)));
+        }
+        return 1 - worst;
+    }
+
+    /**
+     * Ask a running search to stop soon.  The best assignment found so far remains available.  May be
+     * called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Return true iff the search has been cancelled.
+     *
+     * @return true iff cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Search for the cheapest passing stock assignment.
+     *
+     * @return true iff a passing assignment was found
+     */
+    public boolean optimize() {
+        startTime = lastProgressTime = System.nanoTime();
+        phase = SIZING;
+        // No stock can make a mechanism stable, so don't bother load testing one.
+        if (!new StabilityCheck(bridge).isStable() || (!evaluate() && analysis.getStatus() == Analysis.UNSTABLE)) {
+            phase = DONE;
+            reportProgress(true);
+            return false;
+        }
+        size();
+        phase = CONSOLIDATING;
+        consolidate();
+        phase = REFINING;
+        refine();
+        phase = DONE;
+        reportProgress(true);
+        return hasResult();
+    }
+
+    /**
+     * Give each member the cheapest adequate stock for the forces of the last analysis until the
+     * assignment no longer changes.
+     */
+    private void size() {
+        for (int iteration = 0; iteration < maxSizingIterations && !cancelled; iteration++) {
+            boolean changed = false;
+            final AnalysisResult result = analysis.getResult();
+            for (int im = 0; im < nMembers; im++) {
+                final int i = findCheapestAdequate(im, result, false, -1);
+                if (i >= 0 && i != assignment[im]) {
+                    assign(im, i);
+                    changed = true;
+                }
+            }
+            final boolean passes = evaluate();
+            analysis.recycle(result);
+            if (!passes && analysis.getStatus() == Analysis.UNSTABLE) {
+                return;
+            }
+            if (!changed) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Try to eliminate each product in use, fewest members first, by moving its members to the
+     * cheapest adequate products remaining in use.  Repeat until no product can be eliminated.
+     */
+    private void consolidate() {
+        if (!hasResult()) {
+            return;
+        }
+        AnalysisResult result = restoreBest();
+        boolean improved = true;
+        while (improved && !cancelled) {
+            improved = false;
+            final Integer [] products = getProductsByUse();
+            for (int ip = 0; ip < products.length && !cancelled; ip++) {
+                final int product = products[ip];
+                if (useCount[product] == 0) {
+                    continue;
+                }
+                final int [] saved = assignment.clone();
+                boolean possible = true;
+                for (int im = 0; im < nMembers && possible; im++) {
+                    if (assignment[im] == product) {
+                        final int i = findCheapestAdequate(im, result, true, product);
+                        if (i < 0) {
+                            possible = false;
+                        }
+                        else {
+                            assign(im, i);
+                        }
+                    }
+                }
+                if (possible && bridge.getTotalCost() < bestCost && evaluate()) {
+                    analysis.recycle(result);
+                    result = analysis.getResult();
+                    improved = true;
+                }
+                else {
+                    recycleTrialResult(result);
+                    restore(saved);
+                }
+            }
+        }
+    }
+
+    /**
+     * For each member in turn, try the cheapest product in use that is adequate for the current forces.
+     * Repeat until no member can be made cheaper.
+     */
+    private void refine() {
+        if (!hasResult()) {
+            return;
+        }
+        AnalysisResult result = restoreBest();
+        boolean improved = true;
+        while (improved && !cancelled) {
+            improved = false;
+            for (int im = 0; im < nMembers && !cancelled; im++) {
+                final int i = findCheapestAdequate(im, result, true, -1);
+                if (i < 0 || catalog[i].costPerLength >= catalog[assignment[im]].costPerLength) {
+                    continue;
+                }
+                final int saved = assignment[im];
+                assign(im, i);
+                if (bridge.getTotalCost() < bestCost && evaluate()) {
+                    analysis.recycle(result);
+                    result = analysis.getResult();
+                    improved = true;
+                }
+                else {
+                    recycleTrialResult(result);
+                    assign(im, saved);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the catalog index of the cheapest stock that passes the slenderness test at a member's length
+     * and is strong enough for its forces in a given analysis.
+     *
+     * @param im member index
+     * @param result analysis result giving member forces, or one without forces to check only slenderness
+     * @param inUseOnly whether to consider only stock already used by some member
+     * @param exclude catalog index of stock not to consider or -1 for none
+     * @return catalog index or -1 if no stock is adequate
+     */
+    private int findCheapestAdequate(int im, AnalysisResult result, boolean inUseOnly, int exclude) {
+        final Member member = bridge.getMembers().get(im);
+        final double length = member.getLength();
+        final double allowableSlenderness = bridge.getDesignConditions().getAllowableSlenderness();
+        final boolean haveForces = result.getStatus() > Analysis.UNSTABLE;
+        final double scale = 1 / (1 - margin);
+        final double compression = haveForces ? scale * result.getMemberCompressiveForce(im) : 0;
+        final double tension = haveForces ? scale * result.getMemberTensileForce(im) : 0;
+        for (int i = 0; i < catalog.length; i++) {
+            if (i == exclude || (inUseOnly && useCount[i] == 0)) {
+                continue;
+            }
+            if (catalog[i].isAdequate(length, allowableSlenderness, compression, tension)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Integer [] getProductsByUse() {
+        ArrayList<Integer> products = new ArrayList<Integer>();
+        for (int i = 0; i < catalog.length; i++) {
+            if (useCount[i] > 0) {
+                products.add(i);
+            }
+        }
+        Collections.sort(products, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return useCount[a] - useCount[b];
+            }
+        });
+        return products.toArray(new Integer[products.size()]);
+    }
+
+    private void assign(int im, int i) {
+        --useCount[assignment[im]];
+        ++useCount[i];
+        assignment[im] = i;
+        final Member member = bridge.getMembers().get(im);
+        member.setMaterial(catalog[i].material);
+        member.setShape(catalog[i].shape);
+    }
+
+    private void restore(int [] saved) {
+        for (int im = 0; im < nMembers; im++) {
+            if (assignment[im] != saved[im]) {
+                assign(im, saved[im]);
+            }
+        }
+    }
+
+    /**
+     * Recycle the result of a rejected trial, if it was analyzed at all, so the next analysis reuses its
+     * arrays.
+     *
+     * @param kept result still in use, which is the last result if the trial wasn't analyzed
+     */
+    private void recycleTrialResult(AnalysisResult kept) {
+        final AnalysisResult last = analysis.getResult();
+        if (last != kept) {
+            analysis.recycle(last);
+        }
+    }
+
+    /**
+     * Make the best assignment current and return its analysis.
+     *
+     * @return analysis result of the best assignment
+     */
+    private AnalysisResult restoreBest() {
+        restore(bestAssignment);
+        evaluate();
+        return analysis.getResult();
+    }
+
+    private boolean hasResult() {
+        return bestCost < Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Load test the current assignment and record it if it's the best passing assignment so far.
+     * With a margin set, passing also requires that margin.  An assignment that passes by less than
+     * <code>strictCheckMargin</code> must pass again with exact strengths.
+     *
+     * @return true iff the current assignment passes
+     */
+    private boolean evaluate() {
+        analysis.initialize(bridge);
+        ++evaluationCount;
+        boolean passes = isPassing(analysis);
+        if (passes && getLeastMargin(analysis.getResult()) < margin + strictCheckMargin) {
+            strictAnalysis.initialize(bridge);
+            passes = isPassing(strictAnalysis);
+            strictAnalysis.recycle(strictAnalysis.getResult());
+        }
+        if (passes) {
+            final double cost = bridge.getTotalCost();
+            if (cost < bestCost) {
+                bestCost = reportedBestCost = cost;
+                System.arraycopy(assignment, 0, bestAssignment, 0, nMembers);
+            }
+        }
+        reportProgress(false);
+        return passes;
+    }
+
+    /**
+     * Return true iff the last analysis of a bridge passes with the required margin.
+     *
+     * @param analysis analysis
+     * @return true iff the bridge passes
+     */
+    private boolean isPassing(Analysis analysis) {
+        return analysis.getStatus() == Analysis.PASSES &&
+                (margin == 0 || getLeastMargin(analysis.getResult()) >= margin);
+    }
+
+    private void reportProgress(boolean force) {
+        final long now = System.nanoTime();
+        elapsedTime = now - startTime;
+        if (listener != null && (force || now - lastProgressTime >= progressInterval)) {
+            lastProgressTime = now;
+            listener.reportProgress(this);
+        }
+    }
+
+    /**
+     * Return the current phase of the search.
+     *
+     * @return one of NOT_STARTED, SIZING, CONSOLIDATING, REFINING, or DONE
+     */
+    public int getPhase() {
+        return phase;
+    }
+
+    /**
+     * Return the number of load tests performed so far.
+     *
+     * @return number of evaluations
+     */
+    public int getEvaluationCount() {
+        return evaluationCount;
+    }
+
+    /**
+     * Return the average number of load tests per second so far.
+     *
+     * @return evaluations per second
+     */
+    public double getEvaluationsPerSecond() {
+        final long elapsed = elapsedTime;
+        return elapsed > 0 ? evaluationCount * 1e9 / elapsed : 0;
+    }
+
+    /**
+     * Return the cost of the bridge as given to the constructor.
+     *
+     * @return initial cost
+     */
+    public double getInitialCost() {
+        return initialCost;
+    }
+
+    /**
+     * Return the cost of the best passing assignment found so far or positive infinity if none.
+     *
+     * @return best cost
+     */
+    public double getBestCost() {
+        return reportedBestCost;
+    }
+
+    /**
+     * Return the best passing assignment found as stock descriptors indexed by member or null if none
+     * was found.  Call only after <code>optimize</code> has returned.
+     *
+     * @return stock descriptors or null
+     */
+    public StockSelector.Descriptor [] getBestStock() {
+        if (!hasResult()) {
+            return null;
+        }
+        StockSelector.Descriptor [] stock = new StockSelector.Descriptor [nMembers];
+        for (int im = 0; im < nMembers; im++) {
+            final Stock s = catalog[bestAssignment[im]];
+            stock[im] = new StockSelector.Descriptor(s.material.getIndex(), s.shape.getSection().getIndex(), s.shape.getSizeIndex());
+        }
+        return stock;
+    }
+
+    /**
+     * Return the sized copy of the bridge with the best passing assignment, if any.  Call only after
+     * <code>optimize</code> has returned.
+     *
+     * @return sized bridge
+     */
+    public BridgeModel getBridge() {
+        if (hasResult()) {
+            restore(bestAssignment);
+        }
+        return bridge;
+    }
+
+    /**
+     * Size the members of a bridge file from the command line.
+     * <pre>
+     *   java bridgedesigner.MemberSizer in.bdc [out.bdc]
+     * </pre>
+     * Progress goes to standard error.  The sized bridge is written to the output file if one is given.
+     * Exits with status 1 if no passing assignment was found and 2 for a usage or file error.
+     *
+     * @param args command line arguments
+     */
+    public static void main(String [] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("usage: java MemberSizer in.bdc [out.bdc]");
+            System.exit(2);
+        }
+        BridgeModel bridge = new BridgeModel();
+        try {
+            bridge.read(new File(args[0]));
+        } catch (IOException ex) {
+            System.err.println(args[0] + ": " + ex.getMessage());
+            System.exit(2);
+        }
+        final String [] phaseNames = { "starting", "sizing", "consolidating", "refining", "done" };
+        MemberSizer sizer = new MemberSizer(bridge);
+        sizer.setProgressListener(new ProgressListener() {
+            public void reportProgress(MemberSizer sizer) {
+                System.err.println(String.format(Locale.US, "%s: %d evaluations (%.0f/s), best cost $%.2f",
+                        phaseNames[sizer.getPhase()], sizer.getEvaluationCount(),
+                        sizer.getEvaluationsPerSecond(), sizer.getBestCost()));
+            }
+        });
+        if (!sizer.optimize()) {
+            System.err.println("no passing stock assignment found.");
+            System.exit(1);
+        }
+        System.out.println(String.format(Locale.US, "cost $%.2f -> $%.2f", sizer.getInitialCost(), sizer.getBestCost()));
+        if (args.length == 2) {
+            try {
+                sizer.getBridge().write(new File(args[1]));
+            } catch (IOException ex) {
+                System.err.println(args[1] + ": " + ex.getMessage());
+                System.exit(2);
+            }
+        }
+    }
+}
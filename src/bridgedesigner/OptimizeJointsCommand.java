@@ -0,0 +1,63 @@
+/*
+ * OptimizeJointsCommand.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+/**
+ * Command to apply the result of a <code>JointOptimizer</code>: a sequence of joint moves followed by a
+ * change of member stock, all undone and redone as one edit.
+ *
+ * @author Eugene K. Ressler
+ */
+public class OptimizeJointsCommand extends EditCommand {
+
+    private final EditCommand [] commands;
+
+    /**
+     * Construct a command that makes the given joint moves in order and then changes the stock of all
+     * members to the given stock.
+     *
+     * @param bridge bridge to change
+     * @param moves joint moves in the order they are to be made
+     * @param stock new stock indexed by member
+     */
+    public OptimizeJointsCommand(EditableBridgeModel bridge, JointOptimizer.Move [] moves, StockSelector.Descriptor [] stock) {
+        super(bridge);
+        commands = new EditCommand [moves.length + 1];
+        // Each command must be built against the bridge as the commands before it leave it, so make the
+        // moves as we go and take them back afterward.
+        for (int i = 0; i < moves.length; i++) {
+            commands[i] = new MoveJointCommand(bridge, bridge.getJoints().get(moves[i].jointIndex), moves[i].ptWorld);
+            commands[i].go();
+        }
+        commands[moves.length] = new ChangeMembersCommand(bridge, stock);
+        for (int i = moves.length - 1; i >= 0; i--) {
+            commands[i].goBack();
+        }
+        presentationName = String.format(getString("optimizeJoints.text"), moves.length);
+    }
+
+    @Override
+    void go() {
+        for (int i = 0; i < commands.length; i++) {
+            commands[i].go();
+        }
+    }
+
+    @Override
+    void goBack() {
+        for (int i = commands.length - 1; i >= 0; i--) {
+            commands[i].goBack();
+        }
+    }
+}
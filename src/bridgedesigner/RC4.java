@@ -60,16 +60,39 @@ public class RC4 {
         setKey(s.getBytes());
     }
 
+    /**
+     * Set the state of this encoder to that of another, e.g. one that was keyed once for many files, so
+     * that both produce the same key stream from here on.
+     * 
+     * @param other encoder to copy
+     */
+    public void setState(RC4 other) {
+        System.arraycopy(other.buf, 0, buf, 0, 256);
+        xState = other.xState;
+        yState = other.yState;
+    }
+
     /**
      * Encrypt or decrypt a buffer of bytes.
      * 
      * @param buf byte buffer
      */
     public void endecrypt(byte[] buf) {
+        endecrypt(buf, 0, buf.length);
+    }
+
+    /**
+     * Encrypt or decrypt part of a buffer of bytes in place.
+     * 
+     * @param buf byte buffer
+     * @param offset index of the first byte
+     * @param length number of bytes
+     */
+    public void endecrypt(byte[] buf, int offset, int length) {
         int x = xState;
         int y = yState;
         byte[] s = this.buf;
-        for (int i = 0; i < buf.length; i++) {
+        for (int i = offset; i < offset + length; i++) {
             x = (x + 1) & 255;
             y = (y + s[x]) & 255;
             byte tmp = s[x];
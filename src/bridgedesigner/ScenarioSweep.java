@@ -0,0 +1,387 @@
+/*
+ * ScenarioSweep.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Headless search for a good, cheap reference bridge for each standard scenario, e.g. for curriculum authors.
+ *
+ * For each scenario in the standard design conditions table whose tag starts with a given prefix, every
+ * template sketch that applies to the scenario is made into a bridge with members of one stock, and the
+ * members are sized with a <code>MemberSizer</code>.  The cheapest passing bridge is the scenario's result.
+ * Each template of each scenario is a separate task for a pool of worker threads, which take tasks from one
+ * shared queue as they finish others, so long and short tasks balance across threads.
+ *
+ * The sweep can be interrupted and resumed.  A checkpoint file holds one tab-delimited line per finished
+ * scenario:
+ * <pre>
+ *   tag  cost  template  evaluations  milliseconds
+ * </pre>
+ * Cost and template are <code>-</code> if no template gave a passing bridge.  Lines are appended and flushed
+ * as scenarios finish, and scenarios already in the checkpoint are skipped when the sweep starts again.  If
+ * an output directory is given, the cheapest bridge for each scenario is written there as
+ * <code>tag.bdc</code> before its checkpoint line.  Each checkpoint line is also written to standard output.
+ *
+ * @author Eugene K. Ressler
+ */
+public class ScenarioSweep {
+
+    /**
+     * Number of fields in a checkpoint line.
+     */
+    private static final int nCheckpointFields = 5;
+
+    private final ExecutorService executor;
+    private final File checkpointFile;
+    private final File outputDirectory;
+    private final PrintStream out;
+    /**
+     * Tags of scenarios finished in an earlier run or queued in this one.
+     */
+    private final HashSet<String> finished = new HashSet<String>();
+    private Writer checkpoint;
+    /**
+     * Stock given to all members before sizing.
+     */
+    private final Material initialMaterial;
+    private final Shape initialShape;
+    /**
+     * Counts of scenarios by outcome in this run and of templates or results that failed with an error.
+     */
+    private int nScenarios = 0;
+    private int nPassed = 0;
+    private int nErrors = 0;
+
+    /**
+     * Progress of one scenario, whose templates may be sized on several threads at once.
+     */
+    private static class Scenario {
+
+        final DesignConditions conditions;
+        final long startTime = System.nanoTime();
+        int nPending;
+        int evaluationCount = 0;
+        double bestCost = Double.POSITIVE_INFINITY;
+        BridgeModel bestBridge = null;
+        String bestTemplate = null;
+
+        Scenario(DesignConditions conditions, int nPending) {
+            this.conditions = conditions;
+            this.nPending = nPending;
+        }
+    }
+
+    /**
+     * Construct a sweep with given number of worker threads.
+     *
+     * @param nThreads number of worker threads
+     * @param checkpointFile file of finished scenarios, which need not exist yet
+     * @param outputDirectory directory for the best bridge of each scenario or null for none
+     * @param out stream for result lines
+     */
+    public ScenarioSweep(int nThreads, File checkpointFile, File outputDirectory, PrintStream out) {
+        this.executor = Executors.newFixedThreadPool(nThreads);
+        this.checkpointFile = checkpointFile;
+        this.outputDirectory = outputDirectory;
+        this.out = out;
+        final Inventory inventory = new Inventory();
+        initialMaterial = inventory.getMaterial(0);
+        initialShape = inventory.getShape(0, inventory.getNShapes(0) / 2);
+    }
+
+    /**
+     * Read the checkpoint file, if any, so that the scenarios it records are skipped.  A partial line left by
+     * an interrupted run is dropped, and the file is rewritten with the complete lines only.  Must be called
+     * once, before any scenarios are added, since it also opens the checkpoint for the lines of this run.
+     *
+     * @return number of scenarios already finished
+     * @throws IOException if the checkpoint file can't be read or rewritten
+     */
+    public int resume() throws IOException {
+        ArrayList<String> lines = new ArrayList<String>();
+        if (checkpointFile.exists()) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(checkpointFile), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    final String [] fields = line.split("\t", -1);
+                    if (fields.length == nCheckpointFields && DesignConditions.getDesignConditions(fields[0]) != null) {
+                        lines.add(line);
+                        finished.add(fields[0]);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        checkpoint = new OutputStreamWriter(new FileOutputStream(checkpointFile), "UTF-8");
+        for (String line : lines) {
+            checkpoint.write(line);
+            checkpoint.write('\n');
+        }
+        checkpoint.flush();
+        return finished.size();
+    }
+
+    /**
+     * Queue every unfinished scenario whose tag starts with the given prefix.
+     *
+     * @param tagPrefix tag prefix, empty for all scenarios
+     * @return number of scenarios queued
+     * @throws IOException if a scenario without templates can't be recorded in the checkpoint
+     * @throws IllegalStateException if <code>resume</code> hasn't been called
+     */
+    public int add(String tagPrefix) throws IOException {
+        if (checkpoint == null) {
+            throw new IllegalStateException("sweep added to before resume");
+        }
+        int n = 0;
+        for (int i = 0; i < DesignConditions.conditions.length; i++) {
+            final DesignConditions conditions = DesignConditions.conditions[i];
+            if (conditions.getTag().startsWith(tagPrefix) && claim(conditions.getTag())) {
+                add(conditions);
+                ++n;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Mark a scenario as taken so that overlapping prefixes don't queue it twice.
+     *
+     * @param tag scenario tag
+     * @return true iff the scenario was neither finished nor already taken
+     */
+    private synchronized boolean claim(String tag) {
+        return finished.add(tag);
+    }
+
+    private void add(DesignConditions conditions) throws IOException {
+        final Object [] list = BridgeSketchModel.getList(conditions);
+        ArrayList<BridgeSketchModel> sketches = new ArrayList<BridgeSketchModel>();
+        for (int i = 0; i < list.length; i++) {
+            if (list[i] instanceof BridgeSketchModel) {
+                sketches.add((BridgeSketchModel)list[i]);
+            }
+        }
+        final Scenario scenario = new Scenario(conditions, sketches.size());
+        if (sketches.isEmpty()) {
+            finish(scenario);
+            return;
+        }
+        for (final BridgeSketchModel sketch : sketches) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    size(scenario, sketch);
+                }
+            });
+        }
+    }
+
+    /**
+     * Make a bridge of one template for a scenario, size its members, and record the result.  A template
+     * that fails with an exception is logged and counted as an error, and the scenario's other templates
+     * remain candidates.
+     *
+     * @param scenario scenario
+     * @param sketch template sketch
+     */
+    private void size(Scenario scenario, BridgeSketchModel sketch) {
+        BridgeModel bridge = null;
+        double cost = Double.POSITIVE_INFINITY;
+        int evaluationCount = 0;
+        try {
+            BridgeModel initial = new BridgeModel();
+            initial.initialize(scenario.conditions, sketch, initialMaterial, initialShape);
+            initial.setProjectId(sketch + "-" + scenario.conditions.getTag());
+            MemberSizer sizer = new MemberSizer(initial);
+            if (sizer.optimize()) {
+                bridge = sizer.getBridge();
+                cost = sizer.getBestCost();
+            }
+            evaluationCount = sizer.getEvaluationCount();
+        } catch (RuntimeException ex) {
+            Logger.getLogger(ScenarioSweep.class.getName()).log(Level.SEVERE,
+                    "sizing failed for " + scenario.conditions.getTag() + ", " + sketch, ex);
+            synchronized (this) {
+                ++nErrors;
+            }
+        }
+        boolean done;
+        synchronized (scenario) {
+            scenario.evaluationCount += evaluationCount;
+            if (cost < scenario.bestCost) {
+                scenario.bestCost = cost;
+                scenario.bestBridge = bridge;
+                scenario.bestTemplate = sketch.toString();
+            }
+            done = --scenario.nPending == 0;
+        }
+        if (done) {
+            try {
+                finish(scenario);
+            } catch (IOException ex) {
+                Logger.getLogger(ScenarioSweep.class.getName()).log(Level.SEVERE,
+                        "can't record result for " + scenario.conditions.getTag(), ex);
+                synchronized (this) {
+                    ++nErrors;
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the best bridge of a finished scenario, if any, and then its checkpoint line.
+     *
+     * @param scenario finished scenario
+     * @throws IOException if the bridge or the checkpoint line can't be written
+     */
+    private synchronized void finish(Scenario scenario) throws IOException {
+        final String tag = scenario.conditions.getTag();
+        final boolean passed = scenario.bestBridge != null;
+        if (passed && outputDirectory != null) {
+            scenario.bestBridge.write(new File(outputDirectory, tag + ".bdc"));
+        }
+        final String line = String.format(Locale.US, "%s\t%s\t%s\t%d\t%.1f", tag,
+                passed ? String.format(Locale.US, "%.2f", scenario.bestCost) : "-",
+                passed ? scenario.bestTemplate.replace('\t', ' ') : "-",
+                scenario.evaluationCount, (System.nanoTime() - scenario.startTime) * 1e-6);
+        checkpoint.write(line);
+        checkpoint.write('\n');
+        checkpoint.flush();
+        out.println(line);
+        out.flush();
+        ++nScenarios;
+        if (passed) {
+            ++nPassed;
+        }
+    }
+
+    /**
+     * Wait until all queued scenarios have finished, shut down the worker threads, and close the checkpoint.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IOException if the checkpoint can't be closed
+     */
+    public void finish() throws InterruptedException, IOException {
+        executor.shutdown();
+        while (!executor.awaitTermination(1, TimeUnit.MINUTES)) { }
+        synchronized (this) {
+            if (checkpoint != null) {
+                checkpoint.close();
+            }
+        }
+    }
+
+    /**
+     * Return the number of templates that failed to be sized plus the number of scenarios whose results
+     * could not be recorded.
+     *
+     * @return error count
+     */
+    public synchronized int getErrorCount() {
+        return nErrors;
+    }
+
+    /**
+     * Return a one-line summary of the scenarios finished in this run.
+     *
+     * @return summary
+     */
+    public synchronized String getSummary() {
+        return String.format(Locale.US, "%d scenarios: %d with a passing bridge, %d without, %d errors",
+                nScenarios, nPassed, nScenarios - nPassed, nErrors);
+    }
+
+    /**
+     * Run a sweep from the command line.
+     * <pre>
+     *   java bridgedesigner.ScenarioSweep [-j threads] [-d outdir] checkpoint [tag-prefix...]
+     * </pre>
+     * With no tag prefixes, all scenarios are swept.  Running the same command again resumes an
+     * interrupted sweep.  Exits with status 1 if any template failed or any result could not be recorded and
+     * 2 for a usage error.
+     *
+     * @param args command line arguments
+     */
+    public static void main(String [] args) {
+        int nThreads = Runtime.getRuntime().availableProcessors();
+        File outputDirectory = null;
+        int iArg = 0;
+        while (iArg + 1 < args.length && args[iArg].startsWith("-")) {
+            if (args[iArg].equals("-j")) {
+                try {
+                    nThreads = Integer.parseInt(args[iArg + 1]);
+                } catch (NumberFormatException ex) {
+                    nThreads = 0;
+                }
+            }
+            else if (args[iArg].equals("-d")) {
+                outputDirectory = new File(args[iArg + 1]);
+            }
+            else {
+                nThreads = 0;
+            }
+            iArg += 2;
+        }
+        if (iArg >= args.length || nThreads < 1) {
+            System.err.println("usage: java ScenarioSweep [-j threads] [-d outdir] checkpoint [tag-prefix...]");
+            System.exit(2);
+        }
+        final long startTime = System.nanoTime();
+        ScenarioSweep sweep = new ScenarioSweep(nThreads, new File(args[iArg++]), outputDirectory, System.out);
+        try {
+            BridgeSketchModel.useStandaloneResources();
+            if (outputDirectory != null && !outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+                throw new IOException("can't make " + outputDirectory);
+            }
+            final int nResumed = sweep.resume();
+            if (nResumed > 0) {
+                System.err.println(nResumed + " scenarios already finished.");
+            }
+            if (iArg == args.length) {
+                sweep.add("");
+            }
+            while (iArg < args.length) {
+                sweep.add(args[iArg++]);
+            }
+            sweep.finish();
+        } catch (IOException ex) {
+            System.err.println(ex.getMessage());
+            System.exit(2);
+        } catch (InterruptedException ex) {
+            System.err.println("interrupted.");
+            System.exit(1);
+        }
+        System.err.println(String.format(Locale.US, "%s in %.1f s", sweep.getSummary(), (System.nanoTime() - startTime) * 1e-9));
+        System.exit(sweep.getErrorCount() > 0 ? 1 : 0);
+    }
+}
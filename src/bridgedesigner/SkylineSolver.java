@@ -0,0 +1,408 @@
+/*
+ * SkylineSolver.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+/**
+ * Symmetric linear system solver using skyline (profile) storage and an LDL' factorization.
+ *
+ * Only the upper triangle of the matrix is stored, column by column, from the first structurally
+ * non-zero row of each column down to the diagonal.  Factorization happens in place without pivoting,
+ * so no fill occurs outside the profile.  The same small pivot threshold as the original WPBD Gauss-Jordan
+ * inversion detects unstable bridges.  With equations in their original order, the pivots are the ones
+ * that inversion sees.  Under any other ordering, such as the one <code>Analysis</code> gets from
+ * <code>JointOrdering</code>, the pivots are different numbers, so a bridge whose smallest pivot is near
+ * the threshold can be judged unstable by one solver and not the other.
+ *
+ * Usage is to call <code>initialize</code>, declare the structure with <code>includeEntry</code>,
+ * call <code>allocate</code>, fill values with <code>add</code> and <code>setDiagonal</code>,
+ * then <code>factor</code> once and <code>solve</code> as often as needed.  Since column j of the factors
+ * depends only on columns 0 to j of the matrix, a matrix that changes only in trailing columns may be 
+ * refactored from the first changed one: <code>clear</code> those columns, add their new values, and 
+ * <code>factor</code> from there.  The result is exactly that of factoring from scratch.  Many right hand sides
+ * can be solved together, which is much faster than solving them one at a time because each
+ * factor entry is loaded once and applied across a contiguous row of right hand sides.
+ *
+ * @author Eugene K. Ressler
+ */
+public class SkylineSolver {
+
+    /**
+     * Number of equations.
+     */
+    private int n = 0;
+    /**
+     * Row index of the first stored entry of each column.
+     */
+    private int [] first = new int [0];
+    /**
+     * Offset of the first stored entry of each column in <code>a</code>. The diagonal of column j
+     * is at <code>colStart[j + 1] - 1</code>.
+     */
+    private int [] colStart = new int [1];
+    /**
+     * Matrix entries in column order.  After factorization, the diagonal holds D and the
+     * off-diagonal entries hold the unit upper triangular factor L'.
+     */
+    private double [] a = new double [0];
+    /**
+     * Index of the equation where factorization failed or -1 if it succeeded.
+     */
+    private int failedEquation = -1;
+
+    /**
+     * Begin a new system with the given number of equations and a diagonal-only profile.
+     *
+     * @param n number of equations
+     */
+    public void initialize(int n) {
+        this.n = n;
+        if (first.length < n) {
+            first = new int [n];
+            colStart = new int [n + 1];
+        }
+        for (int j = 0; j < n; j++) {
+            first[j] = j;
+        }
+        failedEquation = -1;
+    }
+
+    /**
+     * Widen the profile so that the matrix entry at (i, j) will be stored.  Symmetry means
+     * (j, i) is also stored.  Must be called before <code>allocate</code>.
+     *
+     * @param i row index
+     * @param j column index
+     */
+    public void includeEntry(int i, int j) {
+        if (i > j) {
+            int tmp = i;
+            i = j;
+            j = tmp;
+        }
+        if (i < first[j]) {
+            first[j] = i;
+        }
+    }
+
+    /**
+     * Lay out storage for the declared profile and zero all entries.
+     */
+    public void allocate() {
+        colStart[0] = 0;
+        for (int j = 0; j < n; j++) {
+            colStart[j + 1] = colStart[j] + (j - first[j] + 1);
+        }
+        final int size = colStart[n];
+        if (a.length < size) {
+            a = new double [size];
+        }
+        else {
+            for (int i = 0; i < size; i++) {
+                a[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Zero the entries of trailing columns, keeping the profile and the factors of earlier columns.
+     *
+     * @param jLo first column to zero
+     */
+    public void clear(int jLo) {
+        for (int i = colStart[jLo]; i < colStart[n]; i++) {
+            a[i] = 0;
+        }
+    }
+
+    /**
+     * Return the number of equations.
+     *
+     * @return number of equations
+     */
+    public int getN() {
+        return n;
+    }
+
+    /**
+     * Return the number of matrix entries stored in the profile.
+     *
+     * @return profile size
+     */
+    public int getProfileSize() {
+        return colStart[n];
+    }
+
+    /**
+     * Return an estimate of the number of multiply-adds needed to factor a matrix with the declared profile.
+     *
+     * @return factorization cost estimate
+     */
+    public long getFactorCost() {
+        return getFactorCost(0);
+    }
+
+    /**
+     * Return an estimate of the number of multiply-adds needed to solve for one right hand side.
+     *
+     * @return solution cost estimate
+     */
+    public long getSolveCost() {
+        return 2L * colStart[n];
+    }
+
+    /**
+     * Return an estimate of the number of multiply-adds needed to refactor from the given column.
+     *
+     * @param jLo first column to factor
+     * @return factorization cost estimate
+     */
+    public long getFactorCost(int jLo) {
+        long cost = 0;
+        for (int j = jLo; j < n; j++) {
+            final long h = j - first[j];
+            cost += h * (h + 1) / 2;
+        }
+        return cost;
+    }
+
+    /**
+     * Add a value to the matrix entry at (i, j) and implicitly also (j, i). The entry must lie
+     * within the declared profile.
+     *
+     * @param i row index
+     * @param j column index
+     * @param val value to add
+     */
+    public void add(int i, int j, double val) {
+        if (i > j) {
+            int tmp = i;
+            i = j;
+            j = tmp;
+        }
+        a[colStart[j] + i - first[j]] += val;
+    }
+
+    /**
+     * Return the storage position of the matrix entry at (i, j) and implicitly also (j, i), which must lie
+     * within the declared profile.  Positions are in column order, so entries of column j and later are at
+     * <code>getColumnStart(j)</code> or after.  Positions are valid until the profile changes.
+     *
+     * @param i row index
+     * @param j column index
+     * @return storage position
+     */
+    public int getEntryIndex(int i, int j) {
+        if (i > j) {
+            int tmp = i;
+            i = j;
+            j = tmp;
+        }
+        return colStart[j] + i - first[j];
+    }
+
+    /**
+     * Return the storage position of the first stored entry of the given column.
+     *
+     * @param j column index, up to the number of equations
+     * @return storage position
+     */
+    public int getColumnStart(int j) {
+        return colStart[j];
+    }
+
+    /**
+     * Add a value to the matrix entry at a storage position from <code>getEntryIndex</code> unless the
+     * position is before a given one.  A negative position is never added to.
+     *
+     * @param k storage position
+     * @param kLo first position that may be added to, not negative
+     * @param val value to add
+     */
+    public void addEntry(int k, int kLo, double val) {
+        if (k >= kLo) {
+            a[k] += val;
+        }
+    }
+
+    /**
+     * Set the diagonal entry of the given equation.
+     *
+     * @param i equation index
+     * @param val new value
+     */
+    public void setDiagonal(int i, double val) {
+        a[colStart[i + 1] - 1] = val;
+    }
+
+    /**
+     * Return the pivot of the given equation, which is the diagonal entry of D after a successful factorization.
+     *
+     * @param i equation index
+     * @return pivot
+     */
+    public double getPivot(int i) {
+        return a[colStart[i + 1] - 1];
+    }
+
+    /**
+     * Return the index of the equation where the last factorization failed or -1 if it succeeded.
+     *
+     * @return failed equation index
+     */
+    public int getFailedEquation() {
+        return failedEquation;
+    }
+
+    /**
+     * Factor the matrix in place as L D L'.  Fails as soon as a pivot with magnitude less than
+     * <code>minPivot</code> is encountered, leaving the factorization incomplete.
+     *
+     * @param minPivot smallest acceptable pivot magnitude
+     * @return true iff factorization succeeded
+     */
+    public boolean factor(double minPivot) {
+        return factor(minPivot, 0);
+    }
+
+    /**
+     * Factor the matrix in place as L D L' from the given column on, taking earlier columns to hold the 
+     * factors of a matrix that was the same in those columns.  Fails as for <code>factor(minPivot)</code>.
+     *
+     * @param minPivot smallest acceptable pivot magnitude
+     * @param jLo first column to factor
+     * @return true iff factorization succeeded
+     */
+    public boolean factor(double minPivot, int jLo) {
+        final double [] a = this.a;
+        for (int j = jLo; j < n; j++) {
+            final int mj = first[j];
+            final int cj = colStart[j] - mj;
+            // Reduce the column against previously factored columns.
+            for (int i = mj + 1; i < j; i++) {
+                final int mi = first[i];
+                final int ci = colStart[i] - mi;
+                double sum = 0;
+                for (int r = Math.max(mi, mj); r < i; r++) {
+                    sum += a[ci + r] * a[cj + r];
+                }
+                a[cj + i] -= sum;
+            }
+            // Scale by the earlier pivots and find this one.
+            double d = a[cj + j];
+            for (int i = mj; i < j; i++) {
+                final double g = a[cj + i];
+                final double l = g / a[colStart[i + 1] - 1];
+                d -= l * g;
+                a[cj + i] = l;
+            }
+            if (Math.abs(d) < minPivot) {
+                failedEquation = j;
+                return false;
+            }
+            a[cj + j] = d;
+        }
+        failedEquation = -1;
+        return true;
+    }
+
+    /**
+     * Solve the factored system for many right hand sides at once. The right hand sides are stored
+     * interleaved by equation: component i of right hand side k is at <code>b[i * nRhs + k]</code>. 
+     * This puts the innermost loops over contiguous memory.
+     *
+     * @param b right hand sides on entry; solutions on exit
+     * @param nRhs number of right hand sides
+     */
+    public void solve(double [] b, int nRhs) {
+        solve(b, nRhs, 0, nRhs);
+    }
+
+    /**
+     * Solve the factored system for a contiguous block of the interleaved right hand sides 
+     * <code>kLo</code> up to but not including <code>kHi</code>. Others are untouched, so disjoint
+     * blocks may be solved independently.
+     *
+     * @param b right hand sides on entry; solutions on exit
+     * @param nRhs total number of right hand sides in the array
+     * @param kLo first right hand side to solve
+     * @param kHi one past the last right hand side to solve
+     */
+    public void solve(double [] b, int nRhs, int kLo, int kHi) {
+        final double [] a = this.a;
+        for (int j = 0; j < n; j++) {
+            final int mj = first[j];
+            final int cj = colStart[j] - mj;
+            final int bj = j * nRhs;
+            for (int r = mj; r < j; r++) {
+                final double l = a[cj + r];
+                if (l != 0) {
+                    final int br = r * nRhs;
+                    for (int k = kLo; k < kHi; k++) {
+                        b[bj + k] -= l * b[br + k];
+                    }
+                }
+            }
+        }
+        for (int j = 0; j < n; j++) {
+            final double d = a[colStart[j + 1] - 1];
+            final int bj = j * nRhs;
+            for (int k = kLo; k < kHi; k++) {
+                b[bj + k] /= d;
+            }
+        }
+        for (int j = n - 1; j > 0; j--) {
+            final int mj = first[j];
+            final int cj = colStart[j] - mj;
+            final int bj = j * nRhs;
+            for (int r = mj; r < j; r++) {
+                final double l = a[cj + r];
+                if (l != 0) {
+                    final int br = r * nRhs;
+                    for (int k = kLo; k < kHi; k++) {
+                        b[br + k] -= l * b[bj + k];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Solve the factored system in place by forward substitution, diagonal scaling, and back substitution.
+     *
+     * @param b right hand side on entry; solution on exit
+     */
+    public void solve(double [] b) {
+        final double [] a = this.a;
+        for (int j = 0; j < n; j++) {
+            final int mj = first[j];
+            final int cj = colStart[j] - mj;
+            double sum = 0;
+            for (int r = mj; r < j; r++) {
+                sum += a[cj + r] * b[r];
+            }
+            b[j] -= sum;
+        }
+        for (int j = 0; j < n; j++) {
+            b[j] /= a[colStart[j + 1] - 1];
+        }
+        for (int j = n - 1; j > 0; j--) {
+            final int mj = first[j];
+            final int cj = colStart[j] - mj;
+            final double x = b[j];
+            for (int r = mj; r < j; r++) {
+                b[r] -= a[cj + r] * x;
+            }
+        }
+    }
+}
@@ -0,0 +1,415 @@
+/*
+ * StabilityCheck.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Fast check for bridges that are certainly unstable, with the joints and members of the mechanism, for use
+ * before a load test.  A bridge that fails the check would fail the load test as unstable.  A bridge that
+ * passes may still be unstable due to special geometry, e.g. three collinear joints in a triangle, which only
+ * the load test finds.
+ *
+ * The check has two parts.  The first is combinatorial.  The supports are modeled as a rigid triangle of three
+ * ground joints, and each restrained joint coordinate as a bar from the joint to a different ground joint.
+ * The (2,3) pebble game of Jacobs and Hendrickson then counts the independent members, which by Laman's
+ * theorem tells whether the bridge is rigid for joints in general position.  If it isn't, the loose joints are
+ * those that move relative to the largest set of joints held rigidly together, usually by the supports.  The
+ * second part is geometric: the members at each joint must span the directions in which the joint may move.
+ * Otherwise the joint is loose regardless of the rest.
+ *
+ * Both parts take time roughly proportional to the product of the numbers of joints and members, so the
+ * check takes microseconds for bridges of the sizes allowed by design conditions.  Finding the loose joints
+ * of an unstable bridge takes longer, but still much less than a load test.
+ *
+ * @author Eugene K. Ressler
+ */
+public class StabilityCheck {
+
+    /**
+     * Number of ground joints.
+     */
+    private static final int nGroundJoints = 3;
+
+    private final BridgeModel bridge;
+    private final int nJoints;
+    /**
+     * Free pebbles on each vertex, i.e. each joint followed by the ground joints.
+     */
+    private final int [] pebbles;
+    /**
+     * Heads of the directed edges leaving each vertex.  Since each vertex starts with two pebbles and each
+     * covered edge takes one from its tail, no vertex has more than two.
+     */
+    private final int [][] heads;
+    private final int [] nHeads;
+    /**
+     * Search marks, stack, and path parents for the pebble search.
+     */
+    private final int [] visitMark;
+    private final int [] stack;
+    private final int [] pathParent;
+    private int mark = 0;
+    private int nIndependent = 0;
+    private int nFreedoms;
+    private final boolean [] loose;
+    private boolean locallyRigid = true;
+
+    /**
+     * Check a bridge.
+     *
+     * @param bridge bridge to check
+     */
+    public StabilityCheck(BridgeModel bridge) {
+        this.bridge = bridge;
+        nJoints = bridge.getJoints().size();
+        final int nVertices = nJoints + nGroundJoints;
+        pebbles = new int [nVertices];
+        heads = new int [nVertices][2];
+        nHeads = new int [nVertices];
+        visitMark = new int [nVertices];
+        stack = new int [nVertices];
+        pathParent = new int [nVertices];
+        loose = new boolean [nJoints];
+        for (int v = 0; v < nVertices; v++) {
+            pebbles[v] = 2;
+        }
+        final int g = nJoints;
+        insert(g, g + 1);
+        insert(g + 1, g + 2);
+        insert(g, g + 2);
+        final boolean [] xRestraint = new boolean [nJoints];
+        final boolean [] yRestraint = new boolean [nJoints];
+        bridge.getDesignConditions().getJointRestraints(xRestraint, yRestraint, nJoints);
+        for (int ij = 0; ij < nJoints; ij++) {
+            if (xRestraint[ij]) {
+                insert(ij, g);
+            }
+            if (yRestraint[ij]) {
+                insert(ij, g + 1);
+            }
+        }
+        for (Member member : bridge.getMembers()) {
+            final int a = member.getJointA().getIndex();
+            final int b = member.getJointB().getIndex();
+            if (a != b) {
+                insert(a, b);
+            }
+        }
+        nFreedoms = -nGroundJoints;
+        for (int v = 0; v < nVertices; v++) {
+            nFreedoms += pebbles[v];
+        }
+        if (nFreedoms > 0) {
+            findLooseJoints();
+        }
+        checkLocalRank(xRestraint, yRestraint);
+    }
+
+    /**
+     * Mark as loose the joints that move relative to the largest set of joints held rigidly together, preferring
+     * the set held rigidly by the supports.  When a mechanism lets the whole bridge move on its supports,
+     * this points to the part that moves relative to the rest rather than to all the joints.
+     *
+     * Two vertices are braced, i.e. their distance is fixed, iff no more than three pebbles can be gathered on
+     * them.  A joint braced to one vertex may still swing around it, so a rigid set is found from a braced pair:
+     * it's the pair and the joints braced to both.
+     */
+    private void findLooseJoints() {
+        final int nVertices = nJoints + nGroundJoints;
+        final boolean [][] braced = new boolean [nVertices][nVertices];
+        for (int u = 0; u < nVertices; u++) {
+            for (int v = u + 1; v < nVertices; v++) {
+                braced[u][v] = braced[v][u] = gather(u, v) <= nGroundJoints;
+            }
+        }
+        // Try the ground first, so it wins ties.
+        final int g = nJoints;
+        int bestU = g;
+        int bestV = g + 1;
+        int bestCount = getRigidCount(braced, g, g + 1);
+        for (int u = 0; u < nJoints; u++) {
+            for (int v = u + 1; v < nVertices; v++) {
+                if (braced[u][v]) {
+                    final int count = getRigidCount(braced, u, v);
+                    if (count > bestCount) {
+                        bestCount = count;
+                        bestU = u;
+                        bestV = v;
+                    }
+                }
+            }
+        }
+        for (int ij = 0; ij < nJoints; ij++) {
+            loose[ij] = !isRigid(braced, bestU, bestV, ij);
+        }
+    }
+
+    /**
+     * Return true iff a joint is in the rigid set of a braced pair of vertices.
+     *
+     * @param braced whether each pair of vertices is braced
+     * @param u one vertex of the pair
+     * @param v other vertex of the pair
+     * @param ij joint index
+     * @return true iff the joint is one of the pair or braced to both
+     */
+    private static boolean isRigid(boolean [][] braced, int u, int v, int ij) {
+        return ij == u || ij == v || (braced[u][ij] && braced[v][ij]);
+    }
+
+    /**
+     * Return the number of joints in the rigid set of a braced pair of vertices.
+     *
+     * @param braced whether each pair of vertices is braced
+     * @param u one vertex of the pair
+     * @param v other vertex of the pair
+     * @return number of joints in the rigid set
+     */
+    private int getRigidCount(boolean [][] braced, int u, int v) {
+        int count = 0;
+        for (int ij = 0; ij < nJoints; ij++) {
+            if (isRigid(braced, u, v, ij)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Play the pebble game for one edge: cover it with a pebble from one end if four pebbles can be gathered
+     * on its two ends, in which case it's independent of the edges already covered.
+     *
+     * @param u one end
+     * @param v other end
+     */
+    private void insert(int u, int v) {
+        if (gather(u, v) == 4) {
+            --pebbles[u];
+            heads[u][nHeads[u]++] = v;
+            ++nIndependent;
+        }
+    }
+
+    /**
+     * Gather as many pebbles as possible, up to two each, on two vertices.
+     *
+     * @param u one vertex
+     * @param v other vertex
+     * @return number of pebbles on the two vertices
+     */
+    private int gather(int u, int v) {
+        while (pebbles[u] < 2 && findPebble(u, v)) { }
+        while (pebbles[v] < 2 && findPebble(v, u)) { }
+        return pebbles[u] + pebbles[v];
+    }
+
+    /**
+     * Search along directed edges from a vertex for a free pebble and, if one is found, move it to the vertex
+     * by reversing the edges of the path.
+     *
+     * @param v vertex to get the pebble
+     * @param blocked vertex whose pebbles may not be taken
+     * @return true iff a pebble was moved
+     */
+    private boolean findPebble(int v, int blocked) {
+        ++mark;
+        visitMark[v] = visitMark[blocked] = mark;
+        // Depth-first search with an explicit stack, recording the path by parents.
+        int nStack = 0;
+        stack[nStack++] = v;
+        while (nStack > 0) {
+            final int a = stack[--nStack];
+            for (int i = 0; i < nHeads[a]; i++) {
+                final int b = heads[a][i];
+                if (visitMark[b] != mark) {
+                    visitMark[b] = mark;
+                    pathParent[b] = a;
+                    if (pebbles[b] > 0) {
+                        --pebbles[b];
+                        ++pebbles[v];
+                        for (int w = b; w != v; w = pathParent[w]) {
+                            reverse(pathParent[w], w);
+                        }
+                        return true;
+                    }
+                    stack[nStack++] = b;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void reverse(int a, int b) {
+        final int i = heads[a][0] == b ? 0 : 1;
+        heads[a][i] = heads[a][--nHeads[a]];
+        heads[b][nHeads[b]++] = a;
+    }
+
+    /**
+     * Mark as loose each joint whose members don't span the directions in which it may move.  The stiffness
+     * matrix of such a bridge has a zero row.
+     *
+     * @param xRestraint x-restraint flags indexed by joint
+     * @param yRestraint y-restraint flags indexed by joint
+     */
+    private void checkLocalRank(boolean [] xRestraint, boolean [] yRestraint) {
+        // First member direction seen at each joint and whether the joint's free directions are spanned.
+        final double [] ux = new double [nJoints];
+        final double [] uy = new double [nJoints];
+        final boolean [] spanned = new boolean [nJoints];
+        for (int ij = 0; ij < nJoints; ij++) {
+            spanned[ij] = xRestraint[ij] && yRestraint[ij];
+        }
+        for (Member member : bridge.getMembers()) {
+            final Affine.Vector u = member.getJointB().getPointWorld().minus(member.getJointA().getPointWorld()).unit(1);
+            for (int end = 0; end < 2; end++) {
+                final int ij = (end == 0 ? member.getJointA() : member.getJointB()).getIndex();
+                if (spanned[ij]) {
+                    continue;
+                }
+                if (xRestraint[ij]) {
+                    spanned[ij] = Math.abs(u.y) > Utility.small;
+                }
+                else if (yRestraint[ij]) {
+                    spanned[ij] = Math.abs(u.x) > Utility.small;
+                }
+                else if (ux[ij] == 0 && uy[ij] == 0) {
+                    ux[ij] = u.x;
+                    uy[ij] = u.y;
+                }
+                else {
+                    spanned[ij] = Math.abs(ux[ij] * u.y - uy[ij] * u.x) > Utility.small;
+                }
+            }
+        }
+        for (int ij = 0; ij < nJoints; ij++) {
+            if (!spanned[ij]) {
+                loose[ij] = true;
+                locallyRigid = false;
+            }
+        }
+    }
+
+    /**
+     * Return true iff the bridge passed the check, so it may be stable.
+     *
+     * @return true iff no mechanism was found
+     */
+    public boolean isStable() {
+        return nFreedoms == 0 && locallyRigid;
+    }
+
+    /**
+     * Return the number of independent motions of the bridge with joints in general position, zero if it's
+     * rigid.
+     *
+     * @return number of degrees of freedom
+     */
+    public int getFreedomCount() {
+        return nFreedoms;
+    }
+
+    /**
+     * Return the number of members and restraints that are independent, i.e. not redundant in general position.
+     *
+     * @return number of independent bars, not counting those of the ground
+     */
+    public int getIndependentCount() {
+        return nIndependent - nGroundJoints;
+    }
+
+    /**
+     * Return true iff the given joint is not held rigidly in place.
+     *
+     * @param joint joint
+     * @return true iff the joint is part of a mechanism
+     */
+    public boolean isLoose(Joint joint) {
+        return loose[joint.getIndex()];
+    }
+
+    /**
+     * Return the joints not held rigidly in place.
+     *
+     * @return loose joints in order of index
+     */
+    public ArrayList<Joint> getLooseJoints() {
+        ArrayList<Joint> joints = new ArrayList<Joint>();
+        for (int ij = 0; ij < nJoints; ij++) {
+            if (loose[ij]) {
+                joints.add(bridge.getJoints().get(ij));
+            }
+        }
+        return joints;
+    }
+
+    /**
+     * Return the members with at least one loose joint, which move with the mechanism.
+     *
+     * @return loose members in order of index
+     */
+    public ArrayList<Member> getLooseMembers() {
+        ArrayList<Member> members = new ArrayList<Member>();
+        for (Member member : bridge.getMembers()) {
+            if (loose[member.getJointA().getIndex()] || loose[member.getJointB().getIndex()]) {
+                members.add(member);
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Check bridge files from the command line.
+     * <pre>
+     *   java bridgedesigner.StabilityCheck file.bdc...
+     * </pre>
+     * Prints a line per file with its verdict, the number of degrees of freedom, and the numbers of the loose
+     * joints.  Exits with status 1 if any bridge is unstable and 2 for a usage or file error.
+     *
+     * @param args command line arguments
+     */
+    public static void main(String [] args) {
+        if (args.length < 1) {
+            System.err.println("usage: java StabilityCheck file.bdc...");
+            System.exit(2);
+        }
+        int status = 0;
+        for (int i = 0; i < args.length; i++) {
+            BridgeModel bridge = new BridgeModel();
+            try {
+                bridge.read(new File(args[i]));
+            } catch (IOException ex) {
+                System.err.println(args[i] + ": " + ex.getMessage());
+                System.exit(2);
+            }
+            final long startTime = System.nanoTime();
+            StabilityCheck check = new StabilityCheck(bridge);
+            final double micros = (System.nanoTime() - startTime) * 1e-3;
+            StringBuilder joints = new StringBuilder();
+            for (Joint joint : check.getLooseJoints()) {
+                joints.append(joints.length() == 0 ? "" : " ").append(joint.getNumber());
+            }
+            System.out.println(String.format(Locale.US, "%s\t%s\t%d\t%s\t%.0f us", args[i],
+                    check.isStable() ? "OK" : "UNSTABLE", check.getFreedomCount(), joints, micros));
+            if (!check.isStable()) {
+                status = 1;
+            }
+        }
+        System.exit(status);
+    }
+}
@@ -287,7 +287,7 @@ public class StrengthCurve extends JLabel {
         g.drawLine(xPlotAreaLeft, iy, xPlotAreaRight, iy);
 
         final int nPlotPoints = 32;
-        double yCompressive = Inventory.compressiveStrength(material, shape, 0.0);
+        double yCompressive = StrengthTable.compressiveStrength(material, shape, 0.0);
         int iy0 = yPlotAreaBottom - (int) Math.round((yCompressive / yMax) * heightPlotArea);
         int ix0 = xPlotAreaLeft;
         g.setColor(subdued ? subduedRed : Color.RED);
@@ -295,7 +295,7 @@ public class StrengthCurve extends JLabel {
             double t = (double) i / nPlotPoints;
             double x = t * xMax;
             int ix1 = xPlotAreaLeft + (int) Math.round(t * widthPlotArea);
-            yCompressive = Inventory.compressiveStrength(material, shape, x);
+            yCompressive = StrengthTable.compressiveStrength(material, shape, x);
             int iy1 = yPlotAreaBottom - (int) Math.round((yCompressive / yMax) * heightPlotArea);
             g.drawLine(ix0, iy0, ix1, iy1);
             ix0 = ix1;
@@ -368,7 +368,7 @@ public class StrengthCurve extends JLabel {
             Stroke savedStroke = g.getStroke();
             double tensileStrength = Inventory.tensileStrength(member.getMaterial(), member.getShape());
             int iyTensileStrength = yPlotAreaBottom - (int) Math.round((tensileStrength / yMax) * heightPlotArea);
-            double compressiveStrength = Inventory.compressiveStrength(member.getMaterial(), member.getShape(), length);
+            double compressiveStrength = StrengthTable.compressiveStrength(member.getMaterial(), member.getShape(), length);
             int iyCompressiveStrength = yPlotAreaBottom - (int) Math.round((compressiveStrength / yMax) * heightPlotArea);
 
             // Find x-coordinate for the member getLength and plot a vertical line there.
@@ -0,0 +1,152 @@
+/*
+ * StrengthTable.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+/**
+ * Precomputed compressive strengths for every material and shape in the inventory, a fast stand-in
+ * for <code>Inventory.compressiveStrength</code> when members are evaluated many times over.
+ *
+ * Compressive strength is the squash load of the material and shape, scaled by a buckling factor that
+ * depends only on the slenderness parameter lambda, which is in turn a per-stock constant times the square
+ * of member length.  So the table holds the two constants for each material and shape together with one
+ * cubic Hermite interpolant of the inelastic buckling factor <code>0.66^lambda</code> over
+ * <code>0 <= lambda <= 2.25</code>.  Interpolated values are exact at the knots, and elsewhere they differ
+ * from the formula by at most <code>getErrorBound()</code> times the squash load.  The elastic range
+ * beyond <code>lambda = 2.25</code> needs no power, so it is computed exactly as by the formula.
+ *
+ * The table is built once, on first use, and is safe to use from any thread.
+ *
+ * @author Eugene K. Ressler
+ */
+public class StrengthTable {
+
+    /**
+     * Slenderness parameter that divides inelastic from elastic buckling.
+     */
+    private static final double lambdaElastic = 2.25;
+    /**
+     * Number of intervals of the buckling factor interpolant.
+     */
+    private static final int nIntervals = 64;
+    private static final double lambdaSpacing = lambdaElastic / nIntervals;
+    private static final double inverseLambdaSpacing = nIntervals / lambdaElastic;
+    /**
+     * Natural log of the inelastic buckling base 0.66.
+     */
+    private static final double logBase = Math.log(0.66);
+    /**
+     * Cubic coefficients of the buckling factor on each interval in the local coordinate 0 <= t < 1,
+     * four per interval, constant first.  A last entry holds the exact value at lambda = 2.25.
+     */
+    private static final double [] coefficients = new double[4 * (nIntervals + 1)];
+    /**
+     * Error of cubic Hermite interpolation is at most h^4/384 times the largest fourth derivative on the
+     * interval, here logBase^4 at lambda = 0.  Allow a few more units in the last place for rounding.
+     */
+    private static final double errorBound =
+            Math.pow(lambdaSpacing * -logBase, 4) / 384 + 8 * Math.ulp(1.0);
+    /**
+     * Per-stock constants indexed by <code>getStockIndex()</code>: yield strength, area, the
+     * denominator of lambda, and the compressive strength at zero length.  Lambda and the elastic
+     * strength are computed with the same operations in the same order as the exact formula, so
+     * they agree with it exactly.
+     */
+    private static final double [] fy;
+    private static final double [] area;
+    private static final double [] lambdaDenominator;
+    private static final double [] squashLoad;
+    /**
+     * Dimensions of the stock index space.
+     */
+    private static final int nSections;
+    private static final int maxNSizes;
+
+    static {
+        for (int i = 0; i < nIntervals; i++) {
+            final double g0 = Math.pow(0.66, i * lambdaSpacing);
+            final double g1 = Math.pow(0.66, (i + 1) * lambdaSpacing);
+            final double m0 = lambdaSpacing * logBase * g0;
+            final double m1 = lambdaSpacing * logBase * g1;
+            coefficients[4 * i + 0] = g0;
+            coefficients[4 * i + 1] = m0;
+            coefficients[4 * i + 2] = 3 * (g1 - g0) - 2 * m0 - m1;
+            coefficients[4 * i + 3] = 2 * (g0 - g1) + m0 + m1;
+        }
+        coefficients[4 * nIntervals] = Math.pow(0.66, lambdaElastic);
+
+        final Inventory inventory = new Inventory();
+        nSections = inventory.getNSections();
+        int n = 0;
+        for (int i = 0; i < nSections; i++) {
+            n = Math.max(n, inventory.getNShapes(i));
+        }
+        maxNSizes = n;
+        final int nMaterials = inventory.getNMaterials();
+        final int nStock = nMaterials * nSections * maxNSizes;
+        fy = new double [nStock];
+        area = new double [nStock];
+        lambdaDenominator = new double [nStock];
+        squashLoad = new double [nStock];
+        for (int im = 0; im < nMaterials; im++) {
+            final Material material = inventory.getMaterial(im);
+            for (int is = 0; is < nSections; is++) {
+                for (int iz = 0; iz < inventory.getNShapes(is); iz++) {
+                    final Shape shape = inventory.getShape(is, iz);
+                    final int i = getStockIndex(material, shape);
+                    fy[i] = material.getFy();
+                    area[i] = shape.getArea();
+                    lambdaDenominator[i] = 9.8696044 * material.getE() * shape.getMoment();
+                    squashLoad[i] = Inventory.compressionResistanceFactor * fy[i] * area[i];
+                }
+            }
+        }
+    }
+
+    private static int getStockIndex(Material material, Shape shape) {
+        return (material.getIndex() * nSections + shape.getSection().getIndex()) * maxNSizes + shape.getSizeIndex();
+    }
+
+    /**
+     * Return the compressive strength of a member of a given material, shape, and length.  The result
+     * differs from <code>Inventory.compressiveStrength</code> by at most <code>getErrorBound()</code> times
+     * the strength at zero length.
+     *
+     * @param material material
+     * @param shape shape
+     * @param length member length
+     * @return compressive strength
+     */
+    public static double compressiveStrength(Material material, Shape shape, double length) {
+        final int i = getStockIndex(material, shape);
+        final double lambda = length * length * fy[i] * area[i] / lambdaDenominator[i];
+        if (lambda > lambdaElastic) {
+            return Inventory.compressionResistanceFactor * 0.88 * fy[i] * area[i] / lambda;
+        }
+        final double s = lambda * inverseLambdaSpacing;
+        final int k = (int)s;
+        final double t = s - k;
+        final int j = 4 * k;
+        return squashLoad[i] * (coefficients[j] + t * (coefficients[j + 1] + t * (coefficients[j + 2] + t * coefficients[j + 3])));
+    }
+
+    /**
+     * Return the largest difference between a tabulated compressive strength and the exact formula
+     * as a fraction of the member's strength at zero length.
+     *
+     * @return error bound
+     */
+    public static double getErrorBound() {
+        return errorBound;
+    }
+}
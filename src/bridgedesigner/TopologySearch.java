@@ -0,0 +1,1162 @@
+/*
+ * TopologySearch.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.awt.Point;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Evolutionary search over bridge topologies for the trade-off between cost and safety margin.
+ *
+ * A design is a bridge, i.e. joints and the members connecting them, plus a target safety margin.  Each
+ * candidate design is sized with a <code>MemberSizer</code> that holds the target margin of strength in
+ * reserve, so the design's objectives are the cost of the sized bridge, to be minimized, and the least
+ * margin actually left by the load test, to be maximized.  Children are made by moving, adding, and
+ * removing free joints, adding and removing members, and changing the target margin, always within the
+ * drafting rules and the limits <code>DesignConditions.maxJointCount</code> and <code>maxMemberCount</code>.
+ *
+ * Since sizing takes many load tests, children that can't be stable are rejected cheaply first: by the joint
+ * and member count check of <code>BridgeModel.isAnalyzable</code>, then by a <code>StabilityCheck</code>.
+ * The rest are sized.
+ *
+ * Populations evolve on several islands in parallel, each with its own random number generator seeded from
+ * the search seed, so a run is reproducible for a given seed and number of islands, regardless of thread
+ * timing.  Islands evolve independently for a few generations, an epoch, and then each receives the
+ * cheapest design of its neighbor in a ring.  Survivors are chosen by non-dominated sorting with crowding
+ * distance.  After each epoch, the designs of all islands are merged into the Pareto front of the search,
+ * and if the front changed, it is written to the front stream as one tab-delimited line per design:
+ * <pre>
+ *   epoch  cost  margin  joints  members
+ * </pre>
+ * in order of increasing cost.  The stream is flushed after each epoch, so it may be watched as the search
+ * runs.
+ *
+ * @author Eugene K. Ressler
+ */
+public class TopologySearch {
+
+    /**
+     * Receiver of progress reports from a running search.
+     */
+    public interface ProgressListener {
+
+        /**
+         * Report progress after an epoch.  Called on the thread running the search.
+         *
+         * @param search the search reporting progress
+         */
+        void reportProgress(TopologySearch search);
+    }
+
+    /**
+     * Number of designs kept on each island.
+     */
+    private static final int populationSize = 24;
+    /**
+     * Number of generations each island evolves between migrations.
+     */
+    private static final int generationsPerEpoch = 4;
+    /**
+     * Largest target safety margin.
+     */
+    private static final double maxTargetMargin = 0.5;
+    /**
+     * Standard deviation of a change in target margin.
+     */
+    private static final double targetMarginStep = 0.05;
+    /**
+     * Largest number of mutations made to a parent to get one child.
+     */
+    private static final int maxMutations = 3;
+    /**
+     * Largest number of tries to make the mutations of one child, since many are invalid.
+     */
+    private static final int maxMutationAttempts = 20;
+    /**
+     * Cumulative percentages choosing among mutations: target margin, joint move, member addition, member
+     * removal, joint addition, and joint removal.
+     */
+    private static final int [] mutationPercentiles = { 15, 45, 60, 75, 90, 100 };
+    /**
+     * Lengths of joint moves in fine grid spacings.
+     */
+    private static final int [] moveSteps = { 1, 2, 4 };
+    /**
+     * Directions of joint moves.
+     */
+    private static final int [] moveDx = { 1, 1, 0, -1, -1, -1, 0, 1 };
+    private static final int [] moveDy = { 0, 1, 1, 1, 0, -1, -1, -1 };
+    /**
+     * Largest offset of a new joint from the middle of a member in fine grid spacings.
+     */
+    private static final int maxNewJointOffset = 8;
+    /**
+     * Number of nearest joints considered as the far end of a new member.
+     */
+    private static final int nNearestCandidates = 4;
+    /**
+     * Designs whose costs and margins differ by less than these are considered the same.
+     */
+    private static final double costTolerance = 0.005;
+    private static final double marginTolerance = 1e-6;
+
+    private final DesignConditions conditions;
+    private final String [] seeds;
+    private final Island [] islands;
+    private final Writer frontWriter;
+    private final ArrayList<Design> front = new ArrayList<Design>();
+    private ProgressListener listener;
+    private volatile boolean cancelled = false;
+    private volatile int epoch = 0;
+    private long startTime;
+    private volatile long elapsedTime = 0;
+
+    /**
+     * One evaluated design.  Designs are immutable, so they may be shared among islands.
+     */
+    public static class Design {
+
+        /**
+         * The sized bridge as written by <code>BridgeModel.toString</code>.
+         */
+        private final String bridge;
+        private final double targetMargin;
+        private final double cost;
+        private final double margin;
+        private final int nJoints;
+        private final int nMembers;
+
+        Design(BridgeModel bridge, double targetMargin, double cost, double margin) {
+            this.bridge = bridge.toString();
+            this.targetMargin = targetMargin;
+            this.cost = cost;
+            this.margin = margin;
+            this.nJoints = bridge.getJoints().size();
+            this.nMembers = bridge.getMembers().size();
+        }
+
+        /**
+         * Return a new copy of the sized bridge of this design.
+         *
+         * @return bridge
+         */
+        public BridgeModel getBridge() {
+            BridgeModel copy = new BridgeModel();
+            copy.read(bridge);
+            return copy;
+        }
+
+        /**
+         * Return the cost of the sized bridge.
+         *
+         * @return cost
+         */
+        public double getCost() {
+            return cost;
+        }
+
+        /**
+         * Return the least fraction of member strength left unused by the load test.
+         *
+         * @return safety margin
+         */
+        public double getMargin() {
+            return margin;
+        }
+
+        /**
+         * Return the number of joints.
+         *
+         * @return joint count
+         */
+        public int getNJoints() {
+            return nJoints;
+        }
+
+        /**
+         * Return the number of members.
+         *
+         * @return member count
+         */
+        public int getNMembers() {
+            return nMembers;
+        }
+
+        /**
+         * Return true iff this design is at least as good as another in both objectives and better in one.
+         *
+         * @param other other design
+         * @return true iff this design dominates the other
+         */
+        boolean dominates(Design other) {
+            return cost <= other.cost && margin >= other.margin && (cost < other.cost || margin > other.margin);
+        }
+
+        /**
+         * Return true iff this design has the same objectives as another to within tolerances.
+         *
+         * @param other other design
+         * @return true iff the designs are equivalent
+         */
+        boolean isEquivalent(Design other) {
+            return Math.abs(cost - other.cost) < costTolerance && Math.abs(margin - other.margin) < marginTolerance;
+        }
+    }
+
+    /**
+     * Construct a search.
+     *
+     * @param conditions design conditions of all designs
+     * @param seeds bridges for the conditions from which the initial populations are bred
+     * @param nIslands number of islands, each evolved on its own thread
+     * @param seed seed of the random number generators
+     * @param frontWriter writer for the Pareto front after each epoch where it changes or null for none
+     */
+    public TopologySearch(DesignConditions conditions, List<BridgeModel> seeds, int nIslands, long seed, Writer frontWriter) {
+        if (seeds.isEmpty()) {
+            throw new IllegalArgumentException("no seed bridges");
+        }
+        this.conditions = conditions;
+        this.seeds = new String [seeds.size()];
+        for (int i = 0; i < this.seeds.length; i++) {
+            this.seeds[i] = seeds.get(i).toString();
+        }
+        this.frontWriter = frontWriter;
+        islands = new Island [nIslands];
+        for (int i = 0; i < nIslands; i++) {
+            islands[i] = new Island(seed + i);
+        }
+    }
+
+    /**
+     * Return seed bridges made from all the templates for given design conditions, every member having the
+     * same middling stock.
+     *
+     * @param conditions design conditions
+     * @return seed bridges, possibly none
+     */
+    public static ArrayList<BridgeModel> getTemplateSeeds(DesignConditions conditions) {
+        ArrayList<BridgeModel> seeds = new ArrayList<BridgeModel>();
+        final Inventory inventory = new Inventory();
+        final Object [] list = BridgeSketchModel.getList(conditions);
+        for (int i = 0; i < list.length; i++) {
+            if (list[i] instanceof BridgeSketchModel) {
+                BridgeModel bridge = new BridgeModel();
+                bridge.initialize(conditions, (BridgeSketchModel)list[i], inventory.getMaterial(0),
+                        inventory.getShape(0, inventory.getNShapes(0) / 2));
+                seeds.add(bridge);
+            }
+        }
+        return seeds;
+    }
+
+    /**
+     * Set the receiver of progress reports.
+     *
+     * @param listener progress listener or null for none
+     */
+    public void setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Ask a running search to stop after the current epoch.  May be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Return true iff the search has been cancelled.
+     *
+     * @return true iff cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Breed the initial populations and evolve them for a given number of epochs.
+     *
+     * @param nEpochs number of epochs
+     * @throws IOException if the front can't be written
+     * @throws InterruptedException if interrupted while waiting for the islands
+     */
+    public void search(int nEpochs) throws IOException, InterruptedException {
+        startTime = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(islands.length);
+        try {
+            evolveIslands(executor);
+            updateFront();
+            while (epoch < nEpochs && !cancelled) {
+                evolveIslands(executor);
+                migrate();
+                ++epoch;
+                updateFront();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Run one task on each island in parallel and wait for all to finish.
+     *
+     * @param executor executor with a thread for each island
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private void evolveIslands(ExecutorService executor) throws InterruptedException {
+        ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        Collections.addAll(tasks, islands);
+        for (Future<Object> future : executor.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (ExecutionException ex) {
+                final Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException)cause;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
+    }
+
+    /**
+     * Give each island the cheapest design of the one before it in a ring, replacing its worst design.
+     * Migrants are chosen before any island changes, so the result doesn't depend on island order.
+     */
+    private void migrate() {
+        if (islands.length < 2) {
+            return;
+        }
+        final Design [] migrants = new Design [islands.length];
+        for (int i = 0; i < islands.length; i++) {
+            migrants[i] = islands[i].getCheapest();
+        }
+        for (int i = 0; i < islands.length; i++) {
+            islands[i].receive(migrants[(i + islands.length - 1) % islands.length]);
+        }
+    }
+
+    /**
+     * Merge the designs of all islands into the Pareto front, write the front if it changed, and report
+     * progress.
+     *
+     * @throws IOException if the front can't be written
+     */
+    private void updateFront() throws IOException {
+        boolean changed = false;
+        for (int i = 0; i < islands.length; i++) {
+            for (Design design : islands[i].population) {
+                changed |= addToFront(design);
+            }
+        }
+        elapsedTime = System.nanoTime() - startTime;
+        if (changed && frontWriter != null) {
+            synchronized (front) {
+                for (Design design : front) {
+                    frontWriter.write(String.format(Locale.US, "%d\t%.2f\t%.4f\t%d\t%d\n",
+                            epoch, design.cost, design.margin, design.nJoints, design.nMembers));
+                }
+            }
+            frontWriter.flush();
+        }
+        if (listener != null) {
+            listener.reportProgress(this);
+        }
+    }
+
+    /**
+     * Add a design to the Pareto front unless it's dominated by or equivalent to a design already there,
+     * removing any it dominates.
+     *
+     * @param design design
+     * @return true iff the design was added
+     */
+    private boolean addToFront(Design design) {
+        synchronized (front) {
+            for (Design other : front) {
+                if (other.dominates(design) || other.isEquivalent(design)) {
+                    return false;
+                }
+            }
+            for (int i = front.size() - 1; i >= 0; i--) {
+                if (design.dominates(front.get(i))) {
+                    front.remove(i);
+                }
+            }
+            int i = 0;
+            while (i < front.size() && front.get(i).cost < design.cost) {
+                ++i;
+            }
+            front.add(i, design);
+            return true;
+        }
+    }
+
+    /**
+     * Return the Pareto front of cost versus safety margin found so far in order of increasing cost.  May be
+     * called from any thread.
+     *
+     * @return designs on the front
+     */
+    public Design [] getFront() {
+        synchronized (front) {
+            return front.toArray(new Design[front.size()]);
+        }
+    }
+
+    /**
+     * Return the number of epochs finished.
+     *
+     * @return epoch count
+     */
+    public int getEpochCount() {
+        return epoch;
+    }
+
+    /**
+     * Return the number of candidate designs bred so far.  Call between epochs, e.g. from a progress listener.
+     *
+     * @return candidate count
+     */
+    public int getCandidateCount() {
+        int n = 0;
+        for (int i = 0; i < islands.length; i++) {
+            n += islands[i].nCandidates;
+        }
+        return n;
+    }
+
+    /**
+     * Return the number of candidates rejected by the joint and member count check.  Call between epochs.
+     *
+     * @return number of rejections
+     */
+    public int getCountRejectionCount() {
+        int n = 0;
+        for (int i = 0; i < islands.length; i++) {
+            n += islands[i].nCountRejections;
+        }
+        return n;
+    }
+
+    /**
+     * Return the number of candidates rejected by the stability check.  Call between epochs.
+     *
+     * @return number of rejections
+     */
+    public int getRigidityRejectionCount() {
+        int n = 0;
+        for (int i = 0; i < islands.length; i++) {
+            n += islands[i].nRigidityRejections;
+        }
+        return n;
+    }
+
+    /**
+     * Return the number of candidates that were sized, but found unstable or impossible to size with their
+     * target margin.  Call between epochs.
+     *
+     * @return number of infeasible candidates
+     */
+    public int getInfeasibleCount() {
+        int n = 0;
+        for (int i = 0; i < islands.length; i++) {
+            n += islands[i].nInfeasible;
+        }
+        return n;
+    }
+
+    /**
+     * Return the total number of load tests performed so far.  Call between epochs.
+     *
+     * @return number of evaluations
+     */
+    public int getEvaluationCount() {
+        int n = 0;
+        for (int i = 0; i < islands.length; i++) {
+            n += islands[i].nEvaluations;
+        }
+        return n;
+    }
+
+    /**
+     * Return the average number of load tests per second so far.  Call between epochs.
+     *
+     * @return evaluations per second
+     */
+    public double getEvaluationsPerSecond() {
+        final long elapsed = elapsedTime;
+        return elapsed > 0 ? getEvaluationCount() * 1e9 / elapsed : 0;
+    }
+
+    /**
+     * One population, evolved on its own thread with its own random number generator.
+     */
+    private class Island implements Callable<Object> {
+
+        private final Random random;
+        private final Analysis analysis = new Analysis();
+        private final DraftingCoordinates coordinates;
+        /**
+         * Designs in order of increasing non-domination rank and, within a rank, decreasing crowding distance.
+         */
+        private ArrayList<Design> population = new ArrayList<Design>();
+        private int nCandidates = 0;
+        private int nCountRejections = 0;
+        private int nRigidityRejections = 0;
+        private int nInfeasible = 0;
+        private int nEvaluations = 0;
+
+        Island(long seed) {
+            random = new Random(seed);
+            BridgeModel bridge = new BridgeModel();
+            bridge.read(seeds[0]);
+            // As for the joint optimizer, a view that is never shown gives the drafting rules.
+            BridgeView view = new BridgeBlueprintView(bridge);
+            view.initialize(conditions);
+            coordinates = new DraftingCoordinates(view);
+            coordinates.setDensity(DraftingGrid.FINE_GRID);
+        }
+
+        /**
+         * Breed the initial population if there is none, else evolve for one epoch.
+         *
+         * @return null
+         */
+        public Object call() {
+            if (population.isEmpty()) {
+                initialize();
+            }
+            else {
+                for (int i = 0; i < generationsPerEpoch && !cancelled; i++) {
+                    evolve();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Size the seeds with random target margins and fill the population with their mutants.
+         */
+        private void initialize() {
+            for (int i = 0; i < seeds.length; i++) {
+                BridgeModel bridge = new BridgeModel();
+                bridge.read(seeds[i]);
+                add(population, evaluate(bridge, maxTargetMargin * random.nextDouble()));
+            }
+            for (int i = 0; i < 4 * populationSize && population.size() < populationSize && !population.isEmpty() && !cancelled; i++) {
+                add(population, breed(population.get(random.nextInt(population.size()))));
+            }
+            population = select(population);
+        }
+
+        /**
+         * Breed a child for each member of the population and keep the best of parents and children.
+         */
+        private void evolve() {
+            ArrayList<Design> pool = new ArrayList<Design>(population);
+            for (int i = 0; i < populationSize && !population.isEmpty(); i++) {
+                add(pool, breed(tournament()));
+            }
+            population = select(pool);
+        }
+
+        /**
+         * Return the better of two random designs of the population.
+         *
+         * @return selected parent
+         */
+        private Design tournament() {
+            final int i = random.nextInt(population.size());
+            final int j = random.nextInt(population.size());
+            return population.get(Math.min(i, j));
+        }
+
+        /**
+         * Add a design to a list unless it's null or equivalent to a design already there.
+         *
+         * @param designs list of designs
+         * @param design design to add
+         */
+        private void add(ArrayList<Design> designs, Design design) {
+            if (design == null) {
+                return;
+            }
+            for (Design other : designs) {
+                if (other.isEquivalent(design)) {
+                    return;
+                }
+            }
+            designs.add(design);
+        }
+
+        /**
+         * Return the cheapest design of the population.
+         *
+         * @return cheapest design or null if the population is empty
+         */
+        Design getCheapest() {
+            Design cheapest = null;
+            for (Design design : population) {
+                if (cheapest == null || design.cost < cheapest.cost) {
+                    cheapest = design;
+                }
+            }
+            return cheapest;
+        }
+
+        /**
+         * Replace the worst design of a full population with a migrant from another island.
+         *
+         * @param migrant migrant design or null for none
+         */
+        void receive(Design migrant) {
+            if (migrant == null || population.contains(migrant)) {
+                return;
+            }
+            if (population.size() >= populationSize) {
+                population.remove(population.size() - 1);
+            }
+            add(population, migrant);
+            population = select(population);
+        }
+
+        /**
+         * Return the best designs of a pool by non-dominated sorting: designs on the Pareto front of the
+         * pool come first, then those on the front of what remains, and so on.  Within each front, designs
+         * in sparsely populated regions of the objectives come first to keep the population diverse.
+         *
+         * @param pool designs to select from
+         * @return at most <code>populationSize</code> selected designs, best first
+         */
+        private ArrayList<Design> select(ArrayList<Design> pool) {
+            final int n = pool.size();
+            final int [] rank = new int [n];
+            final double [] crowding = new double [n];
+            ArrayList<Integer> remaining = new ArrayList<Integer>();
+            for (int i = 0; i < n; i++) {
+                remaining.add(i);
+            }
+            for (int r = 0; !remaining.isEmpty(); r++) {
+                ArrayList<Integer> front = new ArrayList<Integer>();
+                for (int i : remaining) {
+                    boolean dominated = false;
+                    for (int j : remaining) {
+                        if (pool.get(j).dominates(pool.get(i))) {
+                            dominated = true;
+                            break;
+                        }
+                    }
+                    if (!dominated) {
+                        front.add(i);
+                        rank[i] = r;
+                    }
+                }
+                remaining.removeAll(front);
+                setCrowding(pool, front, crowding);
+            }
+            Integer [] order = new Integer [n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer a, Integer b) {
+                    if (rank[a] != rank[b]) {
+                        return rank[a] - rank[b];
+                    }
+                    if (crowding[a] != crowding[b]) {
+                        return crowding[a] > crowding[b] ? -1 : 1;
+                    }
+                    return a - b;
+                }
+            });
+            ArrayList<Design> selected = new ArrayList<Design>();
+            for (int i = 0; i < n && i < populationSize; i++) {
+                selected.add(pool.get(order[i]));
+            }
+            return selected;
+        }
+
+        /**
+         * Set the crowding distance of each design in one front: the sum over objectives of the normalized
+         * distance between its neighbors on either side, infinite for the extremes.
+         *
+         * @param pool all designs
+         * @param front indices in the pool of the designs in the front
+         * @param crowding crowding distances indexed like the pool, filled in for the front
+         */
+        private void setCrowding(final ArrayList<Design> pool, ArrayList<Integer> front, double [] crowding) {
+            final int n = front.size();
+            Collections.sort(front, new Comparator<Integer>() {
+                public int compare(Integer a, Integer b) {
+                    final int c = Double.compare(pool.get(a).cost, pool.get(b).cost);
+                    return c != 0 ? c : a - b;
+                }
+            });
+            // Sorted by increasing cost, a front is in order of increasing margin, too.
+            final Design first = pool.get(front.get(0));
+            final Design last = pool.get(front.get(n - 1));
+            final double costRange = last.cost - first.cost;
+            final double marginRange = last.margin - first.margin;
+            for (int k = 0; k < n; k++) {
+                final int i = front.get(k);
+                if (k == 0 || k == n - 1) {
+                    crowding[i] = Double.POSITIVE_INFINITY;
+                }
+                else {
+                    final Design prev = pool.get(front.get(k - 1));
+                    final Design next = pool.get(front.get(k + 1));
+                    crowding[i] = (costRange > 0 ? (next.cost - prev.cost) / costRange : 0) +
+                            (marginRange > 0 ? (next.margin - prev.margin) / marginRange : 0);
+                }
+            }
+        }
+
+        /**
+         * Make a child by a few random mutations of a parent and evaluate it.
+         *
+         * @param parent parent design
+         * @return child or null if no valid child was found or it isn't feasible
+         */
+        private Design breed(Design parent) {
+            BridgeModel bridge = parent.getBridge();
+            double targetMargin = parent.targetMargin;
+            final int nMutations = 1 + random.nextInt(maxMutations);
+            int nMade = 0;
+            for (int attempt = 0; attempt < maxMutationAttempts && nMade < nMutations; attempt++) {
+                final int percentile = random.nextInt(100);
+                boolean made;
+                if (percentile < mutationPercentiles[0]) {
+                    final double t = targetMargin + targetMarginStep * random.nextGaussian();
+                    targetMargin = Math.max(0, Math.min(maxTargetMargin, t));
+                    made = true;
+                }
+                else if (percentile < mutationPercentiles[1]) {
+                    made = moveJoint(bridge);
+                }
+                else if (percentile < mutationPercentiles[2]) {
+                    made = addMember(bridge);
+                }
+                else if (percentile < mutationPercentiles[3]) {
+                    made = removeMember(bridge);
+                }
+                else if (percentile < mutationPercentiles[4]) {
+                    made = addJoint(bridge);
+                }
+                else {
+                    made = removeJoint(bridge);
+                }
+                if (made) {
+                    ++nMade;
+                }
+            }
+            return nMade > 0 ? evaluate(bridge, targetMargin) : null;
+        }
+
+        /**
+         * Reject a candidate bridge if it's certainly unstable, else size it for a target margin.
+         *
+         * @param bridge candidate bridge
+         * @param targetMargin target safety margin
+         * @return sized design or null if the candidate was rejected or can't be sized
+         */
+        private Design evaluate(BridgeModel bridge, double targetMargin) {
+            ++nCandidates;
+            if (!bridge.isAnalyzable()) {
+                ++nCountRejections;
+                return null;
+            }
+            if (!new StabilityCheck(bridge).isStable()) {
+                ++nRigidityRejections;
+                return null;
+            }
+            MemberSizer sizer = new MemberSizer(bridge);
+            sizer.setMargin(targetMargin);
+            final boolean sized = sizer.optimize();
+            nEvaluations += sizer.getEvaluationCount();
+            if (!sized) {
+                ++nInfeasible;
+                return null;
+            }
+            BridgeModel sizedBridge = sizer.getBridge();
+            analysis.initialize(sizedBridge);
+            ++nEvaluations;
+            return new Design(sizedBridge, targetMargin, sizer.getBestCost(), MemberSizer.getLeastMargin(analysis.getResult()));
+        }
+
+        /**
+         * Move a random free joint a short distance in a random direction.
+         *
+         * @param bridge bridge to change
+         * @return true iff the move was valid and made
+         */
+        private boolean moveJoint(BridgeModel bridge) {
+            final Joint joint = getRandomFreeJoint(bridge);
+            if (joint == null) {
+                return false;
+            }
+            final int id = random.nextInt(moveDx.length);
+            final double step = moveSteps[random.nextInt(moveSteps.length)] * DraftingGrid.fineGridSize;
+            final Affine.Point ptWorld = joint.getPointWorld().plus(moveDx[id] * step, moveDy[id] * step);
+            if (!isValidLocation(bridge, joint, ptWorld)) {
+                return false;
+            }
+            joint.swapContents(new Joint(joint.getIndex(), ptWorld));
+            return true;
+        }
+
+        /**
+         * Connect a random joint to one of the nearest joints it isn't already connected to.
+         *
+         * @param bridge bridge to change
+         * @return true iff a valid member was added
+         */
+        private boolean addMember(BridgeModel bridge) {
+            final ArrayList<Joint> joints = bridge.getJoints();
+            if (bridge.getMembers().size() >= DesignConditions.maxMemberCount) {
+                return false;
+            }
+            final Joint a = joints.get(random.nextInt(joints.size()));
+            final ArrayList<Joint> nearest = getNearestJoints(bridge, a.getPointWorld(), a);
+            final Joint b = nearest.get(random.nextInt(Math.min(nNearestCandidates, nearest.size())));
+            if (!isValidSegment(bridge, a.getPointWorld(), b.getPointWorld(), null)) {
+                return false;
+            }
+            addMember(bridge, a, b);
+            return true;
+        }
+
+        /**
+         * Remove a random member.
+         *
+         * @param bridge bridge to change
+         * @return true iff a member was removed
+         */
+        private boolean removeMember(BridgeModel bridge) {
+            final ArrayList<Member> members = bridge.getMembers();
+            if (members.isEmpty()) {
+                return false;
+            }
+            members.remove(random.nextInt(members.size()));
+            reindex(bridge);
+            return true;
+        }
+
+        /**
+         * Add a free joint near the middle of a random member and connect it to its two or three nearest
+         * joints.
+         *
+         * @param bridge bridge to change
+         * @return true iff a valid joint and members were added
+         */
+        private boolean addJoint(BridgeModel bridge) {
+            final ArrayList<Joint> joints = bridge.getJoints();
+            final ArrayList<Member> members = bridge.getMembers();
+            final int nNewMembers = 2 + random.nextInt(2);
+            if (members.isEmpty() || joints.size() >= DesignConditions.maxJointCount ||
+                    members.size() + nNewMembers > DesignConditions.maxMemberCount) {
+                return false;
+            }
+            final Member member = members.get(random.nextInt(members.size()));
+            final Affine.Point ptMiddle = new Affine.Point().interpolateInto(
+                    member.getJointA().getPointWorld(), member.getJointB().getPointWorld(), 0.5);
+            final Affine.Point ptTry = ptMiddle.plus(
+                    (random.nextInt(2 * maxNewJointOffset + 1) - maxNewJointOffset) * DraftingGrid.fineGridSize,
+                    (random.nextInt(2 * maxNewJointOffset + 1) - maxNewJointOffset) * DraftingGrid.fineGridSize);
+            final Affine.Point ptWorld = new Affine.Point();
+            coordinates.shiftToNearestValidWorldPoint(ptWorld, new Point(), ptTry);
+            if (!isValidLocation(bridge, null, ptWorld)) {
+                return false;
+            }
+            ArrayList<Joint> ends = new ArrayList<Joint>();
+            for (Joint j : getNearestJoints(bridge, ptWorld, null)) {
+                if (ends.size() < nNewMembers && isValidSegment(bridge, ptWorld, j.getPointWorld(), null)) {
+                    ends.add(j);
+                }
+            }
+            if (ends.size() < 2) {
+                return false;
+            }
+            final Joint joint = new Joint(joints.size(), ptWorld);
+            joints.add(joint);
+            for (Joint end : ends) {
+                addMember(bridge, joint, end);
+            }
+            return true;
+        }
+
+        /**
+         * Remove a random free joint and its members.
+         *
+         * @param bridge bridge to change
+         * @return true iff a joint was removed
+         */
+        private boolean removeJoint(BridgeModel bridge) {
+            final Joint joint = getRandomFreeJoint(bridge);
+            if (joint == null) {
+                return false;
+            }
+            final ArrayList<Member> members = bridge.getMembers();
+            for (int i = members.size() - 1; i >= 0; i--) {
+                if (members.get(i).hasJoint(joint)) {
+                    members.remove(i);
+                }
+            }
+            bridge.getJoints().remove(joint);
+            reindex(bridge);
+            return true;
+        }
+
+        private Joint getRandomFreeJoint(BridgeModel bridge) {
+            ArrayList<Joint> free = new ArrayList<Joint>();
+            for (Joint joint : bridge.getJoints()) {
+                if (!joint.isFixed()) {
+                    free.add(joint);
+                }
+            }
+            return free.isEmpty() ? null : free.get(random.nextInt(free.size()));
+        }
+
+        /**
+         * Return the joints of a bridge not connected to a given one in order of increasing distance from a
+         * point.
+         *
+         * @param bridge bridge
+         * @param ptWorld point
+         * @param joint joint whose neighbors and itself are excluded or null for none
+         * @return joints sorted by distance
+         */
+        private ArrayList<Joint> getNearestJoints(BridgeModel bridge, final Affine.Point ptWorld, Joint joint) {
+            ArrayList<Joint> nearest = new ArrayList<Joint>();
+            for (Joint j : bridge.getJoints()) {
+                if (j != joint && (joint == null || !isConnected(bridge, joint, j))) {
+                    nearest.add(j);
+                }
+            }
+            Collections.sort(nearest, new Comparator<Joint>() {
+                public int compare(Joint a, Joint b) {
+                    final int c = Double.compare(ptWorld.distanceSq(a.getPointWorld()), ptWorld.distanceSq(b.getPointWorld()));
+                    return c != 0 ? c : a.getIndex() - b.getIndex();
+                }
+            });
+            return nearest;
+        }
+
+        private boolean isConnected(BridgeModel bridge, Joint a, Joint b) {
+            for (Member member : bridge.getMembers()) {
+                if (member.hasJoints(a, b)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Add a member with the stock of a random existing one, or of the first seed's first member if there
+         * are none.
+         */
+        private void addMember(BridgeModel bridge, Joint a, Joint b) {
+            final ArrayList<Member> members = bridge.getMembers();
+            final Member model = members.isEmpty() ? null : members.get(random.nextInt(members.size()));
+            final Inventory inventory = bridge.getInventory();
+            members.add(new Member(members.size(), a, b,
+                    model == null ? inventory.getMaterial(0) : model.getMaterial(),
+                    model == null ? inventory.getShape(0, 0) : model.getShape()));
+        }
+
+        private void reindex(BridgeModel bridge) {
+            final ArrayList<Joint> joints = bridge.getJoints();
+            for (int i = 0; i < joints.size(); i++) {
+                joints.get(i).setIndex(i);
+            }
+            final ArrayList<Member> members = bridge.getMembers();
+            for (int i = 0; i < members.size(); i++) {
+                members.get(i).setIndex(i);
+            }
+        }
+
+        /**
+         * Return true iff a joint may be put at the given location by the rules of
+         * <code>JointOptimizer</code>: a valid drafting location not occupied by another joint, not on a
+         * member, and with none of the joint's members passing through another joint or crossing a high pier.
+         *
+         * @param bridge bridge
+         * @param joint joint to move or null for a new joint
+         * @param ptWorld location
+         * @return true iff the location is valid
+         */
+        private boolean isValidLocation(BridgeModel bridge, Joint joint, Affine.Point ptWorld) {
+            final Affine.Point ptValid = new Affine.Point();
+            coordinates.shiftToNearestValidWorldPoint(ptValid, new Point(), ptWorld);
+            if (!ptValid.equals(ptWorld) || bridge.findJointAt(ptWorld) != null) {
+                return false;
+            }
+            for (Member member : bridge.getMembers()) {
+                if (joint != null && member.hasJoint(joint)) {
+                    final Joint other = member.getJointA() == joint ? member.getJointB() : member.getJointA();
+                    if (!isValidSegment(bridge, ptWorld, other.getPointWorld(), joint)) {
+                        return false;
+                    }
+                }
+                else if (ptWorld.onSegment(member.getJointA().getPointWorld(), member.getJointB().getPointWorld())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Return true iff a member may lie between two points: it doesn't cross a high pier, and no joint
+         * but the given one lies on it.
+         *
+         * @param bridge bridge
+         * @param a one end
+         * @param b other end
+         * @param joint joint to ignore or null for none
+         * @return true iff a member may join the points
+         */
+        private boolean isValidSegment(BridgeModel bridge, Affine.Point a, Affine.Point b, Joint joint) {
+            if (conditions.isCrossingHiPier(a, b)) {
+                return false;
+            }
+            for (Joint j : bridge.getJoints()) {
+                if (j != joint && j.getPointWorld().onSegment(a, b)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Run a search from the command line.
+     * <pre>
+     *   java bridgedesigner.TopologySearch [-s seed] [-i islands] [-e epochs] [-d outdir] tag|in.bdc front.txt
+     * </pre>
+     * Searches the scenario with the given tag, seeded with its templates, or the scenario of the given
+     * bridge file, seeded with the bridge as well as the templates.  The Pareto front is streamed to the front
+     * file, and progress goes to standard error.  If an output directory is given, the final front is written
+     * there as <code>front-01.bdc</code>, <code>front-02.bdc</code>, ... in order of increasing cost.
+     * Exits with status 1 if no feasible design was found and 2 for a usage or file error.
+     *
+     * @param args command line arguments
+     */
+    public static void main(String [] args) {
+        long seed = 1;
+        int nIslands = Runtime.getRuntime().availableProcessors();
+        int nEpochs = 20;
+        File outputDirectory = null;
+        int iArg = 0;
+        boolean usage = false;
+        while (iArg + 1 < args.length && args[iArg].startsWith("-")) {
+            try {
+                if (args[iArg].equals("-s")) {
+                    seed = Long.parseLong(args[iArg + 1]);
+                }
+                else if (args[iArg].equals("-i")) {
+                    nIslands = Integer.parseInt(args[iArg + 1]);
+                }
+                else if (args[iArg].equals("-e")) {
+                    nEpochs = Integer.parseInt(args[iArg + 1]);
+                }
+                else if (args[iArg].equals("-d")) {
+                    outputDirectory = new File(args[iArg + 1]);
+                }
+                else {
+                    usage = true;
+                }
+            } catch (NumberFormatException ex) {
+                usage = true;
+            }
+            iArg += 2;
+        }
+        if (usage || iArg + 2 != args.length || nIslands < 1 || nEpochs < 0) {
+            System.err.println("usage: java TopologySearch [-s seed] [-i islands] [-e epochs] [-d outdir] tag|in.bdc front.txt");
+            System.exit(2);
+        }
+        final long startTime = System.nanoTime();
+        TopologySearch search = null;
+        try {
+            BridgeSketchModel.useStandaloneResources();
+            DesignConditions conditions = DesignConditions.getDesignConditions(args[iArg]);
+            BridgeModel bridge = null;
+            if (conditions == null) {
+                bridge = new BridgeModel();
+                bridge.read(new File(args[iArg]));
+                conditions = bridge.getDesignConditions();
+            }
+            ArrayList<BridgeModel> seeds = getTemplateSeeds(conditions);
+            if (bridge != null) {
+                seeds.add(0, bridge);
+            }
+            if (seeds.isEmpty()) {
+                throw new IOException(args[iArg] + ": no templates to seed the search");
+            }
+            if (outputDirectory != null && !outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+                throw new IOException("can't make " + outputDirectory);
+            }
+            Writer frontWriter = new OutputStreamWriter(new FileOutputStream(args[iArg + 1]), "UTF-8");
+            search = new TopologySearch(conditions, seeds, nIslands, seed, frontWriter);
+            search.setProgressListener(new ProgressListener() {
+                public void reportProgress(TopologySearch search) {
+                    final Design [] front = search.getFront();
+                    System.err.println(String.format(Locale.US,
+                            "epoch %d: %d candidates, %d rejected by count, %d by rigidity, %d infeasible, %d evaluations (%.0f/s), front of %d from $%.2f",
+                            search.getEpochCount(), search.getCandidateCount(), search.getCountRejectionCount(),
+                            search.getRigidityRejectionCount(), search.getInfeasibleCount(), search.getEvaluationCount(),
+                            search.getEvaluationsPerSecond(), front.length, front.length > 0 ? front[0].getCost() : 0.0));
+                }
+            });
+            try {
+                search.search(nEpochs);
+            } finally {
+                frontWriter.close();
+            }
+            final Design [] front = search.getFront();
+            for (int i = 0; i < front.length; i++) {
+                System.out.println(String.format(Locale.US, "$%.2f\t%.4f\t%d joints\t%d members",
+                        front[i].getCost(), front[i].getMargin(), front[i].getNJoints(), front[i].getNMembers()));
+                if (outputDirectory != null) {
+                    front[i].getBridge().write(new File(outputDirectory, String.format(Locale.US, "front-%02d.bdc", i + 1)));
+                }
+            }
+        } catch (IOException ex) {
+            System.err.println(ex.getMessage());
+            System.exit(2);
+        } catch (InterruptedException ex) {
+            System.err.println("interrupted.");
+            System.exit(1);
+        }
+        System.err.println(String.format(Locale.US, "%.1f s", (System.nanoTime() - startTime) * 1e-9));
+        System.exit(search.getFront().length > 0 ? 0 : 1);
+    }
+}
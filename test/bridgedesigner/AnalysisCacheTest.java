@@ -0,0 +1,193 @@
+/*
+ * AnalysisCacheTest.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.util.Iterator;
+import javax.swing.undo.AbstractUndoableEdit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that cached analysis results are reused for the same bridge and settings, that the least recently used
+ * result is evicted at capacity, and that the editor reuses results when revisiting states.
+ *
+ * @author Eugene K. Ressler
+ */
+public class AnalysisCacheTest {
+
+    /**
+     * A result cached by one solver is not restored to an analysis using the other.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void solversDoNotShareResults() throws Exception {
+        final BridgeModel bridge = SampleBridges.read(SampleBridges.getTexts().values().iterator().next());
+        final AnalysisCache cache = new AnalysisCache(4);
+        final Analysis skyline = new Analysis();
+        final Analysis legacy = new Analysis();
+        legacy.setLegacySolver(true);
+        assertFalse(cache.analyze(skyline, bridge));
+        assertTrue(cache.analyze(skyline, bridge));
+        assertFalse(cache.restore(legacy, bridge));
+        assertFalse(cache.analyze(legacy, bridge));
+        assertTrue(cache.analyze(legacy, bridge));
+        assertEquals(2, cache.getSize());
+    }
+
+    /**
+     * Return the first few samples.
+     *
+     * @param n number of samples
+     * @return bridges
+     * @throws Exception if a sample can't be read
+     */
+    private static BridgeModel [] getSamples(int n) throws Exception {
+        final BridgeModel [] bridges = new BridgeModel [n];
+        final Iterator<String> texts = SampleBridges.getTexts().values().iterator();
+        for (int i = 0; i < n; i++) {
+            bridges[i] = SampleBridges.read(texts.next());
+        }
+        return bridges;
+    }
+
+    /**
+     * A full cache evicts the result used least recently, not the one added first, and counts every lookup
+     * as a hit or a miss.  Clearing empties the cache and resets the counts.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void leastRecentlyUsedIsEvicted() throws Exception {
+        final BridgeModel [] bridges = getSamples(3);
+        final AnalysisCache cache = new AnalysisCache(2);
+        final Analysis analysis = new Analysis();
+        assertFalse(cache.analyze(analysis, bridges[0]));
+        assertFalse(cache.analyze(analysis, bridges[1]));
+        assertTrue(cache.analyze(analysis, bridges[0]));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertFalse(cache.analyze(analysis, bridges[2]));
+        assertEquals(2, cache.getSize());
+        assertTrue(cache.restore(analysis, bridges[0]));
+        assertTrue(cache.restore(analysis, bridges[2]));
+        assertFalse(cache.restore(analysis, bridges[1]));
+        assertEquals(3, cache.getHitCount());
+        assertEquals(4, cache.getMissCount());
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+        assertFalse(cache.restore(analysis, bridges[0]));
+    }
+
+    /**
+     * A restored result is the cached one itself, so nothing is solved, and it updates the bridge's member
+     * force/strength ratios just as analysis does.  A bridge differing only in its name and stored ratios
+     * finds the same result.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void restoredResultIsTheCachedOne() throws Exception {
+        final BridgeModel bridge = getSamples(1)[0];
+        final AnalysisCache cache = new AnalysisCache(4);
+        final Analysis analysis = new Analysis();
+        cache.analyze(analysis, bridge);
+        final AnalysisResult result = analysis.getResult();
+        final BridgeModel copy = SampleBridges.read(bridge.toString());
+        copy.setProjectId("copy");
+        for (Member member : copy.getMembers()) {
+            member.setCompressionForceStrengthRatio(0);
+            member.setTensionForceStrengthRatio(0);
+        }
+        final Analysis other = new Analysis();
+        assertTrue(cache.analyze(other, copy));
+        assertSame(result, other.getResult());
+        for (int im = 0; im < copy.getMembers().size(); im++) {
+            final Member member = copy.getMembers().get(im);
+            assertEquals(result.getCompressionForceStrengthRatio(im), member.getCompressionForceStrengthRatio(), 0);
+            assertEquals(result.getTensionForceStrengthRatio(im), member.getTensionForceStrengthRatio(), 0);
+        }
+    }
+
+    /**
+     * An undoable change of one member's stock.  Edit commands can't be used here, because they take their
+     * names from the resources of the launched application.
+     */
+    private static class StockEdit extends AbstractUndoableEdit {
+
+        private final Member member;
+        private final Shape before;
+        private final Shape after;
+
+        StockEdit(Member member, Shape after) {
+            this.member = member;
+            this.before = member.getShape();
+            this.after = after;
+            member.setShape(after);
+        }
+
+        @Override
+        public void undo() {
+            super.undo();
+            member.setShape(before);
+        }
+
+        @Override
+        public void redo() {
+            super.redo();
+            member.setShape(after);
+        }
+    }
+
+    /**
+     * In the editor, analyzing again after undo or redo back to an analyzed state, or loading an analyzed
+     * iteration, restores the cached result without solving, and a loaded iteration's analysis is valid at once.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void editorReusesResults() throws Exception {
+        final EditableBridgeModel bridge = new EditableBridgeModel();
+        bridge.read(SampleBridges.getTexts().values().iterator().next());
+        final AnalysisCache cache = bridge.getAnalysisCache();
+        bridge.analyze();
+        final AnalysisResult original = bridge.getAnalysis().getResult();
+        assertTrue(bridge.isAnalysisValid());
+        final Member member = bridge.getMembers().get(0);
+        bridge.getUndoManager().addEdit(new StockEdit(member, bridge.getInventory().getShape(member.getShape(), 1)));
+        bridge.editIteration();
+        assertFalse(bridge.isAnalysisValid());
+        bridge.analyze();
+        final AnalysisResult edited = bridge.getAnalysis().getResult();
+        assertNotSame(original, edited);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        bridge.getUndoManager().undo();
+        bridge.analyze();
+        assertSame(original, bridge.getAnalysis().getResult());
+        bridge.getUndoManager().redo();
+        bridge.analyze();
+        assertSame(edited, bridge.getAnalysis().getResult());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, bridge.getIterationCount());
+        bridge.loadIteration(0);
+        assertTrue(bridge.isAnalysisValid());
+        assertSame(original, bridge.getAnalysis().getResult());
+        assertEquals(3, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+}
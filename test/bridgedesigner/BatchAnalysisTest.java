@@ -0,0 +1,221 @@
+/*
+ * BatchAnalysisTest.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests batch load testing of a directory of bridge files.
+ *
+ * @author Eugene K. Ressler
+ */
+public class BatchAnalysisTest {
+
+    /**
+     * Temporary directory of bridge files.
+     */
+    private File dir;
+    /**
+     * Bridges expected to be read from good files, keyed by path.
+     */
+    private final Map<String, BridgeModel> bridges = new HashMap<String, BridgeModel>();
+    private File corrupt;
+    private File duplicate;
+
+    /**
+     * Make a temporary directory holding every sample, a few of them in a subdirectory, a corrupt file, a copy
+     * of the first sample under another name, and a file that isn't a bridge.
+     *
+     * @throws Exception if a sample can't be read or a file can't be written
+     */
+    @Before
+    public void writeFiles() throws Exception {
+        dir = File.createTempFile("batch", "");
+        dir.delete();
+        dir.mkdir();
+        final File sub = new File(dir, "sub");
+        sub.mkdir();
+        int i = 0;
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            final File file = new File(i++ % 3 == 0 ? sub : dir, sample.getKey() + ".bdc");
+            final BridgeModel bridge = SampleBridges.read(sample.getValue());
+            bridge.write(file);
+            bridges.put(file.getPath(), bridge);
+            if (duplicate == null) {
+                duplicate = new File(dir, "duplicate.bdc");
+                bridge.write(duplicate);
+                bridges.put(duplicate.getPath(), bridge);
+            }
+        }
+        corrupt = new File(dir, "corrupt.bdc");
+        final FileOutputStream os = new FileOutputStream(corrupt);
+        try {
+            os.write("not a bridge".getBytes("US-ASCII"));
+        } finally {
+            os.close();
+        }
+        new File(dir, "notes.txt").createNewFile();
+    }
+
+    /**
+     * Delete the temporary directory.
+     */
+    @After
+    public void deleteFiles() {
+        delete(dir);
+    }
+
+    private static void delete(File f) {
+        final File [] files = f.listFiles();
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                delete(files[i]);
+            }
+        }
+        f.delete();
+    }
+
+    /**
+     * Run a batch analysis with one worker, so the duplicate is sure to find its original's result cached.
+     *
+     * @param out stream for result lines
+     * @param paths arguments
+     * @return the finished batch analysis
+     * @throws Exception if interrupted
+     */
+    private static BatchAnalysis run(ByteArrayOutputStream out, String... paths) throws Exception {
+        final BatchAnalysis batch = new BatchAnalysis(1, new PrintStream(out, true, "UTF-8"));
+        for (String path : paths) {
+            batch.add(path);
+        }
+        batch.finish();
+        return batch;
+    }
+
+    private static String [] getLines(ByteArrayOutputStream out) throws Exception {
+        final String text = out.toString("UTF-8");
+        return text.length() == 0 ? new String [0] : text.split("\n");
+    }
+
+    /**
+     * A batch of a directory reports each good bridge file, searched recursively, on one line with its status,
+     * cost, scenario, worst ratio, and time, and the corrupt file on an error line with a reason.  Other files
+     * are ignored.  The summary counts the duplicate, whose result comes from the cache.
+     *
+     * @throws Exception if interrupted
+     */
+    @Test
+    public void directoryIsReported() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final BatchAnalysis batch = run(out, dir.getPath());
+        final String [] lines = getLines(out);
+        assertEquals(bridges.size() + 1, lines.length);
+        final TreeSet<String> reported = new TreeSet<String>();
+        final Analysis analysis = new Analysis();
+        int nPassed = 0;
+        for (String line : lines) {
+            final String [] fields = line.split("\t", -1);
+            assertTrue(line, reported.add(fields[0]));
+            if (fields[0].equals(corrupt.getPath())) {
+                assertEquals(line, 7, fields.length);
+                assertEquals(line, "ERROR", fields[1]);
+                assertEquals(line, "-", fields[2]);
+                assertEquals(line, "-", fields[3]);
+                assertEquals(line, "-", fields[4]);
+                assertTrue(line, fields[5].matches("\\d+\\.\\d"));
+                assertTrue(line, fields[6].length() > 0);
+                continue;
+            }
+            final BridgeModel bridge = bridges.get(fields[0]);
+            assertNotNull(line, bridge);
+            assertEquals(line, 6, fields.length);
+            analysis.initialize(bridge);
+            assertEquals(line, BatchAnalysis.statusNames[analysis.getStatus()], fields[1]);
+            assertEquals(line, String.format("%.2f", bridge.getTotalCost()), fields[2]);
+            assertEquals(line, bridge.getDesignConditions().getTag(), fields[3]);
+            assertTrue(line, fields[4].matches("\\d+\\.\\d{4}"));
+            assertTrue(line, fields[5].matches("\\d+\\.\\d"));
+            if (analysis.getStatus() == Analysis.PASSES) {
+                ++nPassed;
+            }
+        }
+        assertEquals(1, batch.getErrorCount());
+        assertEquals(String.format("%d files: %d passed, %d failed, 1 errors, 1 duplicates",
+                lines.length, nPassed, bridges.size() - nPassed), batch.getSummary());
+    }
+
+    /**
+     * Return the paths reported by a batch, asserting that none is reported twice.
+     *
+     * @param out result lines of the batch
+     * @return reported paths
+     * @throws Exception if the lines can't be decoded
+     */
+    private static TreeSet<String> getReportedPaths(ByteArrayOutputStream out) throws Exception {
+        final TreeSet<String> reported = new TreeSet<String>();
+        for (String line : getLines(out)) {
+            assertTrue(line, reported.add(line.split("\t")[0]));
+        }
+        return reported;
+    }
+
+    /**
+     * Return the paths of the files of the temporary directory, not its subdirectory, whose names match a
+     * regular expression.
+     *
+     * @param regex regular expression for file names
+     * @return paths
+     */
+    private TreeSet<String> getPaths(String regex) {
+        final TreeSet<String> paths = new TreeSet<String>();
+        for (File file : dir.listFiles()) {
+            if (file.isFile() && file.getName().matches(regex)) {
+                paths.add(file.getPath());
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * A glob pattern selects exactly the matching files of its directory, not of subdirectories, and a plain
+     * file name selects that file whatever its extension.
+     *
+     * @throws Exception if interrupted
+     */
+    @Test
+    public void globsAreExpanded() throws Exception {
+        final ByteArrayOutputStream all = new ByteArrayOutputStream();
+        final File notes = new File(dir, "notes.txt");
+        final BatchAnalysis batch = run(all, new File(dir, "*.bdc").getPath(), notes.getPath());
+        final TreeSet<String> expected = getPaths(".*\\.bdc");
+        expected.add(notes.getPath());
+        assertEquals(expected, getReportedPaths(all));
+        assertEquals(2, batch.getErrorCount());
+        final ByteArrayOutputStream some = new ByteArrayOutputStream();
+        run(some, new File(dir, "?1*.bdc").getPath());
+        final TreeSet<String> selected = getPaths(".1.*\\.bdc");
+        assertFalse(selected.isEmpty());
+        assertEquals(selected, getReportedPaths(some));
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * BridgeArchiveTest.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.CRC32;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests packing bridge files into an archive, reading and unpacking them, and rejecting damaged archives.
+ *
+ * @author Eugene K. Ressler
+ */
+public class BridgeArchiveTest {
+
+    /**
+     * Temporary directory holding the sample files, archives, and unpacked files of a test.
+     */
+    private File tmp;
+    /**
+     * Directory of sample bridge files in legacy format.
+     */
+    private File samples;
+    private File archiveFile;
+
+    /**
+     * Write each sample as a legacy bridge file in a new temporary directory.
+     *
+     * @throws Exception if a sample can't be read or written
+     */
+    @Before
+    public void writeSamples() throws Exception {
+        tmp = File.createTempFile("archive", "");
+        tmp.delete();
+        tmp.mkdir();
+        samples = new File(tmp, "samples");
+        samples.mkdir();
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            SampleBridges.read(sample.getValue()).write(new File(samples, sample.getKey() + ".bdc"));
+        }
+        archiveFile = new File(tmp, "samples.bda");
+    }
+
+    /**
+     * Delete the temporary directory.
+     */
+    @After
+    public void deleteTemporaryFiles() {
+        delete(tmp);
+    }
+
+    private static void delete(File f) {
+        final File [] files = f.listFiles();
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                delete(files[i]);
+            }
+        }
+        f.delete();
+    }
+
+    /**
+     * Pack the sample directory into the archive file.
+     *
+     * @throws IOException if the archive can't be written
+     */
+    private void packSamples() throws IOException {
+        final BridgeArchive.Writer writer = new BridgeArchive.Writer(archiveFile);
+        try {
+            assertEquals(0, BridgeArchive.pack(writer, samples, samples.getName(), null));
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void writeBytes(File f, byte [] bytes, int length) throws IOException {
+        final FileOutputStream os = new FileOutputStream(f);
+        try {
+            os.write(bytes, 0, length);
+        } finally {
+            os.close();
+        }
+    }
+
+    private static int getInt(byte [] buf, int offset) {
+        return ((buf[offset] & 0xff) << 24) | ((buf[offset + 1] & 0xff) << 16) |
+                ((buf[offset + 2] & 0xff) << 8) | (buf[offset + 3] & 0xff);
+    }
+
+    /**
+     * Every sample packed into an archive is named by its path from the sample directory, is stored as its
+     * compact encoding at the offset and length in the index, with a header and a checksum that agree with the
+     * index, and reads back with the same legacy text.
+     *
+     * @throws Exception if a sample or the archive can't be read or written
+     */
+    @Test
+    public void packedSamplesReadBack() throws Exception {
+        packSamples();
+        final byte [] bytes = Utility.getBytesFromFile(archiveFile);
+        final BridgeArchive archive = new BridgeArchive(archiveFile);
+        final String [] names = samples.list();
+        Arrays.sort(names);
+        assertEquals(names.length, archive.size());
+        final BridgeModel bridge = new BridgeModel();
+        for (BridgeArchive.Entry entry : archive) {
+            final String name = names[entry.getIndex()];
+            assertEquals(samples.getName() + "/" + name, entry.getName());
+            final BridgeModel original = new BridgeModel();
+            original.read(new File(samples, name));
+            final byte [] compact = CompactBridgeFormat.toBytes(original);
+            final int offset = archive.getOffset(entry.getIndex());
+            assertEquals(name, compact.length, entry.getLength());
+            assertArrayEquals(name, compact, Arrays.copyOfRange(bytes, offset, offset + entry.getLength()));
+            final CompactBridgeFormat.Header header = new CompactBridgeFormat.Header(bytes, offset, entry.getLength());
+            assertEquals(name, header.getEncodedSize(), entry.getLength());
+            assertEquals(name, header.getScenarioCode(), entry.getScenarioCode());
+            assertEquals(name, header.getStatus(), entry.getStatus());
+            assertEquals(name, header.getTotalCost(), entry.getTotalCost(), 0);
+            assertEquals(name, BridgeArchive.getDesignHash(original), entry.getDesignHash());
+            final CRC32 crc = new CRC32();
+            crc.update(bytes, offset, entry.getLength() - CompactBridgeFormat.CHECKSUM_SIZE);
+            assertEquals(name, (int)crc.getValue(), getInt(bytes, offset + entry.getLength() - CompactBridgeFormat.CHECKSUM_SIZE));
+            entry.read(bridge);
+            assertArrayEquals(name, original.toBytes(), bridge.toBytes());
+        }
+    }
+
+    /**
+     * Unpacking an archive of legacy files gives back the files byte for byte.
+     *
+     * @throws Exception if the files or the archive can't be read or written
+     */
+    @Test
+    public void unpackReproducesFiles() throws Exception {
+        packSamples();
+        final File out = new File(tmp, "out");
+        assertEquals(0, BridgeArchive.unpack(new BridgeArchive(archiveFile), out));
+        final File unpacked = new File(out, samples.getName());
+        final String [] names = samples.list();
+        Arrays.sort(names);
+        final String [] unpackedNames = unpacked.list();
+        Arrays.sort(unpackedNames);
+        assertArrayEquals(names, unpackedNames);
+        for (int i = 0; i < names.length; i++) {
+            assertArrayEquals(names[i], Utility.getBytesFromFile(new File(samples, names[i])),
+                    Utility.getBytesFromFile(new File(unpacked, names[i])));
+        }
+    }
+
+    /**
+     * Unpacking refuses an entry whose name leads outside the directory and unpacks the rest.
+     *
+     * @throws Exception if a sample or the archive can't be read or written
+     */
+    @Test
+    public void unpackRefusesEscapingNames() throws Exception {
+        final BridgeModel bridge = SampleBridges.read(SampleBridges.getTexts().values().iterator().next());
+        final BridgeArchive.Writer writer = new BridgeArchive.Writer(archiveFile);
+        try {
+            writer.add("../x", bridge);
+            writer.add("y", bridge);
+        } finally {
+            writer.close();
+        }
+        final File out = new File(tmp, "out");
+        assertEquals(1, BridgeArchive.unpack(new BridgeArchive(archiveFile), out));
+        assertFalse(new File(tmp, "x").exists());
+        assertTrue(new File(out, "y").isFile());
+    }
+
+    /**
+     * Assert that opening an archive file fails.
+     *
+     * @param what description of the damage
+     * @param f archive file
+     */
+    private static void assertRejected(String what, File f) {
+        try {
+            new BridgeArchive(f);
+            fail(what + " not detected");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+
+    /**
+     * An archive with any byte of its index changed or with its trailer cut short is rejected when opened.  One
+     * with a byte of a bridge changed opens, but that bridge is rejected when read.
+     *
+     * @throws Exception if the archive can't be read or written
+     */
+    @Test
+    public void damageIsDetected() throws Exception {
+        packSamples();
+        final byte [] bytes = Utility.getBytesFromFile(archiveFile);
+        final int trailer = bytes.length - 24;
+        final BridgeArchive archive = new BridgeArchive(archiveFile);
+        final int indexOffset = archive.getOffset(archive.size() - 1) + archive.getLength(archive.size() - 1);
+        final File damaged = new File(tmp, "damaged.bda");
+        for (int i = indexOffset; i < trailer; i++) {
+            final byte [] copy = bytes.clone();
+            copy[i] ^= 0x5a;
+            writeBytes(damaged, copy, copy.length);
+            assertRejected("damage to index byte " + i, damaged);
+        }
+        final byte [] badCrc = bytes.clone();
+        badCrc[trailer + 16] ^= 0x5a;
+        writeBytes(damaged, badCrc, badCrc.length);
+        assertRejected("damage to index checksum", damaged);
+        for (int n = 1; n <= 24; n++) {
+            writeBytes(damaged, bytes, bytes.length - n);
+            assertRejected("trailer missing " + n + " bytes", damaged);
+        }
+        final int entry = archive.size() / 2;
+        final byte [] badEntry = bytes.clone();
+        badEntry[archive.getOffset(entry) + archive.getLength(entry) / 2] ^= 0x5a;
+        writeBytes(damaged, badEntry, badEntry.length);
+        final BridgeArchive opened = new BridgeArchive(damaged);
+        try {
+            opened.read(entry, new BridgeModel());
+            fail("damage to bridge " + entry + " not detected");
+        } catch (IOException ex) {
+            // expected
+        }
+        opened.read(entry - 1, new BridgeModel());
+    }
+}
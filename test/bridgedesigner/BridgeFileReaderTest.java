@@ -0,0 +1,104 @@
+/*
+ * BridgeFileReaderTest.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the reusable bridge file reader reads the same bridges as the original whole-file reader.
+ *
+ * @author Eugene K. Ressler
+ */
+public class BridgeFileReaderTest {
+
+    /**
+     * Return a bridge read from a legacy file the original way: the whole file into a new array, decrypted
+     * with a newly keyed cipher, then parsed.
+     *
+     * @param f bridge file
+     * @return bridge
+     * @throws Exception if the file can't be read or isn't a valid bridge
+     */
+    private static BridgeModel readOriginal(File f) throws Exception {
+        final byte [] bytes = Utility.getBytesFromFile(f);
+        final RC4 rc4 = new RC4();
+        rc4.setKey(RC4Key.getScrambleKey());
+        rc4.endecrypt(bytes);
+        final BridgeModel bridge = new BridgeModel();
+        bridge.parseBytes(bytes);
+        return bridge;
+    }
+
+    /**
+     * Each sample written as a legacy file reads the same with the thread's reader as the original way, both
+     * times it is read.  A compact file of the sample also reads the same.
+     *
+     * @throws Exception if a sample can't be read or a temporary file can't be written or read
+     */
+    @Test
+    public void readerMatchesOriginal() throws Exception {
+        final BridgeFileReader reader = BridgeFileReader.getThreadReader();
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            final BridgeModel bridge = SampleBridges.read(sample.getValue());
+            final File legacy = File.createTempFile("bridge", ".bdc");
+            final File compact = File.createTempFile("bridge", ".bdc");
+            try {
+                bridge.write(legacy, BridgeModel.LEGACY_FORMAT);
+                bridge.write(compact, BridgeModel.COMPACT_FORMAT);
+                final String expected = readOriginal(legacy).toString();
+                for (int i = 0; i < 2; i++) {
+                    final BridgeModel read = new BridgeModel();
+                    reader.read(legacy, read);
+                    assertEquals(sample.getKey() + " legacy", expected, read.toString());
+                }
+                final BridgeModel read = new BridgeModel();
+                reader.read(compact, read);
+                assertEquals(sample.getKey() + " compact", expected, read.toString());
+            } finally {
+                legacy.delete();
+                compact.delete();
+            }
+        }
+    }
+
+    /**
+     * A file larger than the reader's buffer, here a sample followed by bytes the parser ignores, reads the same
+     * as the original way.
+     *
+     * @throws Exception if a sample can't be read or a temporary file can't be written or read
+     */
+    @Test
+    public void largeFileMatchesOriginal() throws Exception {
+        final BridgeModel bridge = SampleBridges.read(SampleBridges.getTexts().values().iterator().next());
+        final File large = File.createTempFile("bridge", ".bdc");
+        try {
+            bridge.write(large, BridgeModel.LEGACY_FORMAT);
+            final FileOutputStream os = new FileOutputStream(large, true);
+            try {
+                os.write(new byte [100000]);
+            } finally {
+                os.close();
+            }
+            final BridgeModel read = new BridgeModel();
+            BridgeFileReader.getThreadReader().read(large, read);
+            assertEquals(readOriginal(large).toString(), read.toString());
+        } finally {
+            large.delete();
+        }
+    }
+}
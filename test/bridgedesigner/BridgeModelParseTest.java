@@ -0,0 +1,173 @@
+/*
+ * BridgeModelParseTest.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests parsing of legacy bridge text by <code>BridgeModel.parseBytes</code>: numbers in delimited fields,
+ * which have a fast path of their own, and records cut short.
+ *
+ * @author Eugene K. Ressler
+ */
+public class BridgeModelParseTest {
+
+    /**
+     * Positions of delimited fields counted back from the end of the text, where the empty string after the
+     * last delimiter is 0.
+     */
+    private static final int labelPositionField = 1;
+    private static final int iterationField = 2;
+    private static final int lastTensionRatioField = 5;
+    /**
+     * Numbers that are on either side of the fast path: 15 and 16 digits, signs, and missing integer or
+     * fraction digits, along with some the fast path passes on.
+     */
+    private static final String [] decimals = {
+        "0", "-0", "+0", "-0.0", "1.", ".5", "-.5", "+2.5", "0.125", "12.345", "-12.345", "007.700",
+        "123456789012345", "1234567890.12345", ".123456789012345", "-99999999999999.9",
+        "1234567890123456", "1234567890.123456", ".1234567890123456", "0.30000000000000004",
+        "1e-3", "-2.5E2", "Infinity", "-Infinity",
+    };
+
+    /**
+     * Return the first sample's text.
+     *
+     * @return sample text
+     * @throws IOException if the samples can't be read
+     */
+    private static String getSampleText() throws IOException {
+        return SampleBridges.getTexts().values().iterator().next();
+    }
+
+    /**
+     * Return text with one delimited field replaced.
+     *
+     * @param text bridge text
+     * @param fromEnd position of the field counted back from the end, the empty string after the last
+     * delimiter being 0
+     * @param value new field contents
+     * @return text with the field replaced
+     */
+    private static String withField(String text, int fromEnd, String value) {
+        final String [] fields = text.split(Pattern.quote(String.valueOf(BridgeModel.DELIM)), -1);
+        fields[fields.length - 1 - fromEnd] = value;
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                s.append(BridgeModel.DELIM);
+            }
+            s.append(fields[i]);
+        }
+        return s.toString();
+    }
+
+    /**
+     * Assert that parsing text fails with the given message.
+     *
+     * @param text bridge text
+     * @param message expected message
+     */
+    private static void assertParseFails(String text, String message) {
+        try {
+            SampleBridges.read(text);
+            fail("no error for " + message);
+        } catch (IOException ex) {
+            assertEquals(message, ex.getMessage());
+        }
+    }
+
+    /**
+     * Label positions and ratios have exactly the value <code>Double.parseDouble</code> gives them.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void decimalsMatchParseDouble() throws Exception {
+        final String text = getSampleText();
+        for (String decimal : decimals) {
+            final long expected = Double.doubleToLongBits(Double.parseDouble(decimal));
+            final BridgeModel labeled = SampleBridges.read(withField(text, labelPositionField, decimal));
+            assertEquals("label position " + decimal, expected, Double.doubleToLongBits(labeled.getLabelPosition()));
+            final BridgeModel rated = SampleBridges.read(withField(text, lastTensionRatioField, decimal));
+            final Member member = rated.getMembers().get(rated.getMembers().size() - 1);
+            assertEquals("ratio " + decimal, expected, Double.doubleToLongBits(member.getTensionForceStrengthRatio()));
+        }
+    }
+
+    /**
+     * A ratio of two dashes marks an unanalyzed member, which reads as -1.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void dashedRatioIsMinusOne() throws Exception {
+        final BridgeModel bridge = SampleBridges.read(withField(getSampleText(), lastTensionRatioField, "--"));
+        final Member member = bridge.getMembers().get(bridge.getMembers().size() - 1);
+        assertEquals(-1, member.getTensionForceStrengthRatio(), 0);
+    }
+
+    /**
+     * Iteration numbers read as <code>Integer.parseInt</code> reads them, including ones of more than nine
+     * digits and signed ones, which the fast path leaves to it.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void iterationsMatchParseInt() throws Exception {
+        final String text = getSampleText();
+        final String [] iterations = { "0", "7", "123456789", "1234567890", "2147483647", "0000000000042", "-5", "+12" };
+        for (String iteration : iterations) {
+            final BridgeModel bridge = SampleBridges.read(withField(text, iterationField, iteration));
+            assertEquals("iteration " + iteration, Integer.parseInt(iteration), bridge.getIteration());
+        }
+    }
+
+    /**
+     * Text cut short in the header or in a joint or member record is an error naming the record.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void truncatedRecordsAreNamed() throws Exception {
+        final int headerLength = BridgeModel.YEAR_LEN + BridgeModel.SCENARIO_CODE_LEN +
+                BridgeModel.N_JOINTS_LEN + BridgeModel.N_MEMBERS_LEN;
+        final int jointLength = 2 * BridgeModel.JOINT_COORD_LEN;
+        final int memberLength = 2 * BridgeModel.MEMBER_JOINT_LEN + BridgeModel.MEMBER_MATERIAL_LEN +
+                BridgeModel.MEMBER_SECTION_LEN + BridgeModel.MEMBER_SIZE_LEN;
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            final String text = sample.getValue();
+            final BridgeModel bridge = SampleBridges.read(text);
+            final int nJoints = bridge.getJoints().size();
+            final int nMembers = bridge.getMembers().size();
+            assertParseFails(text.substring(0, 0), "couldn't scan header");
+            assertParseFails(text.substring(0, headerLength - 1), "couldn't scan header");
+            for (int n = 1; n <= nJoints; n++) {
+                final int start = headerLength + (n - 1) * jointLength;
+                assertParseFails(text.substring(0, start), "couldn't scan joint " + n);
+                assertParseFails(text.substring(0, start + jointLength - 1), "couldn't scan joint " + n);
+            }
+            final int membersStart = headerLength + nJoints * jointLength;
+            for (int n = 1; n <= nMembers; n++) {
+                final int start = membersStart + (n - 1) * memberLength;
+                assertParseFails(text.substring(0, start), "couldn't scan member " + n);
+                assertParseFails(text.substring(0, start + memberLength - 1), "couldn't scan member " + n);
+            }
+        }
+    }
+}
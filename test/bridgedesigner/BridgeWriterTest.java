@@ -0,0 +1,186 @@
+/*
+ * BridgeWriterTest.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.io.File;
+import java.util.Formatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that bridges are written byte for byte as they were when formatted with <code>java.util.Formatter</code>.
+ * The sample bridges bundled as resources are the golden files.
+ *
+ * @author Eugene K. Ressler
+ */
+public class BridgeWriterTest {
+
+    /**
+     * Number of randomly altered copies of each sample to check.
+     */
+    private static final int nVariants = 200;
+    /**
+     * Ratios and label positions that are hard to format: ties, near ties, signed zeros, and extremes.
+     */
+    private static final double [] hardValues = {
+        0, -0.0, 0.005, 0.015, 0.125, 0.0005, 0.9995, 1.005, 2.675, 0.045, 1.0 / 3, 2.0 / 3, 99.995,
+        -0.0004, -0.0005, -1.2345, 123456.7895, 1e7 + 0.0005, 1e9, 1e12, 1e300, 4.9e-324,
+        Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+    };
+    /**
+     * Names with characters that aren't ASCII, including a surrogate pair and a lone surrogate.
+     */
+    private static final String [] hardNames = {
+        "", "José Muñoz", "橋", "🌉 bridge", "lone \ud83c", "tab\there", "null",
+    };
+
+    /**
+     * Return a bridge as a string in the bridge file format by the original method, which formats fields one
+     * at a time with a <code>java.util.Formatter</code>.
+     *
+     * @param bridge bridge
+     * @return bridge as string
+     */
+    private static String toStringByFormatter(BridgeModel bridge) {
+        StringBuilder s = new StringBuilder();
+        Formatter f = new Formatter(s, Locale.US);
+        DraftingGrid grid = new DraftingGrid(DraftingGrid.FINE_GRID);
+        f.format("%" + BridgeModel.YEAR_LEN + "d", BridgeModel.version);
+        f.format("%" + BridgeModel.SCENARIO_CODE_LEN + "d", bridge.getDesignConditions().getCodeLong());
+        f.format("%" + BridgeModel.N_JOINTS_LEN + "d", bridge.getJoints().size());
+        f.format("%" + BridgeModel.N_MEMBERS_LEN + "d", bridge.getMembers().size());
+        for (Joint joint : bridge.getJoints()) {
+            f.format("%" + BridgeModel.JOINT_COORD_LEN + "d", grid.worldToGridX(joint.getPointWorld().x));
+            f.format("%" + BridgeModel.JOINT_COORD_LEN + "d", grid.worldToGridY(joint.getPointWorld().y));
+        }
+        for (Member member : bridge.getMembers()) {
+            f.format("%" + BridgeModel.MEMBER_JOINT_LEN + "d", member.getJointA().getNumber());
+            f.format("%" + BridgeModel.MEMBER_JOINT_LEN + "d", member.getJointB().getNumber());
+            f.format("%" + BridgeModel.MEMBER_MATERIAL_LEN + "d", member.getMaterial().getIndex());
+            f.format("%" + BridgeModel.MEMBER_SECTION_LEN + "d", member.getShape().getSection().getIndex());
+            f.format("%" + BridgeModel.MEMBER_SIZE_LEN + "d", member.getShape().getSizeIndex());
+        }
+        for (Member member : bridge.getMembers()) {
+            s.append(bridge.getRatioEncoding(member.getCompressionForceStrengthRatio()));
+            s.append(BridgeModel.DELIM);
+            s.append(bridge.getRatioEncoding(member.getTensionForceStrengthRatio()));
+            s.append(BridgeModel.DELIM);
+        }
+        s.append(bridge.getDesignedBy());
+        s.append(BridgeModel.DELIM);
+        s.append(bridge.getProjectId());
+        s.append(BridgeModel.DELIM);
+        s.append(bridge.getIteration());
+        s.append(BridgeModel.DELIM);
+        f.format("%.3f", bridge.getLabelPosition());
+        s.append(BridgeModel.DELIM);
+        return s.toString();
+    }
+
+    /**
+     * Assert that a bridge is written the same by the writer and the formatter, both as bytes and as a string.
+     *
+     * @param what description of the bridge for failure messages
+     * @param bridge bridge
+     * @throws Exception if ASCII encoding is missing
+     */
+    private static void assertSameAsFormatter(String what, BridgeModel bridge) throws Exception {
+        final String expected = toStringByFormatter(bridge);
+        assertArrayEquals(what + " bytes", expected.getBytes("ASCII"), bridge.toBytes());
+        assertEquals(what + " string", expected, bridge.toString());
+    }
+
+    /**
+     * Return a ratio or label position to try: a hard value or a random one of several magnitudes.
+     *
+     * @param random random source
+     * @return value
+     */
+    private static double getValue(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return hardValues[random.nextInt(hardValues.length)];
+            case 1:
+                return random.nextInt(100000) / 1000.0 - 20;
+            case 2:
+                return random.nextDouble() * 2;
+            default:
+                return (random.nextDouble() - 0.2) * Math.pow(10, random.nextInt(12));
+        }
+    }
+
+    /**
+     * Each sample is written exactly as its golden text and as the formatter writes it.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void samplesMatchGoldenText() throws Exception {
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            final BridgeModel bridge = SampleBridges.read(sample.getValue());
+            assertArrayEquals(sample.getKey(), sample.getValue().getBytes("ASCII"), bridge.toBytes());
+            assertSameAsFormatter(sample.getKey(), bridge);
+        }
+    }
+
+    /**
+     * Altered copies of each sample with hard ratios, label positions, names, and iteration numbers are
+     * written exactly as the formatter writes them.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void variantsMatchFormatter() throws Exception {
+        final Random random = new Random(2016);
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            for (int i = 0; i < nVariants; i++) {
+                final BridgeModel variant = SampleBridges.read(sample.getValue());
+                for (Member member : variant.getMembers()) {
+                    member.setCompressionForceStrengthRatio(random.nextInt(4) == 0 ? -1 : getValue(random));
+                    member.setTensionForceStrengthRatio(random.nextInt(4) == 0 ? -1 : getValue(random));
+                }
+                variant.setLabelPosition(getValue(random));
+                variant.setDesignedBy(hardNames[random.nextInt(hardNames.length)]);
+                variant.iterationNumber = random.nextBoolean() ? random.nextInt(1000) : random.nextInt();
+                assertSameAsFormatter(sample.getKey() + " variant " + i, variant);
+            }
+        }
+    }
+
+    /**
+     * A bridge file that is read and written again is unchanged, byte for byte.
+     *
+     * @throws Exception if a temporary file can't be written or read
+     */
+    @Test
+    public void rewrittenFilesAreUnchanged() throws Exception {
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            final File original = File.createTempFile("bridge", ".bdc");
+            final File copy = File.createTempFile("bridge", ".bdc");
+            try {
+                SampleBridges.read(sample.getValue()).write(original);
+                final BridgeModel bridge = new BridgeModel();
+                bridge.read(original);
+                bridge.write(copy);
+                assertArrayEquals(sample.getKey(), Utility.getBytesFromFile(original), Utility.getBytesFromFile(copy));
+            } finally {
+                original.delete();
+                copy.delete();
+            }
+        }
+    }
+}
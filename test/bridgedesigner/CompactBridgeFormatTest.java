@@ -0,0 +1,100 @@
+/*
+ * CompactBridgeFormatTest.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that bridges round trip through the compact format.
+ *
+ * @author Eugene K. Ressler
+ */
+public class CompactBridgeFormatTest {
+
+    /**
+     * Each sample decodes to a bridge with the same legacy text, the header fields are the sample's, and the
+     * decoded bridge encodes to the same bytes.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void samplesRoundTrip() throws Exception {
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            final BridgeModel bridge = SampleBridges.read(sample.getValue());
+            final byte [] compact = CompactBridgeFormat.toBytes(bridge);
+            final BridgeModel decoded = new BridgeModel();
+            final CompactBridgeFormat.Header header = CompactBridgeFormat.parse(compact, 0, compact.length, decoded);
+            assertArrayEquals(sample.getKey(), bridge.toBytes(), decoded.toBytes());
+            assertEquals(sample.getKey(), bridge.getDesignConditions().getCodeLong(), header.getScenarioCode());
+            assertEquals(sample.getKey(), bridge.getTotalCost(), header.getTotalCost(), 0);
+            assertEquals(sample.getKey(), bridge.getIteration(), header.getIteration());
+            assertEquals(sample.getKey(), bridge.getMembers().size(), header.getNMembers());
+            assertEquals(sample.getKey(), compact.length, header.getEncodedSize());
+            assertArrayEquals(sample.getKey(), compact, CompactBridgeFormat.toBytes(decoded));
+        }
+    }
+
+    /**
+     * Each sample written to a compact file reads back the same, both whole and header alone.
+     *
+     * @throws Exception if a sample can't be read or a temporary file can't be written or read
+     */
+    @Test
+    public void filesRoundTrip() throws Exception {
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            final BridgeModel bridge = SampleBridges.read(sample.getValue());
+            final File file = File.createTempFile("bridge", ".bdc");
+            try {
+                CompactBridgeFormat.write(bridge, file);
+                final BridgeModel reread = new BridgeModel();
+                reread.read(file);
+                assertArrayEquals(sample.getKey(), bridge.toBytes(), reread.toBytes());
+                assertEquals(sample.getKey(), bridge.getTotalCost(), CompactBridgeFormat.readHeader(file).getTotalCost(), 0);
+            } finally {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * A compact bridge with any one byte changed or with its last byte missing is rejected.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void damageIsDetected() throws Exception {
+        final BridgeModel bridge = SampleBridges.read(SampleBridges.getTexts().values().iterator().next());
+        final byte [] compact = CompactBridgeFormat.toBytes(bridge);
+        for (int i = 0; i <= compact.length; i++) {
+            final byte [] damaged = compact.clone();
+            int length = damaged.length;
+            if (i < length) {
+                damaged[i] ^= 0x5a;
+            }
+            else {
+                --length;
+            }
+            try {
+                CompactBridgeFormat.parse(damaged, 0, length, new BridgeModel());
+                fail("damage at byte " + i + " not detected");
+            } catch (IOException ex) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * DragAnalysisTest.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that drag analysis agrees with full analyses of the bridge with the joint moved.
+ *
+ * @author Eugene K. Ressler
+ */
+public class DragAnalysisTest {
+
+    /**
+     * Number of equal steps of each drag.
+     */
+    private static final int nSteps = 20;
+    /**
+     * Largest difference in member forces allowed, relative to the largest force.
+     */
+    private static final double tolerance = 1e-6;
+
+    /**
+     * Dragging each joint the scenario doesn't prescribe of every sample, up and to the right, gives the
+     * same status and member forces at each step as a fresh analysis of a moved copy.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void dragsMatchFullAnalyses() throws Exception {
+        final Analysis full = new Analysis();
+        full.setIncremental(false);
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            final BridgeModel bridge = SampleBridges.read(sample.getValue());
+            final int nPrescribedJoints = bridge.getDesignConditions().getNPrescribedJoints();
+            for (int ij = nPrescribedJoints; ij < bridge.getJoints().size(); ij++) {
+                final Affine.Point start = new Affine.Point(bridge.getJoints().get(ij).getPointWorld());
+                final DragAnalysis drag = new DragAnalysis(bridge, bridge.getJoints().get(ij), null);
+                final BridgeModel moved = SampleBridges.read(sample.getValue());
+                for (int i = 0; i <= nSteps; i++) {
+                    final String what = sample.getKey() + " joint " + (ij + 1) + " step " + i;
+                    final Affine.Point pt = new Affine.Point(start.x + 1.0 * i / nSteps, start.y + 0.5 * i / nSteps);
+                    final AnalysisResult a = drag.analyze(pt);
+                    moved.getJoints().get(ij).getPointWorld().setLocation(pt);
+                    full.initialize(moved);
+                    final AnalysisResult b = full.getResult();
+                    assertEquals(what + " status", b.getStatus(), a.getStatus());
+                    if (b.getStatus() <= Analysis.UNSTABLE) {
+                        continue;
+                    }
+                    double maxDiff = 0;
+                    double maxForce = 0;
+                    for (int ilc = 0; ilc < b.getNLoadInstances(); ilc++) {
+                        for (int im = 0; im < b.getNMembers(); im++) {
+                            maxDiff = Math.max(maxDiff, Math.abs(a.getMemberForce(ilc, im) - b.getMemberForce(ilc, im)));
+                            maxForce = Math.max(maxForce, Math.abs(b.getMemberForce(ilc, im)));
+                        }
+                    }
+                    assertTrue(what + " forces differ by " + maxDiff / maxForce, maxDiff <= tolerance * maxForce);
+                }
+            }
+        }
+    }
+}
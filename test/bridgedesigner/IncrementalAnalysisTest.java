@@ -0,0 +1,203 @@
+/*
+ * IncrementalAnalysisTest.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that incremental re-analysis after member stock changes, by a low-rank update of the last
+ * factorization or by refactoring when the update is refused, agrees with analysis from scratch.
+ * See <code>Analysis.setIncremental</code>.
+ *
+ * @author Eugene K. Ressler
+ */
+public class IncrementalAnalysisTest {
+
+    /**
+     * Largest difference in member forces allowed, relative to the largest force.
+     */
+    private static final double tolerance = 1e-8;
+
+    /**
+     * Return true iff the last analysis using a workspace reused its base factorization by a low-rank update.
+     * Refactoring makes the analyzed bridge the new base, so its member stiffnesses are those of the base, or
+     * leaves no base if the bridge is unstable.
+     *
+     * @param workspace workspace of the analysis
+     * @param nMembers number of members of the analyzed bridge
+     * @return true iff the base was updated
+     */
+    private static boolean isUpdated(AnalysisWorkspace workspace, int nMembers) {
+        if (!workspace.baseValid) {
+            return false;
+        }
+        for (int im = 0; im < nMembers; im++) {
+            if (workspace.aEOverL[im] != workspace.baseAEOverL[im]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Assert that an analysis result has the same status and, unless unstable, the same member forces
+     * within the tolerance as one computed from scratch.
+     *
+     * @param what description of the results for failure messages
+     * @param a result
+     * @param b result computed from scratch
+     */
+    private static void assertAgree(String what, AnalysisResult a, AnalysisResult b) {
+        assertEquals(what + " status", b.getStatus(), a.getStatus());
+        if (b.getStatus() == Analysis.UNSTABLE) {
+            return;
+        }
+        double maxDiff = 0;
+        double maxForce = 0;
+        for (int ilc = 0; ilc < b.getNLoadInstances(); ilc++) {
+            for (int im = 0; im < b.getNMembers(); im++) {
+                maxDiff = Math.max(maxDiff, Math.abs(a.getMemberForce(ilc, im) - b.getMemberForce(ilc, im)));
+                maxForce = Math.max(maxForce, Math.abs(b.getMemberForce(ilc, im)));
+            }
+        }
+        assertTrue(what + " forces differ by " + maxDiff / maxForce, maxDiff <= tolerance * maxForce);
+    }
+
+    /**
+     * Change the stock of up to a given number of members of a bridge by one size, skipping members already
+     * at the limit, and return how many were changed.
+     *
+     * @param bridge bridge
+     * @param nChanges number of members to change
+     * @param sizeIncrement +1 for one bigger, -1 for one smaller
+     * @return number of members changed
+     */
+    private static int changeStock(BridgeModel bridge, int nChanges, int sizeIncrement) {
+        final Inventory inventory = new Inventory();
+        int nChanged = 0;
+        for (Member member : bridge.getMembers()) {
+            if (nChanged == nChanges) {
+                break;
+            }
+            final Shape shape = inventory.getShape(member.getShape(), sizeIncrement);
+            if (shape != member.getShape()) {
+                member.setShape(shape);
+                ++nChanged;
+            }
+        }
+        return nChanged;
+    }
+
+    /**
+     * Changing the stock of 1, 4, 24, and 25 members of every sample, both up and down a size, gives the same
+     * status and member forces with incremental re-analysis as from scratch.  Up to 24 changes are made by
+     * updating the sample's factorization, even where refactoring is cheaper.  More are refactored.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void stockChangesMatchFullAnalyses() throws Exception {
+        final Analysis full = new Analysis();
+        full.setIncremental(false);
+        final int [] nChanges = { 1, 4, AnalysisWorkspace.maxUpdateRank, AnalysisWorkspace.maxUpdateRank + 1 };
+        int nTooManyChanges = 0;
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            for (int n : nChanges) {
+                for (int sizeIncrement = -1; sizeIncrement <= 1; sizeIncrement += 2) {
+                    final AnalysisWorkspace workspace = new AnalysisWorkspace();
+                    final Analysis incremental = new Analysis(workspace);
+                    incremental.setUpdateAlways(true);
+                    final BridgeModel bridge = SampleBridges.read(sample.getValue());
+                    incremental.initialize(bridge);
+                    if (changeStock(bridge, n, sizeIncrement) < n) {
+                        continue;
+                    }
+                    final String what = sample.getKey() + " " + n + " members " + (sizeIncrement > 0 ? "up" : "down");
+                    incremental.initialize(bridge);
+                    full.initialize(bridge);
+                    assertEquals(what + " updated", n <= AnalysisWorkspace.maxUpdateRank,
+                            isUpdated(workspace, bridge.getMembers().size()));
+                    assertAgree(what, incremental.getResult(), full.getResult());
+                    if (n > AnalysisWorkspace.maxUpdateRank) {
+                        ++nTooManyChanges;
+                    }
+                }
+            }
+        }
+        assertTrue("no sample with enough members to refuse an update", nTooManyChanges > 0);
+    }
+
+    /**
+     * Split the first member of a bridge with a new joint a few millimeters off its midpoint at right angles.
+     * The new joint barely resists moving at right angles to the member, so the smallest pivot of the
+     * stiffness matrix is not far above the small pivot threshold.
+     *
+     * @param bridge bridge
+     * @param shape shape of the two members that replace the first
+     */
+    private static void splitFirstMember(BridgeModel bridge, Shape shape) {
+        final double offset = 0.002;
+        final Member member = bridge.getMembers().get(0);
+        final Affine.Point a = member.getJointA().getPointWorld();
+        final Affine.Point b = member.getJointB().getPointWorld();
+        final double dx = b.x - a.x;
+        final double dy = b.y - a.y;
+        final double length = Math.hypot(dx, dy);
+        final Joint joint = new Joint(bridge.getJoints().size(),
+                new Affine.Point((a.x + b.x) / 2 - offset * dy / length, (a.y + b.y) / 2 + offset * dx / length));
+        bridge.getJoints().add(joint);
+        final int nMembers = bridge.getMembers().size();
+        bridge.getMembers().add(new Member(nMembers, member.getJointA(), joint, member.getMaterial(), shape));
+        bridge.getMembers().add(new Member(nMembers + 1, joint, member.getJointB(), member.getMaterial(), shape));
+    }
+
+    /**
+     * Shrinking the members at a nearly unstable joint from the largest size to the smallest could hide a pivot
+     * below the small pivot threshold, so incremental re-analysis refactors rather than updating, and its status
+     * and member forces match analysis from scratch.  The bridge may then be unstable.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void stiffnessDecreaseNearThresholdIsRefactored() throws Exception {
+        final Analysis full = new Analysis();
+        full.setIncremental(false);
+        final Inventory inventory = new Inventory();
+        int nStable = 0;
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            final AnalysisWorkspace workspace = new AnalysisWorkspace();
+            final Analysis incremental = new Analysis(workspace);
+            incremental.setUpdateAlways(true);
+            final BridgeModel bridge = SampleBridges.read(sample.getValue());
+            final int sectionIndex = bridge.getMembers().get(0).getShape().getSection().getIndex();
+            splitFirstMember(bridge, inventory.getShape(sectionIndex, inventory.getNShapes(sectionIndex) - 1));
+            incremental.initialize(bridge);
+            if (incremental.getStatus() == Analysis.UNSTABLE) {
+                continue;
+            }
+            ++nStable;
+            final int nMembers = bridge.getMembers().size();
+            for (int im = nMembers - 2; im < nMembers; im++) {
+                bridge.getMembers().get(im).setShape(inventory.getShape(sectionIndex, 0));
+            }
+            incremental.initialize(bridge);
+            full.initialize(bridge);
+            assertFalse(sample.getKey() + " updated", isUpdated(workspace, nMembers));
+            assertAgree(sample.getKey(), incremental.getResult(), full.getResult());
+        }
+        assertTrue("no stable split sample", nStable > 0);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * InfluenceLinesTest.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests influence lines against the panel point load cases of the analysis they come from.
+ *
+ * @author Eugene K. Ressler
+ */
+public class InfluenceLinesTest {
+
+    /**
+     * Number of truck positions per panel where member forces are scanned.
+     */
+    private static final int nSteps = 100;
+    /**
+     * Largest difference allowed between influence line and load case forces, relative to the largest force,
+     * and between force strength ratios, which are near 1 in the members that matter.
+     */
+    private static final double tolerance = 1e-9;
+
+    /**
+     * For each analyzable sample, influence line forces at whole positions match the load cases, forces
+     * between them are finite, and no member's envelope ratio is smaller than its panel point ratio.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void linesMatchPanelPointAnalysis() throws Exception {
+        final Analysis analysis = new Analysis();
+        analysis.setIncremental(false);
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            final BridgeModel bridge = SampleBridges.read(sample.getValue());
+            analysis.initialize(bridge);
+            if (!analysis.isSensitivityAvailable()) {
+                continue;
+            }
+            final InfluenceLines lines = analysis.getInfluenceLines();
+            final AnalysisResult result = analysis.getResult();
+            double maxDiff = 0;
+            double maxForce = 0;
+            for (int ilc = 0; ilc < result.getNLoadInstances(); ilc++) {
+                for (int im = 0; im < result.getNMembers(); im++) {
+                    final double f = ilc == 0 ? lines.getDeadLoadForce(im) : lines.getMemberForce(ilc, im);
+                    maxDiff = Math.max(maxDiff, Math.abs(f - result.getMemberForce(ilc, im)));
+                    maxForce = Math.max(maxForce, Math.abs(result.getMemberForce(ilc, im)));
+                }
+            }
+            assertTrue(sample.getKey() + " forces differ by " + maxDiff / maxForce, maxDiff <= tolerance * maxForce);
+            final double [] force = new double [lines.getNMembers()];
+            for (int i = 0; i <= lines.getNLoadedJoints() * nSteps; i++) {
+                lines.getMemberForces(force, (double)i / nSteps);
+                for (int im = 0; im < force.length; im++) {
+                    assertFalse(sample.getKey() + " position " + i + " member " + (im + 1), Double.isNaN(force[im]));
+                }
+            }
+            for (int im = 0; im < result.getNMembers(); im++) {
+                final double a = Math.max(result.getCompressionForceStrengthRatio(im), result.getTensionForceStrengthRatio(im));
+                final double b = Math.max(lines.getCompressionForceStrengthRatio(im), lines.getTensionForceStrengthRatio(im));
+                assertTrue(sample.getKey() + " member " + (im + 1) + " envelope " + b + " below " + a, b >= a - tolerance);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * InterpolationTest.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that animation interpolations depend only on the analysis result, not on the bridge it was computed
+ * for, which may be edited afterward.
+ *
+ * @author Eugene K. Ressler
+ */
+public class InterpolationTest {
+
+    /**
+     * Load locations in panel lengths, off the left end, on the deck, and off the right end.
+     */
+    private static final double [] xLoadParameters = { -0.5, 1.5, 2.25, 100 };
+
+    /**
+     * Return a record of everything an interpolation computes.
+     *
+     * @param interpolation interpolation
+     * @param result result it interpolates
+     * @return text record
+     */
+    private static String record(Analysis.Interpolation interpolation, AnalysisResult result) {
+        final StringBuilder s = new StringBuilder();
+        s.append(interpolation.getPtLoad()).append(' ').append(interpolation.getLoadRotation()).append('\n');
+        for (int i = 0; i < result.getNJoints(); i++) {
+            s.append(interpolation.getDisplacement(i)).append('\n');
+        }
+        for (int i = 0; i < result.getNMembers(); i++) {
+            s.append(interpolation.getForceRatio(i)).append(' ').append(interpolation.getMemberStatus(i)).append('\n');
+        }
+        return s.toString();
+    }
+
+    /**
+     * Return records of interpolations at every test load location, with dead load only, and between the
+     * interpolations with the load on the deck.
+     *
+     * @param analysis analysis to interpolate
+     * @param terrain terrain for roadway elevations
+     * @return text records
+     */
+    private static String interpolate(Analysis analysis, TerrainModel terrain) {
+        final AnalysisResult result = analysis.getResult();
+        final Analysis.Interpolation a = analysis.getNewInterpolation(terrain);
+        final Analysis.Interpolation b = analysis.getNewInterpolation(terrain);
+        final StringBuilder s = new StringBuilder();
+        for (int i = 0; i < xLoadParameters.length; i++) {
+            a.initialize(xLoadParameters[i], 10);
+            s.append(record(a, result));
+        }
+        a.initializeDeadLoadOnly(0.5, -1, 10);
+        s.append(record(a, result));
+        a.initialize(xLoadParameters[1], 10);
+        b.initialize(xLoadParameters[2], 10);
+        a.initialize(a, b, 0.5);
+        s.append(record(a, result));
+        return s.toString();
+    }
+
+    /**
+     * Interpolations of the analysis of every sample, with members made as small as possible so that some
+     * fail and their lengths are interpolated, are the same before and after every free joint of the analyzed
+     * bridge is moved.  The result holds the joint locations and member joints the bridge had when analyzed.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void interpolationIgnoresLaterEdits() throws Exception {
+        final Inventory inventory = new Inventory();
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            final BridgeModel bridge = SampleBridges.read(sample.getValue());
+            for (Member member : bridge.getMembers()) {
+                member.setShape(inventory.getShape(member.getShape(), -1000));
+            }
+            final Analysis analysis = new Analysis();
+            analysis.initialize(bridge);
+            final AnalysisResult result = analysis.getResult();
+            if (result.getStatus() == Analysis.UNSTABLE) {
+                continue;
+            }
+            final TerrainModel terrain = new TerrainModel();
+            terrain.initializeTerrain(bridge.getDesignConditions(), 0f, 5f);
+            final Analysis.Interpolation probe = analysis.getNewInterpolation(terrain);
+            probe.initialize(xLoadParameters[1], 10);
+            assertTrue(sample.getKey(), probe.isFailure());
+            final String before = interpolate(analysis, terrain);
+            final int nPrescribedJoints = bridge.getDesignConditions().getNPrescribedJoints();
+            for (int i = 0; i < result.getNJoints(); i++) {
+                final Affine.Point pt = bridge.getJoints().get(i).getPointWorld();
+                assertEquals(sample.getKey(), pt.x, result.getJointX(i), 0);
+                assertEquals(sample.getKey(), pt.y, result.getJointY(i), 0);
+                if (i >= nPrescribedJoints) {
+                    pt.setLocation(pt.x + 1, pt.y - 1);
+                }
+            }
+            for (int i = 0; i < result.getNMembers(); i++) {
+                final Member member = bridge.getMembers().get(i);
+                assertEquals(sample.getKey(), member.getJointA().getIndex(), result.getMemberJointA(i));
+                assertEquals(sample.getKey(), member.getJointB().getIndex(), result.getMemberJointB(i));
+            }
+            assertSame(sample.getKey(), bridge.getDesignConditions(), result.getDesignConditions());
+            assertEquals(sample.getKey(), before, interpolate(analysis, terrain));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * JointOptimizerTest.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the member force sensitivities that guide joint optimization against finite differences, and that
+ * the optimizer's accepted moves and stock reproduce the passing design it reports.
+ *
+ * @author Eugene K. Ressler
+ */
+public class JointOptimizerTest {
+
+    /**
+     * Joint coordinate step in meters for central differences.
+     */
+    private static final double step = 1e-4;
+
+    /**
+     * Largest difference between direct and central difference sensitivities allowed, relative to the largest
+     * sensitivity for the same joint coordinate.  Differences measured on the samples are below 2e-7.
+     */
+    private static final double tolerance = 1e-5;
+
+    /**
+     * Return a new analysis from scratch of a bridge.
+     *
+     * @param bridge bridge
+     * @return analysis
+     */
+    private static Analysis analyze(BridgeModel bridge) {
+        final Analysis analysis = new Analysis();
+        analysis.setIncremental(false);
+        analysis.initialize(bridge);
+        return analysis;
+    }
+
+    /**
+     * Return the indices of the joints of a bridge that are not prescribed by its design conditions.
+     *
+     * @param bridge bridge
+     * @return free joint indices
+     */
+    private static int [] getFreeJoints(BridgeModel bridge) {
+        final int nPrescribedJoints = bridge.getDesignConditions().getNPrescribedJoints();
+        final int [] freeJoints = new int [bridge.getJoints().size() - nPrescribedJoints];
+        for (int i = 0; i < freeJoints.length; i++) {
+            freeJoints[i] = nPrescribedJoints + i;
+        }
+        return freeJoints;
+    }
+
+    /**
+     * Return the result of a fresh analysis of a sample with one joint coordinate moved.
+     *
+     * @param text sample text
+     * @param jointIndex index of joint to move
+     * @param k coordinate to move, 0 for x and 1 for y
+     * @param delta distance to move in meters
+     * @return analysis result
+     * @throws Exception if the sample can't be read
+     */
+    private static AnalysisResult analyzeMoved(String text, int jointIndex, int k, double delta) throws Exception {
+        final BridgeModel bridge = SampleBridges.read(text);
+        final Affine.Point pt = bridge.getJoints().get(jointIndex).getPointWorld();
+        if (k == 0) {
+            pt.x += delta;
+        }
+        else {
+            pt.y += delta;
+        }
+        return analyze(bridge).getResult();
+    }
+
+    /**
+     * The direct member force sensitivities of every sample with respect to every coordinate of every free
+     * joint match central differences of fresh analyses with the joint moved each way.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void sensitivitiesMatchCentralDifferences() throws Exception {
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            final BridgeModel bridge = SampleBridges.read(sample.getValue());
+            final Analysis analysis = analyze(bridge);
+            assertTrue(sample.getKey(), analysis.isSensitivityAvailable());
+            final int [] freeJoints = getFreeJoints(bridge);
+            final double [] sensitivities = analysis.getMemberForceSensitivities(freeJoints);
+            final int nLoadInstances = analysis.getResult().getNLoadInstances();
+            final int nMembers = analysis.getResult().getNMembers();
+            for (int i = 0; i < freeJoints.length; i++) {
+                for (int k = 0; k < 2; k++) {
+                    final String what = sample.getKey() + " joint " + (freeJoints[i] + 1) + (k == 0 ? " x" : " y");
+                    final AnalysisResult plus = analyzeMoved(sample.getValue(), freeJoints[i], k, step);
+                    final AnalysisResult minus = analyzeMoved(sample.getValue(), freeJoints[i], k, -step);
+                    assertTrue(what, plus.getStatus() != Analysis.UNSTABLE && minus.getStatus() != Analysis.UNSTABLE);
+                    double maxDiff = 0;
+                    double maxSensitivity = 0;
+                    for (int ilc = 0; ilc < nLoadInstances; ilc++) {
+                        for (int im = 0; im < nMembers; im++) {
+                            final double direct = sensitivities[((2 * i + k) * nLoadInstances + ilc) * nMembers + im];
+                            final double difference = (plus.getMemberForce(ilc, im) - minus.getMemberForce(ilc, im)) / (2 * step);
+                            maxDiff = Math.max(maxDiff, Math.abs(direct - difference));
+                            maxSensitivity = Math.max(maxSensitivity, Math.abs(direct));
+                        }
+                    }
+                    assertTrue(what + " sensitivities differ by " + maxDiff / maxSensitivity,
+                            maxDiff <= tolerance * maxSensitivity);
+                }
+            }
+        }
+    }
+
+    /**
+     * Making the optimizer's accepted moves in order on a copy of a sample and then giving every member the
+     * optimizer's best stock yields a bridge that passes a fresh analysis and costs what the optimizer reports.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void movesReplayToBestDesign() throws Exception {
+        final Inventory inventory = new Inventory();
+        final String text = SampleBridges.getTexts().values().iterator().next();
+        final JointOptimizer optimizer = new JointOptimizer(SampleBridges.read(text));
+        assertTrue(optimizer.optimize());
+        final JointOptimizer.Move [] moves = optimizer.getMoves();
+        assertTrue("no moves", moves.length > 0);
+        final BridgeModel bridge = SampleBridges.read(text);
+        for (JointOptimizer.Move move : moves) {
+            assertTrue("joint " + (move.jointIndex + 1) + " is prescribed",
+                    move.jointIndex >= bridge.getDesignConditions().getNPrescribedJoints());
+            bridge.getJoints().get(move.jointIndex).getPointWorld().setLocation(move.ptWorld);
+        }
+        final StockSelector.Descriptor [] stock = optimizer.getBestStock();
+        assertEquals(bridge.getMembers().size(), stock.length);
+        for (int im = 0; im < stock.length; im++) {
+            final Member member = bridge.getMembers().get(im);
+            member.setMaterial(inventory.getMaterial(stock[im].materialIndex));
+            member.setShape(inventory.getShape(stock[im].sectionIndex, stock[im].sizeIndex));
+        }
+        final BridgeModel replayed = SampleBridges.read(bridge.toString());
+        assertEquals(Analysis.PASSES, analyze(replayed).getStatus());
+        assertEquals(optimizer.getBestCost(), replayed.getTotalCost(), 1e-6);
+        assertTrue(optimizer.getBestCost() <= optimizer.getInitialCost());
+    }
+}
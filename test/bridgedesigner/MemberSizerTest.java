@@ -0,0 +1,93 @@
+/*
+ * MemberSizerTest.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that member sizing yields bridges that pass an independent load test, including the contest's
+ * exact strength formula, at no more than the original cost.
+ *
+ * @author Eugene K. Ressler
+ */
+public class MemberSizerTest {
+
+    /**
+     * Safety margin required in the margin test.
+     */
+    private static final double margin = 0.2;
+
+    /**
+     * Return the result of a fresh analysis from scratch of a bridge.
+     *
+     * @param bridge bridge
+     * @param strictStrength whether to compute compressive strengths by the exact formula
+     * @return analysis result
+     */
+    private static AnalysisResult analyze(BridgeModel bridge, boolean strictStrength) {
+        final Analysis analysis = new Analysis();
+        analysis.setIncremental(false);
+        analysis.setStrictStrength(strictStrength);
+        analysis.initialize(bridge);
+        return analysis.getResult();
+    }
+
+    /**
+     * Sizing every sample finds a bridge that passes fresh analyses with both tabulated and exact strengths,
+     * costs what the sizer reports, and costs no more than the sample, which passes already.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void sizedSamplesPass() throws Exception {
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            final BridgeModel bridge = SampleBridges.read(sample.getValue());
+            assertEquals(sample.getKey(), Analysis.PASSES, analyze(bridge, true).getStatus());
+            final MemberSizer sizer = new MemberSizer(bridge);
+            assertTrue(sample.getKey(), sizer.optimize());
+            final BridgeModel sized = SampleBridges.read(sizer.getBridge().toString());
+            assertEquals(sample.getKey(), Analysis.PASSES, analyze(sized, false).getStatus());
+            assertEquals(sample.getKey() + " strict", Analysis.PASSES, analyze(sized, true).getStatus());
+            assertEquals(sample.getKey(), sizer.getBestCost(), sized.getTotalCost(), 1e-6);
+            assertTrue(sample.getKey() + " cost " + sizer.getBestCost() + " > " + sizer.getInitialCost(),
+                    sizer.getBestCost() <= sizer.getInitialCost());
+        }
+    }
+
+    /**
+     * Sizing every sample with a safety margin finds a bridge that leaves at least that margin of every
+     * member's strength unused in fresh analyses with both tabulated and exact strengths.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void sizedSamplesKeepMargin() throws Exception {
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            final MemberSizer sizer = new MemberSizer(SampleBridges.read(sample.getValue()));
+            sizer.setMargin(margin);
+            assertTrue(sample.getKey(), sizer.optimize());
+            final BridgeModel sized = SampleBridges.read(sizer.getBridge().toString());
+            for (int i = 0; i < 2; i++) {
+                final boolean strictStrength = i == 1;
+                final String what = sample.getKey() + (strictStrength ? " strict" : "");
+                final AnalysisResult result = analyze(sized, strictStrength);
+                assertEquals(what, Analysis.PASSES, result.getStatus());
+                final double leastMargin = MemberSizer.getLeastMargin(result);
+                assertTrue(what + " margin " + leastMargin, leastMargin >= margin);
+            }
+        }
+    }
+}
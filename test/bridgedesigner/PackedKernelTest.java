@@ -0,0 +1,131 @@
+/*
+ * PackedKernelTest.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the packed analysis kernels give results identical to the member-by-member loops.
+ * See <code>Analysis.setPackedKernels</code>.
+ *
+ * @author Eugene K. Ressler
+ */
+public class PackedKernelTest {
+
+    /**
+     * Number of edits made to each sample, alternating member size changes and joint moves.
+     */
+    private static final int nSteps = 20;
+
+    /**
+     * Assert that two analysis results are identical bit for bit.
+     *
+     * @param what description of the results for failure messages
+     * @param a result
+     * @param b other result
+     */
+    private static void assertIdentical(String what, AnalysisResult a, AnalysisResult b) {
+        assertEquals(what + " status", a.getStatus(), b.getStatus());
+        if (a.getStatus() == Analysis.UNSTABLE) {
+            return;
+        }
+        for (int ilc = 0; ilc < a.getNLoadInstances(); ilc++) {
+            for (int im = 0; im < a.getNMembers(); im++) {
+                assertEquals(what + " force " + ilc + "," + im,
+                        Double.doubleToLongBits(a.getMemberForce(ilc, im)), Double.doubleToLongBits(b.getMemberForce(ilc, im)));
+                assertEquals(what + " failure " + ilc + "," + im, a.isMemberFailing(ilc, im), b.isMemberFailing(ilc, im));
+            }
+            for (int ij = 0; ij < a.getNJoints(); ij++) {
+                assertEquals(what + " x displacement " + ilc + "," + ij,
+                        Double.doubleToLongBits(a.getXJointDisplacement(ilc, ij)), Double.doubleToLongBits(b.getXJointDisplacement(ilc, ij)));
+                assertEquals(what + " y displacement " + ilc + "," + ij,
+                        Double.doubleToLongBits(a.getYJointDisplacement(ilc, ij)), Double.doubleToLongBits(b.getYJointDisplacement(ilc, ij)));
+            }
+        }
+    }
+
+    /**
+     * Return a new analysis with the given kernels and options.
+     *
+     * @param packedKernels whether to use the packed kernels
+     * @param incremental whether to reuse factorizations
+     * @param legacySolver whether to use the legacy solver
+     * @return analysis
+     */
+    private static Analysis getAnalysis(boolean packedKernels, boolean incremental, boolean legacySolver) {
+        Analysis analysis = new Analysis();
+        analysis.setPackedKernels(packedKernels);
+        analysis.setIncremental(incremental);
+        analysis.setLegacySolver(legacySolver);
+        return analysis;
+    }
+
+    /**
+     * Full analyses of every sample with each solver are identical with either kernel.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void fullAnalysesAreIdentical() throws Exception {
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            final BridgeModel bridge = SampleBridges.read(sample.getValue());
+            for (int i = 0; i < 2; i++) {
+                final boolean legacySolver = i == 1;
+                Analysis packed = getAnalysis(true, false, legacySolver);
+                Analysis scalar = getAnalysis(false, false, legacySolver);
+                packed.initialize(bridge);
+                scalar.initialize(bridge);
+                assertIdentical(sample.getKey() + (legacySolver ? " legacy" : " skyline"), packed.getResult(), scalar.getResult());
+            }
+        }
+    }
+
+    /**
+     * Incremental analyses of a sequence of member size changes and joint moves, which exercise low-rank updates
+     * and partial refactorization, are identical with either kernel.  Only joints the scenario doesn't prescribe
+     * are moved, since prescribed joints are shared by all bridges of a scenario.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void incrementalAnalysesAreIdentical() throws Exception {
+        final Inventory inventory = new Inventory();
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            final BridgeModel edited = SampleBridges.read(sample.getValue());
+            Analysis packed = getAnalysis(true, true, false);
+            Analysis scalar = getAnalysis(false, true, false);
+            final int nMembers = edited.getMembers().size();
+            final int nJoints = edited.getJoints().size();
+            final int nPrescribedJoints = edited.getDesignConditions().getNPrescribedJoints();
+            for (int step = 0; step <= nSteps; step++) {
+                if (step % 2 == 1) {
+                    final Member member = edited.getMembers().get(step % nMembers);
+                    member.setShape(inventory.getShape(member.getShape(), 1));
+                }
+                else if (step > 0 && nJoints > nPrescribedJoints) {
+                    final Joint joint = edited.getJoints().get(nPrescribedJoints + step % (nJoints - nPrescribedJoints));
+                    final Affine.Point p = joint.getPointWorld();
+                    joint.getPointWorld().setLocation(new Affine.Point(p.x, p.y + 0.25));
+                }
+                packed.initialize(edited);
+                scalar.initialize(edited);
+                assertIdentical(sample.getKey() + " step " + step, packed.getResult(), scalar.getResult());
+            }
+            // The original must still read, so no prescribed joint was disturbed.
+            SampleBridges.read(sample.getValue());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * ParallelAnalysisTest.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that parallel evaluation of load cases gives results identical to sequential evaluation.
+ * See <code>Analysis.setParallel</code>.
+ *
+ * @author Eugene K. Ressler
+ */
+public class ParallelAnalysisTest {
+
+    /**
+     * Number of blocks of load cases, more than one per processor on most machines.
+     */
+    private static final int nBlocks = 3;
+
+    /**
+     * Assert that two analysis results are identical bit for bit.
+     *
+     * @param what description of the results for failure messages
+     * @param a result
+     * @param b other result
+     */
+    private static void assertIdentical(String what, AnalysisResult a, AnalysisResult b) {
+        assertEquals(what + " status", a.getStatus(), b.getStatus());
+        if (a.getStatus() == Analysis.UNSTABLE) {
+            return;
+        }
+        for (int ilc = 0; ilc < a.getNLoadInstances(); ilc++) {
+            for (int im = 0; im < a.getNMembers(); im++) {
+                assertEquals(what + " force " + ilc + "," + im,
+                        Double.doubleToLongBits(a.getMemberForce(ilc, im)), Double.doubleToLongBits(b.getMemberForce(ilc, im)));
+                assertEquals(what + " failure " + ilc + "," + im, a.isMemberFailing(ilc, im), b.isMemberFailing(ilc, im));
+            }
+            for (int ij = 0; ij < a.getNJoints(); ij++) {
+                assertEquals(what + " x displacement " + ilc + "," + ij,
+                        Double.doubleToLongBits(a.getXJointDisplacement(ilc, ij)), Double.doubleToLongBits(b.getXJointDisplacement(ilc, ij)));
+                assertEquals(what + " y displacement " + ilc + "," + ij,
+                        Double.doubleToLongBits(a.getYJointDisplacement(ilc, ij)), Double.doubleToLongBits(b.getYJointDisplacement(ilc, ij)));
+            }
+        }
+    }
+
+    /**
+     * Return a new analysis that evaluates load cases in parallel however small the bridge, or one that
+     * evaluates them sequentially.
+     *
+     * @param parallel whether to evaluate in parallel
+     * @param legacySolver whether to use the legacy solver
+     * @return analysis
+     */
+    private static Analysis getAnalysis(boolean parallel, boolean legacySolver) {
+        Analysis analysis = new Analysis();
+        analysis.setParallel(parallel);
+        analysis.setLegacySolver(legacySolver);
+        if (parallel) {
+            analysis.setParallelThreshold(nBlocks, 0);
+        }
+        return analysis;
+    }
+
+    /**
+     * Full analyses of every sample with each solver, also with every third member failed as for the failure
+     * animation, are identical when evaluated in parallel and sequentially.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void parallelMatchesSequential() throws Exception {
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            final BridgeModel bridge = SampleBridges.read(sample.getValue());
+            for (int i = 0; i < 2; i++) {
+                final boolean legacySolver = i == 1;
+                final String what = sample.getKey() + (legacySolver ? " legacy" : " skyline");
+                final Analysis parallel = getAnalysis(true, legacySolver);
+                final Analysis sequential = getAnalysis(false, legacySolver);
+                parallel.initialize(bridge);
+                sequential.initialize(bridge);
+                assertIdentical(what, parallel.getResult(), sequential.getResult());
+                final AnalysisResult result = sequential.getResult();
+                final double [] failureStatus = new double [result.getNMembers()];
+                for (int im = 0; im < result.getNMembers(); im++) {
+                    failureStatus[im] = im % 3 == 0 ? Analysis.FAILED : Analysis.NOT_FAILED;
+                }
+                parallel.initialize(bridge, failureStatus);
+                sequential.initialize(bridge, failureStatus);
+                assertIdentical(what + " failed", parallel.getResult(), sequential.getResult());
+            }
+        }
+    }
+
+    /**
+     * Incremental analyses after member size changes, which update the last factorization, are identical when
+     * evaluated in parallel and sequentially.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void incrementalParallelMatchesSequential() throws Exception {
+        final Inventory inventory = new Inventory();
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            final BridgeModel bridge = SampleBridges.read(sample.getValue());
+            final Analysis parallel = getAnalysis(true, false);
+            final Analysis sequential = getAnalysis(false, false);
+            for (int im = 0; im < bridge.getMembers().size(); im++) {
+                final Member member = bridge.getMembers().get(im);
+                member.setShape(inventory.getShape(member.getShape(), 1));
+                parallel.initialize(bridge);
+                sequential.initialize(bridge);
+                assertIdentical(sample.getKey() + " member " + (im + 1), parallel.getResult(), sequential.getResult());
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * ResultRecyclingTest.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that an analysis reuses the arrays of recycled results without changing what it computes.
+ * See <code>Analysis.recycle</code>.
+ *
+ * @author Eugene K. Ressler
+ */
+public class ResultRecyclingTest {
+
+    /**
+     * Assert that two analysis results are identical bit for bit.
+     *
+     * @param what description of the results for failure messages
+     * @param a result
+     * @param b other result
+     */
+    private static void assertIdentical(String what, AnalysisResult a, AnalysisResult b) {
+        assertEquals(what + " status", a.getStatus(), b.getStatus());
+        if (a.getStatus() == Analysis.UNSTABLE) {
+            return;
+        }
+        for (int im = 0; im < a.getNMembers(); im++) {
+            assertEquals(what + " compression ratio " + im, Double.doubleToLongBits(a.getCompressionForceStrengthRatio(im)),
+                    Double.doubleToLongBits(b.getCompressionForceStrengthRatio(im)));
+            assertEquals(what + " tension ratio " + im, Double.doubleToLongBits(a.getTensionForceStrengthRatio(im)),
+                    Double.doubleToLongBits(b.getTensionForceStrengthRatio(im)));
+        }
+        for (int ilc = 0; ilc < a.getNLoadInstances(); ilc++) {
+            for (int im = 0; im < a.getNMembers(); im++) {
+                assertEquals(what + " force " + ilc + "," + im,
+                        Double.doubleToLongBits(a.getMemberForce(ilc, im)), Double.doubleToLongBits(b.getMemberForce(ilc, im)));
+                assertEquals(what + " failure " + ilc + "," + im, a.isMemberFailing(ilc, im), b.isMemberFailing(ilc, im));
+            }
+            for (int ij = 0; ij < a.getNJoints(); ij++) {
+                assertEquals(what + " x displacement " + ilc + "," + ij,
+                        Double.doubleToLongBits(a.getXJointDisplacement(ilc, ij)), Double.doubleToLongBits(b.getXJointDisplacement(ilc, ij)));
+                assertEquals(what + " y displacement " + ilc + "," + ij,
+                        Double.doubleToLongBits(a.getYJointDisplacement(ilc, ij)), Double.doubleToLongBits(b.getYJointDisplacement(ilc, ij)));
+            }
+        }
+    }
+
+    /**
+     * Analyzing every sample in turn, each time after recycling the result before, gives the same results as
+     * fresh analyses, and a result recycled after analyzing a bridge is reused whole to analyze it again.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void recycledResultsMatchFresh() throws Exception {
+        final Analysis recycling = new Analysis();
+        recycling.setIncremental(false);
+        for (String text : SampleBridges.getTexts().values()) {
+            final BridgeModel bridge = SampleBridges.read(text);
+            final String what = bridge.getDesignConditions().getTag();
+            recycling.recycle(recycling.getResult());
+            recycling.initialize(bridge);
+            final AnalysisResult result = recycling.getResult();
+            final Analysis fresh = new Analysis();
+            fresh.setIncremental(false);
+            fresh.initialize(bridge);
+            assertIdentical(what, fresh.getResult(), result);
+            if (result.getStatus() == Analysis.UNSTABLE) {
+                continue;
+            }
+            recycling.recycle(result);
+            recycling.initialize(bridge);
+            final AnalysisResult again = recycling.getResult();
+            assertNotSame(what, result, again);
+            assertSame(what, result.memberForce, again.memberForce);
+            assertSame(what, result.jointDisplacement, again.jointDisplacement);
+            assertSame(what, result.memberFails, again.memberFails);
+            assertSame(what, result.tensionForceStrengthRatio, again.tensionForceStrengthRatio);
+            assertIdentical(what + " again", fresh.getResult(), again);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * SampleBridges.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * The sample bridges bundled as application resources, for tests.
+ *
+ * @author Eugene K. Ressler
+ */
+final class SampleBridges {
+
+    private SampleBridges() { }
+
+    /**
+     * Return the legacy text of each sample bridge by its resource key, in key order.
+     *
+     * @return sample texts by key
+     * @throws IOException if the sample resources can't be read
+     */
+    static Map<String, String> getTexts() throws IOException {
+        Properties samples = new Properties();
+        InputStream in = BridgeModel.class.getResourceAsStream("resources/BridgeSample.properties");
+        if (in == null) {
+            throw new IOException("missing sample resources");
+        }
+        try {
+            samples.load(in);
+        } finally {
+            in.close();
+        }
+        Map<String, String> texts = new TreeMap<String, String>();
+        for (String key : samples.stringPropertyNames()) {
+            if (key.endsWith(".bridgeSample")) {
+                texts.put(key, samples.getProperty(key));
+            }
+        }
+        return texts;
+    }
+
+    /**
+     * Return a new bridge parsed from legacy text.  Unlike <code>BridgeModel.read(String)</code>, a syntax
+     * error is thrown rather than logged.
+     *
+     * @param text legacy text of the bridge
+     * @return bridge
+     * @throws IOException if the text isn't a valid bridge
+     */
+    static BridgeModel read(String text) throws IOException {
+        BridgeModel bridge = new BridgeModel();
+        bridge.parseBytes(text.getBytes("ASCII"));
+        return bridge;
+    }
+}
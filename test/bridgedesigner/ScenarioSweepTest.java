@@ -0,0 +1,102 @@
+/*
+ * ScenarioSweepTest.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that a scenario sweep resumes from its checkpoint file.
+ *
+ * @author Eugene K. Ressler
+ */
+public class ScenarioSweepTest {
+
+    /**
+     * Resuming from a checkpoint keeps its complete lines, drops a partial line left by an interrupted run and
+     * a line for an unknown scenario, and skips the scenarios recorded, so a sweep of only those queues
+     * nothing and leaves the checkpoint as it was.
+     *
+     * @throws Exception if the checkpoint file can't be written or read
+     */
+    @Test
+    public void resumeSkipsFinishedScenarios() throws Exception {
+        final String prefix = DesignConditions.conditions[0].getTag().substring(0, 2);
+        final StringBuilder finished = new StringBuilder();
+        int nFinished = 0;
+        String unfinishedTag = null;
+        for (int i = 0; i < DesignConditions.conditions.length; i++) {
+            final String tag = DesignConditions.conditions[i].getTag();
+            if (tag.startsWith(prefix)) {
+                finished.append(tag).append(nFinished % 2 == 0 ? "\t1234.56\tsketch\t100\t2.5\n" : "\t-\t-\t100\t2.5\n");
+                ++nFinished;
+            }
+            else if (unfinishedTag == null) {
+                unfinishedTag = tag;
+            }
+        }
+        assertTrue(nFinished > 1);
+        assertNotNull(unfinishedTag);
+        final File checkpointFile = File.createTempFile("sweep", ".txt");
+        try {
+            final FileOutputStream os = new FileOutputStream(checkpointFile);
+            try {
+                os.write(finished.toString().getBytes("UTF-8"));
+                os.write("XYZ\t-\t-\t100\t2.5\n".getBytes("UTF-8"));
+                os.write((unfinishedTag + "\t98").getBytes("UTF-8"));
+            } finally {
+                os.close();
+            }
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final ScenarioSweep sweep = new ScenarioSweep(1, checkpointFile, null, new PrintStream(out, true, "UTF-8"));
+            assertEquals(nFinished, sweep.resume());
+            assertEquals(finished.toString(), new String(Utility.getBytesFromFile(checkpointFile), "UTF-8"));
+            assertEquals(0, sweep.add(prefix));
+            sweep.finish();
+            assertEquals(finished.toString(), new String(Utility.getBytesFromFile(checkpointFile), "UTF-8"));
+            assertEquals(0, out.size());
+            assertEquals(0, sweep.getErrorCount());
+        } finally {
+            checkpointFile.delete();
+        }
+    }
+
+    /**
+     * Adding scenarios before resuming, when there is no checkpoint to record them in, is refused, and the
+     * sweep still finishes cleanly.
+     *
+     * @throws Exception if the checkpoint file can't be made
+     */
+    @Test
+    public void addBeforeResumeIsRefused() throws Exception {
+        final File checkpointFile = File.createTempFile("sweep", ".txt");
+        try {
+            final ScenarioSweep sweep = new ScenarioSweep(1, checkpointFile, null, new PrintStream(new ByteArrayOutputStream()));
+            try {
+                sweep.add(DesignConditions.conditions[0].getTag());
+                fail("add before resume not refused");
+            } catch (IllegalStateException ex) {
+                // expected
+            }
+            sweep.finish();
+            assertEquals(0, sweep.getErrorCount());
+        } finally {
+            checkpointFile.delete();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * SkylineSolverTest.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the skyline solver, with joints renumbered by <code>JointOrdering</code>, agrees with the
+ * legacy dense Gauss-Jordan inversion.  See <code>Analysis.setLegacySolver</code>.
+ *
+ * @author Eugene K. Ressler
+ */
+public class SkylineSolverTest {
+
+    /**
+     * Largest difference in member forces and joint displacements allowed, relative to the largest force or
+     * displacement of the legacy solution.  Differences measured are below 1e-13 on the samples and 1e-11 on
+     * the variants below.
+     */
+    private static final double tolerance = 1e-10;
+
+    /**
+     * Return a new analysis with the legacy solver or with the skyline solver computing from scratch.  Strength
+     * is exact with both, since the legacy solver always uses the exact formula.
+     *
+     * @param legacySolver whether to use the legacy solver
+     * @return analysis
+     */
+    private static Analysis getAnalysis(boolean legacySolver) {
+        Analysis analysis = new Analysis();
+        analysis.setLegacySolver(legacySolver);
+        analysis.setIncremental(false);
+        analysis.setStrictStrength(true);
+        return analysis;
+    }
+
+    /**
+     * Assert that skyline and legacy results have the same status and, unless unstable, the same member forces
+     * and joint displacements within the tolerance.
+     *
+     * @param what description of the results for failure messages
+     * @param legacy legacy solver result
+     * @param skyline skyline solver result
+     */
+    private static void assertAgree(String what, AnalysisResult legacy, AnalysisResult skyline) {
+        assertEquals(what + " status", legacy.getStatus(), skyline.getStatus());
+        if (legacy.getStatus() == Analysis.UNSTABLE) {
+            return;
+        }
+        double maxForceDiff = 0;
+        double maxForce = 0;
+        double maxDisplacementDiff = 0;
+        double maxDisplacement = 0;
+        for (int ilc = 0; ilc < legacy.getNLoadInstances(); ilc++) {
+            for (int im = 0; im < legacy.getNMembers(); im++) {
+                maxForceDiff = Math.max(maxForceDiff, Math.abs(skyline.getMemberForce(ilc, im) - legacy.getMemberForce(ilc, im)));
+                maxForce = Math.max(maxForce, Math.abs(legacy.getMemberForce(ilc, im)));
+            }
+            for (int ij = 0; ij < legacy.getNJoints(); ij++) {
+                maxDisplacementDiff = Math.max(maxDisplacementDiff,
+                        Math.abs(skyline.getXJointDisplacement(ilc, ij) - legacy.getXJointDisplacement(ilc, ij)));
+                maxDisplacementDiff = Math.max(maxDisplacementDiff,
+                        Math.abs(skyline.getYJointDisplacement(ilc, ij) - legacy.getYJointDisplacement(ilc, ij)));
+                maxDisplacement = Math.max(maxDisplacement, Math.abs(legacy.getXJointDisplacement(ilc, ij)));
+                maxDisplacement = Math.max(maxDisplacement, Math.abs(legacy.getYJointDisplacement(ilc, ij)));
+            }
+        }
+        assertTrue(what + " forces differ by " + maxForceDiff / maxForce, maxForceDiff <= tolerance * maxForce);
+        assertTrue(what + " displacements differ by " + maxDisplacementDiff / maxDisplacement,
+                maxDisplacementDiff <= tolerance * maxDisplacement);
+    }
+
+    /**
+     * Every sample gets the same status, member forces, and joint displacements from both solvers.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void samplesMatchLegacySolver() throws Exception {
+        final Analysis legacy = getAnalysis(true);
+        final Analysis skyline = getAnalysis(false);
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            final BridgeModel bridge = SampleBridges.read(sample.getValue());
+            legacy.initialize(bridge);
+            skyline.initialize(bridge);
+            assertAgree(sample.getKey(), legacy.getResult(), skyline.getResult());
+        }
+    }
+
+    /**
+     * Removing any one member of any sample gets the same result from both solvers.  Most removals from
+     * determinate trusses leave mechanisms, which both must find unstable by the small pivot rule.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void samplesLessOneMemberMatchLegacySolver() throws Exception {
+        final Analysis legacy = getAnalysis(true);
+        final Analysis skyline = getAnalysis(false);
+        int nUnstable = 0;
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            final int nMembers = SampleBridges.read(sample.getValue()).getMembers().size();
+            for (int im = 0; im < nMembers; im++) {
+                final BridgeModel cut = SampleBridges.read(sample.getValue());
+                cut.getMembers().remove(im);
+                legacy.initialize(cut);
+                skyline.initialize(cut);
+                assertAgree(sample.getKey() + " without member " + (im + 1), legacy.getResult(), skyline.getResult());
+                if (legacy.getStatus() == Analysis.UNSTABLE) {
+                    ++nUnstable;
+                }
+            }
+        }
+        assertTrue("no unstable variant", nUnstable > 0);
+    }
+
+    /**
+     * Split the first member of a bridge with a new joint offset from the member's midpoint at right angles.
+     * The new joint's resistance to moving at right angles to the member falls with the square of the offset,
+     * and it has none at all at zero offset.
+     *
+     * @param bridge bridge
+     * @param offset offset of the new joint in meters
+     */
+    private static void splitFirstMember(BridgeModel bridge, double offset) {
+        final Member member = bridge.getMembers().get(0);
+        final Affine.Point a = member.getJointA().getPointWorld();
+        final Affine.Point b = member.getJointB().getPointWorld();
+        final double dx = b.x - a.x;
+        final double dy = b.y - a.y;
+        final double length = Math.hypot(dx, dy);
+        final Joint joint = new Joint(bridge.getJoints().size(),
+                new Affine.Point((a.x + b.x) / 2 - offset * dy / length, (a.y + b.y) / 2 + offset * dx / length));
+        bridge.getJoints().add(joint);
+        final int nMembers = bridge.getMembers().size();
+        bridge.getMembers().add(new Member(nMembers, member.getJointA(), joint, member.getMaterial(), member.getShape()));
+        bridge.getMembers().add(new Member(nMembers + 1, joint, member.getJointB(), member.getMaterial(), member.getShape()));
+    }
+
+    /**
+     * A joint nearly in line with the two members that hold it makes a nearly singular stiffness matrix.
+     * Both solvers find the bridge unstable with the joint up to 0.5 mm off line and not unstable from 1 cm,
+     * and agree exactly there.  In between, the two orderings see different pivots near the threshold, so
+     * there is a narrow band of offsets, about 1 mm on most samples, where only the legacy solver finds the
+     * bridge unstable.  The skyline solver is never the only one to do so.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void nearlyCollinearJointIsUnstableForBoth() throws Exception {
+        final Analysis legacy = getAnalysis(true);
+        final Analysis skyline = getAnalysis(false);
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            for (int i = -1; i <= 24; i++) {
+                final double offset = i < 0 ? 0 : 1e-4 * Math.pow(10, i / 8.0);
+                final BridgeModel bridge = SampleBridges.read(sample.getValue());
+                splitFirstMember(bridge, offset);
+                legacy.initialize(bridge);
+                skyline.initialize(bridge);
+                final String what = sample.getKey() + " offset " + offset;
+                if (offset <= 5e-4) {
+                    assertEquals(what + " legacy", Analysis.UNSTABLE, legacy.getStatus());
+                    assertEquals(what + " skyline", Analysis.UNSTABLE, skyline.getStatus());
+                }
+                else if (offset >= 1e-2) {
+                    assertTrue(what, legacy.getStatus() != Analysis.UNSTABLE);
+                    assertAgree(what, legacy.getResult(), skyline.getResult());
+                }
+                else if (skyline.getStatus() == Analysis.UNSTABLE) {
+                    assertEquals(what + " legacy", Analysis.UNSTABLE, legacy.getStatus());
+                }
+                else if (legacy.getStatus() != Analysis.UNSTABLE) {
+                    assertAgree(what, legacy.getResult(), skyline.getResult());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * StabilityCheckTest.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the fast stability check, which member sizing, topology search, and drag analysis rely on to skip
+ * bridges that are certainly unstable.
+ *
+ * @author Eugene K. Ressler
+ */
+public class StabilityCheckTest {
+
+    /**
+     * Return the number of restrained joint coordinates of a bridge.
+     *
+     * @param bridge bridge
+     * @return number of restraints
+     */
+    private static int getRestraintCount(BridgeModel bridge) {
+        final int nJoints = bridge.getJoints().size();
+        final boolean [] xRestraint = new boolean [nJoints];
+        final boolean [] yRestraint = new boolean [nJoints];
+        bridge.getDesignConditions().getJointRestraints(xRestraint, yRestraint, nJoints);
+        int n = 0;
+        for (int ij = 0; ij < nJoints; ij++) {
+            n += (xRestraint[ij] ? 1 : 0) + (yRestraint[ij] ? 1 : 0);
+        }
+        return n;
+    }
+
+    /**
+     * Return true iff the member has a joint in the given list.
+     *
+     * @param member member
+     * @param joints joints
+     * @return true iff the member touches one of the joints
+     */
+    private static boolean touches(Member member, List<Joint> joints) {
+        return joints.contains(member.getJointA()) || joints.contains(member.getJointB());
+    }
+
+    /**
+     * No sample that the load test finds stable fails the check.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void stableSamplesPass() throws Exception {
+        final Analysis analysis = new Analysis();
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            final BridgeModel bridge = SampleBridges.read(sample.getValue());
+            analysis.initialize(bridge);
+            if (analysis.getStatus() != Analysis.UNSTABLE) {
+                final StabilityCheck check = new StabilityCheck(bridge);
+                assertTrue(sample.getKey(), check.isStable());
+                assertEquals(sample.getKey(), 0, check.getFreedomCount());
+                assertTrue(sample.getKey(), check.getLooseJoints().isEmpty());
+            }
+        }
+    }
+
+    /**
+     * Removing any member between joints the scenario doesn't prescribe from a statically determinate sample
+     * leaves a mechanism with one degree of freedom.  One of the member's joints is loose, and so are members
+     * at that joint.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void removingWebMemberOfDeterminateTrussIsUnstable() throws Exception {
+        int nDeterminate = 0;
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            final BridgeModel bridge = SampleBridges.read(sample.getValue());
+            final int nPrescribedJoints = bridge.getDesignConditions().getNPrescribedJoints();
+            if (bridge.getMembers().size() + getRestraintCount(bridge) != 2 * bridge.getJoints().size() ||
+                    !new StabilityCheck(bridge).isStable()) {
+                continue;
+            }
+            ++nDeterminate;
+            for (int im = 0; im < bridge.getMembers().size(); im++) {
+                final BridgeModel cut = SampleBridges.read(sample.getValue());
+                final Member removed = cut.getMembers().get(im);
+                if (removed.getJointA().getIndex() < nPrescribedJoints || removed.getJointB().getIndex() < nPrescribedJoints) {
+                    continue;
+                }
+                cut.getMembers().remove(im);
+                final String what = sample.getKey() + " without member " + removed.getNumber();
+                final StabilityCheck check = new StabilityCheck(cut);
+                assertFalse(what, check.isStable());
+                assertEquals(what, 1, check.getFreedomCount());
+                assertTrue(what, check.isLoose(removed.getJointA()) || check.isLoose(removed.getJointB()));
+                boolean regionIsLoose = false;
+                for (Member member : check.getLooseMembers()) {
+                    regionIsLoose |= touches(member, check.getLooseJoints()) &&
+                            (member.getJointA() == removed.getJointA() || member.getJointB() == removed.getJointA() ||
+                             member.getJointA() == removed.getJointB() || member.getJointB() == removed.getJointB());
+                }
+                assertTrue(what, regionIsLoose);
+            }
+        }
+        assertTrue("no determinate sample", nDeterminate > 0);
+    }
+
+    /**
+     * A joint added at the midpoint of a member and held only by members along it is loose, though the bridge
+     * is rigid for joints in general position.
+     *
+     * @throws Exception if a sample can't be read
+     */
+    @Test
+    public void jointWithCollinearMembersIsLoose() throws Exception {
+        for (Map.Entry<String, String> sample : SampleBridges.getTexts().entrySet()) {
+            final BridgeModel bridge = SampleBridges.read(sample.getValue());
+            if (!new StabilityCheck(bridge).isStable()) {
+                continue;
+            }
+            final Member member = bridge.getMembers().get(0);
+            final Affine.Point a = member.getJointA().getPointWorld();
+            final Affine.Point b = member.getJointB().getPointWorld();
+            final Joint midpoint = new Joint(bridge.getJoints().size(), new Affine.Point((a.x + b.x) / 2, (a.y + b.y) / 2));
+            bridge.getJoints().add(midpoint);
+            final int nMembers = bridge.getMembers().size();
+            bridge.getMembers().add(new Member(nMembers, member.getJointA(), midpoint, member.getMaterial(), member.getShape()));
+            bridge.getMembers().add(new Member(nMembers + 1, midpoint, member.getJointB(), member.getMaterial(), member.getShape()));
+            final StabilityCheck check = new StabilityCheck(bridge);
+            assertEquals(sample.getKey(), 0, check.getFreedomCount());
+            assertFalse(sample.getKey(), check.isStable());
+            assertTrue(sample.getKey(), check.isLoose(midpoint));
+        }
+    }
+}
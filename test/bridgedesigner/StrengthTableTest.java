@@ -0,0 +1,59 @@
+/*
+ * StrengthTableTest.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the precomputed compressive strengths against the exact formula of <code>Inventory</code>.
+ *
+ * @author Eugene K. Ressler
+ */
+public class StrengthTableTest {
+
+    /**
+     * Number of lengths checked for each material and shape.
+     */
+    private static final int nSamples = 10000;
+
+    /**
+     * For all stock over twice the range of lengths where members are possible, tabulated strengths differ
+     * from the formula by no more than the error bound, and not at all at zero length.
+     */
+    @Test
+    public void strengthsAreWithinErrorBound() {
+        final Inventory inventory = new Inventory();
+        final double errorBound = StrengthTable.getErrorBound();
+        for (int im = 0; im < inventory.getNMaterials(); im++) {
+            final Material material = inventory.getMaterial(im);
+            for (int is = 0; is < inventory.getNSections(); is++) {
+                for (int iz = 0; iz < inventory.getNShapes(is); iz++) {
+                    final Shape shape = inventory.getShape(is, iz);
+                    final double zeroLength = Inventory.compressiveStrength(material, shape, 0);
+                    assertEquals(material + " " + shape + " at zero length",
+                            zeroLength, StrengthTable.compressiveStrength(material, shape, 0), 0);
+                    final double maxLength = 2 * shape.getMaxSlendernessLength();
+                    for (int i = 0; i <= nSamples; i++) {
+                        final double length = i * maxLength / nSamples;
+                        final double error = Math.abs(StrengthTable.compressiveStrength(material, shape, length) -
+                                Inventory.compressiveStrength(material, shape, length)) / zeroLength;
+                        assertTrue(material + " " + shape + " at length " + length + ": relative error " + error,
+                                error <= errorBound);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * TopologySearchTest.java
+ *
+ * Copyright (C) 2016 Eugene K. Ressler
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package bridgedesigner;
+
+import java.util.Collections;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that topology search is reproducible and that the designs on its front are sound.
+ *
+ * @author Eugene K. Ressler
+ */
+public class TopologySearchTest {
+
+    /**
+     * Number of islands, each evolved on its own thread.
+     */
+    private static final int nIslands = 2;
+    /**
+     * Number of epochs searched after the initial populations are bred.
+     */
+    private static final int nEpochs = 1;
+    /**
+     * Seed of the random number generators.
+     */
+    private static final long seed = 1;
+
+    /**
+     * Return the sample with the fewest members.
+     *
+     * @return bridge
+     * @throws Exception if a sample can't be read
+     */
+    private static BridgeModel getSmallestSample() throws Exception {
+        BridgeModel smallest = null;
+        for (String text : SampleBridges.getTexts().values()) {
+            final BridgeModel bridge = SampleBridges.read(text);
+            if (smallest == null || bridge.getMembers().size() < smallest.getMembers().size()) {
+                smallest = bridge;
+            }
+        }
+        return smallest;
+    }
+
+    /**
+     * Return the front found by a search seeded with a bridge.
+     *
+     * @param bridge seed bridge
+     * @return designs on the front
+     * @throws Exception if the search is interrupted
+     */
+    private static TopologySearch.Design [] search(BridgeModel bridge) throws Exception {
+        final TopologySearch search = new TopologySearch(bridge.getDesignConditions(),
+                Collections.singletonList(bridge), nIslands, seed, null);
+        search.search(nEpochs);
+        return search.getFront();
+    }
+
+    /**
+     * Two searches with the same seed and number of islands find the same front, whatever the timing of the
+     * islands' threads, and every design on it is stable, passes a fresh analysis with the margin it reports,
+     * and costs what it reports.
+     *
+     * @throws Exception if a sample can't be read or the search is interrupted
+     */
+    @Test
+    public void searchIsReproducible() throws Exception {
+        final BridgeModel bridge = getSmallestSample();
+        final TopologySearch.Design [] front = search(bridge);
+        final TopologySearch.Design [] again = search(bridge);
+        assertTrue("empty front", front.length > 0);
+        assertEquals(front.length, again.length);
+        for (int i = 0; i < front.length; i++) {
+            assertEquals("cost " + i, Double.doubleToLongBits(front[i].getCost()), Double.doubleToLongBits(again[i].getCost()));
+            assertEquals("margin " + i, Double.doubleToLongBits(front[i].getMargin()), Double.doubleToLongBits(again[i].getMargin()));
+        }
+        final Analysis analysis = new Analysis();
+        analysis.setIncremental(false);
+        for (int i = 0; i < front.length; i++) {
+            final BridgeModel design = front[i].getBridge();
+            assertTrue("design " + i + " unstable", new StabilityCheck(design).isStable());
+            analysis.initialize(design);
+            assertEquals("design " + i, Analysis.PASSES, analysis.getStatus());
+            assertEquals("design " + i + " margin", front[i].getMargin(), MemberSizer.getLeastMargin(analysis.getResult()), 1e-9);
+            assertEquals("design " + i + " cost", front[i].getCost(), design.getTotalCost(), 1e-6);
+        }
+    }
+}